@@ -20,6 +20,8 @@
 package org.xwiki.bridge;
 
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -99,6 +101,27 @@ default DocumentModelBridge getDocumentInstance(DocumentReference documentRefere
         return null;
     }
 
+    /**
+     * Get the document objects associated with the passed document references. Loading several documents at once is
+     * generally a lot faster than loading them one by one.
+     * 
+     * @param documentReferences the references of the document instances to find
+     * @return the document instances matching the passed document references, in the same order
+     * @throws Exception when loading the documents failed
+     * @since 16.6.0RC1
+     */
+    @Unstable
+    default List<DocumentModelBridge> getDocumentInstances(Collection<DocumentReference> documentReferences)
+        throws Exception
+    {
+        List<DocumentModelBridge> documents = new ArrayList<>(documentReferences.size());
+        for (DocumentReference documentReference : documentReferences) {
+            documents.add(getDocumentInstance(documentReference));
+        }
+
+        return documents;
+    }
+
     /**
      * Get the document object associated with the passed reference.
      * 
@@ -164,6 +164,36 @@ default XDOM getPreparedXDOM()
         return getXDOM();
     }
 
+    /**
+     * Return the document content as {@link XDOM}, without cloning it when the implementation caches it.
+     * <p>
+     * The returned {@link XDOM} may be shared with other callers and threads so it must not be modified in any way
+     * (this includes executing transformations on it or attaching its blocks to another parent). Use
+     * {@link #getXDOM()} when a modifiable version is needed.
+     * 
+     * @return the XDOM for the document
+     * @since 16.6.0RC1
+     */
+    @Unstable
+    default XDOM getReadOnlyXDOM()
+    {
+        return getXDOM();
+    }
+
+    /**
+     * Return the prepared document content as {@link XDOM}, without cloning it when the implementation caches it.
+     * <p>
+     * The same restrictions as {@link #getReadOnlyXDOM()} apply.
+     * 
+     * @return the prepared version of the XDOM
+     * @since 16.6.0RC1
+     */
+    @Unstable
+    default XDOM getReadOnlyPreparedXDOM()
+    {
+        return getPreparedXDOM();
+    }
+
     /**
      * @return the document's content author user reference
      * @since 7.2M1
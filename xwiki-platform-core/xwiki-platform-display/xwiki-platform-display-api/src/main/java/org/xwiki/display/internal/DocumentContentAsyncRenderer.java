@@ -19,6 +19,8 @@
  */
 package org.xwiki.display.internal;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -35,6 +37,8 @@
 import org.xwiki.rendering.async.internal.block.AbstractBlockAsyncRenderer;
 import org.xwiki.rendering.block.Block;
 import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.security.authorization.AuthorizationManager;
+import org.xwiki.security.authorization.Right;
 
 /**
  * Default implementation of DocumentContentAsyncRenderer.
@@ -45,6 +49,23 @@
 @Component(roles = DocumentContentAsyncRenderer.class)
 public class DocumentContentAsyncRenderer extends AbstractBlockAsyncRenderer
 {
+    /**
+     * The context entry containing the current locale.
+     */
+    private static final String CONTEXT_LOCALE = "locale";
+
+    /**
+     * The context entry containing the current user.
+     */
+    private static final String CONTEXT_USER = "user";
+
+    /**
+     * The rights of the current user which are the most likely to change the result of the execution (for example to
+     * display an edit link).
+     */
+    private static final List<Right> SIGNATURE_RIGHTS =
+        List.of(Right.VIEW, Right.COMMENT, Right.EDIT, Right.DELETE, Right.ADMIN, Right.PROGRAM);
+
     @Inject
     private DocumentContentAsyncExecutor executor;
 
@@ -60,6 +81,9 @@ public class DocumentContentAsyncRenderer extends AbstractBlockAsyncRenderer
     @Inject
     private DocumentContentAsyncParser asyncParser;
 
+    @Inject
+    private AuthorizationManager authorization;
+
     private DocumentDisplayerParameters parameters;
 
     private AsyncProperties asyncProperties;
@@ -68,6 +92,10 @@ public class DocumentContentAsyncRenderer extends AbstractBlockAsyncRenderer
 
     private List<String> id;
 
+    private DocumentReference userReference;
+
+    private List<Right> allowedRights;
+
     /**
      * @param document the document to execute
      * @param parameters display parameters
@@ -90,17 +118,54 @@ public Set<String> initialize(DocumentModelBridge document, DocumentDisplayerPar
 
         this.documentReference = document.getDocumentReference();
 
+        Set<String> contextElements = this.asyncProperties.getContextElements();
+
         if (this.asyncProperties.isAsyncAllowed() || this.asyncProperties.isCacheAllowed()) {
+            // The translation to display depends on the current locale
+            if (parameters.isContentTranslated()
+                && (contextElements == null || !contextElements.contains(CONTEXT_LOCALE))) {
+                contextElements = contextElements != null ? new HashSet<>(contextElements) : new HashSet<>();
+                contextElements.add(CONTEXT_LOCALE);
+            }
+
             this.id = createId("display", "document", "content",
                 this.defaultEntityReferenceSerializer.serialize(this.documentReference), this.parameters.getSectionId(),
                 this.parameters.getTargetSyntax() != null ? this.parameters.getTargetSyntax().toIdString() : "",
                 transformationId, this.parameters.isContentTransformed(),
-                this.parameters.isTransformationContextRestricted(), this.parameters.isTransformationContextIsolated());
+                this.parameters.isTransformationContextRestricted(), this.parameters.isTransformationContextIsolated(),
+                document.getRealLanguage(), document.getVersion(), getRightsSignature(contextElements));
         }
 
         this.executor.initialize(transformationId, document, parameters);
 
-        return this.asyncProperties.getContextElements();
+        return contextElements;
+    }
+
+    /**
+     * Unless the result is already associated to a specific user, the cached result is shared by all the users who
+     * have the same rights on the document.
+     */
+    private String getRightsSignature(Set<String> contextElements)
+    {
+        if (!this.asyncProperties.isCacheAllowed()
+            || (contextElements != null && contextElements.contains(CONTEXT_USER))) {
+            this.userReference = null;
+            this.allowedRights = null;
+
+            return "";
+        }
+
+        this.userReference = this.documentAccessBridge.getCurrentUserReference();
+        this.allowedRights = new ArrayList<>(SIGNATURE_RIGHTS.size());
+        StringBuilder signature = new StringBuilder();
+        for (Right right : SIGNATURE_RIGHTS) {
+            if (this.authorization.hasAccess(right, this.userReference, this.documentReference)) {
+                this.allowedRights.add(right);
+                signature.append(right.getName()).append(',');
+            }
+        }
+
+        return signature.toString();
     }
 
     @Override
@@ -109,6 +174,14 @@ public Block execute(boolean async, boolean cached) throws RenderingException
         // Register the known involved references
         this.asyncContext.useEntity(this.documentReference);
 
+        // Make sure the cached result is removed when the rights it was computed for change
+        if (this.allowedRights != null) {
+            for (Right right : SIGNATURE_RIGHTS) {
+                this.asyncContext.useRight(right, this.userReference, this.documentReference,
+                    this.allowedRights.contains(right));
+            }
+        }
+
         return this.executor.execute(async);
     }
 
@@ -67,10 +67,11 @@ protected XDOM extractTitleFromContent(DocumentModelBridge document, DocumentDis
         // generate headings for example or some other transformations could modify headings. However we don't do this
         // at the moment since it would be too costly to do so. In the future we will even probably remove the feature
         // of generating the title from the content.
-        List<HeaderBlock> blocks =
-            document.getPreparedXDOM().getBlocks(new ClassBlockMatcher(HeaderBlock.class), Block.Axes.DESCENDANT);
+        // Only the first heading is transformed so there is no need to clone the whole content.
+        List<HeaderBlock> blocks = document.getReadOnlyPreparedXDOM()
+            .getBlocks(new ClassBlockMatcher(HeaderBlock.class), Block.Axes.DESCENDANT);
         if (!blocks.isEmpty()) {
-            HeaderBlock heading = blocks.get(0);
+            HeaderBlock heading = (HeaderBlock) blocks.get(0).clone();
             // Check the heading depth after which we should return null if no heading was found.
             if (heading.getLevel().getAsInt() <= displayConfiguration.getTitleHeadingDepth()) {
                 XDOM headingXDOM = new XDOM(Collections.<Block> singletonList(heading));
@@ -0,0 +1,147 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.display.internal;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.bridge.DocumentAccessBridge;
+import org.xwiki.bridge.DocumentModelBridge;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.rendering.async.AsyncContext;
+import org.xwiki.rendering.async.internal.AsyncProperties;
+import org.xwiki.security.authorization.AuthorizationManager;
+import org.xwiki.security.authorization.Right;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link DocumentContentAsyncRenderer}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class DocumentContentAsyncRendererTest
+{
+    private static final DocumentReference DOCUMENT_REFERENCE = new DocumentReference("wiki", "Space", "Page");
+
+    private static final DocumentReference USER_REFERENCE = new DocumentReference("wiki", "XWiki", "User");
+
+    @InjectMockComponents
+    private DocumentContentAsyncRenderer renderer;
+
+    @MockComponent
+    private DocumentContentAsyncExecutor executor;
+
+    @MockComponent
+    private DocumentContentAsyncParser asyncParser;
+
+    @MockComponent
+    private DocumentAccessBridge documentAccessBridge;
+
+    @MockComponent
+    private EntityReferenceSerializer<String> serializer;
+
+    @MockComponent
+    private AuthorizationManager authorization;
+
+    @MockComponent
+    private AsyncContext asyncContext;
+
+    private DocumentModelBridge document;
+
+    @BeforeEach
+    void beforeEach()
+    {
+        this.document = mock(DocumentModelBridge.class);
+        when(this.document.getDocumentReference()).thenReturn(DOCUMENT_REFERENCE);
+        when(this.document.getRealLanguage()).thenReturn("fr");
+        when(this.document.getVersion()).thenReturn("4.2");
+        when(this.serializer.serialize(DOCUMENT_REFERENCE)).thenReturn("wiki:Space.Page");
+        when(this.documentAccessBridge.getCurrentUserReference()).thenReturn(USER_REFERENCE);
+    }
+
+    @Test
+    void initializeWithoutCache()
+    {
+        when(this.asyncParser.getAsyncProperties(this.document)).thenReturn(new AsyncProperties());
+
+        assertNull(this.renderer.initialize(this.document, new DocumentDisplayerParameters()));
+        assertNull(this.renderer.getId());
+        verify(this.authorization, never()).hasAccess(any(), any(), any());
+    }
+
+    @Test
+    void initializeWithCache() throws Exception
+    {
+        when(this.asyncParser.getAsyncProperties(this.document)).thenReturn(new AsyncProperties(false, true, null));
+        when(this.authorization.hasAccess(Right.VIEW, USER_REFERENCE, DOCUMENT_REFERENCE)).thenReturn(true);
+        when(this.authorization.hasAccess(Right.EDIT, USER_REFERENCE, DOCUMENT_REFERENCE)).thenReturn(true);
+
+        DocumentDisplayerParameters parameters = new DocumentDisplayerParameters();
+        parameters.setContentTranslated(true);
+
+        assertEquals(Set.of("locale"), this.renderer.initialize(this.document, parameters));
+
+        List<String> id = this.renderer.getId();
+        assertEquals(List.of("fr", "4.2", "view,edit,"), id.subList(id.size() - 3, id.size()));
+
+        this.renderer.execute(false, true);
+
+        verify(this.asyncContext).useEntity(DOCUMENT_REFERENCE);
+        verify(this.asyncContext).useRight(Right.VIEW, USER_REFERENCE, DOCUMENT_REFERENCE, true);
+        verify(this.asyncContext).useRight(Right.EDIT, USER_REFERENCE, DOCUMENT_REFERENCE, true);
+        verify(this.asyncContext).useRight(Right.ADMIN, USER_REFERENCE, DOCUMENT_REFERENCE, false);
+
+        // Another version of the document is cached separately
+        when(this.document.getVersion()).thenReturn("4.3");
+        this.renderer.initialize(this.document, parameters);
+        assertNotEquals(id, this.renderer.getId());
+    }
+
+    @Test
+    void initializeWithCacheForUser()
+    {
+        when(this.asyncParser.getAsyncProperties(this.document))
+            .thenReturn(new AsyncProperties(false, true, Set.of("user")));
+
+        DocumentDisplayerParameters parameters = new DocumentDisplayerParameters();
+        parameters.setContentTranslated(false);
+
+        assertEquals(Set.of("user"), this.renderer.initialize(this.document, parameters));
+
+        List<String> id = this.renderer.getId();
+        assertEquals("", id.get(id.size() - 1));
+        verify(this.authorization, never()).hasAccess(any(), any(), any());
+    }
+}
@@ -27,6 +27,7 @@
 import java.util.concurrent.CompletableFuture;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
 
 /**
  * Save and access store events.
@@ -173,4 +174,42 @@ default List<EventStatus> getEventStatuses(Collection<Event> events, Collection<
     {
         return List.of();
     }
+
+    /**
+     * Get the identifiers of all the entities (users and groups) associated with the passed event through an
+     * {@link EventStatus}.
+     * <p>
+     * This is meant to be used when the number of entities to check is big (for example all the users of a wiki),
+     * since it requires a single request to the store whatever the number of entities.
+     *
+     * @param event the event
+     * @return the identifiers of the entities associated with the event or {@link Optional#empty()} if the store does
+     *         not support this kind of request
+     * @throws EventStreamException when failing to get the entities associated with the event
+     * @since 16.6.0RC1
+     */
+    @Unstable
+    default Optional<Set<String>> getEventStatusEntityIds(Event event) throws EventStreamException
+    {
+        return Optional.empty();
+    }
+
+    /**
+     * Get the identifiers of all the entities (users and groups) associated with the passed event through a mail
+     * {@link EntityEvent}.
+     * <p>
+     * This is meant to be used when the number of entities to check is big (for example all the users of a wiki),
+     * since it requires a single request to the store whatever the number of entities.
+     *
+     * @param event the event
+     * @return the identifiers of the entities associated with the event or {@link Optional#empty()} if the store does
+     *         not support this kind of request
+     * @throws EventStreamException when failing to get the entities associated with the event
+     * @since 16.6.0RC1
+     */
+    @Unstable
+    default Optional<Set<String>> getMailEntityIds(Event event) throws EventStreamException
+    {
+        return Optional.empty();
+    }
 }
@@ -29,6 +29,7 @@
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
@@ -187,6 +188,8 @@ public EventStoreTaskType getType()
 
     private int queueCapacity;
 
+    private long batchDelay;
+
     private BlockingQueue<EventStoreTask<?, ?>> queue;
 
     private boolean notifyEach;
@@ -331,21 +334,34 @@ private void processTasks(EventStoreTask<?, ?> firstTask)
 
         // Make sure to not treat more than the queue capacity in a single batch
         List<EventStoreTask<?, ?>> tasks = new ArrayList<>(this.queueCapacity);
+        // The executed tasks which still need to be flushed
+        List<EventStoreTask<?, ?>> pendingTasks = new ArrayList<>(this.queueCapacity);
+        long batchEnd = System.currentTimeMillis() + this.batchDelay;
         try {
-            for (EventStoreTask<?, ?> task = firstTask; task != null; task = this.queue.poll()) {
+            for (EventStoreTask<?, ?> task = firstTask; task != null; task = nextTask(batchEnd)) {
                 if (task == EventStoreTask.STOP) {
                     break;
                 }
 
+                // Make sure what was done by the previous tasks is visible to a task which cannot be batched
+                if (!isBatchable(task.type)) {
+                    flushTasks(pendingTasks, tasks);
+                }
+
                 try {
                     // Execute the task
                     processTask(task);
 
                     // Add a successful task to the batch
-                    tasks.add(task);
+                    pendingTasks.add(task);
+
+                    // A task which is declared complete as soon as it's executed needs to be persisted first
+                    if (this.notifyEach) {
+                        flushTasks(pendingTasks, tasks);
+                    }
 
                     // Stop if the batch has been reached
-                    if (tasks.size() == this.queueCapacity) {
+                    if (tasks.size() + pendingTasks.size() == this.queueCapacity) {
                         break;
                     }
                 } catch (Exception e) {
@@ -354,6 +370,8 @@ private void processTasks(EventStoreTask<?, ?> firstTask)
                 }
             }
         } finally {
+            flushTasks(pendingTasks, tasks);
+
             // Give a chance to the extended class to do something before the tasks are declared complete
             afterTasks(tasks);
 
@@ -361,6 +379,50 @@ private void processTasks(EventStoreTask<?, ?> firstTask)
         }
     }
 
+    private EventStoreTask<?, ?> nextTask(long batchEnd)
+    {
+        long delay = batchEnd - System.currentTimeMillis();
+
+        if (delay > 0) {
+            // Wait a bit for more tasks to group them with the current batch
+            try {
+                return this.queue.poll(delay, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                return null;
+            }
+        }
+
+        return this.queue.poll();
+    }
+
+    private void flushTasks(List<EventStoreTask<?, ?>> pendingTasks, List<EventStoreTask<?, ?>> tasks)
+    {
+        if (!pendingTasks.isEmpty()) {
+            boolean flushed;
+            try {
+                syncFlush(pendingTasks);
+
+                tasks.addAll(pendingTasks);
+
+                flushed = true;
+            } catch (Exception e) {
+                // Indicate that the tasks failed
+                pendingTasks.forEach(task -> task.future.completeExceptionally(e));
+
+                flushed = false;
+            }
+
+            // The tasks can only be declared complete once they are persisted
+            if (flushed && this.notifyEach) {
+                pendingTasks.forEach(this::complete);
+            }
+
+            pendingTasks.clear();
+        }
+    }
+
     private boolean processTask(EventStoreTask<?, ?> task) throws EventStreamException
     {
         switch (task.type) {
@@ -417,10 +479,11 @@ private boolean processTask(EventStoreTask<?, ?> task) throws EventStreamExcepti
     private <O, I> void processTaskOutput(EventStoreTask<O, I> task, O output)
     {
         task.output = output;
+    }
 
-        if (this.notifyEach) {
-            complete(task, output);
-        }
+    private <O, I> void complete(EventStoreTask<O, I> task)
+    {
+        complete(task, task.output);
     }
 
     private <O, I> void complete(EventStoreTask<O, I> task, O output)
@@ -541,6 +604,33 @@ private <O, I> void complete(EventStoreTask<O, I> task, O output)
      */
     protected abstract Optional<Event> syncDeleteEvent(Event event) throws EventStreamException;
 
+    /**
+     * Indicate if the result of a task of the passed type can be kept pending until the next call to
+     * {@link #syncFlush(List)}. Before executing a task which cannot be batched, all the pending tasks are flushed.
+     * 
+     * @param type the type of task
+     * @return {@code true} if the task can be executed without flushing the previous tasks first
+     * @since 16.6.0RC1
+     */
+    protected boolean isBatchable(EventStoreTaskType type)
+    {
+        return true;
+    }
+
+    /**
+     * Persist in one go the modifications of a batch of tasks which have already been executed. If this method fails
+     * all the passed tasks are considered failed. The tasks are declared complete only after they have been flushed,
+     * so when each task is declared complete as soon as it's executed, this method is called for each task.
+     * 
+     * @param tasks the executed tasks to persist
+     * @throws EventStreamException when failing to persist the tasks
+     * @since 16.6.0RC1
+     */
+    protected void syncFlush(List<EventStoreTask<?, ?>> tasks) throws EventStreamException
+    {
+        // Nothing to do by default
+    }
+
     protected void afterTasks(List<EventStoreTask<?, ?>> tasks)
     {
         if (this.notifyAll) {
@@ -552,6 +642,21 @@ protected void afterTasks(List<EventStoreTask<?, ?>> tasks)
 
     protected void initialize(int queueCapacity, boolean notifyEach, boolean notifyAll)
     {
+        initialize(queueCapacity, notifyEach, notifyAll, 0);
+    }
+
+    /**
+     * @param queueCapacity the maximum number of tasks in the queue, also the maximum size of a batch of tasks
+     * @param notifyEach true if each task should be declared complete as soon as it's executed
+     * @param notifyAll true if the tasks should be declared complete at the end of each batch
+     * @param batchDelay the maximum time in milliseconds to wait for more tasks before ending a batch, 0 to end the
+     *            batch as soon as the queue is empty
+     * @since 16.6.0RC1
+     */
+    protected void initialize(int queueCapacity, boolean notifyEach, boolean notifyAll, long batchDelay)
+    {
+        this.batchDelay = batchDelay;
+
         this.notifyEach = notifyEach;
         this.notifyAll = !notifyEach && notifyAll;
 
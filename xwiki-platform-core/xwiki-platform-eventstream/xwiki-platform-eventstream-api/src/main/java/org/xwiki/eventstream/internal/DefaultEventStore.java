@@ -452,4 +452,32 @@ public List<EventStatus> getEventStatuses(Collection<Event> events, Collection<S
 
         return List.of();
     }
+
+    @Override
+    public Optional<Set<String>> getEventStatusEntityIds(Event event) throws EventStreamException
+    {
+        if (this.store != null) {
+            return this.store.getEventStatusEntityIds(event);
+        }
+
+        if (this.legacyStore != null) {
+            return this.legacyStore.getEventStatusEntityIds(event);
+        }
+
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Set<String>> getMailEntityIds(Event event) throws EventStreamException
+    {
+        if (this.store != null) {
+            return this.store.getMailEntityIds(event);
+        }
+
+        if (this.legacyStore != null) {
+            return this.legacyStore.getMailEntityIds(event);
+        }
+
+        return Optional.empty();
+    }
 }
@@ -64,4 +64,14 @@ public boolean isEventStoreEnabled()
     {
         return this.configuration.getProperty("eventstream.store.enabled", true);
     }
+
+    /**
+     * @return the maximum time in milliseconds the event store waits for more operations to persist them in a single
+     *         batch
+     * @since 16.6.0RC1
+     */
+    public long getEventStoreBatchDelay()
+    {
+        return this.configuration.getProperty("eventstream.store.batchDelay", 0L);
+    }
 }
@@ -27,6 +27,7 @@
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -53,6 +54,7 @@
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -94,6 +96,10 @@ EventEntry getEventEntry(String eventId, boolean create)
 
         ReentrantLock lock = new ReentrantLock();
 
+        List<Integer> flushes = new CopyOnWriteArrayList<>();
+
+        EventStreamException flushError;
+
         @Override
         public Optional<Event> getEvent(String eventId) throws EventStreamException
         {
@@ -128,6 +134,16 @@ public void initialize() throws InitializationException
             initialize(10, true, false);
         }
 
+        @Override
+        protected void syncFlush(List<EventStoreTask<?, ?>> tasks) throws EventStreamException
+        {
+            this.flushes.add(tasks.size());
+
+            if (this.flushError != null) {
+                throw this.flushError;
+            }
+        }
+
         @Override
         protected EventStatus syncSaveEventStatus(EventStatus status)
         {
@@ -269,12 +285,24 @@ protected Optional<Event> syncDeleteEvent(Event event) throws EventStreamExcepti
         }
     }
 
+    public static class TestGroupCommitEventStore extends TestAbstractAsynchronousEventStore
+    {
+        @Override
+        public void initialize() throws InitializationException
+        {
+            initialize(10, false, true);
+        }
+    }
+
     @InjectComponentManager
     private MockitoComponentManager componentManager;
 
     @InjectMockComponents
     private TestAbstractAsynchronousEventStore store;
 
+    @InjectMockComponents
+    private TestGroupCommitEventStore groupCommitStore;
+
     @MockComponent
     private ObservationManager observation;
 
@@ -467,6 +495,75 @@ void prefilter() throws InterruptedException, ExecutionException, EventStreamExc
         assertFalse(this.store.getEvent(event2.getId()).get().isPrefiltered());
     }
 
+    @Test
+    void flushEachTask() throws InterruptedException, ExecutionException
+    {
+        this.store.saveEvent(event("id1"));
+        this.store.saveEvent(event("id2")).get();
+
+        assertEquals(List.of(1, 1), this.store.flushes);
+
+        this.store.flushError = new EventStreamException("flush error");
+
+        DefaultEvent event3 = event("id3");
+        CompletableFuture<Event> future = this.store.saveEvent(event3);
+
+        ExecutionException exception = assertThrows(ExecutionException.class, future::get);
+        assertSame(this.store.flushError, exception.getCause());
+        verify(this.observation, never()).notify(any(EventStreamAddedEvent.class), same(event3));
+    }
+
+    @Test
+    void groupCommit() throws InterruptedException, ExecutionException
+    {
+        DefaultEvent event1 = event("id1");
+        DefaultEvent event2 = event("id2");
+        DefaultEvent event3 = event("id3");
+
+        // Block the store thread in the first task so that the next ones are executed in the same batch
+        this.groupCommitStore.lock.lock();
+        CompletableFuture<Event> future1;
+        CompletableFuture<Event> future2;
+        CompletableFuture<Event> future3;
+        try {
+            future1 = this.groupCommitStore.saveEvent(event1);
+            future2 = this.groupCommitStore.saveEvent(event2);
+            future3 = this.groupCommitStore.saveEvent(event3);
+        } finally {
+            this.groupCommitStore.lock.unlock();
+        }
+
+        assertSame(event1, future1.get());
+        assertSame(event2, future2.get());
+        assertSame(event3, future3.get());
+        assertEquals(3, this.groupCommitStore.flushes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(this.groupCommitStore.flushes.size() < 3);
+    }
+
+    @Test
+    void groupCommitWithFlushError() throws InterruptedException
+    {
+        this.groupCommitStore.flushError = new EventStreamException("flush error");
+
+        this.groupCommitStore.lock.lock();
+        CompletableFuture<Event> future1;
+        CompletableFuture<Event> future2;
+        try {
+            future1 = this.groupCommitStore.saveEvent(event("id1"));
+            future2 = this.groupCommitStore.saveEvent(event("id2"));
+        } finally {
+            this.groupCommitStore.lock.unlock();
+        }
+
+        // All the tasks of the batch should be reported as failed to the callers
+        ExecutionException exception = assertThrows(ExecutionException.class, future1::get);
+        assertSame(this.groupCommitStore.flushError, exception.getCause());
+        exception = assertThrows(ExecutionException.class, future2::get);
+        assertSame(this.groupCommitStore.flushError, exception.getCause());
+
+        verify(this.observation, never()).notify(any(EventStreamAddedEvent.class), any());
+    }
+
     /**
      * Observe for a call to notify on {@link #observation} for a given event and type. Complete the returned
      * {@link CompletableFuture} as soon as notify is called. This allows for tests to wait for notify to be called even
@@ -28,6 +28,7 @@
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -62,6 +63,7 @@
 import org.xwiki.eventstream.internal.AbstractAsynchronousEventStore;
 import org.xwiki.eventstream.internal.DefaultEvent;
 import org.xwiki.eventstream.internal.DefaultEventStatus;
+import org.xwiki.eventstream.internal.EventStreamConfiguration;
 import org.xwiki.eventstream.internal.StreamEventSearchResult;
 import org.xwiki.eventstream.query.AbstractPropertyQueryCondition;
 import org.xwiki.eventstream.query.CompareQueryCondition;
@@ -148,12 +150,20 @@ public class SolrEventStore extends AbstractAsynchronousEventStore
     @Named("compactwiki")
     private EntityReferenceSerializer<String> compactwiki;
 
+    @Inject
+    private EventStreamConfiguration configuration;
+
     private SolrClient client;
 
+    /**
+     * The documents to send to Solr at the end of the current batch of tasks. Only manipulated by the store thread.
+     */
+    private final List<SolrInputDocument> pendingDocuments = new ArrayList<>();
+
     @Override
     public void initialize() throws InitializationException
     {
-        initialize(100, false, true);
+        initialize(100, false, true, this.configuration.getEventStoreBatchDelay());
 
         try {
             this.client = this.solr.getClient(EventsSolrCoreInitializer.NAME);
@@ -175,13 +185,37 @@ protected void afterTasks(List<EventStoreTask<?, ?>> tasks)
     }
 
     @Override
-    protected Event syncSaveEvent(Event event) throws EventStreamException
+    protected boolean isBatchable(EventStoreTaskType type)
     {
-        try {
-            this.client.add(toSolrInputDocument(event));
-        } catch (Exception e) {
-            throw new EventStreamException("Failed to save event", e);
+        switch (type) {
+            // Those tasks need to read the current state of the index
+            case DELETE_EVENT, DELETE_EVENT_BY_ID, DELETE_STATUSES:
+                return false;
+
+            default:
+                return true;
         }
+    }
+
+    @Override
+    protected void syncFlush(List<EventStoreTask<?, ?>> tasks) throws EventStreamException
+    {
+        if (!this.pendingDocuments.isEmpty()) {
+            try {
+                this.client.add(this.pendingDocuments);
+            } catch (Exception e) {
+                throw new EventStreamException(
+                    String.format("Failed to save a batch of [%d] event documents", this.pendingDocuments.size()), e);
+            } finally {
+                this.pendingDocuments.clear();
+            }
+        }
+    }
+
+    @Override
+    protected Event syncSaveEvent(Event event) throws EventStreamException
+    {
+        this.pendingDocuments.add(toSolrInputDocument(event));
 
         return event;
     }
@@ -246,12 +280,7 @@ protected Event syncPrefilterEvent(Event event) throws EventStreamException
 
         this.utils.setAtomic(SolrUtils.ATOMIC_UPDATE_MODIFIER_SET, Event.FIELD_PREFILTERED, true, document);
 
-        try {
-            this.client.add(document);
-        } catch (Exception e) {
-            throw new EventStreamException(
-                String.format("Failed to to set the event [%s] as prefiltered", event.getId()), e);
-        }
+        this.pendingDocuments.add(document);
 
         // Update the event so that we return something with the right value
         if (event instanceof DefaultEvent) {
@@ -262,7 +291,6 @@ protected Event syncPrefilterEvent(Event event) throws EventStreamException
     }
 
     private void saveEventStatus(String eventId, String entityId, boolean read, boolean unread)
-        throws EventStreamException
     {
         SolrInputDocument document = new SolrInputDocument();
 
@@ -275,16 +303,10 @@ private void saveEventStatus(String eventId, String entityId, boolean read, bool
             unread ? SolrUtils.ATOMIC_UPDATE_MODIFIER_ADD_DISTINCT : SolrUtils.ATOMIC_UPDATE_MODIFIER_REMOVE,
             EventsSolrCoreInitializer.SOLR_FIELD_UNREADLISTENERS, entityId, document);
 
-        try {
-            this.client.add(document);
-        } catch (Exception e) {
-            throw new EventStreamException(
-                String.format("Failed to update the event status for event [%s] and entity id [%s]", eventId, entityId),
-                e);
-        }
+        this.pendingDocuments.add(document);
     }
 
-    private void saveMailEntityEvent(String eventId, String entityId, boolean add) throws EventStreamException
+    private void saveMailEntityEvent(String eventId, String entityId, boolean add)
     {
         SolrInputDocument document = new SolrInputDocument();
 
@@ -294,12 +316,7 @@ private void saveMailEntityEvent(String eventId, String entityId, boolean add) t
             add ? SolrUtils.ATOMIC_UPDATE_MODIFIER_ADD_DISTINCT : SolrUtils.ATOMIC_UPDATE_MODIFIER_REMOVE,
             EventsSolrCoreInitializer.SOLR_FIELD_MAILLISTENERS, entityId, document);
 
-        try {
-            this.client.add(document);
-        } catch (Exception e) {
-            throw new EventStreamException(String.format(
-                "Failed to update the event mail status for event [%s] and entity id [%s]", eventId, entityId), e);
-        }
+        this.pendingDocuments.add(document);
     }
 
     private SolrInputDocument toSolrInputDocument(Event event)
@@ -452,6 +469,51 @@ public List<EventStatus> getEventStatuses(Collection<Event> events, Collection<S
         return statuses;
     }
 
+    @Override
+    public Optional<Set<String>> getEventStatusEntityIds(Event event) throws EventStreamException
+    {
+        SolrDocument document = getEventDocument(event);
+
+        Set<String> entityIds = new HashSet<>();
+        if (document != null) {
+            addEntityIds(EventsSolrCoreInitializer.SOLR_FIELD_READLISTENERS, document, entityIds);
+            addEntityIds(EventsSolrCoreInitializer.SOLR_FIELD_UNREADLISTENERS, document, entityIds);
+        }
+
+        return Optional.of(entityIds);
+    }
+
+    @Override
+    public Optional<Set<String>> getMailEntityIds(Event event) throws EventStreamException
+    {
+        SolrDocument document = getEventDocument(event);
+
+        Set<String> entityIds = new HashSet<>();
+        if (document != null) {
+            addEntityIds(EventsSolrCoreInitializer.SOLR_FIELD_MAILLISTENERS, document, entityIds);
+        }
+
+        return Optional.of(entityIds);
+    }
+
+    private SolrDocument getEventDocument(Event event) throws EventStreamException
+    {
+        try {
+            // The real time get also return the not yet committed atomic updates of the listeners fields
+            return getEventDocument(event.getId());
+        } catch (Exception e) {
+            throw new EventStreamException("Failed to get Solr document with id [" + event.getId() + "]", e);
+        }
+    }
+
+    private void addEntityIds(String fieldName, SolrDocument document, Set<String> entityIds)
+    {
+        Set<String> values = this.utils.getSet(fieldName, document);
+        if (values != null) {
+            entityIds.addAll(values);
+        }
+    }
+
     private Event toEvent(SolrDocument document)
     {
         if (document == null) {
@@ -374,10 +374,16 @@ void eventStatuses() throws Exception
                         EVENT6, EVENT7, EVENT8, EVENT9, EVENT10, EVENT11, EVENT12),
                     List.of("entity1"))));
 
+        assertEquals(Optional.of(Set.of("entity1", "entity2")), this.eventStore.getEventStatusEntityIds(EVENT1));
+        assertEquals(Optional.of(Set.of("entity1", "entity3")), this.eventStore.getEventStatusEntityIds(EVENT2));
+        assertEquals(Optional.of(Set.of()), this.eventStore.getEventStatusEntityIds(event("unknown")));
+
         assertSearch(Arrays.asList(EVENT1), new SimpleEventQuery().withStatus("entity2"));
 
         this.eventStore.deleteEventStatus(status12).get();
 
+        assertEquals(Optional.of(Set.of("entity1")), this.eventStore.getEventStatusEntityIds(EVENT1));
+
         assertSearch(Arrays.asList(), new SimpleEventQuery().withStatus("entity2"));
 
         assertSearch(Arrays.asList(EVENT1, EVENT2, EVENT3, EVENT4, EVENT5, EVENT6, EVENT7, EVENT8, EVENT9, EVENT10,
@@ -744,6 +750,9 @@ private void searchMail()
         assertSearch(Arrays.asList(EVENT1), new SimpleEventQuery().withMail("entity2"));
 
         assertSearch(Arrays.asList(EVENT2), new SimpleEventQuery().withMail("entity3"));
+
+        assertEquals(Optional.of(Set.of("entity1", "entity2")), this.eventStore.getMailEntityIds(EVENT1));
+        assertEquals(Optional.of(Set.of("entity1", "entity3")), this.eventStore.getMailEntityIds(EVENT2));
     }
 
     private void searchFields() throws EventStreamException
@@ -56,6 +56,11 @@ public class DocumentInstanceOutputProperties extends EntityInstanceOutputProper
      */
     private boolean stoppedWhenSaveFail = true;
 
+    /**
+     * @see #getSaveThreads()
+     */
+    private int saveThreads = 1;
+
     /**
      * @return The base reference to use to resolve reference from events
      */
@@ -151,4 +156,25 @@ public void setStoppedWhenSaveFail(boolean stoppedWhenSaveFail)
     {
         this.stoppedWhenSaveFail = stoppedWhenSaveFail;
     }
+
+    /**
+     * @return the number of threads used to save the documents. Saves of the same document (all its locales and
+     *         revisions) are always executed in the order of the events.
+     * @since 16.6.0RC1
+     */
+    @PropertyName("Save threads")
+    @PropertyDescription("The number of threads used to save the documents (1 to save them in the reading thread)")
+    public int getSaveThreads()
+    {
+        return this.saveThreads;
+    }
+
+    /**
+     * @param saveThreads the number of threads used to save the documents
+     * @since 16.6.0RC1
+     */
+    public void setSaveThreads(int saveThreads)
+    {
+        this.saveThreads = saveThreads;
+    }
 }
@@ -21,12 +21,14 @@
 
 import java.awt.Image;
 import java.awt.image.RenderedImage;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Arrays;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.cache.Cache;
@@ -35,6 +37,7 @@
 import org.xwiki.cache.config.CacheConfiguration;
 import org.xwiki.cache.eviction.EntryEvictionConfiguration;
 import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.environment.Environment;
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
@@ -63,6 +66,11 @@ public class ImagePlugin extends XWikiDefaultPlugin
      */
     private static final String PLUGIN_NAME = "image";
 
+    /**
+     * The default maximum total size of the stored thumbnails (1GB).
+     */
+    private static final long DEFAULT_THUMBNAILS_MAX_SIZE = 1073741824L;
+
     /**
      * Cache for already served images.
      */
@@ -83,6 +91,18 @@ public class ImagePlugin extends XWikiDefaultPlugin
      */
     private ImageProcessor imageProcessor;
 
+    /**
+     * Limits and coalesces the concurrent image scaling. The maximum number of images scaled at the same time can be
+     * configured using the key {@code xwiki.plugin.image.scaling.maxConcurrent}.
+     */
+    private ImageScalingExecutor<XWikiAttachment> scalingExecutor;
+
+    /**
+     * Persistent storage of the scaled images, {@code null} unless {@code xwiki.plugin.image.thumbnails.persistent} is
+     * enabled.
+     */
+    private ThumbnailStore thumbnailStore;
+
     /**
      * Creates a new instance of this plugin.
      *
@@ -129,6 +149,39 @@ public void init(XWikiContext context)
                     + "Using {} as the default image quality.", this.defaultQuality);
             }
         }
+
+        int maxConcurrentScaling = Runtime.getRuntime().availableProcessors();
+        String maxConcurrentScalingParam = context.getWiki().Param("xwiki.plugin.image.scaling.maxConcurrent");
+        if (!StringUtils.isBlank(maxConcurrentScalingParam)) {
+            try {
+                maxConcurrentScaling = Integer.parseInt(maxConcurrentScalingParam.trim());
+            } catch (NumberFormatException e) {
+                LOG.warn("Failed to parse xwiki.plugin.image.scaling.maxConcurrent configuration parameter. "
+                    + "Using {} as the maximum number of images scaled at the same time.", maxConcurrentScaling);
+            }
+        }
+        this.scalingExecutor = new ImageScalingExecutor<>(maxConcurrentScaling);
+
+        if ("1".equals(StringUtils.trim(context.getWiki().Param("xwiki.plugin.image.thumbnails.persistent")))) {
+            File directory = new File(Utils.getComponent(Environment.class).getPermanentDirectory(), "cache/image");
+            this.thumbnailStore = new ThumbnailStore(directory, getThumbnailsMaxSize(context));
+        }
+    }
+
+    private long getThumbnailsMaxSize(XWikiContext context)
+    {
+        long maxSize = DEFAULT_THUMBNAILS_MAX_SIZE;
+        String maxSizeParam = context.getWiki().Param("xwiki.plugin.image.thumbnails.maxSize");
+        if (!StringUtils.isBlank(maxSizeParam)) {
+            try {
+                maxSize = Long.parseLong(maxSizeParam.trim());
+            } catch (NumberFormatException e) {
+                LOG.warn("Failed to parse xwiki.plugin.image.thumbnails.maxSize configuration parameter. "
+                    + "Using {} as the maximum size of the stored thumbnails.", maxSize);
+            }
+        }
+
+        return maxSize;
     }
 
     /**
@@ -174,6 +227,14 @@ public void flushCache()
             this.imageCache.dispose();
         }
         this.imageCache = null;
+
+        if (this.thumbnailStore != null) {
+            try {
+                this.thumbnailStore.clear();
+            } catch (IOException e) {
+                LOG.warn("Failed to clear the stored thumbnails: {}", ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
     }
 
     /**
@@ -250,9 +311,19 @@ private XWikiAttachment downloadImage(XWikiAttachment image, int width, int heig
 
         boolean keepAspectRatio = Boolean.valueOf(context.getRequest().getParameter("keepAspectRatio"));
 
-        XWikiAttachment thumbnail = (this.imageCache == null)
-            ? shrinkImage(image, width, height, keepAspectRatio, quality, context)
-            : downloadImageFromCache(image, width, height, keepAspectRatio, quality, context);
+        String key = String.format("%s;%s;%s;%s;%s;%s;%s", image.getId(), image.getVersion(), image.getDate().getTime(),
+            width, height, keepAspectRatio, quality);
+
+        XWikiAttachment thumbnail = (this.imageCache == null) ? null : this.imageCache.get(key);
+        if (thumbnail == null) {
+            thumbnail = this.scalingExecutor.execute(key,
+                () -> loadImage(key, image, width, height, keepAspectRatio, quality, context));
+            // Don't keep in memory the thumbnails read from the store: the store needs to see each access to not
+            // delete the most used ones (which would then be missing), and getting them from the store is cheap.
+            if (this.imageCache != null && !(thumbnail.getAttachment_content() instanceof ThumbnailAttachmentContent)) {
+                this.imageCache.set(key, thumbnail);
+            }
+        }
 
         // If the image has been transformed, update the file name extension to match the image format.
         String fileName = thumbnail.getFilename();
@@ -265,8 +336,9 @@ private XWikiAttachment downloadImage(XWikiAttachment image, int width, int heig
     }
 
     /**
-     * Downloads the given image from cache.
+     * Loads the transformed image from the thumbnail store, or transforms the given image if it's not stored yet.
      *
+     * @param key the identifier of the transformed image
      * @param image the image to be downloaded
      * @param width the desired image width; this value is taken into account only if it is greater than zero and
      *     less than the current image width
@@ -279,17 +351,27 @@ private XWikiAttachment downloadImage(XWikiAttachment image, int width, int heig
      * @return the transformed image
      * @throws Exception if transforming the image fails
      */
-    private XWikiAttachment downloadImageFromCache(XWikiAttachment image, int width, int height,
+    private XWikiAttachment loadImage(String key, XWikiAttachment image, int width, int height,
         boolean keepAspectRatio, float quality, XWikiContext context) throws Exception
     {
-        String key = String.format("%s;%s;%s;%s;%s;%s;%s", image.getId(), image.getVersion(), image.getDate().getTime(),
-            width, height, keepAspectRatio, quality);
-
-        XWikiAttachment thumbnail = this.imageCache.get(key);
-        if (thumbnail == null) {
-            thumbnail = shrinkImage(image, width, height, keepAspectRatio, quality, context);
-            this.imageCache.set(key, thumbnail);
+        String storeKey = null;
+        if (this.thumbnailStore != null) {
+            // The attachment identifier does not contain the wiki.
+            storeKey = image.getReference() + ";" + key;
+            File storedThumbnail = this.thumbnailStore.get(storeKey);
+            if (storedThumbnail != null) {
+                return createThumbnail(image, storedThumbnail);
+            }
         }
+
+        return shrinkImage(image, width, height, keepAspectRatio, quality, storeKey, context);
+    }
+
+    private XWikiAttachment createThumbnail(XWikiAttachment attachment, File file)
+    {
+        XWikiAttachment thumbnail = attachment.clone();
+        thumbnail.setAttachment_content(new ThumbnailAttachmentContent(file));
+
         return thumbnail;
     }
 
@@ -306,12 +388,14 @@ private XWikiAttachment downloadImageFromCache(XWikiAttachment image, int width,
      *     are properly specified (in this case the image will be resized to best fit the rectangle with the requested
      *     width and height), {@code false} otherwise
      * @param requestedQuality the desired compression quality
+     * @param storeKey the key under which to save the modified image in the thumbnail store, {@code null} to keep it
+     *     in a temporary file
      * @param context the XWiki context
      * @return the modified image attachment
      * @throws Exception if shrinking the image fails
      */
     private XWikiAttachment shrinkImage(XWikiAttachment attachment, int requestedWidth, int requestedHeight,
-        boolean keepAspectRatio, float requestedQuality, XWikiContext context) throws Exception
+        boolean keepAspectRatio, float requestedQuality, String storeKey, XWikiContext context) throws Exception
     {
         Image image = this.imageProcessor.readImage(attachment.getContentInputStream(context));
 
@@ -321,25 +405,36 @@ private XWikiAttachment shrinkImage(XWikiAttachment attachment, int requestedWid
         int[] dimensions =
             reduceImageDimensions(currentWidth, currentHeight, requestedWidth, requestedHeight, keepAspectRatio);
 
-        float quality = requestedQuality;
-        if (quality < 0) {
+        float quality;
+        if (requestedQuality < 0) {
             // If no scaling is needed and the quality parameter is not specified, return the original image.
             if (dimensions[0] == currentWidth && dimensions[1] == currentHeight) {
                 return attachment;
             }
             quality = this.defaultQuality;
+        } else {
+            quality = requestedQuality;
         }
 
         // Scale the image to the new dimensions.
         RenderedImage shrunkImage = this.imageProcessor.scaleImage(image, dimensions[0], dimensions[1]);
 
+        String mimeType = attachment.getMimeType(context);
+        if (storeKey != null) {
+            // Write the shrunk image directly in the thumbnail store.
+            File file = this.thumbnailStore.store(storeKey,
+                output -> this.imageProcessor.writeImage(shrunkImage, mimeType, quality, output));
+
+            return createThumbnail(attachment, file);
+        }
+
         // Create an image attachment for the shrunk image.
         XWikiAttachment thumbnail = attachment.clone();
         thumbnail.loadAttachmentContent(context);
 
         OutputStream acos = thumbnail.getAttachment_content().getContentOutputStream();
         this.imageProcessor.writeImage(shrunkImage,
-            attachment.getMimeType(context),
+            mimeType,
             quality,
             acos);
 
@@ -0,0 +1,115 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.image;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits the number of images scaled at the same time and makes sure that an image is scaled only once when several
+ * requests ask for the same thumbnail simultaneously (e.g. when a gallery is displayed right after a restart).
+ * <p>
+ * The scaling is executed in the requesting thread since it needs the context of the request to access the attachment
+ * content: the other requests for the same key just wait for its result.
+ *
+ * @param <T> the type of the result
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+public class ImageScalingExecutor<T>
+{
+    private final Semaphore permits;
+
+    private final ConcurrentMap<String, CompletableFuture<T>> running = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxConcurrentTasks the maximum number of images scaled at the same time
+     */
+    public ImageScalingExecutor(int maxConcurrentTasks)
+    {
+        this.permits = new Semaphore(Math.max(1, maxConcurrentTasks), true);
+    }
+
+    /**
+     * Execute the task, unless a task with the same key is already running in which case its result is returned.
+     *
+     * @param key the identifier of the result
+     * @param task produces the result
+     * @return the result of the task
+     * @throws Exception if the task failed
+     */
+    public T execute(String key, Callable<T> task) throws Exception
+    {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CompletableFuture<T> runningFuture = this.running.putIfAbsent(key, future);
+        if (runningFuture != null) {
+            return waitFor(runningFuture);
+        }
+
+        try {
+            this.permits.acquire();
+            try {
+                T result = task.call();
+                future.complete(result);
+
+                return result;
+            } finally {
+                this.permits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+
+            throw e;
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+
+            throw e;
+        } finally {
+            // Don't leave the waiting requests blocked if the task failed with an error.
+            future.cancel(false);
+            this.running.remove(key, future);
+        }
+    }
+
+    /**
+     * Wait for the result of a task started by another request.
+     *
+     * @param future the result of the running task
+     * @return the result of the task
+     * @throws Exception if the task failed
+     */
+    T waitFor(CompletableFuture<T> future) throws Exception
+    {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+}
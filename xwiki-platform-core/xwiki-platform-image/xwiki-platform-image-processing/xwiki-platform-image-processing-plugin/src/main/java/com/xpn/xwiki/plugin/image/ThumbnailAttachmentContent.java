@@ -0,0 +1,113 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.image;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.input.AutoCloseInputStream;
+
+import com.xpn.xwiki.doc.XWikiAttachmentContent;
+
+/**
+ * The content of a scaled image read from the {@link ThumbnailStore}, so that it's streamed from the disk instead of
+ * being copied in a temporary file item.
+ *
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+public class ThumbnailAttachmentContent extends XWikiAttachmentContent
+{
+    private final File file;
+
+    /**
+     * @param file the file holding the scaled image
+     */
+    public ThumbnailAttachmentContent(File file)
+    {
+        super(null, null);
+
+        this.file = file;
+    }
+
+    /**
+     * @param content the content to copy
+     */
+    public ThumbnailAttachmentContent(ThumbnailAttachmentContent content)
+    {
+        super(content);
+
+        this.file = content.file;
+    }
+
+    @Override
+    public ThumbnailAttachmentContent clone()
+    {
+        return new ThumbnailAttachmentContent(this);
+    }
+
+    @Override
+    public boolean exists()
+    {
+        return this.file.exists();
+    }
+
+    @Override
+    @Deprecated
+    public byte[] getContent()
+    {
+        if (getFileItem() != null) {
+            return super.getContent();
+        }
+
+        try {
+            return Files.readAllBytes(this.file.toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the thumbnail " + this.file, e);
+        }
+    }
+
+    @Override
+    public InputStream getContentInputStream()
+    {
+        if (getFileItem() != null) {
+            return super.getContentInputStream();
+        }
+
+        try {
+            return new AutoCloseInputStream(Files.newInputStream(this.file.toPath()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the thumbnail " + this.file, e);
+        }
+    }
+
+    @Override
+    public long getLongSize()
+    {
+        if (getFileItem() != null) {
+            return super.getLongSize();
+        }
+
+        return this.file.length();
+    }
+}
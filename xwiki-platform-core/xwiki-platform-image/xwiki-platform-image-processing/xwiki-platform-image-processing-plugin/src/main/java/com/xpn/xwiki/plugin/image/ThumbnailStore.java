@@ -0,0 +1,226 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.image;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the scaled images on disk so that they survive restarts and don't need to be held in memory. Each thumbnail
+ * is stored in its own file, named after a hash of the key (which is expected to contain everything the scaled image
+ * depends on: attachment, version, dimensions, quality).
+ * <p>
+ * The total size of the stored thumbnails is bounded: the least recently used ones are deleted when it's exceeded,
+ * which also gets rid of the thumbnails of the previous versions of the attachments.
+ *
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+public class ThumbnailStore
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThumbnailStore.class);
+
+    private static final String TEMPORARY_PREFIX = "thumbnail";
+
+    private final File directory;
+
+    private final long maxSize;
+
+    /**
+     * The size of each stored thumbnail, in access order (the eldest entry is the least recently used one). Loaded
+     * from the directory the first time it's needed.
+     */
+    private Map<File, Long> files;
+
+    private long size;
+
+    /**
+     * Writes the content of a thumbnail.
+     *
+     * @since 16.6.0RC1
+     */
+    @FunctionalInterface
+    public interface ThumbnailWriter
+    {
+        /**
+         * @param output the stream where to write the thumbnail content
+         * @throws Exception if the thumbnail could not be produced
+         */
+        void write(OutputStream output) throws Exception;
+    }
+
+    /**
+     * @param directory the directory where to store the thumbnails
+     * @param maxSize the maximum total size (in bytes) of the stored thumbnails, 0 or less for no limit
+     */
+    public ThumbnailStore(File directory, long maxSize)
+    {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    private Map<File, Long> getFiles()
+    {
+        if (this.files == null) {
+            this.files = new LinkedHashMap<>(16, 0.75F, true);
+            this.size = 0;
+
+            // The files written last are considered as the most recently used ones
+            File[] subDirectories = this.directory.listFiles(File::isDirectory);
+            if (subDirectories != null) {
+                Arrays.stream(subDirectories).map(subDirectory -> subDirectory.listFiles(File::isFile))
+                    .filter(subFiles -> subFiles != null).flatMap(Arrays::stream)
+                    .filter(file -> !file.getName().startsWith(TEMPORARY_PREFIX))
+                    .sorted(Comparator.comparingLong(File::lastModified)).forEach(file -> {
+                        long length = file.length();
+                        this.files.put(file, length);
+                        this.size += length;
+                    });
+            }
+        }
+
+        return this.files;
+    }
+
+    private synchronized void add(File file)
+    {
+        Map<File, Long> storedFiles = getFiles();
+
+        long length = file.length();
+        Long previousLength = storedFiles.put(file, length);
+        this.size += previousLength != null ? length - previousLength : length;
+
+        if (this.maxSize > 0) {
+            // Always keep the last stored thumbnail, even if it's too big on its own
+            Iterator<Map.Entry<File, Long>> iterator = storedFiles.entrySet().iterator();
+            while (this.size > this.maxSize && storedFiles.size() > 1) {
+                Map.Entry<File, Long> eldest = iterator.next();
+                this.size -= eldest.getValue();
+                iterator.remove();
+
+                try {
+                    Files.deleteIfExists(eldest.getKey().toPath());
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to delete the thumbnail [{}]: {}", eldest.getKey(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private synchronized void touch(File file)
+    {
+        // Update the access order
+        getFiles().get(file);
+    }
+
+    /**
+     * @return the total size (in bytes) of the stored thumbnails
+     */
+    public synchronized long getSize()
+    {
+        getFiles();
+
+        return this.size;
+    }
+
+    private File getFile(String key)
+    {
+        String hash = DigestUtils.sha256Hex(key);
+
+        // Spread the files in sub directories to avoid huge directories.
+        return new File(new File(this.directory, hash.substring(0, 2)), hash);
+    }
+
+    /**
+     * @param key the thumbnail key
+     * @return the file holding the thumbnail, or {@code null} if it's not stored yet
+     */
+    public File get(String key)
+    {
+        File file = getFile(key);
+
+        if (file.isFile()) {
+            touch(file);
+
+            return file;
+        }
+
+        return null;
+    }
+
+    /**
+     * Produce and store a thumbnail. The file is written under a temporary name and then moved, so that a concurrent
+     * (or interrupted) write never exposes a partial thumbnail.
+     *
+     * @param key the thumbnail key
+     * @param writer produces the thumbnail content
+     * @return the file holding the thumbnail
+     * @throws Exception if producing or storing the thumbnail failed
+     */
+    public File store(String key, ThumbnailWriter writer) throws Exception
+    {
+        File file = getFile(key);
+        File parent = file.getParentFile();
+        if (!parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Failed to create the thumbnail directory [" + parent + "]");
+        }
+
+        File temporaryFile = File.createTempFile(TEMPORARY_PREFIX, null, parent);
+        try {
+            try (OutputStream output = Files.newOutputStream(temporaryFile.toPath())) {
+                writer.write(output);
+            }
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryFile.toPath());
+        }
+
+        add(file);
+
+        return file;
+    }
+
+    /**
+     * Remove all the stored thumbnails.
+     *
+     * @throws IOException if the thumbnails could not be deleted
+     */
+    public synchronized void clear() throws IOException
+    {
+        // Reload the remaining files if the deletion fails
+        this.files = null;
+
+        FileUtils.deleteDirectory(this.directory);
+    }
+}
@@ -25,12 +25,17 @@
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheManager;
@@ -44,11 +49,13 @@
 import com.xpn.xwiki.test.junit5.mockito.OldcoreTest;
 import com.xpn.xwiki.web.XWikiServletRequest;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -188,6 +195,119 @@ void cacheOfScaledAttachment() throws Exception
         verify(imageCache, times(1)).set(cacheKey, attachment);
     }
 
+    @Test
+    void persistentThumbnail() throws Exception
+    {
+        XWiki xwiki = this.oldCore.getSpyXWiki();
+        doReturn("1").when(xwiki).Param("xwiki.plugin.image.thumbnails.persistent");
+
+        XWikiContext xcontext = this.oldCore.getXWikiContext();
+
+        XWikiAttachment attachment = mock(XWikiAttachment.class);
+        when(attachment.getMimeType(xcontext)).thenReturn("image/png");
+        when(attachment.getContentInputStream(xcontext)).thenReturn(new ByteArrayInputStream(IMAGE_CONTENT));
+        when(attachment.clone()).thenReturn(attachment);
+        when(attachment.getDate()).thenReturn(new Date(0));
+        when(attachment.getFilename()).thenReturn("image.png");
+
+        XWikiServletRequest request = mock(XWikiServletRequest.class);
+        when(request.getParameter("width")).thenReturn("30");
+        xcontext.setRequest(request);
+
+        Image image = mock(Image.class);
+        when(image.getWidth(null)).thenReturn(400);
+        when(image.getHeight(null)).thenReturn(300);
+        when(this.imageProcessor.readImage(any())).thenReturn(image);
+        RenderedImage renderedImage = mock(RenderedImage.class);
+        when(this.imageProcessor.scaleImage(image, 30, 22)).thenReturn(renderedImage);
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(3).write(new byte[] {1, 2, 3});
+            return null;
+        }).when(this.imageProcessor).writeImage(eq(renderedImage), eq("image/png"), eq(.5F), any());
+
+        ImagePlugin imagePlugin = new ImagePlugin("image", ImagePlugin.class.getName(), xcontext);
+        // Start from an empty thumbnail store.
+        imagePlugin.flushCache();
+        imagePlugin.downloadAttachment(attachment, xcontext);
+
+        // Simulate a restart: the memory cache (mocked here) is empty but the thumbnail is still on disk.
+        new ImagePlugin("image", ImagePlugin.class.getName(), xcontext).downloadAttachment(attachment, xcontext);
+
+        verify(this.imageProcessor, times(1)).scaleImage(any(), anyInt(), anyInt());
+        ArgumentCaptor<XWikiAttachmentContent> contentCaptor = ArgumentCaptor.forClass(XWikiAttachmentContent.class);
+        verify(attachment, times(2)).setAttachment_content(contentCaptor.capture());
+        for (XWikiAttachmentContent content : contentCaptor.getAllValues()) {
+            assertArrayEquals(new byte[] {1, 2, 3}, IOUtils.toByteArray(content.getContentInputStream()));
+        }
+    }
+
+    @Test
+    void evictedPersistentThumbnail() throws Exception
+    {
+        XWiki xwiki = this.oldCore.getSpyXWiki();
+        doReturn("1").when(xwiki).Param("xwiki.plugin.image.thumbnails.persistent");
+        // Only one thumbnail fits in the store
+        doReturn("4").when(xwiki).Param("xwiki.plugin.image.thumbnails.maxSize");
+
+        XWikiContext xcontext = this.oldCore.getXWikiContext();
+
+        XWikiAttachment attachment = mock(XWikiAttachment.class);
+        when(attachment.getMimeType(xcontext)).thenReturn("image/png");
+        when(attachment.getContentInputStream(xcontext)).then(invocation -> new ByteArrayInputStream(IMAGE_CONTENT));
+        when(attachment.clone()).thenReturn(attachment);
+        when(attachment.getDate()).thenReturn(new Date(0));
+        when(attachment.getFilename()).thenReturn("image.png");
+        AtomicReference<XWikiAttachmentContent> attachmentContent = new AtomicReference<>();
+        doAnswer(invocation -> {
+            attachmentContent.set(invocation.getArgument(0));
+            return null;
+        }).when(attachment).setAttachment_content(any());
+        when(attachment.getAttachment_content()).then(invocation -> attachmentContent.get());
+
+        CacheManager cacheManager = this.oldCore.getMocker().getInstance(CacheManager.class);
+        Map<String, Object> cacheContent = new HashMap<>();
+        Cache<Object> imageCache = mock(Cache.class);
+        when(imageCache.get(any())).then(invocation -> cacheContent.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> cacheContent.put(invocation.getArgument(0), invocation.getArgument(1)))
+            .when(imageCache).set(any(), any());
+        when(cacheManager.createNewLocalCache(ArgumentMatchers.any())).thenReturn(imageCache);
+
+        XWikiServletRequest request = mock(XWikiServletRequest.class);
+        xcontext.setRequest(request);
+
+        Image image = mock(Image.class);
+        when(image.getWidth(null)).thenReturn(400);
+        when(image.getHeight(null)).thenReturn(300);
+        when(this.imageProcessor.readImage(any())).thenReturn(image);
+        RenderedImage renderedImage = mock(RenderedImage.class);
+        when(this.imageProcessor.scaleImage(eq(image), anyInt(), anyInt())).thenReturn(renderedImage);
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(3).write(new byte[] {1, 2, 3});
+            return null;
+        }).when(this.imageProcessor).writeImage(eq(renderedImage), eq("image/png"), eq(.5F), any());
+
+        ImagePlugin imagePlugin = new ImagePlugin("image", ImagePlugin.class.getName(), xcontext);
+        // Start from an empty thumbnail store.
+        imagePlugin.flushCache();
+
+        when(request.getParameter("width")).thenReturn("30");
+        imagePlugin.downloadAttachment(attachment, xcontext);
+
+        // Storing another thumbnail deletes the first one from the store
+        when(request.getParameter("width")).thenReturn("20");
+        imagePlugin.downloadAttachment(attachment, xcontext);
+
+        // The first thumbnail should be produced again instead of pointing to a deleted file
+        when(request.getParameter("width")).thenReturn("30");
+        XWikiAttachment thumbnail = imagePlugin.downloadAttachment(attachment, xcontext);
+
+        assertArrayEquals(new byte[] {1, 2, 3},
+            IOUtils.toByteArray(thumbnail.getAttachment_content().getContentInputStream()));
+        verify(this.imageProcessor, times(2)).scaleImage(image, 30, 22);
+        verify(this.imageProcessor).scaleImage(image, 20, 15);
+        verify(imageCache, never()).set(any(), any());
+    }
+
     @ParameterizedTest
     @CsvSource({
         "100, 500, false, 60, 300",
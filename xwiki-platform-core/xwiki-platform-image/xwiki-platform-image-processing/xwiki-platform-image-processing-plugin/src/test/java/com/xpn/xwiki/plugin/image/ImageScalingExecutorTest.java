@@ -0,0 +1,113 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.image;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link ImageScalingExecutor}.
+ *
+ * @version $Id$
+ */
+class ImageScalingExecutorTest
+{
+    /**
+     * Released when a request starts waiting for the result of another one.
+     */
+    private final CountDownLatch waiting = new CountDownLatch(1);
+
+    private final ImageScalingExecutor<String> executor = new ImageScalingExecutor<>(2)
+    {
+        @Override
+        String waitFor(CompletableFuture<String> future) throws Exception
+        {
+            waiting.countDown();
+
+            return super.waitFor(future);
+        }
+    };
+
+    @Test
+    void coalesceSameKey() throws Exception
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = threads.submit(() -> this.executor.execute("key", () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                release.await();
+                return "result";
+            }));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            Future<String> second = threads.submit(() -> this.executor.execute("key", () -> {
+                calls.incrementAndGet();
+                return "other";
+            }));
+
+            // Wait for the second request to wait for the result of the first one.
+            assertTrue(this.waiting.await(10, TimeUnit.SECONDS));
+
+            release.countDown();
+
+            assertEquals("result", first.get(10, TimeUnit.SECONDS));
+            assertEquals("result", second.get(10, TimeUnit.SECONDS));
+        } finally {
+            threads.shutdownNow();
+        }
+
+        assertEquals(1, calls.get());
+
+        // Once done, a new request executes the task again.
+        assertEquals("again", this.executor.execute("key", () -> "again"));
+    }
+
+    @Test
+    void failure()
+    {
+        IOException error = new IOException("failed");
+
+        assertSame(error, assertThrows(IOException.class, () -> this.executor.execute("key", () -> {
+            throw error;
+        })));
+
+        // A failure is not remembered.
+        assertEquals("ok", assertDoesNotThrow(() -> this.executor.execute("key", () -> "ok")));
+    }
+}
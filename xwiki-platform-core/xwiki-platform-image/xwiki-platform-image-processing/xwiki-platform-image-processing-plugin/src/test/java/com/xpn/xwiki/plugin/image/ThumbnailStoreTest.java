@@ -0,0 +1,127 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.image;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for {@link ThumbnailStore}.
+ *
+ * @version $Id$
+ */
+class ThumbnailStoreTest
+{
+    private static final byte[] CONTENT = {1, 2, 3};
+
+    @TempDir
+    File directory;
+
+    private ThumbnailStore store;
+
+    @BeforeEach
+    void setUp()
+    {
+        this.store = new ThumbnailStore(this.directory, 0);
+    }
+
+    @Test
+    void storeAndGet() throws Exception
+    {
+        assertNull(this.store.get("key"));
+
+        File file = this.store.store("key", output -> output.write(CONTENT));
+
+        assertEquals(file, this.store.get("key"));
+        assertArrayEquals(CONTENT, Files.readAllBytes(file.toPath()));
+        assertArrayEquals(CONTENT, new ThumbnailAttachmentContent(file).getContent());
+        assertNull(this.store.get("otherKey"));
+
+        // A new store on the same directory (e.g. after a restart) finds the thumbnail.
+        assertEquals(file, new ThumbnailStore(this.directory, 0).get("key"));
+    }
+
+    @Test
+    void failedWriteIsNotStored() throws Exception
+    {
+        assertThrows(IOException.class, () -> this.store.store("key", output -> {
+            output.write(CONTENT);
+            throw new IOException("failed");
+        }));
+
+        assertNull(this.store.get("key"));
+        File[] subDirectories = this.directory.listFiles();
+        assertEquals(1, subDirectories.length);
+        assertEquals(0, subDirectories[0].list().length);
+    }
+
+    @Test
+    void evictLeastRecentlyUsed() throws Exception
+    {
+        ThumbnailStore boundedStore = new ThumbnailStore(this.directory, 6);
+
+        File file1 = boundedStore.store("key1", output -> output.write(CONTENT));
+        File file2 = boundedStore.store("key2", output -> output.write(CONTENT));
+        assertEquals(6, boundedStore.getSize());
+
+        // Make the first thumbnail the most recently used one
+        assertNotNull(boundedStore.get("key1"));
+
+        boundedStore.store("key3", output -> output.write(CONTENT));
+
+        assertEquals(6, boundedStore.getSize());
+        assertEquals(file1, boundedStore.get("key1"));
+        assertNull(boundedStore.get("key2"));
+        assertFalse(file2.exists());
+        assertNotNull(boundedStore.get("key3"));
+    }
+
+    @Test
+    void sizeAfterRestart() throws Exception
+    {
+        this.store.store("key1", output -> output.write(CONTENT));
+        this.store.store("key2", output -> output.write(CONTENT));
+
+        assertEquals(6, new ThumbnailStore(this.directory, 0).getSize());
+    }
+
+    @Test
+    void clear() throws Exception
+    {
+        this.store.store("key", output -> output.write(CONTENT));
+
+        this.store.clear();
+
+        assertNull(this.store.get("key"));
+        assertEquals(0, this.store.getSize());
+    }
+}
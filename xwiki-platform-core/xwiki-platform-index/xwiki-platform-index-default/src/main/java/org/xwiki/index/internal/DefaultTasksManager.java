@@ -19,20 +19,30 @@
  */
 package org.xwiki.index.internal;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
@@ -41,12 +51,14 @@
 import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
+import org.xwiki.configuration.ConfigurationSource;
 import org.xwiki.context.ExecutionContext;
 import org.xwiki.context.ExecutionContextException;
 import org.xwiki.context.ExecutionContextManager;
 import org.xwiki.doc.tasks.XWikiDocumentIndexingTask;
 import org.xwiki.index.TaskManager;
 import org.xwiki.index.internal.jmx.JMXTasks;
+import org.xwiki.index.internal.jmx.TaskTypeStatistics;
 import org.xwiki.management.JMXBeanRegistration;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.observation.remote.RemoteObservationManagerConfiguration;
@@ -60,6 +72,11 @@
 
 /**
  * Initialize a {@link PriorityBlockingQueue} with the tasks stored in database.
+ * <p>
+ * The queue is consumed by a dispatcher thread which forwards each task to the consumer threads of its type. The
+ * number of consumer threads of a type is configured with {@code index.tasks.consumers.threads} (or
+ * {@code index.tasks.consumers.threads.<type>} for a specific type). The tasks of a given document are always
+ * forwarded to the same consumer thread, to keep them ordered.
  *
  * @version $Id$
  * @since 14.1RC1
@@ -70,6 +87,15 @@ public class DefaultTasksManager implements TaskManager, Initializable, Disposab
 {
     private static final String MBEAN_NAME = "name=index";
 
+    private static final String CONSUMER_THREAD_NAME = "task-manager-consumer";
+
+    private static final String CONSUMER_THREADS_PROPERTY = "index.tasks.consumers.threads";
+
+    /**
+     * The maximum number of executed tasks a consumer thread keeps before removing them from the database.
+     */
+    private static final int DELETE_BATCH_SIZE = 100;
+
     private PriorityBlockingQueue<TaskData> queue;
 
     /**
@@ -78,6 +104,20 @@ public class DefaultTasksManager implements TaskManager, Initializable, Disposab
      */
     private ConcurrentHashMap<TaskData, Long> latestTimestampTasksMap;
 
+    /**
+     * The consumers of each type of tasks, created when the first task of a type is dispatched.
+     */
+    private final Map<String, TaskTypeConsumer> consumers = new ConcurrentHashMap<>();
+
+    private final Map<String, TaskTypeStatistics> statistics = new ConcurrentHashMap<>();
+
+    /**
+     * The tasks waiting to be persisted, see {@link #storeTask(String, XWikiDocumentIndexingTask)}.
+     */
+    private final Queue<PendingTask> pendingTasks = new ConcurrentLinkedQueue<>();
+
+    private final ReentrantLock storeLock = new ReentrantLock();
+
     @Inject
     private WikiDescriptorManager wikiDescriptorManager;
 
@@ -96,6 +136,10 @@ public class DefaultTasksManager implements TaskManager, Initializable, Disposab
     @Inject
     private ExecutionContextManager executionContextManager;
 
+    @Inject
+    @Named("xwikiproperties")
+    private ConfigurationSource configuration;
+
     @Inject
     private Logger logger;
 
@@ -121,6 +165,66 @@ public class DefaultTasksManager implements TaskManager, Initializable, Disposab
      */
     private final ReentrantReadWriteLock.WriteLock writeLock = this.readWriteLock.writeLock();
 
+    /**
+     * A task waiting to be persisted.
+     */
+    private static final class PendingTask
+    {
+        private final String wikiId;
+
+        private final XWikiDocumentIndexingTask task;
+
+        /**
+         * Only accessed while holding {@link #storeLock}.
+         */
+        private boolean stored;
+
+        PendingTask(String wikiId, XWikiDocumentIndexingTask task)
+        {
+            this.wikiId = wikiId;
+            this.task = task;
+        }
+    }
+
+    /**
+     * The consumer threads of a type of tasks. Each thread has its own queue and a task is always forwarded to the
+     * same thread as the other tasks of the same document.
+     */
+    private final class TaskTypeConsumer
+    {
+        private final List<BlockingQueue<TaskData>> lanes;
+
+        TaskTypeConsumer(String type, int threads)
+        {
+            this.lanes = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                BlockingQueue<TaskData> lane = new LinkedBlockingQueue<>();
+                this.lanes.add(lane);
+
+                Thread thread = new Thread(() -> consumeLane(lane));
+                thread.setName(String.format("%s-%s-%d", CONSUMER_THREAD_NAME, type, i));
+                thread.setPriority(NORM_PRIORITY - 1);
+                thread.start();
+            }
+        }
+
+        void add(TaskData task)
+        {
+            int index = Math.floorMod(Objects.hash(task.getWikiId(), task.getDocId()), this.lanes.size());
+            this.lanes.get(index).add(task);
+        }
+
+        void stop()
+        {
+            this.lanes.forEach(lane -> lane.add(TaskData.STOP));
+        }
+
+        Stream<TaskData> stream()
+        {
+            return this.lanes.stream().flatMap(Collection::stream);
+        }
+    }
+
     @Override
     public CompletableFuture<TaskData> addTask(String wikiId, long docId, String type)
     {
@@ -133,15 +237,7 @@ public CompletableFuture<TaskData> addTask(String wikiId, long docId, String ver
         XWikiDocumentIndexingTask xWikiTask = initTask(docId, type, version);
         this.readLock.lock();
         try {
-            try {
-                this.tasksStore.get().addTask(wikiId, xWikiTask);
-            } catch (Exception e) {
-                this.logger.warn(
-                    "Failed to add a task for docId [{}], type [{}] and version [{}] in wiki [{}]. This task is queued"
-                        + " but will not be will not be restarted if not completed before the server stops."
-                        + " Cause: [{}].",
-                    docId, type, version, wikiId, getRootCauseMessage(e));
-            }
+            storeTask(wikiId, xWikiTask);
 
             TaskData taskData = convert(wikiId, xWikiTask);
             this.latestTimestampTasksMap.put(taskData, taskData.getTimestamp());
@@ -156,7 +252,8 @@ public CompletableFuture<TaskData> addTask(String wikiId, long docId, String ver
     public void initialize()
     {
         this.jmxRegistration.registerMBean(new JMXTasks(this::getQueueSize,
-                () -> this.queue.stream().collect(Collectors.groupingBy(TaskData::getType, Collectors.counting()))),
+                () -> streamQueuedTasks().collect(Collectors.groupingBy(TaskData::getType, Collectors.counting())),
+                () -> this.statistics),
             MBEAN_NAME);
         this.queue = new PriorityBlockingQueue<>(11, Comparator.comparingLong(TaskData::getTimestamp));
         this.latestTimestampTasksMap = new ConcurrentHashMap<>();
@@ -175,7 +272,7 @@ public void dispose()
     public void startThread()
     {
         Thread thread = new Thread(this);
-        thread.setName("task-manager-consumer");
+        thread.setName(CONSUMER_THREAD_NAME);
         thread.setPriority(NORM_PRIORITY - 1);
         thread.start();
     }
@@ -183,19 +280,19 @@ public void startThread()
     @Override
     public long getQueueSize()
     {
-        return this.queue.size();
+        return streamQueuedTasks().count();
     }
 
     @Override
     public long getQueueSize(String type)
     {
-        return this.queue.stream().filter(taskData -> Objects.equals(taskData.getType(), type)).count();
+        return streamQueuedTasks().filter(taskData -> Objects.equals(taskData.getType(), type)).count();
     }
 
     @Override
     public Map<String, Long> getQueueSizePerType(String wikiId)
     {
-        return this.queue.stream()
+        return streamQueuedTasks()
             .filter(taskData -> Objects.equals(taskData.getWikiId(), wikiId))
             .collect(Collectors.groupingBy(TaskData::getType, Collectors.counting()));
     }
@@ -206,40 +303,152 @@ public void run()
         try {
             initQueue();
             while (!this.halt) {
-                consume();
+                dispatch();
             }
         } catch (InitializationException e) {
             this.logger.error("Failed to initialize the tasks consumer thread.", e);
         }
     }
 
-    private void consume()
+    private Stream<TaskData> streamQueuedTasks()
     {
-        TaskData task = null;
+        return Stream.concat(this.queue.stream(),
+            this.consumers.values().stream().flatMap(TaskTypeConsumer::stream))
+            .filter(taskData -> !taskData.isStop());
+    }
+
+    /**
+     * Persist the task. Concurrent calls are grouped: the first thread acquiring the lock persists the tasks of all
+     * the threads waiting for it in a single transaction per wiki.
+     */
+    private void storeTask(String wikiId, XWikiDocumentIndexingTask task)
+    {
+        PendingTask pendingTask = new PendingTask(wikiId, task);
+        this.pendingTasks.add(pendingTask);
+
+        this.storeLock.lock();
         try {
-            task = this.queue.take();
-            task.increaseAttempts();
+            if (!pendingTask.stored) {
+                storePendingTasks();
+            }
+        } finally {
+            this.storeLock.unlock();
+        }
+    }
+
+    private void storePendingTasks()
+    {
+        Map<String, List<PendingTask>> tasksPerWiki = new LinkedHashMap<>();
+        for (PendingTask pendingTask = this.pendingTasks.poll(); pendingTask != null;
+            pendingTask = this.pendingTasks.poll()) {
+            tasksPerWiki.computeIfAbsent(pendingTask.wikiId, key -> new ArrayList<>()).add(pendingTask);
+        }
+
+        for (Map.Entry<String, List<PendingTask>> entry : tasksPerWiki.entrySet()) {
+            String wikiId = entry.getKey();
+            List<PendingTask> wikiTasks = entry.getValue();
+            try {
+                this.tasksStore.get().addTasks(wikiId,
+                    wikiTasks.stream().map(pendingTask -> pendingTask.task).collect(Collectors.toList()));
+            } catch (Exception e) {
+                for (PendingTask pendingTask : wikiTasks) {
+                    this.logger.warn("Failed to add a task for docId [{}], type [{}] and version [{}] in wiki [{}]."
+                            + " This task is queued but will not be will not be restarted if not completed before the"
+                            + " server stops. Cause: [{}].", pendingTask.task.getDocId(), pendingTask.task.getType(),
+                        pendingTask.task.getVersion(), wikiId, getRootCauseMessage(e));
+                }
+            }
+            wikiTasks.forEach(pendingTask -> pendingTask.stored = true);
+        }
+    }
+
+    private void dispatch()
+    {
+        try {
+            TaskData task = this.queue.take();
             if (task.isStop()) {
                 this.halt = true;
+                this.consumers.values().forEach(TaskTypeConsumer::stop);
             } else {
-                if (isTimestampValid(task)) {
-                    this.taskExecutor.execute(task);
-                    task.getFuture().complete(task);
-                } else {
-                    task.getFuture().cancel(false);
-                }
-                deleteTask(task);
+                this.consumers.computeIfAbsent(task.getType(),
+                    type -> new TaskTypeConsumer(type, getConsumerThreads(type))).add(task);
             }
         } catch (InterruptedException e) {
-            this.logger.warn("The task manager consumer thread was interrupted while processing task [{}] for "
-                + "document [{}]. Cause: [{}].", task, getTaskDocumentReferenceForLogging(task),
-                getRootCauseMessage(e));
+            this.logger.warn("The task manager consumer thread was interrupted. Cause: [{}].", getRootCauseMessage(e));
             Thread.currentThread().interrupt();
+            this.halt = true;
+        }
+    }
+
+    private int getConsumerThreads(String type)
+    {
+        Integer threads = this.configuration.getProperty(CONSUMER_THREADS_PROPERTY + '.' + type, Integer.class);
+        if (threads == null) {
+            threads = this.configuration.getProperty(CONSUMER_THREADS_PROPERTY, Integer.class);
+        }
+
+        return threads != null && threads > 0 ? threads : 1;
+    }
+
+    private void consumeLane(BlockingQueue<TaskData> lane)
+    {
+        List<TaskData> executedTasks = new ArrayList<>();
+        boolean stopped = false;
+        while (!stopped) {
+            TaskData task = lane.poll();
+            if (task == null) {
+                // Nothing else to do for now, take the opportunity to clean the executed tasks.
+                deleteExecutedTasks(executedTasks);
+                try {
+                    task = lane.take();
+                } catch (InterruptedException e) {
+                    this.logger.warn("The task manager consumer thread [{}] was interrupted. Cause: [{}].",
+                        Thread.currentThread().getName(), getRootCauseMessage(e));
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            if (task.isStop()) {
+                deleteExecutedTasks(executedTasks);
+                stopped = true;
+            } else if (consume(task)) {
+                // Don't make the callers wait for the batched removal of the task from the database: if the server
+                // stops before, the task is only executed again on restart.
+                task.getFuture().complete(task);
+                executedTasks.add(task);
+                if (executedTasks.size() >= DELETE_BATCH_SIZE) {
+                    deleteExecutedTasks(executedTasks);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param task the task to execute
+     * @return {@code true} if the task has been executed and must be removed from the database, {@code false}
+     *     otherwise
+     */
+    private boolean consume(TaskData task)
+    {
+        boolean executed = false;
+        task.increaseAttempts();
+        try {
+            if (isTimestampValid(task)) {
+                long start = System.nanoTime();
+                this.taskExecutor.execute(task);
+                getStatistics(task).onExecuted(System.nanoTime() - start,
+                    System.currentTimeMillis() - task.getTimestamp());
+                executed = true;
+            } else {
+                task.getFuture().cancel(false);
+            }
         } catch (Exception e) {
+            getStatistics(task).onFailed();
             this.logger.warn("Error during the execution of task [{}] for document [{}]. Cause: [{}].", task,
                 getTaskDocumentReferenceForLogging(task), getRootCauseMessage(e));
             this.logger.debug("Stack trace for previous error: ", e);
-            if (task != null && isTimestampValid(task)) {
+            if (isTimestampValid(task)) {
                 if (!task.tooManyAttempts()) {
                     // Push back the failed task at the beginning of the queue by resetting its timestamp.
                     long newTimestamp = System.currentTimeMillis();
@@ -248,13 +457,31 @@ private void consume()
                     this.queue.put(task);
                 } else {
                     this.logger.error("[{}] abandoned because it has failed too many times.", task, e);
-                    deleteTask(task);
+                    deleteTasks(List.of(task));
                     task.getFuture().cancel(false);
                 }
-            } else if (task != null) {
+            } else {
                 task.getFuture().cancel(false);
             }
-        } 
+        }
+
+        return executed;
+    }
+
+    private TaskTypeStatistics getStatistics(TaskData task)
+    {
+        return this.statistics.computeIfAbsent(task.getType(), type -> new TaskTypeStatistics());
+    }
+
+    /**
+     * Remove the executed tasks from the database in a single batch.
+     */
+    private void deleteExecutedTasks(List<TaskData> executedTasks)
+    {
+        if (!executedTasks.isEmpty()) {
+            deleteTasks(executedTasks);
+            executedTasks.clear();
+        }
     }
 
     private void initQueue() throws InitializationException
@@ -289,7 +516,7 @@ private void loadWiki(String wikiId) throws InitializationException
             // Make sure no task is in the DB but not in the queue.
             this.writeLock.lock();
             try {
-                existingTasks = new HashSet<>(this.queue);
+                existingTasks = streamQueuedTasks().collect(Collectors.toCollection(HashSet::new));
             } finally {
                 this.writeLock.unlock();
             }
@@ -338,19 +565,21 @@ private boolean isTimestampValid(TaskData task)
         return task.getTimestamp() == this.latestTimestampTasksMap.getOrDefault(task, 0L);
     }
 
-    private void deleteTask(TaskData task)
+    private void deleteTasks(Collection<TaskData> tasks)
     {
         this.writeLock.lock();
         try {
-            if (isTimestampValid(task)) {
+            // Skip the tasks that have been queued again since their execution.
+            Map<String, List<TaskData>> tasksPerWiki = tasks.stream().filter(this::isTimestampValid)
+                .collect(Collectors.groupingBy(TaskData::getWikiId, LinkedHashMap::new, Collectors.toList()));
+            for (Map.Entry<String, List<TaskData>> entry : tasksPerWiki.entrySet()) {
                 try {
-                    this.tasksStore.get()
-                        .deleteTask(task.getWikiId(), task.getDocId(), task.getVersion(), task.getType());
+                    this.tasksStore.get().deleteTasks(entry.getKey(), entry.getValue());
                 } catch (XWikiException e) {
-                    this.logger.error("Failed to delete task [{}] from the queue. It will be reloaded on restart.",
-                        task, e);
+                    this.logger.error("Failed to delete tasks [{}] from the queue. They will be reloaded on restart.",
+                        entry.getValue(), e);
                 }
-                this.latestTimestampTasksMap.remove(task);
+                entry.getValue().forEach(this.latestTimestampTasksMap::remove);
             }
         } finally {
             this.writeLock.unlock();
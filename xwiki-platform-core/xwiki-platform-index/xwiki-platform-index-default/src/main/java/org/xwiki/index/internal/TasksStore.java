@@ -19,6 +19,7 @@
  */
 package org.xwiki.index.internal;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -90,6 +91,27 @@ public void addTask(String wikiId, XWikiDocumentIndexingTask task) throws XWikiE
         }, wikiId);
     }
 
+    /**
+     * Persist several tasks to the queue in a single transaction.
+     *
+     * @param wikiId the wiki in which to execute the query
+     * @param tasks the tasks to persist
+     * @throws XWikiException in case of error when saving the tasks
+     * @since 16.6.0RC1
+     */
+    public void addTasks(String wikiId, Collection<XWikiDocumentIndexingTask> tasks) throws XWikiException
+    {
+        initWikiContext(xWikiContext -> {
+            executeWrite(xWikiContext, session -> {
+                for (XWikiDocumentIndexingTask task : tasks) {
+                    innerAddTask(task, session);
+                }
+                return null;
+            });
+            return null;
+        }, wikiId);
+    }
+
     /**
      * Remove a task from the queue.
      *
@@ -103,19 +125,28 @@ public void deleteTask(String wikiId, long docId, String version, String type) t
     {
         initWikiContext(xWikiContext -> {
             executeWrite(xWikiContext, session -> {
-                String query = "delete from XWikiDocumentIndexingTask t where t.docId = :docId ";
-                if (StringUtils.isEmpty(version)) {
-                    // The is null part is required for Oracle.
-                    query += "and (t.version = :version or t.version is null)";
-                } else {
-                    query += "and t.version = :version ";
+                innerDeleteTask(docId, version, type, session);
+                return null;
+            });
+            return null;
+        }, wikiId);
+    }
+
+    /**
+     * Remove several tasks from the queue in a single transaction.
+     *
+     * @param wikiId the wiki in which to execute the query
+     * @param tasks the tasks to remove
+     * @throws XWikiException in case of error when removing the tasks
+     * @since 16.6.0RC1
+     */
+    public void deleteTasks(String wikiId, Collection<TaskData> tasks) throws XWikiException
+    {
+        initWikiContext(xWikiContext -> {
+            executeWrite(xWikiContext, session -> {
+                for (TaskData task : tasks) {
+                    innerDeleteTask(task.getDocId(), task.getVersion(), task.getType(), session);
                 }
-                query = query + "and t.type = :type";
-                session.createQuery(query)
-                    .setParameter("docId", docId)
-                    .setParameter("version", version)
-                    .setParameter("type", type)
-                    .executeUpdate();
                 return null;
             });
             return null;
@@ -179,6 +210,23 @@ private <T> T initWikiContext(Lambda<T> r, String wikiId) throws XWikiException
         }
     }
 
+    private void innerDeleteTask(long docId, String version, String type, Session session)
+    {
+        String query = "delete from XWikiDocumentIndexingTask t where t.docId = :docId ";
+        if (StringUtils.isEmpty(version)) {
+            // The is null part is required for Oracle.
+            query += "and (t.version = :version or t.version is null)";
+        } else {
+            query += "and t.version = :version ";
+        }
+        query = query + "and t.type = :type";
+        session.createQuery(query)
+            .setParameter("docId", docId)
+            .setParameter("version", version)
+            .setParameter("type", type)
+            .executeUpdate();
+    }
+
     private void innerAddTask(XWikiDocumentIndexingTask task, Session session)
     {
         // In case of inconsistent data. But the timestamp is expected to be initialized by the caller.
@@ -20,8 +20,10 @@
 package org.xwiki.index.internal.jmx;
 
 import java.util.Map;
+import java.util.function.Function;
 import java.util.function.LongSupplier;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Implementation of the JMXTasks MBean.
@@ -35,6 +37,8 @@ public class JMXTasks implements JMXTasksMBean
 
     private final Supplier<Map<String, Long>> queueSizePerType;
 
+    private final Supplier<Map<String, TaskTypeStatistics>> statisticsPerType;
+
     /**
      * Default constructor, let the method initializing the MBean provide the suppliers for the MBean operations.
      *
@@ -42,9 +46,24 @@ public class JMXTasks implements JMXTasksMBean
      * @param queueSizePerType the queue size per type supplier
      */
     public JMXTasks(LongSupplier queueSize, Supplier<Map<String, Long>> queueSizePerType)
+    {
+        this(queueSize, queueSizePerType, Map::of);
+    }
+
+    /**
+     * Let the method initializing the MBean provide the suppliers for the MBean operations.
+     *
+     * @param queueSize the queue size supplier
+     * @param queueSizePerType the queue size per type supplier
+     * @param statisticsPerType the execution statistics per type supplier
+     * @since 16.6.0RC1
+     */
+    public JMXTasks(LongSupplier queueSize, Supplier<Map<String, Long>> queueSizePerType,
+        Supplier<Map<String, TaskTypeStatistics>> statisticsPerType)
     {
         this.queueSize = queueSize;
         this.queueSizePerType = queueSizePerType;
+        this.statisticsPerType = statisticsPerType;
     }
 
     @Override
@@ -58,4 +77,34 @@ public Map<String, Long> getQueueSizePerType()
     {
         return this.queueSizePerType.get();
     }
+
+    @Override
+    public Map<String, Long> getExecutedTasksPerType()
+    {
+        return mapStatistics(TaskTypeStatistics::getExecuted);
+    }
+
+    @Override
+    public Map<String, Long> getFailedTasksPerType()
+    {
+        return mapStatistics(TaskTypeStatistics::getFailed);
+    }
+
+    @Override
+    public Map<String, Double> getAverageExecutionTimePerType()
+    {
+        return mapStatistics(TaskTypeStatistics::getAverageExecutionTime);
+    }
+
+    @Override
+    public Map<String, Double> getAverageLatencyPerType()
+    {
+        return mapStatistics(TaskTypeStatistics::getAverageLatency);
+    }
+
+    private <T> Map<String, T> mapStatistics(Function<TaskTypeStatistics, T> mapper)
+    {
+        return this.statisticsPerType.get().entrySet().stream()
+            .collect(Collectors.toMap(Map.Entry::getKey, entry -> mapper.apply(entry.getValue())));
+    }
 }
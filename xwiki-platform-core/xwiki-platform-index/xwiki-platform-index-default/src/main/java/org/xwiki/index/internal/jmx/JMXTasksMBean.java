@@ -39,4 +39,29 @@
      * @return the total number of tasks in the queue, grouped per type of tasks
      */
     Map<String, Long> getQueueSizePerType();
+
+    /**
+     * @return the number of tasks successfully executed since the server started, grouped per type of tasks
+     * @since 16.6.0RC1
+     */
+    Map<String, Long> getExecutedTasksPerType();
+
+    /**
+     * @return the number of failed task executions since the server started, grouped per type of tasks
+     * @since 16.6.0RC1
+     */
+    Map<String, Long> getFailedTasksPerType();
+
+    /**
+     * @return the average execution time of the tasks in milliseconds, grouped per type of tasks
+     * @since 16.6.0RC1
+     */
+    Map<String, Double> getAverageExecutionTimePerType();
+
+    /**
+     * @return the average time in milliseconds between the moment a task is queued and the end of its execution,
+     *     grouped per type of tasks
+     * @since 16.6.0RC1
+     */
+    Map<String, Double> getAverageLatencyPerType();
 }
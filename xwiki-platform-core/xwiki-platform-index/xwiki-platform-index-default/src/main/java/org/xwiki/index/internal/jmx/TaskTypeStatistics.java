@@ -0,0 +1,99 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.index.internal.jmx;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gather the throughput and latency of the executed tasks of a given type.
+ *
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+public class TaskTypeStatistics
+{
+    private final LongAdder executed = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder executionTime = new LongAdder();
+
+    private final LongAdder latency = new LongAdder();
+
+    /**
+     * Record a successful execution.
+     *
+     * @param executionNanos the time spent executing the task, in nanoseconds
+     * @param latencyMillis the time elapsed between the moment the task was queued and the end of its execution, in
+     *     milliseconds
+     */
+    public void onExecuted(long executionNanos, long latencyMillis)
+    {
+        this.executed.increment();
+        this.executionTime.add(executionNanos);
+        this.latency.add(latencyMillis);
+    }
+
+    /**
+     * Record a failed execution.
+     */
+    public void onFailed()
+    {
+        this.failed.increment();
+    }
+
+    /**
+     * @return the number of tasks successfully executed
+     */
+    public long getExecuted()
+    {
+        return this.executed.sum();
+    }
+
+    /**
+     * @return the number of failed executions, including the ones which have been retried
+     */
+    public long getFailed()
+    {
+        return this.failed.sum();
+    }
+
+    /**
+     * @return the average time spent executing a task, in milliseconds
+     */
+    public double getAverageExecutionTime()
+    {
+        long count = getExecuted();
+
+        return count > 0 ? (double) this.executionTime.sum() / count / TimeUnit.MILLISECONDS.toNanos(1) : 0;
+    }
+
+    /**
+     * @return the average time elapsed between the moment a task is queued and the end of its execution, in
+     *     milliseconds
+     */
+    public double getAverageLatency()
+    {
+        long count = getExecuted();
+
+        return count > 0 ? (double) this.latency.sum() / count : 0;
+    }
+}
@@ -34,12 +34,16 @@
 import org.xwiki.observation.remote.RemoteObservationManagerContext;
 
 import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiDocument;
 
+import static org.apache.commons.lang3.exception.ExceptionUtils.getRootCauseMessage;
 import static org.xwiki.index.internal.DefaultLinksTaskConsumer.LINKS_TASK_TYPE;
 
 /**
- * Queue links analysis tasks when a document is created or updated.
+ * Update the links stored in the database when a document is created or updated. The links are updated synchronously
+ * so that the backlinks are accurate as soon as the document is saved (e.g., when refactoring documents), and a links
+ * analysis task is queued only when this fails, to try again later.
  *
  * @version $Id$
  * @since 14.2RC1
@@ -77,12 +81,33 @@ public void onEvent(Event event, Object source, Object data)
         XWikiContext context = this.contextProvider.get();
         if (!this.remoteObservationManagerContext.isRemoteState() && context.getWiki().hasBacklinks(context)) {
             XWikiDocument doc = (XWikiDocument) source;
-            // Note: we display the docId since the task manager logs only display the docId in logs and we want to
-            // make the match visually when there's a problem and we have to analyse the logs.
-            this.logger.debug("Link analysis task starting for [{}] (docId = [{}])", doc.getDocumentReference(),
-                doc.getId());
-            this.taskManager.addTask(doc.getDocumentReference().getWikiReference().getName(), doc.getId(),
-                LINKS_TASK_TYPE);
+            if (!saveLinks(doc, context)) {
+                // Note: we display the docId since the task manager logs only display the docId in logs and we want
+                // to make the match visually when there's a problem and we have to analyse the logs.
+                this.logger.debug("Link analysis task starting for [{}] (docId = [{}])", doc.getDocumentReference(),
+                    doc.getId());
+                this.taskManager.addTask(doc.getDocumentReference().getWikiReference().getName(), doc.getId(),
+                    LINKS_TASK_TYPE);
+            }
+        }
+    }
+
+    private boolean saveLinks(XWikiDocument doc, XWikiContext context)
+    {
+        // The links are stored in the database of the wiki of the document.
+        String currentWikiId = context.getWikiId();
+        try {
+            context.setWikiId(doc.getDocumentReference().getWikiReference().getName());
+            context.getWiki().getHibernateStore().saveLinks(doc, context, true);
+
+            return true;
+        } catch (XWikiException e) {
+            this.logger.warn("Failed to update the links of document [{}], a links analysis task will be queued."
+                + " Root cause: [{}]", doc.getDocumentReference(), getRootCauseMessage(e));
+
+            return false;
+        } finally {
+            context.setWikiId(currentWikiId);
         }
     }
 }
@@ -19,19 +19,26 @@
  */
 package org.xwiki.index.internal;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
+import javax.inject.Named;
 import javax.inject.Provider;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.mockito.Mock;
+import org.xwiki.configuration.ConfigurationSource;
 import org.xwiki.doc.tasks.XWikiDocumentIndexingTask;
 import org.xwiki.management.JMXBeanRegistration;
 import org.xwiki.model.reference.DocumentReference;
@@ -59,6 +66,7 @@
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -98,6 +106,10 @@
     @MockComponent
     private TaskExecutor taskExecutor;
 
+    @MockComponent
+    @Named("xwikiproperties")
+    private ConfigurationSource configuration;
+
     @Mock
     private TasksStore tasksStore;
 
@@ -139,7 +151,7 @@ void addTask() throws Exception
         task.setType("testtask");
         task.setInstanceId(INSTANCE_ID);
         task.setVersion("1.3");
-        verify(this.tasksStore).addTask("wikiId", task);
+        verify(this.tasksStore).addTasks("wikiId", List.of(task));
 
         TaskData taskData = new TaskData(42, "1.3", "testtask", "wikiId");
         assertEquals(taskData, taskFuture.get());
@@ -164,7 +176,7 @@ void addTaskFailsOnce() throws Exception
         task.setType("testtask");
         task.setInstanceId(INSTANCE_ID);
         task.setVersion("1.3");
-        verify(this.tasksStore).addTask("wikiId", task);
+        verify(this.tasksStore).addTasks("wikiId", List.of(task));
 
         TaskData taskData = new TaskData(42, "1.3", "testtask", "wikiId");
         assertEquals(taskData, taskFuture.get());
@@ -186,7 +198,7 @@ void addTaskDatabaseIssue() throws Exception
         task.setInstanceId(INSTANCE_ID);
         task.setVersion("");
 
-        doThrow(new XWikiException()).when(this.tasksStore).addTask("wikiId", task);
+        doThrow(new XWikiException()).when(this.tasksStore).addTasks("wikiId", List.of(task));
 
         CompletableFuture<TaskData> taskFuture = this.tasksManager.addTask("wikiId", 42, "testtask");
 
@@ -243,7 +255,7 @@ void addTaskDuringTaskExecution() throws Exception
             return null;
         })
             .doAnswer(invocation -> {
-                verify(this.tasksStore, never()).deleteTask("wikiA", 42, "1.2", "concurrent");
+                verify(this.tasksStore, never()).deleteTasks(any(), any());
                 return null;
             })
             .doAnswer(invocation -> null)
@@ -254,11 +266,9 @@ void addTaskDuringTaskExecution() throws Exception
 
         verify(this.taskExecutor, times(2)).execute(any());
 
-        // Queue another task to make sure that the previous tasks are fully consumed. Otherwise, the deleteTask might 
-        // not be called before the end of the test. 
-        this.tasksManager.addTask("wikiA", 42, "1.3", "concurrent").get();
-
-        verify(this.tasksStore).deleteTask("wikiA", 42, "1.2", "concurrent");
+        // The futures are completed before the executed tasks are removed from the database, in a batch.
+        verify(this.tasksStore, timeout(10000))
+            .deleteTasks("wikiA", List.of(new TaskData(42, "1.2", "concurrent", "wikiA")));
     }
 
     @Test
@@ -276,11 +286,56 @@ void addTaskConcurrently() throws Exception
         verify(this.taskExecutor).execute(org.mockito.ArgumentMatchers.same(future1.get()));
         verifyNoMoreInteractions(this.taskExecutor);
 
-        // Queue another task to make sure that the previous tasks are fully consumed. Otherwise, the deleteTask might 
-        // not be called before the end of the test.
-        this.tasksManager.addTask("wikiA", 42, "1.3", "concurrent").get();
+        // The futures are completed before the executed tasks are removed from the database, in a batch.
+        verify(this.tasksStore, timeout(10000))
+            .deleteTasks("wikiA", List.of(new TaskData(42, "1.2", "concurrent", "wikiA")));
+    }
+
+    @Test
+    void addTaskCompletedBeforeDeletion() throws Exception
+    {
+        CountDownLatch deletionLatch = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            deletionLatch.await();
+            return null;
+        }).when(this.tasksStore).deleteTasks(any(), any());
+
+        this.tasksManager.startThread();
+
+        // The future doesn't wait for the removal of the task from the database.
+        TaskData taskData = new TaskData(42, "1.3", "testtask", "wikiId");
+        assertEquals(taskData, this.tasksManager.addTask("wikiId", 42, "1.3", "testtask").get(10, TimeUnit.SECONDS));
+
+        deletionLatch.countDown();
+
+        verify(this.tasksStore, timeout(10000)).deleteTasks("wikiId", List.of(taskData));
+    }
+
+    @Test
+    void addTaskWithSeveralConsumerThreads() throws Exception
+    {
+        when(this.configuration.getProperty("index.tasks.consumers.threads", Integer.class)).thenReturn(4);
+        when(this.configuration.getProperty("index.tasks.consumers.threads.testtask", Integer.class)).thenReturn(2);
+
+        Set<String> threadNames = ConcurrentHashMap.newKeySet();
+        doAnswer(invocation -> {
+            threadNames.add(Thread.currentThread().getName());
+            return null;
+        }).when(this.taskExecutor).execute(any());
+
+        this.tasksManager.startThread();
 
-        verify(this.tasksStore).deleteTask("wikiA", 42, "1.2", "concurrent");
+        List<CompletableFuture<TaskData>> futures = new ArrayList<>();
+        for (long docId = 0; docId < 20; docId++) {
+            futures.add(this.tasksManager.addTask("wikiId", docId, "1.1", "testtask"));
+        }
+        for (CompletableFuture<TaskData> future : futures) {
+            assertNotNull(future.get());
+        }
+
+        verify(this.taskExecutor, times(20)).execute(any());
+        assertEquals(Set.of("task-manager-consumer-testtask-0", "task-manager-consumer-testtask-1"), threadNames);
+        assertEquals(0, this.tasksManager.getQueueSize());
     }
 
     @Test
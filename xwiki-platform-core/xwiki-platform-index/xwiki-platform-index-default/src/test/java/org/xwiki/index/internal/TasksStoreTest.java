@@ -48,6 +48,7 @@
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -168,6 +169,23 @@ void deleteTask() throws Exception
         verify(this.query).executeUpdate();
     }
 
+    @Test
+    void deleteTasks() throws Exception
+    {
+        this.tasksStore.deleteTasks("wikiId",
+            List.of(new TaskData(42, "7.1", "testtask", "wikiId"), new TaskData(43, "1.1", "testtask", "wikiId")));
+        verify(this.contextManager).initialize(any());
+        verify(this.context).setWikiId("wikiId");
+        verify(this.session, times(2)).createQuery("delete from XWikiDocumentIndexingTask t where t.docId = :docId "
+            + "and t.version = :version and t.type = :type");
+        verify(this.query).setParameter("docId", 42L);
+        verify(this.query).setParameter("version", "7.1");
+        verify(this.query).setParameter("docId", 43L);
+        verify(this.query).setParameter("version", "1.1");
+        verify(this.query, times(2)).setParameter("type", "testtask");
+        verify(this.query, times(2)).executeUpdate();
+    }
+
     @ParameterizedTest
     @NullSource
     @ValueSource(strings = { "" })
@@ -23,19 +23,28 @@
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.xwiki.bridge.event.DocumentCreatedEvent;
 import org.xwiki.index.TaskManager;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.observation.remote.RemoteObservationManagerContext;
+import org.xwiki.test.LogLevel;
+import org.xwiki.test.junit5.LogCaptureExtension;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
 
 import com.xpn.xwiki.XWiki;
 import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.store.XWikiHibernateStore;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -69,11 +78,18 @@
     @Mock
     private XWiki wiki;
 
+    @Mock
+    private XWikiHibernateStore store;
+
+    @RegisterExtension
+    private LogCaptureExtension logCapture = new LogCaptureExtension(LogLevel.WARN);
+
     @BeforeEach
     void setUp()
     {
         when(this.contextProvider.get()).thenReturn(this.context);
         when(this.context.getWiki()).thenReturn(this.wiki);
+        when(this.wiki.getHibernateStore()).thenReturn(this.store);
     }
 
     @Test
@@ -94,7 +110,26 @@ void onEventBacklinksDeactivated()
     }
 
     @Test
-    void onEvent()
+    void onEvent() throws Exception
+    {
+        when(this.remoteObservationManagerContext.isRemoteState()).thenReturn(false);
+        when(this.wiki.hasBacklinks(this.context)).thenReturn(true);
+        when(this.context.getWikiId()).thenReturn("currentwiki");
+        XWikiDocument doc = mock(XWikiDocument.class);
+        DocumentReference documentReference = new DocumentReference("wiki", "space", "page");
+        when(doc.getId()).thenReturn(42L);
+        when(doc.getDocumentReference()).thenReturn(documentReference);
+        this.linksUpdateListener.onEvent(new DocumentCreatedEvent(), doc, this.context);
+
+        InOrder inOrder = inOrder(this.context, this.store);
+        inOrder.verify(this.context).setWikiId("wiki");
+        inOrder.verify(this.store).saveLinks(doc, this.context, true);
+        inOrder.verify(this.context).setWikiId("currentwiki");
+        verifyNoInteractions(this.taskManager);
+    }
+
+    @Test
+    void onEventWhenSavingLinksFails() throws Exception
     {
         when(this.remoteObservationManagerContext.isRemoteState()).thenReturn(false);
         when(this.wiki.hasBacklinks(this.context)).thenReturn(true);
@@ -102,7 +137,10 @@ void onEvent()
         DocumentReference documentReference = new DocumentReference("wiki", "space", "page");
         when(doc.getId()).thenReturn(42L);
         when(doc.getDocumentReference()).thenReturn(documentReference);
+        doThrow(new XWikiException()).when(this.store).saveLinks(doc, this.context, true);
         this.linksUpdateListener.onEvent(new DocumentCreatedEvent(), doc, this.context);
         verify(this.taskManager).addTask("wiki", 42L, LINKS_TASK_TYPE);
+        assertTrue(this.logCapture.getMessage(0).startsWith(
+            "Failed to update the links of document [wiki:space.page], a links analysis task will be queued."));
     }
 }
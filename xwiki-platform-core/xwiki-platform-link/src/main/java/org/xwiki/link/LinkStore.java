@@ -19,10 +19,14 @@
  */
 package org.xwiki.link;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import org.xwiki.component.annotation.Role;
 import org.xwiki.model.reference.EntityReference;
+import org.xwiki.stability.Unstable;
 
 /**
  * Allow accessing the links extracted from various entities.
@@ -48,4 +52,41 @@
      * @throws LinkException when failing to load the backlinks
      */
     Set<EntityReference> resolveBackLinkedEntities(EntityReference reference) throws LinkException;
+
+    /**
+     * Return a page of the entities containing links to the passed entity. The backlinks are sorted so that the whole
+     * set can be iterated by increasing the offset until less than {@code limit} entities are returned.
+     * 
+     * @param reference the reference of the entities targeted by the links
+     * @param offset the index of the first backlink to return
+     * @param limit the maximum number of backlinks to return
+     * @return the (DOCUMENT based) entities containing links to the passed entity
+     * @throws LinkException when failing to load the backlinks
+     * @since 16.6.0RC1
+     */
+    @Unstable
+    default List<EntityReference> resolveBackLinkedEntities(EntityReference reference, int offset, int limit)
+        throws LinkException
+    {
+        List<EntityReference> references = new ArrayList<>(resolveBackLinkedEntities(reference));
+        if (offset >= references.size()) {
+            return Collections.emptyList();
+        }
+
+        Collections.sort(references);
+
+        return references.subList(offset, (int) Math.min((long) offset + limit, references.size()));
+    }
+
+    /**
+     * @param reference the reference of the entities targeted by the links
+     * @return the number of (DOCUMENT based) entities containing links to the passed entity
+     * @throws LinkException when failing to count the backlinks
+     * @since 16.6.0RC1
+     */
+    @Unstable
+    default long countBackLinkedEntities(EntityReference reference) throws LinkException
+    {
+        return resolveBackLinkedEntities(reference).size();
+    }
 }
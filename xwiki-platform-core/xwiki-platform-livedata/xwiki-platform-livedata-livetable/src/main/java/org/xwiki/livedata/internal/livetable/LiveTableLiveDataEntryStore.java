@@ -19,6 +19,7 @@
  */
 package org.xwiki.livedata.internal.livetable;
 
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -78,6 +79,9 @@ public class LiveTableLiveDataEntryStore extends WithParameters implements LiveD
     @Inject
     private LiveTableLiveDataResultsRenderer resultsRenderer;
 
+    @Inject
+    private LiveTableNativeResults nativeResults;
+
     @Inject
     @Named("current")
     private DocumentReferenceResolver<String> currentDocumentReferenceResolver;
@@ -99,6 +103,13 @@ public Optional<Map<String, Object>> get(Object entryId)
     public LiveData get(LiveDataQuery query) throws LiveDataException
     {
         try {
+            // Most live table sources rely on the default results page, whose output can be computed without
+            // rendering the page.
+            Optional<LiveData> nativeLiveData = this.nativeResults.get(query, getSourceParameters(query));
+            if (nativeLiveData.isPresent()) {
+                return nativeLiveData.get();
+            }
+
             // We need to allow backslash escaping because some live table sources are generating the JSON by hand
             // instead of serializing a map.
             ObjectMapper objectMapper =
@@ -116,6 +127,16 @@ public LiveData get(LiveDataQuery query) throws LiveDataException
         }
     }
 
+    private Map<String, Object> getSourceParameters(LiveDataQuery query)
+    {
+        // Merge the parameters of this live data source with the parameters from the given query.
+        Map<String, Object> parameters = new HashMap<>(getParameters());
+        if (query.getSource() != null) {
+            parameters.putAll(query.getSource().getParameters());
+        }
+        return parameters;
+    }
+
     private JsonNode getLiveTableResultsJSON(LiveDataQuery query, ObjectMapper objectMapper) throws Exception
     {
         // Merge the parameters of this live data source with the parameters from the given query.
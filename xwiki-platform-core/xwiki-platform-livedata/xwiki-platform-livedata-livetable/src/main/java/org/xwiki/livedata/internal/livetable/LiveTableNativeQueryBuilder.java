@@ -0,0 +1,512 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.livedata.internal.livetable;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.livedata.LiveDataQuery;
+import org.xwiki.livedata.LiveDataQuery.Constraint;
+import org.xwiki.livedata.LiveDataQuery.Filter;
+import org.xwiki.livedata.LiveDataQuery.SortEntry;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryFilter;
+import org.xwiki.query.QueryManager;
+
+import com.xpn.xwiki.objects.classes.BaseClass;
+import com.xpn.xwiki.objects.classes.BooleanClass;
+import com.xpn.xwiki.objects.classes.DBListClass;
+import com.xpn.xwiki.objects.classes.DateClass;
+import com.xpn.xwiki.objects.classes.EmailClass;
+import com.xpn.xwiki.objects.classes.GroupsClass;
+import com.xpn.xwiki.objects.classes.LevelsClass;
+import com.xpn.xwiki.objects.classes.ListClass;
+import com.xpn.xwiki.objects.classes.NumberClass;
+import com.xpn.xwiki.objects.classes.PasswordClass;
+import com.xpn.xwiki.objects.classes.PropertyClass;
+import com.xpn.xwiki.objects.classes.StaticListClass;
+import com.xpn.xwiki.objects.classes.TextAreaClass;
+import com.xpn.xwiki.objects.classes.UsersClass;
+
+/**
+ * Builds, in Java, the query that the default live table results page ({@code XWiki.LiveTableResults}) would build for
+ * a live data query. Only a subset of the filters and sorts supported by the page is handled here: when the query uses
+ * something else, no query is returned so that the caller can fall back on the page.
+ *
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+@Component(roles = LiveTableNativeQueryBuilder.class)
+@Singleton
+public class LiveTableNativeQueryBuilder
+{
+    static final String DOC_PREFIX = "doc.";
+
+    /**
+     * The document fields that can be filtered using a (case insensitive) partial match.
+     */
+    private static final Set<String> DOC_FILTER_FIELDS =
+        Set.of("name", "fullName", "space", "title", "author", "creator", "hidden", "language");
+
+    /**
+     * The document fields that can be sorted, along with the fields that are sorted using their raw values.
+     */
+    private static final Set<String> DOC_SORT_FIELDS = Set.of("name", "fullName", "space", "title", "author",
+        "creator", "hidden", "language", "date", "contentUpdateDate", "creationDate");
+
+    private static final Set<String> DOC_RAW_SORT_FIELDS =
+        Set.of("date", "contentUpdateDate", "creationDate", "hidden");
+
+    private static final String LOCATION = "doc.location";
+
+    private static final String STRING_PROPERTY = "StringProperty";
+
+    private static final String LARGE_STRING_PROPERTY = "LargeStringProperty";
+
+    private static final String INTEGER_PROPERTY = "IntegerProperty";
+
+    private static final String LONG_PROPERTY = "LongProperty";
+
+    private static final String MATCH_EXACT = "exact";
+
+    private static final String MATCH_PARTIAL = "partial";
+
+    private static final String MATCH_PREFIX = "prefix";
+
+    private static final String MATCH_EMPTY = "empty";
+
+    private static final String AND = " and ";
+
+    private static final String OR = " or ";
+
+    private static final String VALUE = ".value";
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    @Named("context")
+    private Provider<ComponentManager> componentManagerProvider;
+
+    /**
+     * The parts of the query being built.
+     */
+    private static final class QueryParts
+    {
+        private final StringBuilder from = new StringBuilder();
+
+        private final StringBuilder where = new StringBuilder();
+
+        private final StringBuilder order = new StringBuilder();
+
+        private final Map<String, Object> parameters = new LinkedHashMap<>();
+
+        private final List<String> joinedProperties = new ArrayList<>();
+    }
+
+    /**
+     * @param query the live data query
+     * @param className the class of the objects listed by the live table, {@code null} to list documents
+     * @param xclass the definition of the class, {@code null} to list documents
+     * @param queryFilters the hints of the query filters to apply
+     * @return the query returning the full names of the matching documents (and their language if a query filter
+     *         adds it), or {@link Optional#empty()} if the live data query uses features which are not supported here
+     * @throws QueryException when failing to create the query
+     */
+    public Optional<Query> build(LiveDataQuery query, String className, BaseClass xclass,
+        List<String> queryFilters) throws QueryException
+    {
+        QueryParts parts = new QueryParts();
+
+        if (!addFilters(query, xclass, parts) || !addSort(query, xclass, parts)) {
+            return Optional.empty();
+        }
+
+        StringBuilder statement = new StringBuilder("select doc.fullName from XWikiDocument doc");
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        if (xclass != null) {
+            statement.append(", BaseObject as obj").append(parts.from);
+            statement.append(" where obj.name = doc.fullName and obj.className = :className");
+            statement.append(" and doc.fullName not in (:classTemplate1, :classTemplate2)");
+            parameters.put("className", className);
+            parameters.put("classTemplate1", className + "Template");
+            parameters.put("classTemplate2", className.replaceAll("Class$", "Template"));
+        } else {
+            statement.append(parts.from).append(" where 1=1");
+        }
+        statement.append(parts.where).append(parts.order);
+        parameters.putAll(parts.parameters);
+
+        Query hqlQuery = this.queryManager.createQuery(statement.toString(), Query.HQL);
+        parameters.forEach(hqlQuery::bindValue);
+        for (String queryFilter : queryFilters) {
+            QueryFilter filter = getQueryFilter(queryFilter);
+            if (filter != null) {
+                hqlQuery.addFilter(filter);
+            }
+        }
+
+        return Optional.of(hqlQuery);
+    }
+
+    /**
+     * @param query the query returned by {@link #build(LiveDataQuery, String, BaseClass, List)}
+     * @return the total number of results of the query (ignoring its offset and limit)
+     * @throws QueryException when failing to execute the count query
+     */
+    public long count(Query query) throws QueryException
+    {
+        Query countQuery = this.queryManager.createQuery(query.getStatement(), query.getLanguage());
+        query.getNamedParameters().forEach(countQuery::bindValue);
+        query.getFilters().forEach(countQuery::addFilter);
+        countQuery.addFilter(getQueryFilter("count"));
+
+        List<Long> results = countQuery.execute();
+
+        return results.isEmpty() ? 0 : results.get(0);
+    }
+
+    private QueryFilter getQueryFilter(String hint)
+    {
+        try {
+            return this.componentManagerProvider.get().getInstance(QueryFilter.class, hint);
+        } catch (ComponentLookupException e) {
+            // Same as the script query which ignores the unknown filters.
+            return null;
+        }
+    }
+
+    private boolean addFilters(LiveDataQuery query, BaseClass xclass, QueryParts parts)
+    {
+        if (query.getFilters() == null || query.getProperties() == null) {
+            return true;
+        }
+
+        // Like the live table request, only the last filter of a property is kept, and only the filters of the
+        // displayed properties are taken into account.
+        Map<String, Filter> filters = new LinkedHashMap<>();
+        query.getFilters().stream().filter(filter -> !getConstraints(filter).isEmpty())
+            .forEach(filter -> filters.put(filter.getProperty(), filter));
+
+        for (String property : query.getProperties()) {
+            Filter filter = filters.get(property);
+            if (filter != null && !addFilter(property, filter, xclass, parts)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private List<Constraint> getConstraints(Filter filter)
+    {
+        List<Constraint> constraints = new ArrayList<>();
+        for (Constraint constraint : filter.getConstraints()) {
+            if (constraint != null && constraint.getValue() != null) {
+                constraints.add(constraint);
+            }
+        }
+
+        return constraints;
+    }
+
+    private boolean addFilter(String property, Filter filter, BaseClass xclass, QueryParts parts)
+    {
+        List<Constraint> constraints = getConstraints(filter);
+
+        if (property.startsWith(DOC_PREFIX)) {
+            String field = StringUtils.removeStart(property, DOC_PREFIX);
+            if (!DOC_FILTER_FIELDS.contains(field)) {
+                return false;
+            }
+
+            // The document fields are always matched partially, using only the first value.
+            Constraint constraint = constraints.get(0);
+            String value = MATCH_EMPTY.equals(constraint.getOperator()) ? "-" : constraint.getValue().toString();
+            String parameter = "doc_" + field + "_filter";
+            parts.where.append(" and upper(str(doc.").append(field).append(")) like upper(:").append(parameter)
+                .append(')');
+            parts.parameters.put(parameter, '%' + value + '%');
+
+            return true;
+        }
+
+        PropertyClass propertyClass = getPropertyClass(property, xclass);
+        if (propertyClass == null) {
+            return false;
+        }
+        if (propertyClass instanceof PasswordClass) {
+            // The live table results page doesn't filter passwords.
+            return true;
+        }
+
+        String tableName = getTableName(propertyClass);
+        String alias = joinProperty(property, tableName, parts);
+
+        if (STRING_PROPERTY.equals(tableName) || LARGE_STRING_PROPERTY.equals(tableName)) {
+            addStringFilter(alias, constraints, filter.isMatchAll(), parts);
+            return true;
+        } else if (INTEGER_PROPERTY.equals(tableName) || LONG_PROPERTY.equals(tableName)) {
+            return addNumberFilter(alias, constraints.get(0), true, parts);
+        } else if ("FloatProperty".equals(tableName) || "DoubleProperty".equals(tableName)) {
+            return addNumberFilter(alias, constraints.get(0), false, parts);
+        }
+
+        // Dates and multiple selection lists are not supported.
+        return false;
+    }
+
+    private void addStringFilter(String alias, List<Constraint> constraints, boolean matchAll, QueryParts parts)
+    {
+        String joinOperator = matchAll ? AND : OR;
+        String column = alias + VALUE;
+
+        // Group the values by match type.
+        Map<String, List<String>> valuesByMatchType = new LinkedHashMap<>();
+        for (Constraint constraint : constraints) {
+            valuesByMatchType.computeIfAbsent(getMatchType(constraint.getOperator()), key -> new ArrayList<>())
+                .add(constraint.getValue().toString());
+        }
+
+        List<String> conditions = new ArrayList<>();
+        int parameterIndex = 1;
+        for (Map.Entry<String, List<String>> entry : valuesByMatchType.entrySet()) {
+            String matchType = entry.getKey();
+            List<String> parameterNames = new ArrayList<>();
+            for (String value : entry.getValue()) {
+                String parameterName = alias + "_value_" + parameterIndex++;
+                parameterNames.add(':' + parameterName);
+                parts.parameters.put(parameterName, getParameterValue(value, matchType));
+            }
+
+            List<String> valueConditions = new ArrayList<>();
+            if (MATCH_PARTIAL.equals(matchType) || MATCH_PREFIX.equals(matchType)) {
+                parameterNames.forEach(
+                    name -> valueConditions.add("upper(" + column + ") like upper(" + name + ')'));
+                conditions.add(StringUtils.join(valueConditions, joinOperator));
+            } else if (MATCH_EMPTY.equals(matchType)) {
+                parameterNames.forEach(
+                    name -> valueConditions.add('(' + column + " like " + name + OR + column + " is null)"));
+                conditions.add(StringUtils.join(valueConditions, joinOperator));
+            } else if (parameterNames.size() > 1 && !matchAll) {
+                conditions.add(column + " in (" + StringUtils.join(parameterNames, ", ") + ')');
+            } else {
+                parameterNames.forEach(name -> valueConditions.add(column + " = " + name));
+                conditions.add(StringUtils.join(valueConditions, AND));
+            }
+        }
+
+        parts.where.append(" and (").append(StringUtils.join(conditions, joinOperator)).append(')');
+    }
+
+    private String getMatchType(String operator)
+    {
+        if ("contains".equals(operator)) {
+            return MATCH_PARTIAL;
+        } else if ("startsWith".equals(operator)) {
+            return MATCH_PREFIX;
+        } else if (MATCH_EMPTY.equals(operator)) {
+            return MATCH_EMPTY;
+        }
+
+        // Unknown match types fall back on exact matching.
+        return MATCH_EXACT;
+    }
+
+    private Object getParameterValue(String value, String matchType)
+    {
+        if (MATCH_PARTIAL.equals(matchType)) {
+            return '%' + value + '%';
+        } else if (MATCH_PREFIX.equals(matchType)) {
+            return value + '%';
+        } else if (MATCH_EMPTY.equals(matchType)) {
+            return "";
+        }
+
+        return value;
+    }
+
+    private boolean addNumberFilter(String alias, Constraint constraint, boolean integer, QueryParts parts)
+    {
+        BigDecimal number;
+        try {
+            number = new BigDecimal(constraint.getValue().toString().trim());
+        } catch (NumberFormatException e) {
+            return false;
+        }
+
+        String parameter = alias + "_value";
+        if (integer) {
+            parts.where.append(AND).append(alias).append(".value = :").append(parameter);
+            parts.parameters.put(parameter, number.longValue());
+        } else {
+            parts.where.append(" and abs(:").append(parameter).append(" - ").append(alias)
+                .append(".value) <= 0.000001");
+            parts.parameters.put(parameter, number.doubleValue());
+        }
+
+        return true;
+    }
+
+    private boolean addSort(LiveDataQuery query, BaseClass xclass, QueryParts parts)
+    {
+        if (query.getSort() == null || query.getSort().isEmpty()) {
+            return true;
+        }
+
+        // Only the first sort entry is taken into account, like in the live table results page.
+        SortEntry sortEntry = query.getSort().get(0);
+        String property = Objects.equals(sortEntry.getProperty(), LOCATION) ? "doc.fullName" : sortEntry.getProperty();
+        String direction = sortEntry.isDescending() ? " desc" : " asc";
+        if (property == null) {
+            return true;
+        }
+
+        if (property.startsWith(DOC_PREFIX)) {
+            String field = StringUtils.removeStart(property, DOC_PREFIX);
+            if (!DOC_SORT_FIELDS.contains(field)) {
+                return false;
+            }
+            addOrder(property, direction, DOC_RAW_SORT_FIELDS.contains(field), parts);
+
+            return true;
+        }
+
+        PropertyClass propertyClass = getPropertyClass(property, xclass);
+        if (propertyClass == null) {
+            return false;
+        }
+        if (propertyClass instanceof ListClass && isList(propertyClass)
+            && ((ListClass) propertyClass).isMultiSelect()) {
+            // Multiple values can't be sorted.
+            return true;
+        }
+
+        String alias = getAlias(property);
+        if (!parts.joinedProperties.contains(property)) {
+            joinProperty(property, getTableName(propertyClass), parts);
+        }
+        addOrder(alias + VALUE, direction, propertyClass instanceof NumberClass || propertyClass instanceof BooleanClass
+            || propertyClass instanceof DateClass || propertyClass instanceof LevelsClass, parts);
+
+        return true;
+    }
+
+    /**
+     * Joins the table holding the values of the given property of the listed objects.
+     *
+     * @return the alias of the joined table
+     */
+    private String joinProperty(String property, String tableName, QueryParts parts)
+    {
+        String alias = getAlias(property);
+        parts.from.append(", ").append(tableName).append(" as ").append(alias);
+        parts.where.append(" and obj.id = ").append(alias).append(".id.id and ").append(alias)
+            .append(".id.name = :").append(alias).append("_id_name");
+        parts.parameters.put(alias + "_id_name", property);
+        parts.joinedProperties.add(property);
+
+        return alias;
+    }
+
+    private void addOrder(String column, String direction, boolean raw, QueryParts parts)
+    {
+        if (raw) {
+            parts.order.append(" order by ").append(column).append(direction);
+        } else {
+            // Ignore the case first, then use it only for the equal values.
+            parts.order.append(" order by lower(").append(column).append(')').append(direction).append(", ")
+                .append(column).append(direction);
+        }
+    }
+
+    private PropertyClass getPropertyClass(String property, BaseClass xclass)
+    {
+        if (xclass == null || property.startsWith("_")) {
+            return null;
+        }
+
+        PropertyClass propertyClass = (PropertyClass) xclass.get(property);
+        if (propertyClass instanceof EmailClass) {
+            // Email addresses may need to be obfuscated, which is left to the live table results page.
+            return null;
+        }
+
+        return propertyClass;
+    }
+
+    private static boolean isList(PropertyClass propertyClass)
+    {
+        return propertyClass instanceof StaticListClass || propertyClass instanceof DBListClass;
+    }
+
+    /**
+     * @param propertyClass the definition of a property
+     * @return the name of the entity storing the values of the given property
+     */
+    static String getTableName(PropertyClass propertyClass)
+    {
+        if (propertyClass instanceof NumberClass) {
+            String numberType = ((NumberClass) propertyClass).getNumberType();
+            if ("integer".equals(numberType)) {
+                return INTEGER_PROPERTY;
+            } else if ("float".equals(numberType)) {
+                return "FloatProperty";
+            } else if ("double".equals(numberType)) {
+                return "DoubleProperty";
+            } else {
+                return LONG_PROPERTY;
+            }
+        } else if (propertyClass instanceof BooleanClass) {
+            return INTEGER_PROPERTY;
+        } else if (propertyClass instanceof DateClass) {
+            return "DateProperty";
+        } else if (propertyClass instanceof TextAreaClass || propertyClass instanceof UsersClass
+            || propertyClass instanceof GroupsClass) {
+            return LARGE_STRING_PROPERTY;
+        } else if (isList(propertyClass) && ((ListClass) propertyClass).isMultiSelect()) {
+            return ((ListClass) propertyClass).isRelationalStorage() ? "DBStringListProperty" : "StringListProperty";
+        }
+
+        return STRING_PROPERTY;
+    }
+
+    private String getAlias(String property)
+    {
+        // Force a prefix to avoid the reserved SQL keywords.
+        return "prop_" + property.replaceAll("\\W", "");
+    }
+}
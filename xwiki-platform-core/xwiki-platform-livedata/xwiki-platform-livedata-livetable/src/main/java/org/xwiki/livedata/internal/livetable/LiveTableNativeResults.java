@@ -0,0 +1,664 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.livedata.internal.livetable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.livedata.LiveData;
+import org.xwiki.livedata.LiveDataException;
+import org.xwiki.livedata.LiveDataQuery;
+import org.xwiki.localization.ContextualLocalizationManager;
+import org.xwiki.localization.LocaleUtils;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
+import org.xwiki.user.CurrentUserReference;
+import org.xwiki.user.UserPropertiesResolver;
+import org.xwiki.user.UserType;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.objects.BaseProperty;
+import com.xpn.xwiki.objects.classes.BaseClass;
+import com.xpn.xwiki.objects.classes.BooleanClass;
+import com.xpn.xwiki.objects.classes.DBListClass;
+import com.xpn.xwiki.objects.classes.DBTreeListClass;
+import com.xpn.xwiki.objects.classes.DateClass;
+import com.xpn.xwiki.objects.classes.EmailClass;
+import com.xpn.xwiki.objects.classes.GroupsClass;
+import com.xpn.xwiki.objects.classes.LevelsClass;
+import com.xpn.xwiki.objects.classes.ListClass;
+import com.xpn.xwiki.objects.classes.NumberClass;
+import com.xpn.xwiki.objects.classes.PasswordClass;
+import com.xpn.xwiki.objects.classes.PropertyClass;
+import com.xpn.xwiki.objects.classes.StaticListClass;
+import com.xpn.xwiki.objects.classes.StringClass;
+import com.xpn.xwiki.objects.classes.UsersClass;
+
+/**
+ * Computes the live data of a live table source directly in Java, without rendering the default live table results
+ * page ({@code XWiki.LiveTableResults}), which is costly because of the Velocity code it executes for each row. Only
+ * the most common sources are handled: the ones that don't use a custom results page or template, that list documents
+ * or objects of a given class and that don't need the tag cloud, location or date filters. The other sources are left
+ * to the results page. The native computation mimics the results page distributed by the live table UI, so it can
+ * be disabled with the {@code livetable.nativeResults.enabled} configuration property when the results page or the
+ * macros it uses ({@code XWiki.LiveTableResultsMacros}) are customized.
+ * <p>
+ * Unlike the results page, the documents are not loaded for each row: the document fields and the values of the
+ * requested properties are selected from the database for the whole page of results. A document is only loaded when
+ * its title has to be rendered, when its default edit mode may be customized or when a requested property is displayed
+ * using the document (text areas, database lists, custom displayers, etc.).
+ *
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+@Component(roles = LiveTableNativeResults.class)
+@Singleton
+public class LiveTableNativeResults
+{
+    private static final String CLASS_NAME = "className";
+
+    private static final String QUERY_FILTERS = "queryFilters";
+
+    private static final String TRANSLATION_PREFIX = "translationPrefix";
+
+    /**
+     * The source parameters understood by the default results page that are supported here. A source using any other
+     * parameter (custom results page or template, tag, location or SQL debugging parameters, predefined filters, etc.)
+     * is left to the results page.
+     */
+    private static final Set<String> SUPPORTED_PARAMETERS = Set.of(CLASS_NAME, QUERY_FILTERS, TRANSLATION_PREFIX);
+
+    /**
+     * The document fields whose values are computed here. The document location requires the hierarchy macro.
+     */
+    private static final Set<String> SUPPORTED_DOC_FIELDS = Set.of("name", "fullName", "space", "url", "space_url",
+        "wiki", "wiki_url", "viewable", "hasadmin", "hasedit", "hasdelete", "hascopy", "hasrename", "hasrights",
+        "edit_url", "copy_url", "delete_url", "rename_url", "rights_url", "objectCount", "date", "title", "title_raw",
+        "author", "author_url", "creationDate", "creator", "hidden", "language");
+
+    /**
+     * The configuration property indicating whether the live table results are computed natively.
+     */
+    static final String ENABLED_PROPERTY = "livetable.nativeResults.enabled";
+
+    private static final String RESULTS_PAGE = "XWiki.LiveTableResults";
+
+    private static final String GUEST_USER = "XWiki.XWikiGuest";
+
+    private static final int DEFAULT_LIMIT = 15;
+
+    private static final String VIEWABLE = "doc.viewable";
+
+    private static final String FULL_NAME = "doc.fullName";
+
+    private static final String HTML_PREFIX = "{{html clean=\"false\" wiki=\"false\"}}";
+
+    private static final String HTML_SUFFIX = "{{/html}}";
+
+    private static final String VIEW = "view";
+
+    private static final String EDIT = "edit";
+
+    private static final String WEB_HOME = "WebHome";
+
+    private static final String EDIT_MODE_CLASS = "XWiki.EditModeClass";
+
+    private static final String NAMES = "names";
+
+    private static final String DOCUMENTS_STATEMENT = "select doc.fullName, doc.language, doc.defaultLanguage, "
+        + "doc.title, doc.syntaxId, doc.date, doc.creationDate, doc.originalMetadataAuthorReference, doc.creator, "
+        + "doc.hidden, locate('include', doc.content) from XWikiDocument doc where doc.fullName in (:names)";
+
+    private static final String OBJECTS_STATEMENT = "select obj.name, obj.className, obj.number, obj.id "
+        + "from BaseObject obj where obj.name in (:names) and obj.className in (:classNames) order by obj.number";
+
+    private static final String PROPERTIES_STATEMENT =
+        "select prop from %s prop where prop.id.id in (:objectIds) and prop.id.name in (:properties)";
+
+    /**
+     * The property types whose view display only depends on the property value and definition, which means that it
+     * can be computed without loading the document. Subclasses are not included since they may display differently.
+     */
+    private static final Set<Class<?>> VALUE_DISPLAYED_CLASSES = Set.of(StringClass.class, PasswordClass.class,
+        NumberClass.class, BooleanClass.class, DateClass.class, StaticListClass.class, LevelsClass.class,
+        UsersClass.class, GroupsClass.class);
+
+    /**
+     * The titles which are rendered as is in plain text: no scripts and no wiki syntax.
+     */
+    private static final Pattern PLAIN_TITLE =
+        Pattern.compile("\\p{L}[\\p{L}\\p{N},.'?!&+]*( [\\p{L}\\p{N},.'?!&+]+)*");
+
+    @Inject
+    private LiveTableNativeQueryBuilder queryBuilder;
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    private ContextualAuthorizationManager authorization;
+
+    @Inject
+    private ContextualLocalizationManager localization;
+
+    @Inject
+    @Named("current")
+    private DocumentReferenceResolver<String> currentDocumentReferenceResolver;
+
+    @Inject
+    @Named("local")
+    private EntityReferenceSerializer<String> localSerializer;
+
+    @Inject
+    @Named("secure/all")
+    private UserPropertiesResolver userPropertiesResolver;
+
+    @Inject
+    @Named("xwikiproperties")
+    private ConfigurationSource configuration;
+
+    /**
+     * The fields of a document, or of one of its translations, as selected from the database.
+     */
+    private static final class DocumentValues
+    {
+        private final String title;
+
+        private final String syntax;
+
+        private final Date date;
+
+        private final Date creationDate;
+
+        private final String author;
+
+        private final String creator;
+
+        private final boolean hidden;
+
+        private final boolean including;
+
+        DocumentValues(Object[] row)
+        {
+            this.title = StringUtils.defaultString((String) row[3]);
+            this.syntax = (String) row[4];
+            this.date = (Date) row[5];
+            this.creationDate = (Date) row[6];
+            this.author = (String) row[7];
+            this.creator = (String) row[8];
+            this.hidden = Boolean.TRUE.equals(row[9]);
+            // The content may include a sheet which changes the default edit mode.
+            this.including = row[10] instanceof Number && ((Number) row[10]).intValue() > 0;
+        }
+
+        boolean isPlainTitle()
+        {
+            return StringUtils.startsWith(this.syntax, "xwiki/2.") && PLAIN_TITLE.matcher(this.title).matches();
+        }
+    }
+
+    /**
+     * The values needed to build the rows of a page of results, selected using a few queries.
+     */
+    private static final class PageValues
+    {
+        /**
+         * The fields of the documents, indexed by document full name and translation language.
+         */
+        private final Map<String, Map<String, DocumentValues>> documents = new HashMap<>();
+
+        private final Map<String, Locale> defaultLocales = new HashMap<>();
+
+        private final Map<String, Integer> objectCounts = new HashMap<>();
+
+        /**
+         * The first object of the listed class of each document, holding only the properties displayed without
+         * loading the document.
+         */
+        private final Map<String, BaseObject> objects = new HashMap<>();
+
+        private final Set<String> editModeDocuments = new HashSet<>();
+
+        /**
+         * Same as {@link XWikiDocument#getTranslatedDocument(String, XWikiContext)}.
+         */
+        DocumentValues getDocumentValues(String documentName, String language)
+        {
+            Map<String, DocumentValues> translations = this.documents.getOrDefault(documentName, Map.of());
+            Locale defaultLocale = this.defaultLocales.getOrDefault(documentName, Locale.ROOT);
+            Locale locale = LocaleUtils.toLocale(language, Locale.ROOT);
+            while (locale != null && !Locale.ROOT.equals(locale) && !locale.equals(defaultLocale)) {
+                DocumentValues values = translations.get(locale.toString());
+                if (values != null) {
+                    return values;
+                }
+                locale = LocaleUtils.getParentLocale(locale);
+            }
+
+            return translations.get("");
+        }
+    }
+
+    /**
+     * @param query the live data query
+     * @param sourceParameters the parameters of the live table source, merged with the ones of the query
+     * @return the live data, or {@link Optional#empty()} if the query has to be handled by the live table results page
+     * @throws LiveDataException when failing to compute the live data
+     */
+    public Optional<LiveData> get(LiveDataQuery query, Map<String, Object> sourceParameters) throws LiveDataException
+    {
+        if (!this.configuration.getProperty(ENABLED_PROPERTY, true)
+            || !SUPPORTED_PARAMETERS.containsAll(sourceParameters.keySet())
+            || !this.authorization.hasAccess(Right.VIEW, this.currentDocumentReferenceResolver.resolve(RESULTS_PAGE))) {
+            return Optional.empty();
+        }
+
+        XWikiContext xcontext = this.xcontextProvider.get();
+        try {
+            String className = StringUtils.defaultIfBlank(getString(sourceParameters, CLASS_NAME), null);
+            BaseClass xclass = null;
+            if (className != null) {
+                xclass = xcontext.getWiki().getXClass(this.currentDocumentReferenceResolver.resolve(className),
+                    xcontext);
+            }
+
+            List<String> properties = query.getProperties() != null ? query.getProperties() : List.of();
+            if (!areSupported(properties, xclass)) {
+                return Optional.empty();
+            }
+
+            List<String> queryFilters = Arrays.asList(StringUtils.split(
+                StringUtils.defaultString(getString(sourceParameters, QUERY_FILTERS)), ", "));
+            Optional<Query> hqlQuery = this.queryBuilder.build(query, className, xclass, queryFilters);
+            if (hqlQuery.isEmpty()) {
+                return Optional.empty();
+            }
+
+            int offset = query.getOffset() != null ? Math.max(0, query.getOffset().intValue()) : 0;
+            int limit = query.getLimit() != null ? query.getLimit() : DEFAULT_LIMIT;
+            List<Object> items = hqlQuery.get().setOffset(offset).setLimit(limit).execute();
+
+            LiveData liveData = new LiveData();
+            liveData.setCount(this.queryBuilder.count(hqlQuery.get()));
+            String translationPrefix = StringUtils.defaultString(getString(sourceParameters, TRANSLATION_PREFIX));
+            boolean isAdvancedUser = isAdvancedUser(xcontext);
+            PageValues pageValues = getPageValues(items, className, xclass, properties, xcontext);
+            for (Object item : items) {
+                liveData.getEntries()
+                    .add(getEntry(item, pageValues, xclass, properties, translationPrefix, isAdvancedUser, xcontext));
+            }
+            filterObfuscated(liveData, limit > 0 ? Math.min(items.size(), limit) : items.size(), offset);
+
+            return Optional.of(liveData);
+        } catch (XWikiException | QueryException e) {
+            throw new LiveDataException("Failed to compute the live table results.", e);
+        }
+    }
+
+    private String getString(Map<String, Object> parameters, String key)
+    {
+        Object value = parameters.get(key);
+        return value != null ? value.toString() : null;
+    }
+
+    private boolean areSupported(List<String> properties, BaseClass xclass)
+    {
+        for (String property : properties) {
+            if (property.startsWith(LiveTableNativeQueryBuilder.DOC_PREFIX)) {
+                if (!SUPPORTED_DOC_FIELDS.contains(
+                    StringUtils.removeStart(property, LiveTableNativeQueryBuilder.DOC_PREFIX))) {
+                    return false;
+                }
+            } else if (xclass == null || !(xclass.get(property) instanceof PropertyClass)
+                || xclass.get(property) instanceof EmailClass) {
+                // Special columns (attachments, avatar, likes, etc.), properties from other classes and email
+                // addresses (which may need obfuscation) are left to the results page.
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isAdvancedUser(XWikiContext xcontext)
+    {
+        boolean hasAdmin = this.authorization.hasAccess(Right.ADMIN);
+        return (xcontext.getUserReference() == null && hasAdmin)
+            || this.userPropertiesResolver.resolve(CurrentUserReference.INSTANCE).getType() == UserType.ADVANCED;
+    }
+
+    private PageValues getPageValues(List<Object> items, String className, BaseClass xclass, List<String> properties,
+        XWikiContext xcontext) throws QueryException
+    {
+        PageValues pageValues = new PageValues();
+        Set<String> documentNames = new HashSet<>();
+        for (Object item : items) {
+            documentNames.add(String.valueOf(item instanceof Object[] ? ((Object[]) item)[0] : item));
+        }
+        if (documentNames.isEmpty()) {
+            return pageValues;
+        }
+
+        List<Object[]> documentRows =
+            this.queryManager.createQuery(DOCUMENTS_STATEMENT, Query.HQL).bindValue(NAMES, documentNames).execute();
+        for (Object[] documentRow : documentRows) {
+            String documentName = (String) documentRow[0];
+            String language = StringUtils.defaultString((String) documentRow[1]);
+            pageValues.documents.computeIfAbsent(documentName, key -> new HashMap<>())
+                .put(language, new DocumentValues(documentRow));
+            if (language.isEmpty()) {
+                pageValues.defaultLocales.put(documentName,
+                    LocaleUtils.toLocale(StringUtils.defaultString((String) documentRow[2]), Locale.ROOT));
+            }
+        }
+
+        List<String> classNames = className != null ? List.of(className, EDIT_MODE_CLASS) : List.of(EDIT_MODE_CLASS);
+        List<Object[]> objectRows = this.queryManager.createQuery(OBJECTS_STATEMENT, Query.HQL)
+            .bindValue(NAMES, documentNames).bindValue("classNames", classNames).execute();
+        Map<Long, BaseObject> objectsById = new HashMap<>();
+        for (Object[] objectRow : objectRows) {
+            String documentName = (String) objectRow[0];
+            if (EDIT_MODE_CLASS.equals(objectRow[1])) {
+                pageValues.editModeDocuments.add(documentName);
+            } else {
+                // Like XWikiDocument#getObjectNumbers(), count the deleted objects preceding the last one.
+                int number = ((Number) objectRow[2]).intValue();
+                pageValues.objectCounts.merge(documentName, number + 1, Math::max);
+                if (xclass != null && !pageValues.objects.containsKey(documentName)) {
+                    BaseObject object = new BaseObject();
+                    object.setDocumentReference(this.currentDocumentReferenceResolver.resolve(documentName));
+                    object.setXClassReference(xclass.getDocumentReference());
+                    object.setNumber(number);
+                    pageValues.objects.put(documentName, object);
+                    objectsById.put(((Number) objectRow[3]).longValue(), object);
+                }
+            }
+        }
+
+        // Select the values of the properties displayed without loading the document, grouped by storage type.
+        Map<String, List<String>> propertiesByTable = new HashMap<>();
+        for (String property : properties) {
+            if (isDisplayedFromValue(property, xclass, xcontext)) {
+                propertiesByTable.computeIfAbsent(
+                    LiveTableNativeQueryBuilder.getTableName((PropertyClass) xclass.get(property)),
+                    key -> new ArrayList<>()).add(property);
+            }
+        }
+        if (!objectsById.isEmpty()) {
+            for (Map.Entry<String, List<String>> tableProperties : propertiesByTable.entrySet()) {
+                List<BaseProperty<?>> values = this.queryManager
+                    .createQuery(String.format(PROPERTIES_STATEMENT, tableProperties.getKey()), Query.HQL)
+                    .bindValue("objectIds", objectsById.keySet()).bindValue("properties", tableProperties.getValue())
+                    .execute();
+                for (BaseProperty<?> value : values) {
+                    BaseObject object = objectsById.get(value.getId());
+                    if (object != null) {
+                        object.safeput(value.getName(), value);
+                    }
+                }
+            }
+        }
+
+        return pageValues;
+    }
+
+    /**
+     * @return {@code true} if the given property is displayed using only its value and its definition, {@code false}
+     *         if displaying it requires the document (e.g. text areas rendered in the context of their document,
+     *         database lists and custom displayers which may execute scripts)
+     */
+    private boolean isDisplayedFromValue(String property, BaseClass xclass, XWikiContext xcontext)
+    {
+        if (property.startsWith(LiveTableNativeQueryBuilder.DOC_PREFIX)) {
+            return false;
+        }
+
+        PropertyClass propertyClass = (PropertyClass) xclass.get(property);
+        return VALUE_DISPLAYED_CLASSES.contains(propertyClass.getClass()) && !propertyClass.isCustomDisplayed(xcontext);
+    }
+
+    private Map<String, Object> getEntry(Object item, PageValues pageValues, BaseClass xclass, List<String> properties,
+        String translationPrefix, boolean isAdvancedUser, XWikiContext xcontext) throws XWikiException
+    {
+        // The results include the document language when the "language" query filter is used.
+        String documentName;
+        String documentLanguage;
+        if (item instanceof Object[]) {
+            documentName = String.valueOf(((Object[]) item)[0]);
+            documentLanguage = StringUtils.defaultString((String) ((Object[]) item)[1]);
+        } else {
+            documentName = String.valueOf(item);
+            documentLanguage = "";
+        }
+
+        DocumentReference documentReference = this.currentDocumentReferenceResolver.resolve(documentName);
+        Map<String, Object> entry = new LinkedHashMap<>();
+        if (!this.authorization.hasAccess(Right.VIEW, documentReference)) {
+            entry.put(VIEWABLE, false);
+            entry.put(FULL_NAME, "obfuscated");
+            return entry;
+        }
+
+        XWiki xwiki = xcontext.getWiki();
+        boolean hasEdit = this.authorization.hasAccess(Right.EDIT, documentReference);
+        boolean hasDelete = this.authorization.hasAccess(Right.DELETE, documentReference);
+        entry.put(VIEWABLE, true);
+        entry.put(FULL_NAME, this.localSerializer.serialize(documentReference));
+        entry.put("doc.space", this.localSerializer.serialize(documentReference.getParent()));
+        entry.put("doc.url", xwiki.getURL(documentReference, xcontext));
+        entry.put("doc.space_url", xwiki.getURL(documentReference.getParent(), xcontext));
+        entry.put("doc.wiki", documentReference.getWikiReference().getName());
+        entry.put("doc.wiki_url", xwiki.getURL(documentReference.getWikiReference(), xcontext));
+        entry.put("doc.hasadmin", this.authorization.hasAccess(Right.ADMIN));
+        entry.put("doc.hasedit", hasEdit);
+        entry.put("doc.hasdelete", hasDelete);
+        entry.put("doc.copy_url", xwiki.getURL(documentReference, VIEW, "xpage=copy", null, xcontext));
+        entry.put("doc.delete_url", xwiki.getURL(documentReference, "delete", xcontext));
+        entry.put("doc.rename_url", xwiki.getURL(documentReference, VIEW, "xpage=rename&step=1", null, xcontext));
+
+        boolean isTranslation =
+            !documentLanguage.isEmpty() && !documentLanguage.equals(xwiki.getLanguagePreference(xcontext));
+        // Display the language after the document name so that not all translated documents have the same name.
+        entry.put("doc.name",
+            isTranslation ? documentReference.getName() + " (" + documentLanguage + ')' : documentReference.getName());
+        entry.put("doc.hascopy", true);
+        entry.put("doc.hasrename", hasDelete);
+        entry.put("doc.hasrights", hasEdit && isAdvancedUser);
+        if (WEB_HOME.equals(documentReference.getName())) {
+            // For nested pages, use the page administration.
+            DocumentReference webPreferencesReference =
+                new DocumentReference("WebPreferences", documentReference.getLastSpaceReference());
+            entry.put("doc.rights_url", xwiki.getURL(webPreferencesReference, "admin",
+                "editor=spaceadmin&section=PageRights", null, xcontext));
+        } else {
+            // For terminal pages, use the old rights editor.
+            entry.put("doc.rights_url", xwiki.getURL(documentReference, EDIT, "editor=rights", null, xcontext));
+        }
+
+        String language = isTranslation ? documentLanguage : xwiki.getLanguagePreference(xcontext);
+        DocumentValues values = pageValues.getDocumentValues(documentName, language);
+        if (values == null) {
+            // The document has been deleted since it was listed: display it like the results page displays a new
+            // document.
+            values = new DocumentValues(new Object[11]);
+        }
+        boolean editModeCustomized = values.including || pageValues.editModeDocuments.contains(documentName);
+        boolean displayedFromValues = properties.stream().allMatch(property -> property.startsWith(
+            LiveTableNativeQueryBuilder.DOC_PREFIX) || isDisplayedFromValue(property, xclass, xcontext));
+        XWikiDocument document = null;
+        if (!values.isPlainTitle() || editModeCustomized || !displayedFromValues) {
+            document = xwiki.getDocument(documentReference, xcontext);
+        }
+
+        entry.put("doc.objectCount", pageValues.objectCounts.getOrDefault(documentName, 0));
+        String editMode = editModeCustomized ? document.getDefaultEditMode(xcontext) : EDIT;
+        entry.put("doc.edit_url", xwiki.getURL(documentReference, editMode, xcontext));
+        String title = values.title;
+        if (!values.isPlainTitle()) {
+            title = document.getTranslatedDocument(language, xcontext).getRenderedTitle(Syntax.PLAIN_1_0, xcontext);
+        }
+        addDocumentFields(entry, values, title, xcontext);
+
+        BaseObject documentObject = document != null && xclass != null
+            ? document.getXObject(xclass.getDocumentReference()) : null;
+        for (String property : properties) {
+            if (isDisplayedFromValue(property, xclass, xcontext)) {
+                addProperty(entry, property, pageValues.objects.get(documentName), null, xclass, translationPrefix,
+                    xcontext);
+            } else if (!property.startsWith(LiveTableNativeQueryBuilder.DOC_PREFIX)) {
+                addProperty(entry, property, documentObject, document, xclass, translationPrefix, xcontext);
+            }
+        }
+
+        return entry;
+    }
+
+    private void addDocumentFields(Map<String, Object> entry, DocumentValues values, String title,
+        XWikiContext xcontext)
+    {
+        XWiki xwiki = xcontext.getWiki();
+        entry.put("doc.date", xwiki.formatDate(values.date, null, xcontext));
+        entry.put("doc.title", title);
+        if (!StringUtils.equals(values.title, title)) {
+            entry.put("doc.title_raw", values.title);
+        }
+        // The guest author is displayed as an unknown user, but still linked to the guest user page, like the results
+        // page does.
+        DocumentReference authorReference = getUserReference(values.author);
+        entry.put("doc.author", xwiki.getPlainUserName(authorReference, xcontext));
+        entry.put("doc.author_url", xwiki.getURL(
+            authorReference != null ? authorReference : this.currentDocumentReferenceResolver.resolve(GUEST_USER),
+            xcontext));
+        entry.put("doc.creationDate", xwiki.formatDate(values.creationDate, null, xcontext));
+        entry.put("doc.creator", xwiki.getPlainUserName(getUserReference(values.creator), xcontext));
+        entry.put("doc.hidden", values.hidden);
+    }
+
+    private DocumentReference getUserReference(String user)
+    {
+        // The guest user is stored as an empty string.
+        if (StringUtils.isEmpty(user) || GUEST_USER.equals(user)) {
+            return null;
+        }
+
+        return this.currentDocumentReferenceResolver.resolve(user);
+    }
+
+    /**
+     * Adds the value, display and URL of an object property to the entry.
+     *
+     * @param document the document holding the object, used to display the property, or {@code null} if the property
+     *            is displayed from its value
+     */
+    private void addProperty(Map<String, Object> entry, String property, BaseObject object, XWikiDocument document,
+        BaseClass xclass, String translationPrefix, XWikiContext xcontext)
+    {
+        PropertyClass propertyClass = (PropertyClass) xclass.get(property);
+        BaseProperty<?> field = object != null ? (BaseProperty<?>) object.safeget(property) : null;
+
+        String value;
+        if (propertyClass instanceof PasswordClass) {
+            value = "********";
+        } else {
+            value = field != null && field.getValue() != null ? String.valueOf(field.getValue()) : "";
+        }
+
+        String displayValue = "";
+        if (object != null && document != null) {
+            displayValue = StringUtils.removeEnd(
+                StringUtils.removeStart(document.display(property, VIEW, object, xcontext), HTML_PREFIX),
+                HTML_SUFFIX);
+        } else if (object != null) {
+            // Same as the view display of the document, without the HTML macro wrapping it.
+            StringBuffer buffer = new StringBuffer();
+            String prefix =
+                this.localSerializer.serialize(xclass.getDocumentReference()) + '_' + object.getNumber() + '_';
+            propertyClass.displayView(buffer, property, prefix, object, xcontext);
+            displayValue = buffer.toString();
+        }
+        if (displayValue.isEmpty()) {
+            String key = translationPrefix + "emptyvalue";
+            displayValue = StringUtils.defaultString(this.localization.getTranslationPlain(key), key);
+        }
+
+        // Only retrieve an URL for single value lists of pages.
+        String url = "";
+        if (propertyClass instanceof DBListClass && !(propertyClass instanceof DBTreeListClass)
+            && !((ListClass) propertyClass).isMultiSelect() && !value.isEmpty()) {
+            url = xcontext.getWiki().getURL(this.currentDocumentReferenceResolver.resolve(value), xcontext);
+        }
+
+        entry.put(property, displayValue);
+        entry.put(property + "_value", value);
+        entry.put(property + "_url", url);
+    }
+
+    /**
+     * When all the results fit in a single page, the entries that the current user is not allowed to view can be
+     * removed without impacting the pagination.
+     */
+    private void filterObfuscated(LiveData liveData, int returnedCount, int offset)
+    {
+        if (liveData.getCount() <= returnedCount) {
+            List<Map<String, Object>> viewableEntries = new ArrayList<>();
+            for (Map<String, Object> entry : liveData.getEntries()) {
+                if (Boolean.TRUE.equals(entry.get(VIEWABLE))) {
+                    viewableEntries.add(entry);
+                }
+            }
+            liveData.getEntries().clear();
+            liveData.getEntries().addAll(viewableEntries);
+            // Take the offset into account so that the client doesn't think that the previous results were removed.
+            liveData.setCount((long) viewableEntries.size() + offset);
+        }
+    }
+}
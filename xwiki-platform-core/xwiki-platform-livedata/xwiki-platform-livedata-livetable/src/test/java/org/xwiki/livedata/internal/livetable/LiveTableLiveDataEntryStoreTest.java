@@ -50,11 +50,13 @@
 
 import static java.util.Arrays.asList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -82,6 +84,9 @@
     @MockComponent
     private ModelBridge modelBridge;
 
+    @MockComponent
+    private LiveTableNativeResults nativeResults;
+
     @MockComponent
     @Named(LiveTableLiveDataEntryStore.ROLE_HINT)
     private Provider<LiveDataConfiguration> liveDataConfigurationProvider;
@@ -177,6 +182,24 @@ void getFromDefaultResultPage() throws Exception
         assertEquals(expectedLiveData, this.entryStore.get(new LiveDataQuery()));
     }
 
+    @Test
+    void getFromNativeResults() throws Exception
+    {
+        this.entryStore.getParameters().put("className", "Test.TestClass");
+
+        LiveDataQuery query = new LiveDataQuery();
+        query.setSource(new Source());
+        query.getSource().setParameter("queryFilters", "currentlanguage");
+
+        LiveData liveData = new LiveData();
+        liveData.setCount(2);
+        when(this.nativeResults.get(query, Map.of("className", "Test.TestClass", "queryFilters", "currentlanguage")))
+            .thenReturn(Optional.of(liveData));
+
+        assertSame(liveData, this.entryStore.get(query));
+        verifyNoInteractions(this.resultsRenderer);
+    }
+
     @Test
     void getFromDefaultResultPageWithInvalidJSON() throws Exception
     {
@@ -0,0 +1,171 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.livedata.internal.livetable;
+
+import java.util.List;
+import java.util.Optional;
+
+import javax.inject.Named;
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.livedata.LiveDataQuery;
+import org.xwiki.livedata.LiveDataQuery.Filter;
+import org.xwiki.livedata.LiveDataQuery.SortEntry;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryFilter;
+import org.xwiki.query.QueryManager;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.objects.classes.BaseClass;
+import com.xpn.xwiki.objects.classes.DateClass;
+import com.xpn.xwiki.objects.classes.NumberClass;
+import com.xpn.xwiki.objects.classes.StringClass;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link LiveTableNativeQueryBuilder}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class LiveTableNativeQueryBuilderTest
+{
+    @InjectMockComponents
+    private LiveTableNativeQueryBuilder queryBuilder;
+
+    @MockComponent
+    private QueryManager queryManager;
+
+    @MockComponent
+    @Named("context")
+    private Provider<ComponentManager> componentManagerProvider;
+
+    @Mock
+    private ComponentManager componentManager;
+
+    @Mock
+    private Query query;
+
+    @Mock
+    private BaseClass xclass;
+
+    @BeforeEach
+    void configure() throws Exception
+    {
+        when(this.queryManager.createQuery(anyString(), any())).thenReturn(this.query);
+        when(this.componentManagerProvider.get()).thenReturn(this.componentManager);
+    }
+
+    @Test
+    void buildForDocuments() throws Exception
+    {
+        QueryFilter hiddenFilter = mock(QueryFilter.class);
+        when(this.componentManager.getInstance(QueryFilter.class, "hidden")).thenReturn(hiddenFilter);
+
+        LiveDataQuery liveDataQuery = new LiveDataQuery();
+        liveDataQuery.setProperties(List.of("doc.title", "doc.date"));
+        liveDataQuery.setFilters(List.of(new Filter("doc.title", "contains", "foo")));
+        liveDataQuery.setSort(List.of(new SortEntry("doc.date", true)));
+
+        assertEquals(Optional.of(this.query), this.queryBuilder.build(liveDataQuery, null, null, List.of("hidden")));
+
+        verify(this.queryManager).createQuery("select doc.fullName from XWikiDocument doc where 1=1"
+            + " and upper(str(doc.title)) like upper(:doc_title_filter) order by doc.date desc", Query.HQL);
+        verify(this.query).bindValue("doc_title_filter", "%foo%");
+        verify(this.query).addFilter(hiddenFilter);
+    }
+
+    @Test
+    void buildForObjects() throws Exception
+    {
+        when(this.xclass.get("status")).thenReturn(mock(StringClass.class));
+
+        LiveDataQuery liveDataQuery = new LiveDataQuery();
+        liveDataQuery.setProperties(List.of("doc.title", "status"));
+        liveDataQuery.setFilters(List.of(new Filter("status", "equals", false, "new", "open")));
+        liveDataQuery.setSort(List.of(new SortEntry("status")));
+
+        assertSame(this.query,
+            this.queryBuilder.build(liveDataQuery, "Test.TaskClass", this.xclass, List.of()).get());
+
+        verify(this.queryManager).createQuery("select doc.fullName from XWikiDocument doc, BaseObject as obj,"
+            + " StringProperty as prop_status where obj.name = doc.fullName and obj.className = :className"
+            + " and doc.fullName not in (:classTemplate1, :classTemplate2)"
+            + " and obj.id = prop_status.id.id and prop_status.id.name = :prop_status_id_name"
+            + " and (prop_status.value in (:prop_status_value_1, :prop_status_value_2))"
+            + " order by lower(prop_status.value) asc, prop_status.value asc", Query.HQL);
+        verify(this.query).bindValue("className", "Test.TaskClass");
+        verify(this.query).bindValue("classTemplate1", "Test.TaskClassTemplate");
+        verify(this.query).bindValue("classTemplate2", "Test.TaskTemplate");
+        verify(this.query).bindValue("prop_status_id_name", "status");
+        verify(this.query).bindValue("prop_status_value_1", "new");
+        verify(this.query).bindValue("prop_status_value_2", "open");
+    }
+
+    @Test
+    void buildWithSortOnUnfilteredProperty() throws Exception
+    {
+        NumberClass priorityClass = mock(NumberClass.class);
+        when(priorityClass.getNumberType()).thenReturn("integer");
+        when(this.xclass.get("priority")).thenReturn(priorityClass);
+
+        LiveDataQuery liveDataQuery = new LiveDataQuery();
+        liveDataQuery.setProperties(List.of("priority"));
+        liveDataQuery.setSort(List.of(new SortEntry("priority", true)));
+
+        this.queryBuilder.build(liveDataQuery, "Test.TaskClass", this.xclass, List.of());
+
+        // The sorted property is joined like the filtered properties.
+        verify(this.queryManager).createQuery("select doc.fullName from XWikiDocument doc, BaseObject as obj,"
+            + " IntegerProperty as prop_priority where obj.name = doc.fullName and obj.className = :className"
+            + " and doc.fullName not in (:classTemplate1, :classTemplate2)"
+            + " and obj.id = prop_priority.id.id and prop_priority.id.name = :prop_priority_id_name"
+            + " order by prop_priority.value desc", Query.HQL);
+        verify(this.query).bindValue("prop_priority_id_name", "priority");
+    }
+
+    @Test
+    void buildWithUnsupportedFilter() throws Exception
+    {
+        when(this.xclass.get("deadline")).thenReturn(mock(DateClass.class));
+
+        LiveDataQuery liveDataQuery = new LiveDataQuery();
+        liveDataQuery.setProperties(List.of("deadline"));
+        liveDataQuery.setFilters(List.of(new Filter("deadline", "between", "2024-01-01/2024-02-01")));
+
+        assertEquals(Optional.empty(),
+            this.queryBuilder.build(liveDataQuery, "Test.TaskClass", this.xclass, List.of()));
+        verify(this.queryManager, never()).createQuery(anyString(), anyString());
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.livedata.internal.livetable;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.inject.Named;
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.xwiki.livedata.LiveData;
+import org.xwiki.livedata.LiveDataQuery;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.localization.ContextualLocalizationManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.user.CurrentUserReference;
+import org.xwiki.user.UserProperties;
+import org.xwiki.user.UserPropertiesResolver;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.StringProperty;
+import com.xpn.xwiki.objects.classes.BaseClass;
+import com.xpn.xwiki.objects.classes.StringClass;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link LiveTableNativeResults}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class LiveTableNativeResultsTest
+{
+    private static final DocumentReference RESULTS_PAGE =
+        new DocumentReference("wiki", "XWiki", "LiveTableResults");
+
+    private static final DocumentReference PAGE = new DocumentReference("wiki", "Space", "Page");
+
+    private static final DocumentReference ALICE = new DocumentReference("wiki", "XWiki", "Alice");
+
+    private static final DocumentReference GUEST = new DocumentReference("wiki", "XWiki", "XWikiGuest");
+
+    @InjectMockComponents
+    private LiveTableNativeResults nativeResults;
+
+    @MockComponent
+    private LiveTableNativeQueryBuilder queryBuilder;
+
+    @MockComponent
+    private QueryManager queryManager;
+
+    @MockComponent
+    private Provider<XWikiContext> xcontextProvider;
+
+    @MockComponent
+    private ContextualAuthorizationManager authorization;
+
+    @MockComponent
+    private ContextualLocalizationManager localization;
+
+    @MockComponent
+    @Named("current")
+    private DocumentReferenceResolver<String> currentDocumentReferenceResolver;
+
+    @MockComponent
+    @Named("local")
+    private EntityReferenceSerializer<String> localSerializer;
+
+    @MockComponent
+    @Named("secure/all")
+    private UserPropertiesResolver userPropertiesResolver;
+
+    @MockComponent
+    @Named("xwikiproperties")
+    private ConfigurationSource configuration;
+
+
+    @Mock
+    private XWikiContext xcontext;
+
+    @Mock
+    private XWiki xwiki;
+
+    @Mock
+    private XWikiDocument document;
+
+    @Mock
+    private Query query;
+
+    @Mock
+    private Query documentsQuery;
+
+    @Mock
+    private Query objectsQuery;
+
+    @Mock
+    private Query propertiesQuery;
+
+    private LiveDataQuery liveDataQuery = new LiveDataQuery();
+
+    private Object[] documentRow = new Object[] {"Space.Page", "", "en", "Title", "xwiki/2.1", new Date(0),
+        new Date(0), "XWiki.Alice", "XWiki.Alice", false, 0};
+
+    private List<Object[]> objectRows = List.of();
+
+    @BeforeEach
+    void configure() throws Exception
+    {
+        when(this.xcontextProvider.get()).thenReturn(this.xcontext);
+        when(this.xcontext.getWiki()).thenReturn(this.xwiki);
+
+        when(this.currentDocumentReferenceResolver.resolve("XWiki.LiveTableResults")).thenReturn(RESULTS_PAGE);
+        when(this.currentDocumentReferenceResolver.resolve("Space.Page")).thenReturn(PAGE);
+        when(this.currentDocumentReferenceResolver.resolve("XWiki.XWikiGuest")).thenReturn(GUEST);
+        when(this.currentDocumentReferenceResolver.resolve("XWiki.Alice")).thenReturn(ALICE);
+        when(this.authorization.hasAccess(Right.VIEW, RESULTS_PAGE)).thenReturn(true);
+        when(this.authorization.hasAccess(Right.VIEW, PAGE)).thenReturn(true);
+        when(this.userPropertiesResolver.resolve(CurrentUserReference.INSTANCE))
+            .thenReturn(mock(UserProperties.class));
+
+        when(this.configuration.getProperty("livetable.nativeResults.enabled", true)).thenReturn(true);
+
+        when(this.xwiki.getLanguagePreference(this.xcontext)).thenReturn("en");
+        when(this.xwiki.getDocument(PAGE, this.xcontext)).thenReturn(this.document);
+        when(this.document.getTranslatedDocument("en", this.xcontext)).thenReturn(this.document);
+        when(this.xwiki.getURL(ALICE, this.xcontext)).thenReturn("/view/Alice");
+        when(this.xwiki.getURL(GUEST, this.xcontext)).thenReturn("/view/XWikiGuest");
+        when(this.xwiki.getPlainUserName(ALICE, this.xcontext)).thenReturn("Alice");
+        when(this.xwiki.getPlainUserName(null, this.xcontext)).thenReturn("Unknown User");
+
+        when(this.queryBuilder.build(any(), isNull(), isNull(), any())).thenReturn(Optional.of(this.query));
+        when(this.queryBuilder.count(this.query)).thenReturn(1L);
+        when(this.query.setOffset(0)).thenReturn(this.query);
+        when(this.query.setLimit(15)).thenReturn(this.query);
+        when(this.query.execute()).thenReturn(List.of("Space.Page"));
+
+        mockQuery(this.documentsQuery, "select doc.fullName, doc.language, ");
+        when(this.documentsQuery.execute()).then(invocation -> List.<Object>of(this.documentRow));
+        mockQuery(this.objectsQuery, "select obj.name, obj.className, ");
+        when(this.objectsQuery.execute()).then(invocation -> this.objectRows);
+        mockQuery(this.propertiesQuery, "select prop from ");
+
+        this.liveDataQuery.setProperties(List.of("doc.title", "doc.author"));
+    }
+
+    private void mockQuery(Query query, String statementPrefix) throws Exception
+    {
+        when(this.queryManager.createQuery(startsWith(statementPrefix), eq(Query.HQL))).thenReturn(query);
+        when(query.bindValue(anyString(), any())).thenReturn(query);
+    }
+
+    @Test
+    void getWithAuthor() throws Exception
+    {
+        LiveData liveData = this.nativeResults.get(this.liveDataQuery, Map.of()).get();
+
+        assertEquals(1, liveData.getCount());
+        assertEquals(1, liveData.getEntries().size());
+        Map<String, Object> entry = liveData.getEntries().get(0);
+        assertEquals(true, entry.get("doc.viewable"));
+        assertEquals("Title", entry.get("doc.title"));
+        assertFalse(entry.containsKey("doc.title_raw"));
+        assertEquals("Alice", entry.get("doc.author"));
+        assertEquals("/view/Alice", entry.get("doc.author_url"));
+        assertEquals(0, entry.get("doc.objectCount"));
+
+        // The rows are built from the selected values, without loading the documents.
+        verify(this.xwiki, never()).getDocument(PAGE, this.xcontext);
+    }
+
+    @Test
+    void getWithGuestAuthor() throws Exception
+    {
+        // The guest author is stored as an empty string.
+        this.documentRow[7] = "";
+
+        Map<String, Object> entry = this.nativeResults.get(this.liveDataQuery, Map.of()).get().getEntries().get(0);
+
+        // The guest author is displayed as an unknown user but the author URL is still provided.
+        assertEquals("Unknown User", entry.get("doc.author"));
+        assertEquals("/view/XWikiGuest", entry.get("doc.author_url"));
+    }
+
+    @Test
+    void getWithScriptInTitle() throws Exception
+    {
+        this.documentRow[3] = "$services.localization.render('title')";
+        when(this.document.getRenderedTitle(Syntax.PLAIN_1_0, this.xcontext)).thenReturn("Rendered");
+
+        Map<String, Object> entry = this.nativeResults.get(this.liveDataQuery, Map.of()).get().getEntries().get(0);
+
+        // Only the titles which are not plain text need to load the document to be rendered.
+        assertEquals("Rendered", entry.get("doc.title"));
+        assertEquals("$services.localization.render('title')", entry.get("doc.title_raw"));
+    }
+
+    @Test
+    void getWithObjectProperties() throws Exception
+    {
+        DocumentReference classReference = new DocumentReference("wiki", "Space", "MyClass");
+        when(this.currentDocumentReferenceResolver.resolve("Space.MyClass")).thenReturn(classReference);
+        when(this.localSerializer.serialize(classReference)).thenReturn("Space.MyClass");
+        BaseClass xclass = mock(BaseClass.class);
+        when(xclass.getDocumentReference()).thenReturn(classReference);
+        StringClass colorClass = new StringClass();
+        // No custom displayer.
+        ReflectionUtils.setFieldValue(colorClass, "cachedCustomDisplayer", "");
+        when(xclass.get("color")).thenReturn(colorClass);
+        when(this.xwiki.getXClass(classReference, this.xcontext)).thenReturn(xclass);
+        when(this.queryBuilder.build(any(), eq("Space.MyClass"), eq(xclass), any()))
+            .thenReturn(Optional.of(this.query));
+
+        // The second object of the document is the first remaining one.
+        this.objectRows = List.<Object[]>of(new Object[] {"Space.Page", "Space.MyClass", 1, 42L});
+        StringProperty color = new StringProperty();
+        color.setId(42L);
+        color.setName("color");
+        color.setValue("Red");
+        when(this.propertiesQuery.execute()).thenReturn(List.of(color));
+
+        this.liveDataQuery.setProperties(List.of("doc.title", "color"));
+        Map<String, Object> entry =
+            this.nativeResults.get(this.liveDataQuery, Map.of("className", "Space.MyClass")).get().getEntries().get(0);
+
+        assertEquals(2, entry.get("doc.objectCount"));
+        assertEquals("Red", entry.get("color"));
+        assertEquals("Red", entry.get("color_value"));
+        assertEquals("", entry.get("color_url"));
+        verify(this.queryManager).createQuery(
+            "select prop from StringProperty prop where prop.id.id in (:objectIds) and prop.id.name in (:properties)",
+            Query.HQL);
+        verify(this.propertiesQuery).bindValue("properties", List.of("color"));
+        verify(this.xwiki, never()).getDocument(PAGE, this.xcontext);
+    }
+
+    @Test
+    void getWithUnsupportedSourceParameter() throws Exception
+    {
+        assertEquals(Optional.empty(), this.nativeResults.get(this.liveDataQuery, Map.of("resultPage", "Custom")));
+
+        verify(this.queryBuilder, never()).build(any(), any(), any(), any());
+    }
+
+    @Test
+    void getWhenDisabled() throws Exception
+    {
+        // The native results can be disabled when the results page is customized.
+        when(this.configuration.getProperty("livetable.nativeResults.enabled", true)).thenReturn(false);
+
+        assertEquals(Optional.empty(), this.nativeResults.get(this.liveDataQuery, Map.of()));
+
+        verify(this.queryBuilder, never()).build(any(), any(), any(), any());
+    }
+
+    @Test
+    void getWithoutViewRight() throws Exception
+    {
+        when(this.authorization.hasAccess(Right.VIEW, PAGE)).thenReturn(false);
+        when(this.queryBuilder.count(this.query)).thenReturn(20L);
+
+        Map<String, Object> entry = this.nativeResults.get(this.liveDataQuery, Map.of()).get().getEntries().get(0);
+
+        assertEquals(Map.of("doc.viewable", false, "doc.fullName", "obfuscated"), entry);
+        verify(this.xwiki, never()).getDocument(PAGE, this.xcontext);
+    }
+}
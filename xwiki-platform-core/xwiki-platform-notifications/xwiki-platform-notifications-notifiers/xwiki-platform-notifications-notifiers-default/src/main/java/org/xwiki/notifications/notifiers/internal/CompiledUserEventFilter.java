@@ -0,0 +1,200 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.notifiers.internal;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.xwiki.eventstream.Event;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.notifications.NotificationFormat;
+import org.xwiki.notifications.filters.NotificationFilter;
+import org.xwiki.notifications.filters.NotificationFilterPreference;
+import org.xwiki.notifications.filters.NotificationFilterType;
+import org.xwiki.notifications.filters.internal.user.EventUserFilter;
+import org.xwiki.notifications.preferences.NotificationPreference;
+import org.xwiki.notifications.preferences.NotificationPreferenceProperty;
+
+/**
+ * The notification preferences, followed users and pre-filters of a user, indexed once so that they can be matched
+ * against many events without being retrieved and resolved again for each of them.
+ * 
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+public class CompiledUserEventFilter
+{
+    /**
+     * Used as starting date of the followed users filters which don't have any.
+     */
+    private static final Date ALWAYS = new Date(Long.MIN_VALUE);
+
+    /**
+     * The preferences indexed by format and event type, {@code null} if the preferences could not be retrieved.
+     */
+    private final Map<NotificationFormat, Map<Object, NotificationPreference>> preferences;
+
+    private final boolean noPreference;
+
+    /**
+     * The followed users indexed by format (the {@code null} key matching any format) associated with the oldest
+     * starting date of the corresponding filters.
+     */
+    private final Map<NotificationFormat, Map<DocumentReference, Date>> followedUsers = new HashMap<>();
+
+    private final NotificationFilter[] filters;
+
+    private final Collection<NotificationFilterPreference> filterPreferences;
+
+    /**
+     * @param preferences all the notification preferences of the user, {@code null} if they could not be retrieved
+     * @param filterPreferences all the filter preferences of the user
+     * @param filters the enabled pre-filters of the user, in the order in which they should be applied
+     * @param userResolver used to resolve the users referenced in the filter preferences
+     */
+    public CompiledUserEventFilter(List<NotificationPreference> preferences,
+        Collection<NotificationFilterPreference> filterPreferences, List<NotificationFilter> filters,
+        Function<String, DocumentReference> userResolver)
+    {
+        if (preferences != null) {
+            this.preferences = new HashMap<>();
+            for (NotificationPreference preference : preferences) {
+                Object eventType = preference.getProperties().get(NotificationPreferenceProperty.EVENT_TYPE);
+                if (eventType != null) {
+                    // The first preference matching a format and a type wins
+                    this.preferences.computeIfAbsent(preference.getFormat(), k -> new HashMap<>())
+                        .putIfAbsent(eventType, preference);
+                }
+            }
+            this.noPreference = preferences.isEmpty();
+        } else {
+            this.preferences = null;
+            this.noPreference = false;
+        }
+
+        for (NotificationFilterPreference filterPreference : filterPreferences) {
+            if (isFollowedUserFilterPreference(filterPreference)) {
+                DocumentReference followedUser = userResolver.apply(filterPreference.getUser());
+                Date startingDate =
+                    filterPreference.getStartingDate() != null ? filterPreference.getStartingDate() : ALWAYS;
+
+                addFollowedUser(null, followedUser, startingDate);
+                for (NotificationFormat format : filterPreference.getNotificationFormats()) {
+                    addFollowedUser(format, followedUser, startingDate);
+                }
+            }
+        }
+
+        this.filterPreferences = filterPreferences;
+        this.filters = filters.toArray(new NotificationFilter[0]);
+    }
+
+    private boolean isFollowedUserFilterPreference(NotificationFilterPreference filterPreference)
+    {
+        // When the list of event types concerned by the filter is empty, we consider that the filter concerns
+        // all events.
+        return filterPreference.isEnabled() && EventUserFilter.FILTER_NAME.equals(filterPreference.getFilterName())
+            && filterPreference.getFilterType() == NotificationFilterType.INCLUSIVE
+            && filterPreference.getEventTypes().isEmpty();
+    }
+
+    private void addFollowedUser(NotificationFormat format, DocumentReference followedUser, Date startingDate)
+    {
+        // Keep the oldest starting date since it's enough for one of the filters to match
+        this.followedUsers.computeIfAbsent(format, k -> new HashMap<>()).merge(followedUser, startingDate,
+            (date1, date2) -> date1.before(date2) ? date1 : date2);
+    }
+
+    /**
+     * @param event the event
+     * @param format the format of the notification
+     * @return true if the user enabled notifications for the type of the passed event
+     */
+    public boolean hasCorrespondingNotificationPreference(Event event, NotificationFormat format)
+    {
+        if (this.preferences == null) {
+            return false;
+        }
+
+        Map<Object, NotificationPreference> formatPreferences = this.preferences.get(format);
+        NotificationPreference notificationPreference =
+            formatPreferences != null && event.getType() != null ? formatPreferences.get(event.getType()) : null;
+
+        if (notificationPreference != null) {
+            // Ensures that the preference is enabled, and that the preference start date is before the event
+            // date. Note that we return true also if event date is null or notification preference is null
+            // for possible backward compatibility with old events.
+            return notificationPreference.isNotificationEnabled()
+                && (notificationPreference.getStartDate() == null || event.getDate() == null
+                // after and before API are "strictly after" and "strictly before",
+                // here we use the negative way to ensure we also accept "equals" date.
+                    || !event.getDate().before(notificationPreference.getStartDate()));
+        }
+
+        return this.noPreference;
+    }
+
+    /**
+     * @param event the event
+     * @param format the format of the notification
+     * @return true if the passed event was triggered by a user followed by the user
+     */
+    public boolean isTriggeredByAFollowedUser(Event event, NotificationFormat format)
+    {
+        Map<DocumentReference, Date> formatFollowedUsers = this.followedUsers.get(format);
+        if (formatFollowedUsers == null || event.getUser() == null) {
+            return false;
+        }
+
+        Date startingDate = formatFollowedUsers.get(event.getUser());
+
+        // after and before API are "strictly after" and "strictly before",
+        // here we use the negative way to ensure we also accept "equals" date.
+        return startingDate != null && (event.getDate() == null || !event.getDate().before(startingDate));
+    }
+
+    /**
+     * @param event the event
+     * @param user the user
+     * @param format the format of the notification
+     * @return true if one of the pre-filters of the user asked to filter the passed event
+     */
+    public boolean isEventFiltered(Event event, DocumentReference user, NotificationFormat format)
+    {
+        for (NotificationFilter filter : this.filters) {
+            NotificationFilter.FilterPolicy policy =
+                filter.filterEvent(event, user, this.filterPreferences, format);
+            switch (policy) {
+                case FILTER:
+                    return true;
+                case KEEP:
+                    return false;
+                default:
+                    // Do nothing
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.notifiers.internal;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.event.ComponentDescriptorAddedEvent;
+import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.notifications.filters.NotificationFilter;
+import org.xwiki.notifications.filters.internal.event.NotificationFilterPreferenceAddOrUpdatedEvent;
+import org.xwiki.notifications.filters.internal.event.NotificationFilterPreferenceDeletedEvent;
+import org.xwiki.notifications.preferences.internal.event.NotificationPreferenceAddedEvent;
+import org.xwiki.notifications.preferences.internal.event.NotificationPreferenceDeletedEvent;
+import org.xwiki.notifications.preferences.internal.event.NotificationPreferenceUpdatedEvent;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Invalidate the notification preferences and filters compiled by {@link UserEventManager} when they are modified.
+ * 
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+@Component
+@Singleton
+@Named(CompiledUserEventFilterInvalidatorListener.NAME)
+public class CompiledUserEventFilterInvalidatorListener extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME =
+        "org.xwiki.notifications.notifiers.internal.CompiledUserEventFilterInvalidatorListener";
+
+    /**
+     * Lazily loaded to not initialize the manager too early.
+     */
+    @Inject
+    private Provider<UserEventManager> userEventManagerProvider;
+
+    /**
+     * The default constructor.
+     */
+    public CompiledUserEventFilterInvalidatorListener()
+    {
+        super(NAME, new NotificationPreferenceAddedEvent(), new NotificationPreferenceUpdatedEvent(),
+            new NotificationPreferenceDeletedEvent(), new NotificationFilterPreferenceAddOrUpdatedEvent(),
+            new NotificationFilterPreferenceDeletedEvent(), new ComponentDescriptorAddedEvent(NotificationFilter.class),
+            new ComponentDescriptorRemovedEvent(NotificationFilter.class));
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        EntityReference reference = null;
+        if (source instanceof EntityReference) {
+            reference = (EntityReference) source;
+        } else if (event instanceof NotificationFilterPreferenceAddOrUpdatedEvent
+            && data instanceof EntityReference) {
+            // The source is the filter preference and the data its owner
+            reference = (EntityReference) data;
+        }
+
+        // Anything else (like a new filter) can impact everyone
+        this.userEventManagerProvider.get().invalidate(reference);
+    }
+}
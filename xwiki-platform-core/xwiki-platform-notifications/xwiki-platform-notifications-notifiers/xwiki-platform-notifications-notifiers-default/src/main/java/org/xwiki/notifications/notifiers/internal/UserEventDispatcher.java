@@ -21,6 +21,7 @@
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
@@ -76,6 +77,25 @@
 {
     private static final long BATCH_SIZE = 100;
 
+    /**
+     * The entities for which an event is already pre filtered. A {@code null} set means that the store need to be asked
+     * for each entity.
+     * 
+     * @version $Id$
+     */
+    private static final class PrefilteredEntities
+    {
+        private final Set<String> statusEntityIds;
+
+        private final Set<String> mailEntityIds;
+
+        PrefilteredEntities(Set<String> statusEntityIds, Set<String> mailEntityIds)
+        {
+            this.statusEntityIds = statusEntityIds;
+            this.mailEntityIds = mailEntityIds;
+        }
+    }
+
     @Inject
     private UsersCache userCache;
 
@@ -225,21 +245,27 @@ private CompletableFuture<?> dispatchInContext(Event event)
         CompletableFuture<?> result = new CompletableFuture<>();
         WikiReference eventWiki = event.getWiki();
 
+        boolean mailEnabled = this.notificationConfiguration.areEmailsEnabled();
+
+        // Get all the entities for which the event is already pre filtered at once instead of asking the store for each
+        // user
+        PrefilteredEntities prefiltered = new PrefilteredEntities(getPrefilteredEntityIds(event, false),
+            mailEnabled ? getPrefilteredEntityIds(event, true) : null);
+
         if (CollectionUtils.isNotEmpty(event.getTarget())) {
             // The event explicitly indicate with which entities the event is associated with
 
-            boolean mailEnabled = this.notificationConfiguration.areEmailsEnabled();
             for (String entity : event.getTarget()) {
                 DocumentReference entityReference = this.resolver.resolve(entity, event.getWiki());
                 UserReference userReference = this.documentReferenceUserReferenceResolver.resolve(entityReference);
 
                 try {
                     if (this.userManager.exists(userReference)) {
-                        dispatch(event, entityReference, mailEnabled);
+                        dispatch(event, entityReference, mailEnabled, prefiltered);
                     } else {
                         // Also recursively associate the members of the entity if it's a group
-                        this.groupManager.getMembers(entityReference, true)
-                            .forEach(userDocumentReference -> dispatch(event, userDocumentReference, mailEnabled));
+                        this.groupManager.getMembers(entityReference, true).forEach(
+                            userDocumentReference -> dispatch(event, userDocumentReference, mailEnabled, prefiltered));
                     }
                 } catch (UserException e) {
                     this.logger.warn("Failed to verify if user [{}] exists. Cause: [{}]", userReference,
@@ -256,19 +282,20 @@ private CompletableFuture<?> dispatchInContext(Event event)
             // Try to find users listening to this event
 
             // Associated event with event's wiki users
-            result = dispatch(event, this.userCache.getUsers(eventWiki, true));
+            result = dispatch(event, this.userCache.getUsers(eventWiki, true), mailEnabled, prefiltered);
 
             // Also take into account global users (main wiki users) if the event is on a subwiki
             if (!this.wikiManager.isMainWiki(eventWiki.getName())) {
                 List<DocumentReference> userList =
                     this.userCache.getUsers(new WikiReference(this.wikiManager.getMainWikiId()), true);
-                result = dispatch(event, userList);
+                result = dispatch(event, userList, mailEnabled, prefiltered);
             }
         }
         return result;
     }
 
-    private CompletableFuture<?> dispatch(Event event, DocumentReference user, boolean mailEnabled)
+    private CompletableFuture<?> dispatch(Event event, DocumentReference user, boolean mailEnabled,
+        PrefilteredEntities prefiltered)
     {
         // Get the entity id
         String entityId = this.entityReferenceSerializer.serialize(user);
@@ -276,7 +303,7 @@ private CompletableFuture<?> dispatch(Event event, DocumentReference user, boole
 
         // Make sure the event is not already pre filtered
         // Make sure the user asked to be alerted about this event
-        if (!isStatusPrefiltered(event, entityId)
+        if (!isStatusPrefiltered(event, entityId, prefiltered)
             && this.userEventManager.isListening(event, user, NotificationFormat.ALERT)) {
             // Associate the event with the user
             result = saveEventStatus(event, entityId);
@@ -285,7 +312,7 @@ private CompletableFuture<?> dispatch(Event event, DocumentReference user, boole
         // Make sure the notification module is allowed to send mails
         // Make sure the event is not already pre filtered
         // Make sure the user asked to receive mails about this event
-        if (mailEnabled && !isMailPrefiltered(event, entityId)
+        if (mailEnabled && !isMailPrefiltered(event, entityId, prefiltered)
             && this.userEventManager.isListening(event, user, NotificationFormat.EMAIL)) {
             // Associate the event with the user
             result = saveMailEntityEvent(event, entityId);
@@ -299,16 +326,43 @@ private CompletableFuture<?> dispatch(Event event, DocumentReference user, boole
         return result;
     }
 
-    private boolean isStatusPrefiltered(Event event, String entityId)
+    private boolean isStatusPrefiltered(Event event, String entityId, PrefilteredEntities prefiltered)
     {
+        if (prefiltered.statusEntityIds != null) {
+            return prefiltered.statusEntityIds.contains(entityId);
+        }
+
         return isPrefiltered(event, entityId, false);
     }
 
-    private boolean isMailPrefiltered(Event event, String entityId)
+    private boolean isMailPrefiltered(Event event, String entityId, PrefilteredEntities prefiltered)
     {
+        if (prefiltered.mailEntityIds != null) {
+            return prefiltered.mailEntityIds.contains(entityId);
+        }
+
         return isPrefiltered(event, entityId, true);
     }
 
+    /**
+     * @return the identifiers of the entities for which the event is already pre filtered or {@code null} if the store
+     *         does not support getting them all at once
+     */
+    private Set<String> getPrefilteredEntityIds(Event event, boolean mail)
+    {
+        try {
+            Optional<Set<String>> entityIds =
+                mail ? this.events.getMailEntityIds(event) : this.events.getEventStatusEntityIds(event);
+
+            return entityIds.orElse(null);
+        } catch (Exception e) {
+            this.logger.warn("Failed to get the entities associated with event [{}], checking them one by one: {}",
+                event.getId(), ExceptionUtils.getRootCauseMessage(e));
+
+            return null;
+        }
+    }
+
     private boolean isPrefiltered(Event event, String entityId, boolean mail)
     {
         SimpleEventQuery eventQuery = new SimpleEventQuery(0, 0);
@@ -330,12 +384,11 @@ private boolean isPrefiltered(Event event, String entityId, boolean mail)
         }
     }
 
-    private CompletableFuture<?> dispatch(Event event, List<DocumentReference> users)
+    private CompletableFuture<?> dispatch(Event event, List<DocumentReference> users, boolean mailEnabled,
+        PrefilteredEntities prefiltered)
     {
-        boolean mailEnabled = this.notificationConfiguration.areEmailsEnabled();
-
         for (DocumentReference user : users) {
-            dispatch(event, user, mailEnabled);
+            dispatch(event, user, mailEnabled, prefiltered);
         }
 
         // Remember we are done pre filtering this event
@@ -47,11 +47,8 @@
 import org.xwiki.notifications.filters.NotificationFilterManager;
 import org.xwiki.notifications.filters.NotificationFilterPreference;
 import org.xwiki.notifications.filters.NotificationFilterPreferenceManager;
-import org.xwiki.notifications.filters.NotificationFilterType;
-import org.xwiki.notifications.filters.internal.user.EventUserFilter;
 import org.xwiki.notifications.preferences.NotificationPreference;
 import org.xwiki.notifications.preferences.NotificationPreferenceManager;
-import org.xwiki.notifications.preferences.NotificationPreferenceProperty;
 import org.xwiki.notifications.preferences.internal.cache.UnboundedEntityCacheManager;
 import org.xwiki.security.authorization.AuthorizationManager;
 import org.xwiki.security.authorization.Right;
@@ -66,6 +63,13 @@
 @Singleton
 public class UserEventManager implements Initializable
 {
+    /**
+     * The name of the cache containing the compiled notification preferences and filters of each user.
+     * 
+     * @since 16.6.0RC1
+     */
+    public static final String COMPILEDFILTERCACHE_NAME = "UserEventFilter";
+
     private static final String USERDATECACHE_NAME = "UserCreationDate";
 
     @Inject
@@ -97,10 +101,14 @@ public class UserEventManager implements Initializable
 
     private Map<EntityReference, Date> userCreationDateCache;
 
+    private Map<EntityReference, CompiledUserEventFilter> compiledFilterCache;
+
     @Override
     public void initialize() throws InitializationException
     {
         this.userCreationDateCache = this.cacheManager.createCache(USERDATECACHE_NAME, false);
+        // Invalidated on user document update since that's where some of the user preferences are stored
+        this.compiledFilterCache = this.cacheManager.createCache(COMPILEDFILTERCACHE_NAME, true);
     }
 
     /**
@@ -112,16 +120,14 @@ public void initialize() throws InitializationException
     public boolean isListening(Event event, DocumentReference user, NotificationFormat format)
     {
         try {
-            if (hasAccess(user, event) && isEventAfterUserCreationDate(event, user)
-                && (hasCorrespondingNotificationPreference(user, event, format)
-                    || isTriggeredByAFollowedUser(user, event, format))) {
+            if (hasAccess(user, event) && isEventAfterUserCreationDate(event, user)) {
+                CompiledUserEventFilter compiledFilter = getCompiledFilter(user);
+
                 // Apply the filters that the user has defined in its notification preferences
                 // If one of the events present in the composite event does not match a user filter, remove the event
-                List<NotificationFilter> filters = new ArrayList<>(this.notificationFilterManager.getAllFilters(user,
-                    true, NotificationFilter.FilteringPhase.PRE_FILTERING));
-                filters.sort(null);
-
-                return !isEventFiltered(filters, event, user, format);
+                return (compiledFilter.hasCorrespondingNotificationPreference(event, format)
+                    || compiledFilter.isTriggeredByAFollowedUser(event, format))
+                    && !compiledFilter.isEventFiltered(event, user, format);
             }
         } catch (NotificationException e) {
             this.logger.error("Failed to get event filters for user [{}]", user, e);
@@ -193,113 +199,54 @@ private Date getUserCreationDate(DocumentReference user) throws NotificationExce
         return result;
     }
 
-    private boolean hasCorrespondingNotificationPreference(DocumentReference user, Event event,
-        NotificationFormat format)
-    {
-        try {
-            List<NotificationPreference> allPreferences = this.notificationPreferenceManager.getAllPreferences(user);
-            for (NotificationPreference notificationPreference : allPreferences) {
-                if (notificationPreference.getFormat() == format
-                    && notificationPreference.getProperties().containsKey(NotificationPreferenceProperty.EVENT_TYPE)
-                    && notificationPreference.getProperties().get(NotificationPreferenceProperty.EVENT_TYPE)
-                        .equals(event.getType())) {
-
-                    // Ensures that the preference is enabled, and that the preference start date is before the event
-                    // date. Note that we return true also if event date is null or notification preference is null
-                    // for possible backward compatibility with old events.
-                    return notificationPreference.isNotificationEnabled()
-                        && (notificationPreference.getStartDate() == null || event.getDate() == null
-                        // after and before API are "strictly after" and "strictly before",
-                        // here we use the negative way to ensure we also accept "equals" date.
-                            || !event.getDate().before(notificationPreference.getStartDate()));
-                }
-            }
-            return allPreferences.isEmpty();
-        } catch (NotificationException e) {
-            this.logger.warn("Unable to retrieve the notifications preferences of [{}]: {}", user,
-                ExceptionUtils.getRootCauseMessage(e));
-        }
-
-        return false;
-    }
-
-    private boolean isTriggeredByAFollowedUser(DocumentReference user, Event event, NotificationFormat format)
+    private CompiledUserEventFilter getCompiledFilter(DocumentReference user) throws NotificationException
     {
-        try {
-            return notificationFilterPreferenceManager.getFilterPreferences(user).stream()
-                .anyMatch(fp -> isFilterCreatedBeforeEvent(event, fp) && isUserFilterPreference(fp, format)
-                    && matchUser(fp, event));
-        } catch (NotificationException e) {
-            return false;
-        }
-    }
+        CompiledUserEventFilter compiledFilter = this.compiledFilterCache.get(user);
 
-    /**
-     * Check that the filter preference started before the event has been sent.
-     *
-     * @param event the event to check
-     * @param filterPreference the preference to check
-     * @return {@code true} if the event date or the preference start date is null for backward compatibility, or if the
-     *         preference start date is before the event date.
-     */
-    private boolean isFilterCreatedBeforeEvent(Event event, NotificationFilterPreference filterPreference)
-    {
-        return event.getDate() == null || filterPreference.getStartingDate() == null
-        // after and before API are "strictly after" and "strictly before",
-        // here we use the negative way to ensure we also accept "equals" date.
-            || !event.getDate().before(filterPreference.getStartingDate());
-    }
+        if (compiledFilter == null) {
+            List<NotificationPreference> preferences;
+            try {
+                preferences = this.notificationPreferenceManager.getAllPreferences(user);
+            } catch (NotificationException e) {
+                this.logger.warn("Unable to retrieve the notifications preferences of [{}]: {}", user,
+                    ExceptionUtils.getRootCauseMessage(e));
 
-    private boolean isUserFilterPreference(NotificationFilterPreference filterPreference, NotificationFormat format)
-    {
-        return matchFilter(filterPreference) && matchFormat(filterPreference, format)
-            && matchFilterType(filterPreference, NotificationFilterType.INCLUSIVE) && matchAllEvents(filterPreference);
-    }
+                preferences = null;
+            }
 
-    private boolean matchUser(NotificationFilterPreference filterPreference, Event event)
-    {
-        return event.getUser() != null
-            && event.getUser().equals(this.referenceResolver.resolve(filterPreference.getUser()));
-    }
+            Collection<NotificationFilterPreference> filterPreferences =
+                this.notificationFilterPreferenceManager.getFilterPreferences(user);
 
-    private boolean matchFormat(NotificationFilterPreference filterPreference, NotificationFormat format)
-    {
-        return format == null || filterPreference.getNotificationFormats().contains(format);
-    }
+            List<NotificationFilter> filters = new ArrayList<>(this.notificationFilterManager.getAllFilters(user,
+                true, NotificationFilter.FilteringPhase.PRE_FILTERING));
+            filters.sort(null);
 
-    private boolean matchFilter(NotificationFilterPreference pref)
-    {
-        return pref.isEnabled() && EventUserFilter.FILTER_NAME.equals(pref.getFilterName());
-    }
+            compiledFilter =
+                new CompiledUserEventFilter(preferences, filterPreferences, filters, this.referenceResolver::resolve);
 
-    private boolean matchFilterType(NotificationFilterPreference pref, NotificationFilterType filterType)
-    {
-        return pref.getFilterType() == filterType;
-    }
+            // Don't remember a partial result
+            if (preferences != null) {
+                this.compiledFilterCache.put(user, compiledFilter);
+            }
+        }
 
-    private boolean matchAllEvents(NotificationFilterPreference filterPreference)
-    {
-        // When the list of event types concerned by the filter is empty, we consider that the filter concerns
-        // all events.
-        return filterPreference.getEventTypes().isEmpty();
+        return compiledFilter;
     }
 
-    private boolean isEventFiltered(List<NotificationFilter> filters, Event event, DocumentReference user,
-        NotificationFormat format) throws NotificationException
+    /**
+     * Forget the compiled notification preferences and filters associated with the passed entity.
+     * 
+     * @param reference the reference of the user whose preferences changed, or the reference of a wiki whose
+     *            preferences changed, {@code null} to forget everything
+     * @since 16.6.0RC1
+     */
+    public void invalidate(EntityReference reference)
     {
-        Collection<NotificationFilterPreference> filterPreferences =
-            notificationFilterPreferenceManager.getFilterPreferences(user);
-        for (NotificationFilter filter : filters) {
-            NotificationFilter.FilterPolicy policy = filter.filterEvent(event, user, filterPreferences, format);
-            switch (policy) {
-                case FILTER:
-                    return true;
-                case KEEP:
-                    return false;
-                default:
-                    // Do nothing
-            }
+        if (reference instanceof DocumentReference) {
+            this.compiledFilterCache.remove(reference);
+        } else {
+            // Wiki preferences can impact any user (global users receive notifications from all wikis)
+            this.compiledFilterCache.clear();
         }
-        return false;
     }
 }
@@ -0,0 +1,175 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.notifiers.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.eventstream.Event;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.notifications.NotificationFormat;
+import org.xwiki.notifications.filters.NotificationFilter;
+import org.xwiki.notifications.filters.NotificationFilterPreference;
+import org.xwiki.notifications.filters.NotificationFilterType;
+import org.xwiki.notifications.filters.internal.user.EventUserFilter;
+import org.xwiki.notifications.preferences.NotificationPreference;
+import org.xwiki.notifications.preferences.NotificationPreferenceProperty;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link CompiledUserEventFilter}.
+ * 
+ * @version $Id$
+ */
+class CompiledUserEventFilterTest
+{
+    private static final DocumentReference USER = new DocumentReference("xwiki", "XWiki", "User");
+
+    private static final DocumentReference FOLLOWED_USER = new DocumentReference("xwiki", "XWiki", "Followed");
+
+    private NotificationPreference mockPreference(NotificationFormat format, String eventType, boolean enabled)
+    {
+        NotificationPreference preference = mock(NotificationPreference.class);
+        when(preference.getFormat()).thenReturn(format);
+        when(preference.getProperties())
+            .thenReturn(Collections.singletonMap(NotificationPreferenceProperty.EVENT_TYPE, eventType));
+        when(preference.isNotificationEnabled()).thenReturn(enabled);
+
+        return preference;
+    }
+
+    private NotificationFilterPreference mockFollowedUser(Date startingDate, NotificationFormat... formats)
+    {
+        NotificationFilterPreference filterPreference = mock(NotificationFilterPreference.class);
+        when(filterPreference.isEnabled()).thenReturn(true);
+        when(filterPreference.getFilterName()).thenReturn(EventUserFilter.FILTER_NAME);
+        when(filterPreference.getFilterType()).thenReturn(NotificationFilterType.INCLUSIVE);
+        when(filterPreference.getEventTypes()).thenReturn(Collections.emptySet());
+        when(filterPreference.getNotificationFormats()).thenReturn(EnumSet.copyOf(Arrays.asList(formats)));
+        when(filterPreference.getStartingDate()).thenReturn(startingDate);
+        when(filterPreference.getUser()).thenReturn("xwiki:XWiki.Followed");
+
+        return filterPreference;
+    }
+
+    private Event mockEvent(String type, DocumentReference user, Date date)
+    {
+        Event event = mock(Event.class);
+        when(event.getType()).thenReturn(type);
+        when(event.getUser()).thenReturn(user);
+        when(event.getDate()).thenReturn(date);
+
+        return event;
+    }
+
+    @Test
+    void hasCorrespondingNotificationPreference()
+    {
+        CompiledUserEventFilter filter = new CompiledUserEventFilter(
+            Arrays.asList(mockPreference(NotificationFormat.ALERT, "create", true),
+                mockPreference(NotificationFormat.EMAIL, "create", false),
+                mockPreference(NotificationFormat.ALERT, "delete", false)),
+            Collections.emptyList(), Collections.emptyList(), user -> null);
+
+        Event event = mockEvent("create", null, new Date(42));
+        assertTrue(filter.hasCorrespondingNotificationPreference(event, NotificationFormat.ALERT));
+        assertFalse(filter.hasCorrespondingNotificationPreference(event, NotificationFormat.EMAIL));
+
+        event = mockEvent("delete", null, new Date(42));
+        assertFalse(filter.hasCorrespondingNotificationPreference(event, NotificationFormat.ALERT));
+
+        event = mockEvent("update", null, new Date(42));
+        assertFalse(filter.hasCorrespondingNotificationPreference(event, NotificationFormat.ALERT));
+    }
+
+    @Test
+    void hasCorrespondingNotificationPreferenceWhenNoPreference()
+    {
+        Event event = mockEvent("create", null, null);
+
+        CompiledUserEventFilter filter = new CompiledUserEventFilter(Collections.emptyList(),
+            Collections.emptyList(), Collections.emptyList(), user -> null);
+        assertTrue(filter.hasCorrespondingNotificationPreference(event, NotificationFormat.ALERT));
+
+        // Preferences which could not be retrieved
+        filter = new CompiledUserEventFilter(null, Collections.emptyList(), Collections.emptyList(), user -> null);
+        assertFalse(filter.hasCorrespondingNotificationPreference(event, NotificationFormat.ALERT));
+    }
+
+    @Test
+    void isTriggeredByAFollowedUser()
+    {
+        CompiledUserEventFilter filter = new CompiledUserEventFilter(Collections.emptyList(),
+            Arrays.asList(mockFollowedUser(new Date(50), NotificationFormat.ALERT),
+                mockFollowedUser(new Date(40), NotificationFormat.ALERT),
+                mockFollowedUser(null, NotificationFormat.EMAIL)),
+            Collections.emptyList(), user -> FOLLOWED_USER);
+
+        // The oldest starting date is used
+        assertTrue(filter.isTriggeredByAFollowedUser(mockEvent("create", FOLLOWED_USER, new Date(40)),
+            NotificationFormat.ALERT));
+        assertFalse(filter.isTriggeredByAFollowedUser(mockEvent("create", FOLLOWED_USER, new Date(39)),
+            NotificationFormat.ALERT));
+
+        // No starting date means always
+        assertTrue(filter.isTriggeredByAFollowedUser(mockEvent("create", FOLLOWED_USER, new Date(1)),
+            NotificationFormat.EMAIL));
+        assertTrue(filter.isTriggeredByAFollowedUser(mockEvent("create", FOLLOWED_USER, new Date(1)), null));
+
+        assertFalse(filter.isTriggeredByAFollowedUser(mockEvent("create", USER, new Date(42)),
+            NotificationFormat.ALERT));
+        assertFalse(filter.isTriggeredByAFollowedUser(mockEvent("create", null, new Date(42)),
+            NotificationFormat.ALERT));
+    }
+
+    @Test
+    void isEventFiltered()
+    {
+        NotificationFilter filter1 = mock(NotificationFilter.class);
+        NotificationFilter filter2 = mock(NotificationFilter.class);
+        CompiledUserEventFilter filter = new CompiledUserEventFilter(Collections.emptyList(),
+            Collections.emptyList(), Arrays.asList(filter1, filter2), user -> null);
+
+        Event event = mockEvent("create", null, null);
+
+        when(filter1.filterEvent(same(event), same(USER), any(), same(NotificationFormat.ALERT)))
+            .thenReturn(NotificationFilter.FilterPolicy.NO_EFFECT);
+        when(filter2.filterEvent(same(event), same(USER), any(), same(NotificationFormat.ALERT)))
+            .thenReturn(NotificationFilter.FilterPolicy.NO_EFFECT);
+        assertFalse(filter.isEventFiltered(event, USER, NotificationFormat.ALERT));
+
+        when(filter2.filterEvent(same(event), same(USER), any(), same(NotificationFormat.ALERT)))
+            .thenReturn(NotificationFilter.FilterPolicy.FILTER);
+        assertTrue(filter.isEventFiltered(event, USER, NotificationFormat.ALERT));
+
+        when(filter1.filterEvent(same(event), same(USER), any(), same(NotificationFormat.ALERT)))
+            .thenReturn(NotificationFilter.FilterPolicy.KEEP);
+        assertFalse(filter.isEventFiltered(event, USER, NotificationFormat.ALERT));
+    }
+}
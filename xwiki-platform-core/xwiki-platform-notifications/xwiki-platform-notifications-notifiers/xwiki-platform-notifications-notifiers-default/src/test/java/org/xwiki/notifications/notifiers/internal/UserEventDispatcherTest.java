@@ -21,6 +21,7 @@
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
@@ -379,4 +380,55 @@ void flush() throws Exception
         verify(this.ecm, times(3)).popContext();
 
     }
+
+    @Test
+    void flushWithBulkPrefilteredEntities() throws Exception
+    {
+        EventSearchResult result1 = mock(EventSearchResult.class, "result1");
+        EventSearchResult result2 = mock(EventSearchResult.class, "result2");
+        when(this.events.search(query)).thenReturn(result1).thenReturn(result2);
+
+        String eventId = "event";
+        Event event = mock(Event.class, eventId);
+        when(event.getId()).thenReturn(eventId);
+        when(event.getType()).thenReturn(SUPPORTED_TYPE1);
+        WikiReference mainWiki = new WikiReference("xwiki");
+        when(event.getWiki()).thenReturn(mainWiki);
+        when(this.wikiManager.isMainWiki(mainWiki.getName())).thenReturn(true);
+
+        when(result1.stream()).thenReturn(Stream.of(event));
+        when(result1.getSize()).thenReturn(1L);
+        when(result2.getSize()).thenReturn(0L);
+
+        DocumentReference userFoo = mock(DocumentReference.class, "userFoo");
+        DocumentReference userBar = mock(DocumentReference.class, "userBar");
+        when(this.userCache.getUsers(mainWiki, true)).thenReturn(List.of(userFoo, userBar));
+        when(this.entityReferenceSerializer.serialize(userFoo)).thenReturn("userFoo");
+        when(this.entityReferenceSerializer.serialize(userBar)).thenReturn("userBar");
+
+        when(this.notificationConfiguration.areEmailsEnabled()).thenReturn(true);
+
+        // userBar already has a status and userFoo already has a mail entry
+        when(this.events.getEventStatusEntityIds(event)).thenReturn(Optional.of(Set.of("userBar")));
+        when(this.events.getMailEntityIds(event)).thenReturn(Optional.of(Set.of("userFoo")));
+
+        when(this.userEventManager.isListening(eq(event), any(), any())).thenReturn(true);
+
+        CompletableFuture future = mock(CompletableFuture.class, "future");
+        when(this.events.prefilterEvent(event)).thenReturn(future);
+
+        this.dispatcher.flush();
+
+        verify(this.events).saveEventStatus(new DefaultEventStatus(event, "userFoo", false));
+        verify(this.events, never()).saveEventStatus(new DefaultEventStatus(event, "userBar", false));
+        verify(this.events).saveMailEntityEvent(new DefaultEntityEvent(event, "userBar"));
+        verify(this.events, never()).saveMailEntityEvent(new DefaultEntityEvent(event, "userFoo"));
+        verify(this.userEventManager, never()).isListening(event, userBar, NotificationFormat.ALERT);
+        verify(this.userEventManager, never()).isListening(event, userFoo, NotificationFormat.EMAIL);
+
+        // The store should not be asked for each user
+        verify(this.events, times(2)).search(any());
+        verify(this.events).prefilterEvent(event);
+        verify(future).join();
+    }
 }
\ No newline at end of file
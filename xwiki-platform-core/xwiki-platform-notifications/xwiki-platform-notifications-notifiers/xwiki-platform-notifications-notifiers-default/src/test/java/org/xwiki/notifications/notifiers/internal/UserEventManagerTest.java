@@ -22,11 +22,14 @@
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.slf4j.Logger;
 import org.xwiki.bridge.DocumentAccessBridge;
 import org.xwiki.bridge.DocumentModelBridge;
@@ -34,7 +37,9 @@
 import org.xwiki.model.internal.reference.EntityReferenceFactory;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
 import org.xwiki.notifications.NotificationFormat;
 import org.xwiki.notifications.filters.NotificationFilterManager;
 import org.xwiki.notifications.filters.NotificationFilterPreference;
@@ -44,8 +49,10 @@
 import org.xwiki.notifications.preferences.NotificationPreference;
 import org.xwiki.notifications.preferences.NotificationPreferenceManager;
 import org.xwiki.notifications.preferences.NotificationPreferenceProperty;
+import org.xwiki.notifications.preferences.internal.cache.UnboundedEntityCacheManager;
 import org.xwiki.security.authorization.AuthorizationManager;
 import org.xwiki.security.authorization.Right;
+import org.xwiki.test.annotation.BeforeComponent;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
@@ -53,7 +60,11 @@
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -95,6 +106,22 @@
     @MockComponent
     private EntityReferenceFactory entityReferenceFactory;
 
+    @MockComponent
+    private UnboundedEntityCacheManager cacheManager;
+
+    /**
+     * The tests modify the preferences between two calls so the compiled filters should not be remembered.
+     */
+    private Map<EntityReference, CompiledUserEventFilter> compiledFilterCache = mock(Map.class);
+
+    @BeforeComponent
+    void beforeComponent()
+    {
+        when(this.cacheManager.createCache(anyString(), anyBoolean())).then(invocationOnMock -> new HashMap<>());
+        when(this.cacheManager.<CompiledUserEventFilter>createCache(UserEventManager.COMPILEDFILTERCACHE_NAME, true))
+            .thenReturn(this.compiledFilterCache);
+    }
+
     @BeforeEach
     void beforeEach()
     {
@@ -345,4 +372,53 @@ void isListeningFollowedUser() throws Exception
         verify(this.entityReferenceFactory).getReference(userReference);
         verify(this.documentAccessBridge).getDocumentInstance(userReference);
     }
+
+    @Test
+    void isListeningReusesCompiledFilter() throws Exception
+    {
+        Event event = mock(Event.class);
+        DocumentReference userReference = new DocumentReference("xwiki", "User", "Foo");
+        NotificationFormat format = NotificationFormat.ALERT;
+
+        DocumentModelBridge userDoc = mock(DocumentModelBridge.class);
+        when(this.documentAccessBridge.getDocumentInstance(userReference)).thenReturn(userDoc);
+
+        NotificationPreference preference = mock(NotificationPreference.class);
+        when(preference.getFormat()).thenReturn(NotificationFormat.ALERT);
+        when(preference.getProperties())
+            .thenReturn(Collections.singletonMap(NotificationPreferenceProperty.EVENT_TYPE, "mention"));
+        when(preference.isNotificationEnabled()).thenReturn(true);
+        when(this.notificationPreferenceManager.getAllPreferences(userReference))
+            .thenReturn(Collections.singletonList(preference));
+        when(event.getType()).thenReturn("mention");
+
+        assertTrue(this.userEventManager.isListening(event, userReference, format));
+
+        ArgumentCaptor<CompiledUserEventFilter> compiledFilterCaptor =
+            ArgumentCaptor.forClass(CompiledUserEventFilter.class);
+        verify(this.compiledFilterCache).put(same(userReference), compiledFilterCaptor.capture());
+
+        // The compiled filter is used as long as it's in the cache
+        when(this.compiledFilterCache.get(userReference)).thenReturn(compiledFilterCaptor.getValue());
+        assertTrue(this.userEventManager.isListening(event, userReference, format));
+        when(event.getType()).thenReturn("other");
+        assertFalse(this.userEventManager.isListening(event, userReference, format));
+
+        verify(this.notificationPreferenceManager, times(1)).getAllPreferences(userReference);
+        verify(this.notificationFilterPreferenceManager, times(1)).getFilterPreferences(userReference);
+    }
+
+    @Test
+    void invalidate()
+    {
+        DocumentReference userReference = new DocumentReference("xwiki", "User", "Foo");
+
+        this.userEventManager.invalidate(userReference);
+
+        verify(this.compiledFilterCache).remove(userReference);
+
+        this.userEventManager.invalidate(new WikiReference("wiki"));
+
+        verify(this.compiledFilterCache).clear();
+    }
 }
@@ -22,6 +22,7 @@
 import java.util.List;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
 
 /**
  * Provide configuration for remote observation manager.
@@ -56,4 +57,38 @@ default String getId()
     {
         return null;
     }
+
+    /**
+     * @return {@code true} if the network adapter packs the events in batched messages, {@code false} to send each
+     *     event in its own message like the versions before 16.6.0RC1. The batched messages can only be read by cluster
+     *     members which support them, so they should only be enabled once all the members have been upgraded.
+     * @since 16.6.0RC1
+     */
+    @Unstable
+    default boolean isBatchEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * @return the maximum time in milliseconds the network adapter waits for more events before sending a batch of
+     *     events, 0 to send the events as soon as possible (the events produced while a batch is being sent are still
+     *     packed in the next batch)
+     * @since 16.6.0RC1
+     */
+    @Unstable
+    default long getBatchWindow()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the maximum number of events the network adapter sends in a single message
+     * @since 16.6.0RC1
+     */
+    @Unstable
+    default int getBatchMaxEvents()
+    {
+        return 100;
+    }
 }
@@ -89,6 +89,24 @@ public String getId()
         return this.id;
     }
 
+    @Override
+    public boolean isBatchEnabled()
+    {
+        return this.configurationSource.getProperty("observation.remote.batch.enabled", false);
+    }
+
+    @Override
+    public long getBatchWindow()
+    {
+        return this.configurationSource.getProperty("observation.remote.batch.window", 0L);
+    }
+
+    @Override
+    public int getBatchMaxEvents()
+    {
+        return this.configurationSource.getProperty("observation.remote.batch.maxEvents", 100);
+    }
+
     @Override
     public void initialize() throws InitializationException
     {
@@ -19,6 +19,8 @@
  */
 package org.xwiki.observation.remote.internal.jgroups;
 
+import java.util.List;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -59,6 +61,12 @@ public class DefaultJGroupsReceiver extends ReceiverAdapter implements JGroupsRe
     @Inject
     private ClassLoaderManager classLoaderManager;
 
+    @Inject
+    private RemoteEventDataCodec codec;
+
+    @Inject
+    private JMXRemoteEvents statistics;
+
     /**
      * The logger to log.
      */
@@ -85,12 +93,38 @@ public RemoteObservationManager getRemoteObservationManager()
     public void receive(Message msg)
     {
         if (msg instanceof BytesMessage) {
-            RemoteEventData remoteEvent = (RemoteEventData) ((BytesMessage) msg)
-                .getObject(this.classLoaderManager.getURLClassLoader(null, false));
+            ClassLoader classLoader = this.classLoaderManager.getURLClassLoader(null, false);
+
+            if (this.codec.isEncoded(msg.getArray(), msg.getOffset(), msg.getLength())) {
+                List<RemoteEventData> remoteEvents;
+                try {
+                    remoteEvents = this.codec.decode(msg.getArray(), msg.getOffset(), msg.getLength(), classLoader);
+                } catch (Exception e) {
+                    this.logger.error("Failed to decode JGroups remote events message from [{}]", msg.getSrc(), e);
+
+                    return;
+                }
 
-            this.logger.debug("Received JGroups remote event [{}]", remoteEvent);
+                this.statistics.onReceived(remoteEvents.size(), msg.getLength());
 
-            getRemoteObservationManager().notify(remoteEvent);
+                for (RemoteEventData remoteEvent : remoteEvents) {
+                    notify(remoteEvent);
+                }
+            } else {
+                // Message sent by an instance which does not pack events
+                RemoteEventData remoteEvent = (RemoteEventData) ((BytesMessage) msg).getObject(classLoader);
+
+                this.statistics.onReceived(1, msg.getLength());
+
+                notify(remoteEvent);
+            }
         }
     }
+
+    private void notify(RemoteEventData remoteEvent)
+    {
+        this.logger.debug("Received JGroups remote event [{}]", remoteEvent);
+
+        getRemoteObservationManager().notify(remoteEvent);
+    }
 }
@@ -23,6 +23,7 @@
 import java.io.InputStream;
 import java.lang.management.ManagementFactory;
 import java.text.MessageFormat;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -30,6 +31,8 @@
 import javax.inject.Named;
 import javax.inject.Singleton;
 import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 
 import org.jgroups.BytesMessage;
 import org.jgroups.Global;
@@ -47,6 +50,7 @@
 import org.xwiki.observation.remote.NetworkAdapter;
 import org.xwiki.observation.remote.RemoteEventData;
 import org.xwiki.observation.remote.RemoteEventException;
+import org.xwiki.observation.remote.RemoteObservationManagerConfiguration;
 import org.xwiki.observation.remote.jgroups.JGroupsReceiver;
 
 /**
@@ -65,6 +69,8 @@ public class JGroupsNetworkAdapter implements NetworkAdapter
      */
     public static final String CONFIGURATION_PATH = "observation/remote/jgroups/";
 
+    private static final String STATISTICS_NAME = "org.xwiki:type=Observation,name=RemoteEvents";
+
     /**
      * Used to lookup the receiver corresponding to the channel identifier.
      */
@@ -82,25 +88,91 @@ public class JGroupsNetworkAdapter implements NetworkAdapter
      */
     private Map<String, JChannel> channels = new ConcurrentHashMap<>();
 
+    /**
+     * Used to pack several events in a single message.
+     */
+    @Inject
+    private RemoteEventDataCodec codec;
+
+    @Inject
+    private RemoteObservationManagerConfiguration configuration;
+
+    @Inject
+    private JMXRemoteEvents statistics;
+
+    private RemoteEventBatcher batcher;
+
     @Override
     public void send(RemoteEventData remoteEvent)
     {
-        this.logger.debug("Send JGroups remote event [{}]", remoteEvent.toString());
+        this.logger.debug("Send JGroups remote event [{}]", remoteEvent);
+
+        if (this.configuration.isBatchEnabled()) {
+            // The event is actually sent from a dedicated thread, along with the other events waiting to be sent
+            getBatcher().add(remoteEvent);
+        } else {
+            // Cluster members older than 16.6.0RC1 only understand serialized events sent one by one
+            Message message = new BytesMessage(null, remoteEvent);
+
+            sendMessage(message, List.of(remoteEvent), message.getLength());
+        }
+    }
+
+    private synchronized RemoteEventBatcher getBatcher()
+    {
+        if (this.batcher == null) {
+            this.batcher = new RemoteEventBatcher(this::sendBatch, this.configuration.getBatchWindow(),
+                this.configuration.getBatchMaxEvents());
+            this.statistics.setQueueSize(this.batcher::size);
+        }
+
+        return this.batcher;
+    }
+
+    private void sendBatch(List<RemoteEventData> remoteEvents)
+    {
+        byte[] bytes;
+        try {
+            bytes = this.codec.encode(remoteEvents);
+        } catch (Exception e) {
+            if (remoteEvents.size() > 1) {
+                // Don't lose the whole batch because of a single event
+                remoteEvents.forEach(remoteEvent -> sendBatch(List.of(remoteEvent)));
+            } else {
+                this.logger.error("Failed to encode the remote event [{}]", remoteEvents.get(0), e);
+            }
+
+            return;
+        }
 
         // Send the message to the whole group
-        Message message = new BytesMessage(null,  remoteEvent);
+        sendMessage(new BytesMessage(null, bytes), remoteEvents, bytes.length);
+    }
 
+    private void sendMessage(Message message, List<RemoteEventData> remoteEvents, int length)
+    {
         // Send message to JGroups channels
         for (Map.Entry<String, JChannel> entry : this.channels.entrySet()) {
             try {
                 entry.getValue().send(message);
+
+                this.statistics.onSent(remoteEvents.size(), length);
             } catch (Exception e) {
-                this.logger.error("Failed to send message [{}] to the channel [{}]", remoteEvent.toString(),
-                    entry.getKey(), e);
+                this.logger.error("Failed to send messages [{}] to the channel [{}]", remoteEvents, entry.getKey(),
+                    e);
             }
         }
     }
 
+    private synchronized void stopBatcher()
+    {
+        if (this.batcher != null) {
+            // Make sure the events waiting to be sent are not lost
+            this.batcher.stop();
+            this.batcher = null;
+        }
+    }
+
     @Override
     public void startChannel(String channelId) throws RemoteEventException
     {
@@ -122,6 +194,9 @@ public void startChannel(String channelId) throws RemoteEventException
         try {
             MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
             JmxConfigurator.registerChannel(channel, mbs, channel.getClusterName());
+            if (!mbs.isRegistered(getStatisticsName())) {
+                mbs.registerMBean(this.statistics, getStatisticsName());
+            }
         } catch (Exception e) {
             this.logger.warn("Failed to register channel [" + channelId + "] against the JMX Server", e);
         }
@@ -138,6 +213,11 @@ public void stopChannel(String channelId) throws RemoteEventException
             throw new RemoteEventException(MessageFormat.format("Channel [{0}] is not started", channelId));
         }
 
+        if (this.channels.size() == 1) {
+            // Send the pending events before the last channel is closed
+            stopBatcher();
+        }
+
         channel.close();
 
         this.channels.remove(channelId);
@@ -153,6 +233,11 @@ public void stopChannel(String channelId) throws RemoteEventException
         this.logger.info("Channel [{}] stopped", channelId);
     }
 
+    private ObjectName getStatisticsName() throws MalformedObjectNameException
+    {
+        return new ObjectName(STATISTICS_NAME);
+    }
+
     /**
      * Create a new channel.
      *
@@ -226,12 +311,24 @@ private InputStream getChannelConfiguration(String channelId) throws IOException
     @Override
     public void stopAllChannels() throws RemoteEventException
     {
+        // Send the pending events before closing the channels
+        stopBatcher();
+
         for (Map.Entry<String, JChannel> channelEntry : this.channels.entrySet()) {
             channelEntry.getValue().close();
         }
 
         this.channels.clear();
 
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            if (mbs.isRegistered(getStatisticsName())) {
+                mbs.unregisterMBean(getStatisticsName());
+            }
+        } catch (Exception e) {
+            this.logger.warn("Failed to unregister the remote events statistics from the JMX Server", e);
+        }
+
         this.logger.info("All channels stopped");
     }
 }
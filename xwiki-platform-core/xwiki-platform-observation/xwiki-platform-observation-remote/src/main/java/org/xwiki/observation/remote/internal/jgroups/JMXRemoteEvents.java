@@ -0,0 +1,172 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal.jgroups;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+
+/**
+ * Collect the statistics exposed by {@link JMXRemoteEventsMBean}, shared by the network adapter (for the sent
+ * messages) and the receivers (for the received messages).
+ *
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+@Component(roles = JMXRemoteEvents.class)
+@Singleton
+public class JMXRemoteEvents implements JMXRemoteEventsMBean
+{
+    private static final double NANOS_PER_SECOND = 1_000_000_000D;
+
+    private final LongAdder sentMessages = new LongAdder();
+
+    private final LongAdder sentEvents = new LongAdder();
+
+    private final LongAdder sentBytes = new LongAdder();
+
+    private final LongAdder receivedMessages = new LongAdder();
+
+    private final LongAdder receivedEvents = new LongAdder();
+
+    private final LongAdder receivedBytes = new LongAdder();
+
+    private volatile IntSupplier queueSize = () -> 0;
+
+    private volatile long start = System.nanoTime();
+
+    /**
+     * @param queueSize provide the number of events waiting to be sent
+     */
+    public void setQueueSize(IntSupplier queueSize)
+    {
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * @param events the number of events contained in the sent message
+     * @param bytes the size of the sent message
+     */
+    public void onSent(int events, int bytes)
+    {
+        this.sentMessages.increment();
+        this.sentEvents.add(events);
+        this.sentBytes.add(bytes);
+    }
+
+    /**
+     * @param events the number of events contained in the received message
+     * @param bytes the size of the received message
+     */
+    public void onReceived(int events, int bytes)
+    {
+        this.receivedMessages.increment();
+        this.receivedEvents.add(events);
+        this.receivedBytes.add(bytes);
+    }
+
+    @Override
+    public long getSentMessages()
+    {
+        return this.sentMessages.sum();
+    }
+
+    @Override
+    public long getSentEvents()
+    {
+        return this.sentEvents.sum();
+    }
+
+    @Override
+    public long getSentBytes()
+    {
+        return this.sentBytes.sum();
+    }
+
+    @Override
+    public double getSentMessagesPerSecond()
+    {
+        return perSecond(this.sentMessages);
+    }
+
+    @Override
+    public double getSentBytesPerSecond()
+    {
+        return perSecond(this.sentBytes);
+    }
+
+    @Override
+    public long getReceivedMessages()
+    {
+        return this.receivedMessages.sum();
+    }
+
+    @Override
+    public long getReceivedEvents()
+    {
+        return this.receivedEvents.sum();
+    }
+
+    @Override
+    public long getReceivedBytes()
+    {
+        return this.receivedBytes.sum();
+    }
+
+    @Override
+    public double getReceivedMessagesPerSecond()
+    {
+        return perSecond(this.receivedMessages);
+    }
+
+    @Override
+    public double getReceivedBytesPerSecond()
+    {
+        return perSecond(this.receivedBytes);
+    }
+
+    @Override
+    public int getQueueSize()
+    {
+        return this.queueSize.getAsInt();
+    }
+
+    @Override
+    public void reset()
+    {
+        this.sentMessages.reset();
+        this.sentEvents.reset();
+        this.sentBytes.reset();
+        this.receivedMessages.reset();
+        this.receivedEvents.reset();
+        this.receivedBytes.reset();
+        this.start = System.nanoTime();
+    }
+
+    private double perSecond(LongAdder counter)
+    {
+        double seconds = (System.nanoTime() - this.start) / NANOS_PER_SECOND;
+
+        return seconds > 0 ? counter.sum() / seconds : 0;
+    }
+}
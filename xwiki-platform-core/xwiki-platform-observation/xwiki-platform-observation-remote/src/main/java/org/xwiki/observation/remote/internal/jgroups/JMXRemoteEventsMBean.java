@@ -0,0 +1,89 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal.jgroups;
+
+/**
+ * Statistics about the remote events exchanged through JGroups.
+ *
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+public interface JMXRemoteEventsMBean
+{
+    /**
+     * @return the number of messages sent (to all the channels)
+     */
+    long getSentMessages();
+
+    /**
+     * @return the number of events sent (several events can be sent in the same message)
+     */
+    long getSentEvents();
+
+    /**
+     * @return the number of bytes sent (to all the channels)
+     */
+    long getSentBytes();
+
+    /**
+     * @return the number of messages sent per second since the statistics were last reset
+     */
+    double getSentMessagesPerSecond();
+
+    /**
+     * @return the number of bytes sent per second since the statistics were last reset
+     */
+    double getSentBytesPerSecond();
+
+    /**
+     * @return the number of messages received
+     */
+    long getReceivedMessages();
+
+    /**
+     * @return the number of events received
+     */
+    long getReceivedEvents();
+
+    /**
+     * @return the number of bytes received
+     */
+    long getReceivedBytes();
+
+    /**
+     * @return the number of messages received per second since the statistics were last reset
+     */
+    double getReceivedMessagesPerSecond();
+
+    /**
+     * @return the number of bytes received per second since the statistics were last reset
+     */
+    double getReceivedBytesPerSecond();
+
+    /**
+     * @return the number of events waiting to be sent
+     */
+    int getQueueSize();
+
+    /**
+     * Reset the statistics.
+     */
+    void reset();
+}
@@ -0,0 +1,149 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal.jgroups;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.xwiki.observation.remote.RemoteEventData;
+
+/**
+ * Send the remote events from a dedicated thread, packing the events which are waiting to be sent into a single batch.
+ * Under a low load each event is sent as soon as possible (unless a batching window is configured), but when many
+ * events are produced (e.g. during an import), the events produced while the previous batch was being sent are sent
+ * together.
+ *
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+public class RemoteEventBatcher
+{
+    private static final long STOP_TIMEOUT = 10;
+
+    private final BlockingQueue<RemoteEventData> queue = new LinkedBlockingQueue<>();
+
+    private final Consumer<List<RemoteEventData>> sender;
+
+    private final long windowNanos;
+
+    private final int maxEvents;
+
+    private Thread thread;
+
+    /**
+     * @param sender the actual sender of the batches
+     * @param window the maximum time in milliseconds to wait for more events before sending a batch
+     * @param maxEvents the maximum number of events in a batch
+     */
+    public RemoteEventBatcher(Consumer<List<RemoteEventData>> sender, long window, int maxEvents)
+    {
+        this.sender = sender;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, window));
+        this.maxEvents = Math.max(1, maxEvents);
+    }
+
+    /**
+     * @param event the event to send
+     */
+    public void add(RemoteEventData event)
+    {
+        start();
+
+        this.queue.add(event);
+    }
+
+    /**
+     * @return the number of events waiting to be sent
+     */
+    public int size()
+    {
+        return this.queue.size();
+    }
+
+    private synchronized void start()
+    {
+        if (this.thread == null) {
+            this.thread = new Thread(this::run, "XWiki remote events sender");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+    }
+
+    /**
+     * Stop the sending thread, after sending the events waiting to be sent.
+     */
+    public synchronized void stop()
+    {
+        if (this.thread != null) {
+            this.thread.interrupt();
+            try {
+                this.thread.join(TimeUnit.SECONDS.toMillis(STOP_TIMEOUT));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.thread = null;
+        }
+
+        // Send what's left
+        List<RemoteEventData> batch = new ArrayList<>();
+        while (this.queue.drainTo(batch, this.maxEvents) > 0) {
+            this.sender.accept(batch);
+            batch = new ArrayList<>();
+        }
+    }
+
+    private void run()
+    {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<RemoteEventData> batch = new ArrayList<>();
+            try {
+                batch.add(this.queue.take());
+
+                if (this.windowNanos > 0) {
+                    waitForMoreEvents(batch);
+                }
+            } catch (InterruptedException e) {
+                // Send the current batch before stopping, the remaining events are sent by #stop()
+                Thread.currentThread().interrupt();
+            }
+            this.queue.drainTo(batch, this.maxEvents - batch.size());
+
+            if (!batch.isEmpty()) {
+                this.sender.accept(batch);
+            }
+        }
+    }
+
+    private void waitForMoreEvents(List<RemoteEventData> batch) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + this.windowNanos;
+        while (batch.size() < this.maxEvents) {
+            RemoteEventData event = this.queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (event == null) {
+                break;
+            }
+            batch.add(event);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal.jgroups;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.observation.remote.RemoteEventData;
+
+/**
+ * Encode several {@link RemoteEventData} in a single compact binary message.
+ * <p>
+ * The values most commonly found in the remote events produced by the standard converters (strings, numbers, booleans,
+ * and maps or lists of those, e.g. the serialized document and context of document and wiki events) are written with a
+ * small type tag, and each distinct string is written only once per message. Any other value is written using Java
+ * serialization, but since all the events of a message share the same object stream, the class descriptors of events
+ * of the same type are also written only once.
+ *
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+@Component(roles = RemoteEventDataCodec.class)
+@Singleton
+public class RemoteEventDataCodec
+{
+    /**
+     * Marker written at the beginning of each message, to distinguish it from a message containing a single Java
+     * serialized {@link RemoteEventData} (sent by older cluster members).
+     */
+    private static final byte[] MAGIC = { 'X', 'W', 'E', 'V' };
+
+    private static final byte VERSION = 1;
+
+    private static final byte TAG_NULL = 0;
+
+    private static final byte TAG_STRING = 1;
+
+    private static final byte TAG_STRING_REFERENCE = 2;
+
+    private static final byte TAG_TRUE = 3;
+
+    private static final byte TAG_FALSE = 4;
+
+    private static final byte TAG_INTEGER = 5;
+
+    private static final byte TAG_LONG = 6;
+
+    private static final byte TAG_MAP = 7;
+
+    private static final byte TAG_LIST = 8;
+
+    private static final byte TAG_OBJECT = 9;
+
+    /**
+     * The maximum length of a string written using {@link ObjectOutputStream#writeUTF(String)} (which is limited to
+     * 65535 bytes once encoded).
+     */
+    private static final int MAX_UTF_LENGTH = 65535 / 3;
+
+    private static final class Encoder
+    {
+        private final ObjectOutputStream output;
+
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        Encoder(ObjectOutputStream output)
+        {
+            this.output = output;
+        }
+
+        void write(Object value) throws IOException
+        {
+            if (value == null) {
+                this.output.writeByte(TAG_NULL);
+            } else if (value instanceof String && ((String) value).length() <= MAX_UTF_LENGTH) {
+                writeString((String) value);
+            } else if (value instanceof Boolean) {
+                this.output.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+            } else if (value instanceof Integer) {
+                this.output.writeByte(TAG_INTEGER);
+                this.output.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                this.output.writeByte(TAG_LONG);
+                this.output.writeLong((Long) value);
+            } else if (value.getClass() == HashMap.class) {
+                writeMap((Map<?, ?>) value);
+            } else if (value.getClass() == ArrayList.class) {
+                writeList((List<?>) value);
+            } else {
+                this.output.writeByte(TAG_OBJECT);
+                this.output.writeObject(value);
+            }
+        }
+
+        private void writeString(String value) throws IOException
+        {
+            Integer index = this.strings.get(value);
+            if (index != null) {
+                this.output.writeByte(TAG_STRING_REFERENCE);
+                this.output.writeInt(index);
+            } else {
+                this.strings.put(value, this.strings.size());
+                this.output.writeByte(TAG_STRING);
+                this.output.writeUTF(value);
+            }
+        }
+
+        private void writeMap(Map<?, ?> map) throws IOException
+        {
+            this.output.writeByte(TAG_MAP);
+            this.output.writeInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                write(entry.getKey());
+                write(entry.getValue());
+            }
+        }
+
+        private void writeList(List<?> list) throws IOException
+        {
+            this.output.writeByte(TAG_LIST);
+            this.output.writeInt(list.size());
+            for (Object element : list) {
+                write(element);
+            }
+        }
+    }
+
+    private static final class Decoder
+    {
+        private final ObjectInputStream input;
+
+        private final List<String> strings = new ArrayList<>();
+
+        Decoder(ObjectInputStream input)
+        {
+            this.input = input;
+        }
+
+        Object read() throws IOException, ClassNotFoundException
+        {
+            byte tag = this.input.readByte();
+            switch (tag) {
+                case TAG_NULL:
+                    return null;
+                case TAG_STRING:
+                    String value = this.input.readUTF();
+                    this.strings.add(value);
+                    return value;
+                case TAG_STRING_REFERENCE:
+                    return this.strings.get(this.input.readInt());
+                case TAG_TRUE:
+                    return Boolean.TRUE;
+                case TAG_FALSE:
+                    return Boolean.FALSE;
+                case TAG_INTEGER:
+                    return this.input.readInt();
+                case TAG_LONG:
+                    return this.input.readLong();
+                case TAG_MAP:
+                    return readMap();
+                case TAG_LIST:
+                    return readList();
+                case TAG_OBJECT:
+                    return this.input.readObject();
+                default:
+                    throw new IOException("Unknown value type [" + tag + "]");
+            }
+        }
+
+        private HashMap<Object, Object> readMap() throws IOException, ClassNotFoundException
+        {
+            int size = this.input.readInt();
+            HashMap<Object, Object> map = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                Object key = read();
+                map.put(key, read());
+            }
+
+            return map;
+        }
+
+        private ArrayList<Object> readList() throws IOException, ClassNotFoundException
+        {
+            int size = this.input.readInt();
+            ArrayList<Object> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(read());
+            }
+
+            return list;
+        }
+    }
+
+    /**
+     * Resolve the classes of the serialized values using the passed class loader (which knows about the classes of
+     * the installed extensions).
+     */
+    private static final class ClassLoaderObjectInputStream extends ObjectInputStream
+    {
+        private final ClassLoader classLoader;
+
+        ClassLoaderObjectInputStream(InputStream input, ClassLoader classLoader) throws IOException
+        {
+            super(input);
+
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException
+        {
+            try {
+                return Class.forName(desc.getName(), false, this.classLoader);
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+    }
+
+    /**
+     * @param events the events to encode
+     * @return the message containing the events
+     * @throws IOException when failing to encode one of the events
+     */
+    public byte[] encode(List<RemoteEventData> events) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(MAGIC);
+        bytes.write(VERSION);
+
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            Encoder encoder = new Encoder(output);
+            output.writeInt(events.size());
+            for (RemoteEventData event : events) {
+                encoder.write(event.getEvent());
+                encoder.write(event.getSource());
+                encoder.write(event.getData());
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param array the message bytes
+     * @param offset the offset of the message in the array
+     * @param length the length of the message
+     * @return {@code true} if the message was produced by {@link #encode(List)}
+     */
+    public boolean isEncoded(byte[] array, int offset, int length)
+    {
+        return array != null && length > MAGIC.length
+            && Arrays.equals(array, offset, offset + MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+
+    /**
+     * @param array the message bytes
+     * @param offset the offset of the message in the array
+     * @param length the length of the message
+     * @param classLoader the class loader to use to resolve the classes of the Java serialized values
+     * @return the events contained in the message
+     * @throws IOException when failing to decode the message
+     */
+    public List<RemoteEventData> decode(byte[] array, int offset, int length, ClassLoader classLoader)
+        throws IOException
+    {
+        if (!isEncoded(array, offset, length)) {
+            throw new IOException("Not an encoded remote events message");
+        }
+
+        byte version = array[offset + MAGIC.length];
+        if (version != VERSION) {
+            throw new IOException("Unsupported remote events message version [" + version + "]");
+        }
+
+        int headerLength = MAGIC.length + 1;
+        try (ObjectInputStream input = new ClassLoaderObjectInputStream(
+            new ByteArrayInputStream(array, offset + headerLength, length - headerLength), classLoader)) {
+            Decoder decoder = new Decoder(input);
+            int size = input.readInt();
+            List<RemoteEventData> events = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                Serializable event = (Serializable) decoder.read();
+                Serializable source = (Serializable) decoder.read();
+                Serializable data = (Serializable) decoder.read();
+                events.add(new RemoteEventData(event, source, data));
+            }
+
+            return events;
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Failed to resolve the class of a remote event value", e);
+        }
+    }
+}
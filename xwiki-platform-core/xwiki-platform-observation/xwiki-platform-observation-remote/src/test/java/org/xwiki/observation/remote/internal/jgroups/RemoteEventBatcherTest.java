@@ -0,0 +1,131 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal.jgroups;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.observation.remote.RemoteEventData;
+import org.xwiki.observation.remote.test.TestEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link RemoteEventBatcher}.
+ * 
+ * @version $Id$
+ */
+class RemoteEventBatcherTest
+{
+    private static final long TIMEOUT = 10;
+
+    private final BlockingQueue<List<RemoteEventData>> batches = new LinkedBlockingQueue<>();
+
+    private RemoteEventData event(String data)
+    {
+        return new RemoteEventData(new TestEvent(), null, data);
+    }
+
+    private List<RemoteEventData> nextBatch() throws InterruptedException
+    {
+        return this.batches.poll(TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void packEventsProducedWhileSending() throws Exception
+    {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch sent = new CountDownLatch(1);
+        RemoteEventBatcher batcher = new RemoteEventBatcher(batch -> {
+            this.batches.add(batch);
+            sending.countDown();
+            try {
+                sent.await(TIMEOUT, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 0, 2);
+
+        RemoteEventData event1 = event("1");
+        RemoteEventData event2 = event("2");
+        RemoteEventData event3 = event("3");
+        RemoteEventData event4 = event("4");
+
+        batcher.add(event1);
+        assertTrue(sending.await(TIMEOUT, TimeUnit.SECONDS));
+
+        // The events produced while the first batch is being sent are packed, within the limit of events per batch
+        batcher.add(event2);
+        batcher.add(event3);
+        batcher.add(event4);
+        assertEquals(3, batcher.size());
+        sent.countDown();
+
+        assertEquals(List.of(event1), nextBatch());
+        assertEquals(List.of(event2, event3), nextBatch());
+        assertEquals(List.of(event4), nextBatch());
+
+        batcher.stop();
+    }
+
+    @Test
+    void sendFullBatchBeforeTheEndOfTheWindow() throws Exception
+    {
+        RemoteEventBatcher batcher = new RemoteEventBatcher(this.batches::add, TimeUnit.MINUTES.toMillis(1), 3);
+
+        RemoteEventData event1 = event("1");
+        RemoteEventData event2 = event("2");
+        RemoteEventData event3 = event("3");
+
+        batcher.add(event1);
+        batcher.add(event2);
+        batcher.add(event3);
+
+        assertEquals(List.of(event1, event2, event3), nextBatch());
+
+        batcher.stop();
+    }
+
+    @Test
+    void stopSendsThePendingEvents() throws Exception
+    {
+        RemoteEventBatcher batcher = new RemoteEventBatcher(this.batches::add, TimeUnit.MINUTES.toMillis(1), 100);
+
+        RemoteEventData event1 = event("1");
+        RemoteEventData event2 = event("2");
+
+        batcher.add(event1);
+        batcher.add(event2);
+
+        // The batching window is not over yet
+        batcher.stop();
+
+        List<RemoteEventData> events = new ArrayList<>();
+        this.batches.forEach(events::addAll);
+        assertEquals(List.of(event1, event2), events);
+        assertEquals(0, batcher.size());
+    }
+}
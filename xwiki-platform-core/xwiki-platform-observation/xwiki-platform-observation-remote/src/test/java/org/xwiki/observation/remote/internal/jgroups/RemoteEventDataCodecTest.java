@@ -0,0 +1,130 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal.jgroups;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.observation.remote.RemoteEventData;
+import org.xwiki.observation.remote.test.TestEvent;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link RemoteEventDataCodec}.
+ * 
+ * @version $Id$
+ */
+@ComponentTest
+class RemoteEventDataCodecTest
+{
+    @InjectMockComponents
+    private RemoteEventDataCodec codec;
+
+    @Test
+    void encodeDecode() throws IOException
+    {
+        HashMap<String, Object> source = new HashMap<>();
+        source.put("id", "xwiki:Space.Page");
+        source.put("version", 42L);
+        source.put("minor", true);
+        source.put("count", 3);
+        source.put("nothing", null);
+        ArrayList<Object> list = new ArrayList<>();
+        list.add("xwiki:Space.Page");
+        list.add(new TestEvent());
+        source.put("list", list);
+
+        HashMap<String, Object> data = new HashMap<>();
+        data.put("id", "xwiki");
+        data.put("long", "a".repeat(100000));
+
+        List<RemoteEventData> events = List.of(new RemoteEventData(new TestEvent(), source, data),
+            new RemoteEventData(new TestEvent(), "xwiki:Space.Page", null));
+
+        byte[] bytes = this.codec.encode(events);
+
+        assertTrue(this.codec.isEncoded(bytes, 0, bytes.length));
+
+        List<RemoteEventData> decoded =
+            this.codec.decode(bytes, 0, bytes.length, Thread.currentThread().getContextClassLoader());
+
+        assertEquals(2, decoded.size());
+        assertEquals(new TestEvent(), decoded.get(0).getEvent());
+        assertEquals(source, decoded.get(0).getSource());
+        assertEquals(data, decoded.get(0).getData());
+        assertEquals(new TestEvent(), decoded.get(1).getEvent());
+        assertEquals("xwiki:Space.Page", decoded.get(1).getSource());
+        assertNull(decoded.get(1).getData());
+    }
+
+    @Test
+    void decodeWithOffset() throws IOException
+    {
+        byte[] bytes = this.codec.encode(List.of(new RemoteEventData(new TestEvent(), "source", "data")));
+        byte[] array = new byte[bytes.length + 10];
+        System.arraycopy(bytes, 0, array, 5, bytes.length);
+
+        assertTrue(this.codec.isEncoded(array, 5, bytes.length));
+
+        List<RemoteEventData> decoded =
+            this.codec.decode(array, 5, bytes.length, Thread.currentThread().getContextClassLoader());
+
+        assertEquals(1, decoded.size());
+        assertEquals("source", decoded.get(0).getSource());
+        assertEquals("data", decoded.get(0).getData());
+    }
+
+    @Test
+    void legacyMessage() throws IOException
+    {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(stream)) {
+            output.writeObject(new RemoteEventData(new TestEvent(), null, null));
+        }
+        byte[] bytes = stream.toByteArray();
+
+        assertFalse(this.codec.isEncoded(bytes, 0, bytes.length));
+        assertFalse(this.codec.isEncoded(new byte[0], 0, 0));
+        assertThrows(IOException.class,
+            () -> this.codec.decode(bytes, 0, bytes.length, Thread.currentThread().getContextClassLoader()));
+    }
+
+    @Test
+    void encodeNotSerializable()
+    {
+        HashMap<String, Object> source = new HashMap<>();
+        source.put("value", new Object());
+
+        assertThrows(IOException.class,
+            () -> this.codec.encode(List.of(new RemoteEventData(new TestEvent(), source, null))));
+    }
+}
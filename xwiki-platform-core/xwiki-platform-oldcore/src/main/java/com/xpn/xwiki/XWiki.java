@@ -41,11 +41,13 @@
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
@@ -2184,13 +2186,7 @@ public XWikiDocument getDocument(XWikiDocument doc, XWikiContext context) throws
         try {
             context.setWikiId(doc.getDocumentReference().getWikiReference().getName());
 
-            try {
-                // Indicate the the async context manipulated documents
-                getAsyncContext().useEntity(doc.getDocumentReferenceWithLocale());
-            } catch (Exception e) {
-                // If the AsyncContext component does not work then we are not in an asynchronous context anyway
-                LOGGER.debug("Failed to register the document in the asynchronous context", e);
-            }
+            registerInAsyncContext(doc);
 
             return getStore().loadXWikiDoc(doc, context);
         } finally {
@@ -2198,6 +2194,17 @@ public XWikiDocument getDocument(XWikiDocument doc, XWikiContext context) throws
         }
     }
 
+    private void registerInAsyncContext(XWikiDocument doc)
+    {
+        try {
+            // Indicate the the async context manipulated documents
+            getAsyncContext().useEntity(doc.getDocumentReferenceWithLocale());
+        } catch (Exception e) {
+            // If the AsyncContext component does not work then we are not in an asynchronous context anyway
+            LOGGER.debug("Failed to register the document in the asynchronous context", e);
+        }
+    }
+
     /**
      * @param reference the reference of the document to load
      * @param revision the revision of the document to load
@@ -2257,6 +2264,58 @@ public XWikiDocument getDocument(DocumentReference reference, XWikiContext conte
         return getDocument(doc, context);
     }
 
+    /**
+     * Load several documents at once. Documents which are not in the cache are loaded with a few queries instead of
+     * several queries per document.
+     *
+     * @param references the references of the documents to load
+     * @param context see {@link XWikiContext}
+     * @return the documents, in the same order as the passed references (a new document is returned for each document
+     *         which does not exist)
+     * @throws XWikiException when failing to load the documents
+     * @since 16.6.0RC1
+     */
+    @Unstable
+    public List<XWikiDocument> getDocuments(Collection<DocumentReference> references, XWikiContext context)
+        throws XWikiException
+    {
+        List<XWikiDocument> documents = new ArrayList<>(references.size());
+
+        // The store loads the documents from the current wiki
+        Map<String, List<XWikiDocument>> documentsPerWiki = new LinkedHashMap<>();
+        for (DocumentReference reference : references) {
+            XWikiDocument doc = new XWikiDocument(
+                reference.getLocale() != null ? new DocumentReference(reference, (Locale) null) : reference,
+                reference.getLocale());
+            doc.setContentDirty(true);
+
+            documents.add(doc);
+            documentsPerWiki.computeIfAbsent(reference.getWikiReference().getName(), k -> new ArrayList<>()).add(doc);
+        }
+
+        Map<XWikiDocument, XWikiDocument> loadedDocuments = new IdentityHashMap<>(documents.size());
+        String currentWiki = context.getWikiId();
+        try {
+            for (Map.Entry<String, List<XWikiDocument>> entry : documentsPerWiki.entrySet()) {
+                context.setWikiId(entry.getKey());
+
+                List<XWikiDocument> wikiDocuments = entry.getValue();
+                wikiDocuments.forEach(this::registerInAsyncContext);
+
+                List<XWikiDocument> loadedWikiDocuments = getStore().loadXWikiDocs(wikiDocuments, context);
+                for (int i = 0; i < wikiDocuments.size(); ++i) {
+                    loadedDocuments.put(wikiDocuments.get(i), loadedWikiDocuments.get(i));
+                }
+            }
+        } finally {
+            context.setWikiId(currentWiki);
+        }
+
+        documents.replaceAll(loadedDocuments::get);
+
+        return documents;
+    }
+
     /**
      * @param reference the reference of the page
      * @param context see {@link XWikiContext}
@@ -5740,7 +5740,7 @@ private Set<EntityReference> getUniqueLinkedEntityReferences(XWikiContext contex
                 references = new LinkedHashSet<>();
 
                 // Document content
-                XDOM dom = getXDOM();
+                XDOM dom = getReadOnlyXDOM();
                 getUniqueLinkedEntityReferences(dom, entityTypes, references);
 
                 // XObjects
@@ -6095,7 +6095,7 @@ private List<String> getIncludedPagesInternal(XWikiContext context)
             return getIncludedPagesForXWiki10Syntax(getContent(), context);
         } else {
             // Find all include macros listed on the page
-            XDOM dom = getXDOM();
+            XDOM dom = getReadOnlyXDOM();
 
             List<String> result = new ArrayList<String>();
             List<MacroBlock> macroBlocks =
@@ -7489,7 +7489,7 @@ private String getDefaultEditModeInternal(XWikiContext context) throws XWikiExce
             // Find all include macros and extract the document names
             // TODO: Is there a good way not to hardcode the macro name? The macro itself shouldn't know
             // its own name since it's a deployment time concern.
-            for (Block macroBlock : getXDOM().getBlocks(new MacroBlockMatcher("include"), Axes.CHILD)) {
+            for (Block macroBlock : getReadOnlyXDOM().getBlocks(new MacroBlockMatcher("include"), Axes.CHILD)) {
                 // Find the document reference to include by checking the macro's "reference" parameter.
                 // For backward-compatibility we also check for a "document" parameter since this is the parameter name
                 // that was used prior to XWiki 3.4M1 when the "reference" one was introduced and thus when the
@@ -8969,15 +8969,46 @@ private XDOM parseContentNoException()
     @Override
     public XDOM getXDOM()
     {
-        if (this.xdomCache == null) {
-            this.xdomCache = parseContentNoException();
+        return getReadOnlyXDOM().clone();
+    }
+
+    /**
+     * NOTE: This method returns the cached XDOM itself, which is shared with all the other callers and must not be
+     * modified. Use {@link #getXDOM()} to get a version which can be safely modified.
+     *
+     * @return the XDOM corresponding to the document's string content
+     * @since 16.6.0RC1
+     */
+    @Override
+    @Unstable
+    public XDOM getReadOnlyXDOM()
+    {
+        XDOM xdom = this.xdomCache;
+
+        if (xdom == null) {
+            xdom = parseContentNoException();
+            this.xdomCache = xdom;
         }
 
-        return this.xdomCache.clone();
+        return xdom;
     }
 
     @Override
     public XDOM getPreparedXDOM()
+    {
+        return getReadOnlyPreparedXDOM().clone();
+    }
+
+    /**
+     * NOTE: This method returns the cached prepared XDOM itself, which is shared with all the other callers and must
+     * not be modified. Use {@link #getPreparedXDOM()} to get a version which can be safely modified.
+     *
+     * @return the prepared XDOM corresponding to the document's string content
+     * @since 16.6.0RC1
+     */
+    @Override
+    @Unstable
+    public XDOM getReadOnlyPreparedXDOM()
     {
         LocalDateTime xdomPrepareDate = this.xdomCachePrepareDate;
         XDOM xdom = this.xdomCache;
@@ -8985,7 +9016,7 @@ public XDOM getPreparedXDOM()
         // If the content is prepared and it's allowed to use the cache, return it
         if (xdomPrepareDate != null) {
             if (getCacheControl().isCacheReadAllowed(xdomPrepareDate)) {
-                return xdom.clone();
+                return xdom;
             }
 
             // Start from scratch if it's not allowed to reuse the already prepared XDOM
@@ -9008,7 +9039,7 @@ public XDOM getPreparedXDOM()
         this.xdomCache = xdom;
         this.xdomCachePrepareDate = xdomPrepareDate;
 
-        return this.xdomCache.clone();
+        return xdom;
     }
 
     private void resetXDOM()
@@ -53,8 +53,10 @@ public AsyncProperties getAsyncProperties(DocumentModelBridge document)
             if (asyncObject != null) {
                 boolean asyncAllowed =
                     asyncObject.getIntValue(DocumentAsyncClassDocumentInitializer.XPROPERTY_ASYNC_ENABLED) == 1;
+                // Don't cache the result of a document which does not match its saved version (e.g. preview)
                 boolean cacheAllowed =
-                    asyncObject.getIntValue(DocumentAsyncClassDocumentInitializer.XPROPERTY_ASYNC_CACHED) == 1;
+                    asyncObject.getIntValue(DocumentAsyncClassDocumentInitializer.XPROPERTY_ASYNC_CACHED) == 1
+                        && !xdocument.isContentDirty() && !xdocument.isMetaDataDirty();
 
                 Set<String> contextElements;
                 if (asyncAllowed || cacheAllowed) {
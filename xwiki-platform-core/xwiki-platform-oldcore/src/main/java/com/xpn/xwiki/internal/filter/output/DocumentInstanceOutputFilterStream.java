@@ -20,22 +20,39 @@
 package com.xpn.xwiki.internal.filter.output;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
 import org.xwiki.filter.FilterDescriptorManager;
 import org.xwiki.filter.FilterEventParameters;
 import org.xwiki.filter.FilterException;
 import org.xwiki.filter.event.model.WikiDocumentFilter;
 import org.xwiki.filter.instance.output.DocumentInstanceOutputProperties;
 import org.xwiki.filter.output.AbstractBeanOutputFilterStream;
+import org.xwiki.logging.LogQueue;
+import org.xwiki.logging.LoggerManager;
+import org.xwiki.logging.event.LogEvent;
+import org.xwiki.logging.event.LoggerListener;
 import org.xwiki.logging.marker.TranslationMarker;
 import org.xwiki.model.document.DocumentAuthors;
 import org.xwiki.model.reference.DocumentReference;
@@ -79,11 +96,39 @@ public class DocumentInstanceOutputFilterStream extends AbstractBeanOutputFilter
     @Named("document")
     private UserReferenceResolver<DocumentReference> documentReferenceUserReferenceResolver;
 
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    @Inject
+    private LoggerManager loggerManager;
+
     @Inject
     private Logger logger;
 
     private boolean firstVersion;
 
+    private ExecutorService saveExecutor;
+
+    /**
+     * Limit the number of documents waiting to be saved (and kept in memory).
+     */
+    private Semaphore saveSlots;
+
+    /**
+     * The last save task of each document (all locales and revisions of a document are saved in sequence).
+     */
+    private final Map<DocumentReference, CompletableFuture<Void>> pendingSaves = new ConcurrentHashMap<>();
+
+    /**
+     * The log produced by the save threads, forwarded to the reading thread (which might be associated to a job).
+     */
+    private final LogQueue saveLog = new LogQueue();
+
+    private volatile Exception saveFailure;
+
     private FilterEventParameters currentLocaleParameters;
 
     private FilterEventParameters currentRevisionParameters;
@@ -97,7 +142,23 @@ protected Object createFilter() throws FilterException
     @Override
     public void close() throws IOException
     {
-        // Nothing to close
+        if (this.saveExecutor != null) {
+            try {
+                // Wait for the pending saves
+                for (CompletableFuture<Void> pendingSave : new ArrayList<>(this.pendingSaves.values())) {
+                    pendingSave.join();
+                }
+
+                flushSaveLog();
+
+                checkSaveFailure();
+            } catch (FilterException e) {
+                throw new IOException(e.getMessage(), e.getCause());
+            } finally {
+                this.saveExecutor.shutdown();
+                this.saveExecutor = null;
+            }
+        }
     }
 
     @Override
@@ -177,8 +238,91 @@ private void maybeSaveDocument() throws FilterException
             return;
         }
 
-        boolean hasJRCSHistory = inputDocument.getDocumentArchive() != null;
+        if (this.properties.getSaveThreads() > 1) {
+            submitSave(inputDocument, this.firstVersion);
+        } else {
+            saveDocument(inputDocument, this.firstVersion);
+        }
+    }
+
+    private void submitSave(XWikiDocument inputDocument, boolean firstVersion) throws FilterException
+    {
+        flushSaveLog();
+        checkSaveFailure();
+
+        if (this.saveExecutor == null) {
+            int threads = this.properties.getSaveThreads();
+            this.saveExecutor = Executors.newFixedThreadPool(threads, new BasicThreadFactory.Builder()
+                .namingPattern("XWiki document import thread %d").daemon(true).build());
+            this.saveSlots = new Semaphore(threads * 2);
+        }
+
+        try {
+            this.saveSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new FilterException("Interrupted while waiting to save document", e);
+        }
 
+        // Each save is executed in a copy of the current context
+        ExecutionContext context;
+        try {
+            context = this.executionContextManager.clone(this.execution.getContext());
+        } catch (ExecutionContextException e) {
+            this.saveSlots.release();
+
+            throw new FilterException("Failed to clone the execution context", e);
+        }
+
+        Runnable task = () -> runSave(inputDocument, firstVersion, context);
+        DocumentReference key = inputDocument.getDocumentReference();
+        CompletableFuture<Void> future = this.pendingSaves.compute(key,
+            (k, previous) -> previous == null ? CompletableFuture.runAsync(task, this.saveExecutor)
+                : previous.thenRunAsync(task, this.saveExecutor));
+        future.whenComplete((result, throwable) -> this.pendingSaves.remove(key, future));
+    }
+
+    private void runSave(XWikiDocument inputDocument, boolean firstVersion, ExecutionContext context)
+    {
+        this.execution.setContext(context);
+        this.loggerManager.pushLogListener(new LoggerListener(UUID.randomUUID().toString(), this.saveLog));
+
+        try {
+            saveDocument(inputDocument, firstVersion);
+        } catch (Exception e) {
+            // Only the first failure is reported
+            if (this.saveFailure == null) {
+                this.saveFailure = e;
+            }
+        } finally {
+            this.loggerManager.popLogListener();
+            this.execution.removeContext();
+
+            this.saveSlots.release();
+        }
+    }
+
+    private void flushSaveLog()
+    {
+        for (LogEvent logEvent = this.saveLog.poll(); logEvent != null; logEvent = this.saveLog.poll()) {
+            logEvent.log(this.logger);
+        }
+    }
+
+    private void checkSaveFailure() throws FilterException
+    {
+        Exception failure = this.saveFailure;
+        if (failure != null) {
+            this.saveFailure = null;
+
+            throw failure instanceof FilterException ? (FilterException) failure
+                : new FilterException("Failed to save document", failure);
+        }
+    }
+
+    private void saveDocument(XWikiDocument inputDocument, boolean firstVersion) throws FilterException
+    {
         XWikiContext xcontext = this.xcontextProvider.get();
 
         try {
@@ -192,7 +336,7 @@ private void maybeSaveDocument() throws FilterException
             databaseDocument.loadAttachmentsContentSafe(xcontext);
 
             XWikiDocument document;
-            if (this.firstVersion && this.properties.isPreviousDeleted()) {
+            if (firstVersion && this.properties.isPreviousDeleted()) {
                 // We want to replace the existing document
                 document = inputDocument;
 
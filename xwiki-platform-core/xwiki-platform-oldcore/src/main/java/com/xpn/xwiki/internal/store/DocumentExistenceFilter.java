@@ -0,0 +1,364 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+
+import com.xpn.xwiki.util.AbstractXWikiRunnable;
+
+/**
+ * Keep a Bloom filter of the existing documents of each wiki to be able to tell that a document definitely does not
+ * exist without asking the database.
+ * <p>
+ * The filter of a wiki is built in the background the first time the wiki is accessed and, until it's ready, every
+ * document is considered as potentially existing. Since it's not possible to remove an element from a Bloom filter,
+ * deleted documents are still considered as potentially existing until the filter is rebuilt, which happens when the
+ * number of documents added to it exceeds the number of documents it was sized for.
+ *
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+public class DocumentExistenceFilter
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(DocumentExistenceFilter.class);
+
+    private static final int BUILD_BATCH_SIZE = 10000;
+
+    /**
+     * The minimum number of documents a filter is sized for.
+     */
+    private static final long MIN_CAPACITY = 10000;
+
+    private final Supplier<QueryManager> queryManagerSupplier;
+
+    private final double falsePositiveProbability;
+
+    private final Map<String, WikiFilter> wikis = new ConcurrentHashMap<>();
+
+    private ExecutorService executor;
+
+    /**
+     * A simple thread safe Bloom filter based on double hashing.
+     *
+     * @version $Id$
+     */
+    static final class BloomFilter
+    {
+        private final AtomicLongArray bits;
+
+        private final long size;
+
+        private final int hashes;
+
+        BloomFilter(long capacity, double falsePositiveProbability)
+        {
+            // Standard formulas for the optimal number of bits and hash functions
+            double ln2 = Math.log(2);
+            long bitCount = (long) Math.ceil(-capacity * Math.log(falsePositiveProbability) / (ln2 * ln2));
+            this.bits = new AtomicLongArray((int) Math.max(1, Math.min(Integer.MAX_VALUE, (bitCount + 63) / 64)));
+            this.size = this.bits.length() * 64L;
+            this.hashes = Math.max(1, (int) Math.round((double) this.size / capacity * ln2));
+        }
+
+        /**
+         * @param key the element to add
+         * @return {@code true} if the filter changed (i.e. the element was definitely not already in it)
+         */
+        boolean put(String key)
+        {
+            long hash = hash(key);
+            int hash1 = (int) hash;
+            int hash2 = (int) (hash >>> 32);
+
+            boolean changed = false;
+            for (int i = 1; i <= this.hashes; ++i) {
+                long index = Math.floorMod(hash1 + (long) i * hash2, this.size);
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+
+                long value;
+                do {
+                    value = this.bits.get(word);
+                    if ((value & mask) != 0) {
+                        break;
+                    }
+                } while (!this.bits.compareAndSet(word, value, value | mask));
+
+                changed |= (value & mask) == 0;
+            }
+
+            return changed;
+        }
+
+        boolean mightContain(String key)
+        {
+            long hash = hash(key);
+            int hash1 = (int) hash;
+            int hash2 = (int) (hash >>> 32);
+
+            for (int i = 1; i <= this.hashes; ++i) {
+                long index = Math.floorMod(hash1 + (long) i * hash2, this.size);
+                if ((this.bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private static long hash(String key)
+        {
+            // 64 bits FNV-1a
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b & 0xff;
+                hash *= 0x100000001b3L;
+            }
+
+            return hash;
+        }
+    }
+
+    private static final class WikiFilter
+    {
+        private BloomFilter filter;
+
+        private long capacity;
+
+        private final List<String> pending = new ArrayList<>();
+
+        private final AtomicLong insertions = new AtomicLong();
+
+        private volatile boolean ready;
+
+        synchronized boolean put(String key)
+        {
+            if (this.filter != null) {
+                return this.filter.put(key);
+            }
+
+            this.pending.add(key);
+
+            return true;
+        }
+
+        synchronized void initialize(BloomFilter filter, long capacity)
+        {
+            this.filter = filter;
+            this.capacity = capacity;
+
+            this.pending.forEach(filter::put);
+            this.pending.clear();
+        }
+    }
+
+    private final class WikiFilterBuilder extends AbstractXWikiRunnable
+    {
+        private final String wiki;
+
+        private final WikiFilter wikiFilter;
+
+        WikiFilterBuilder(String wiki, WikiFilter wikiFilter)
+        {
+            this.wiki = wiki;
+            this.wikiFilter = wikiFilter;
+        }
+
+        @Override
+        protected void runInternal()
+        {
+            try {
+                build(this.wiki, this.wikiFilter);
+            } catch (Exception e) {
+                LOGGER.warn("Failed to build the document existence filter of wiki [{}]", this.wiki, e);
+
+                // Try again next time
+                DocumentExistenceFilter.this.wikis.remove(this.wiki, this.wikiFilter);
+            }
+        }
+    }
+
+    /**
+     * @param queryManagerSupplier provide the query manager used to list the existing documents
+     * @param falsePositiveProbability the expected probability that a document which does not exist is considered as
+     *            potentially existing
+     */
+    public DocumentExistenceFilter(Supplier<QueryManager> queryManagerSupplier, double falsePositiveProbability)
+    {
+        this.queryManagerSupplier = queryManagerSupplier;
+        this.falsePositiveProbability = falsePositiveProbability;
+    }
+
+    private static String getKey(String fullName, String language)
+    {
+        return fullName + '\u0000' + language;
+    }
+
+    /**
+     * @param wiki the identifier of the wiki
+     * @param fullName the local serialized reference of the document
+     * @param language the locale of the document, empty for the default locale
+     * @return {@code false} if the document definitely does not exist, {@code true} if it might exist
+     */
+    public boolean mightExist(String wiki, String fullName, String language)
+    {
+        WikiFilter wikiFilter = this.wikis.get(wiki);
+
+        if (wikiFilter == null) {
+            startBuild(wiki);
+
+            return true;
+        }
+
+        return !wikiFilter.ready || wikiFilter.filter.mightContain(getKey(fullName, language));
+    }
+
+    /**
+     * Indicate that a document might exist (because it's about to be created, for example).
+     *
+     * @param wiki the identifier of the wiki
+     * @param fullName the local serialized reference of the document
+     * @param language the locale of the document, empty for the default locale
+     */
+    public void add(String wiki, String fullName, String language)
+    {
+        WikiFilter wikiFilter = this.wikis.get(wiki);
+
+        if (wikiFilter != null) {
+            // Only count the new documents (saving an existing document again does not make the filter fuller)
+            boolean added = wikiFilter.put(getKey(fullName, language));
+
+            // Rebuild the filter when it's too full to be efficient anymore (or to forget about deleted documents)
+            if (added && wikiFilter.ready && wikiFilter.insertions.incrementAndGet() > wikiFilter.capacity) {
+                this.wikis.remove(wiki, wikiFilter);
+            }
+        }
+    }
+
+    /**
+     * Forget the filter of the passed wiki.
+     *
+     * @param wiki the identifier of the wiki
+     */
+    public void remove(String wiki)
+    {
+        this.wikis.remove(wiki);
+    }
+
+    /**
+     * Forget the filters of all the wikis.
+     */
+    public void clear()
+    {
+        this.wikis.clear();
+    }
+
+    /**
+     * Stop building filters.
+     */
+    public synchronized void dispose()
+    {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+
+    private void startBuild(String wiki)
+    {
+        WikiFilter wikiFilter = new WikiFilter();
+        if (this.wikis.putIfAbsent(wiki, wikiFilter) == null) {
+            getExecutor().execute(new WikiFilterBuilder(wiki, wikiFilter));
+        }
+    }
+
+    private synchronized ExecutorService getExecutor()
+    {
+        if (this.executor == null) {
+            this.executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "XWiki document existence filter builder");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+
+                return thread;
+            });
+        }
+
+        return this.executor;
+    }
+
+    private void build(String wiki, WikiFilter wikiFilter) throws QueryException
+    {
+        long begin = System.currentTimeMillis();
+
+        QueryManager queryManager = this.queryManagerSupplier.get();
+
+        List<Long> counts =
+            queryManager.createQuery("select count(doc.id) from XWikiDocument doc", Query.HQL).setWiki(wiki).execute();
+        long count = counts.isEmpty() ? 0 : counts.get(0);
+
+        // Leave room for the documents which are going to be created
+        long capacity = Math.max(MIN_CAPACITY, count * 2);
+        wikiFilter.initialize(new BloomFilter(capacity, this.falsePositiveProbability), capacity);
+
+        // Use the id instead of an offset to paginate to keep each query cheap
+        Query query = queryManager.createQuery(
+            "select doc.id, doc.fullName, doc.language from XWikiDocument doc where doc.id > :id order by doc.id",
+            Query.HQL);
+        query.setWiki(wiki);
+        query.setLimit(BUILD_BATCH_SIZE);
+
+        long lastId = Long.MIN_VALUE;
+        List<Object[]> results;
+        do {
+            if (this.wikis.get(wiki) != wikiFilter) {
+                // The filter was discarded while being built
+                return;
+            }
+
+            query.bindValue("id", lastId);
+            results = query.execute();
+            for (Object[] result : results) {
+                lastId = (Long) result[0];
+                String language = (String) result[2];
+                wikiFilter.put(getKey((String) result[1], language != null ? language : ""));
+            }
+        } while (results.size() == BUILD_BATCH_SIZE);
+
+        wikiFilter.ready = true;
+
+        LOGGER.debug("Built the document existence filter of wiki [{}] for [{}] documents in [{}] ms", wiki, count,
+            System.currentTimeMillis() - begin);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store;
+
+/**
+ * Implementation of the {@link JMXDocumentCacheShardMBean} MBean.
+ *
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+public class JMXDocumentCacheShard implements JMXDocumentCacheShardMBean
+{
+    private final ShardedDocumentCache.Shard shard;
+
+    /**
+     * @param shard the shard to expose
+     */
+    public JMXDocumentCacheShard(ShardedDocumentCache.Shard shard)
+    {
+        this.shard = shard;
+    }
+
+    @Override
+    public int getSize()
+    {
+        return this.shard.getSize();
+    }
+
+    @Override
+    public long getWeight()
+    {
+        return this.shard.getWeight();
+    }
+
+    @Override
+    public long getMaxWeight()
+    {
+        return this.shard.getMaxWeight();
+    }
+
+    @Override
+    public long getHits()
+    {
+        return this.shard.getHits();
+    }
+
+    @Override
+    public long getMisses()
+    {
+        return this.shard.getMisses();
+    }
+
+    @Override
+    public long getEvictions()
+    {
+        return this.shard.getEvictions();
+    }
+
+    @Override
+    public void clear()
+    {
+        this.shard.removeAll();
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store;
+
+/**
+ * Expose the statistics of a shard of the document cache as a JMX resource.
+ *
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+public interface JMXDocumentCacheShardMBean
+{
+    /**
+     * @return the number of documents currently stored in the shard
+     */
+    int getSize();
+
+    /**
+     * @return the estimated weight of the documents currently stored in the shard
+     */
+    long getWeight();
+
+    /**
+     * @return the maximum estimated weight of the shard, 0 when unlimited
+     */
+    long getMaxWeight();
+
+    /**
+     * @return the number of times a document was found in the shard
+     */
+    long getHits();
+
+    /**
+     * @return the number of times a document was not found in the shard
+     */
+    long getMisses();
+
+    /**
+     * @return the number of documents removed from the shard to respect its capacity or maximum weight
+     */
+    long getEvictions();
+
+    /**
+     * Remove all the documents from the shard.
+     */
+    void clear();
+}
@@ -0,0 +1,482 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.inject.Provider;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+import org.xwiki.management.JMXBeanRegistration;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+/**
+ * A document cache split in one independent shard per wiki, so that a very active wiki cannot evict the documents of
+ * all the other wikis. On top of the number of entries, each shard is bounded by the estimated weight of the documents
+ * it contains (the biggest documents being the ones which cost the most memory) and exposes its hit, miss and eviction
+ * statistics as a JMX MBean.
+ * <p>
+ * The shard of an entry is found from the key, which is expected to be the uid serialization of the document
+ * reference (starting with the wiki identifier).
+ *
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+public class ShardedDocumentCache implements Cache<XWikiDocument>
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedDocumentCache.class);
+
+    /**
+     * The shard used for keys which don't start with a wiki identifier.
+     */
+    private static final String DEFAULT_SHARD = "unknown";
+
+    /**
+     * The weight of a document without any content, object or attachment.
+     */
+    private static final long DOCUMENT_WEIGHT = 4096;
+
+    private static final long OBJECT_WEIGHT = 1024;
+
+    private static final long ATTACHMENT_WEIGHT = 256;
+
+    private final String name;
+
+    private final CacheManager cacheManager;
+
+    private final Provider<JMXBeanRegistration> jmxProvider;
+
+    private final int shardCapacity;
+
+    private final long shardMaxWeight;
+
+    private final Map<String, Shard> shards = new ConcurrentHashMap<>();
+
+    private final List<CacheEntryListener<XWikiDocument>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * One shard of the document cache, holding the documents of a single wiki.
+     *
+     * @version $Id$
+     */
+    public static final class Shard implements CacheEntryListener<XWikiDocument>
+    {
+        private final String wiki;
+
+        private final Cache<XWikiDocument> cache;
+
+        private final long maxWeight;
+
+        /**
+         * The estimated weight of each entry, in access order (the eldest entry is the least recently used one). Also
+         * used to lock the modifications of the shard: the cache and the weights are always updated in the same
+         * critical section so that they cannot get out of sync.
+         */
+        private final LinkedHashMap<String, Long> weights = new LinkedHashMap<>(16, 0.75F, true);
+
+        private long weight;
+
+        private final LongAdder hits = new LongAdder();
+
+        private final LongAdder misses = new LongAdder();
+
+        private final LongAdder evictions = new LongAdder();
+
+        Shard(String wiki, Cache<XWikiDocument> cache, long maxWeight)
+        {
+            this.wiki = wiki;
+            this.cache = cache;
+            this.maxWeight = maxWeight;
+
+            this.cache.addCacheEntryListener(this);
+        }
+
+        XWikiDocument get(String key)
+        {
+            XWikiDocument document = this.cache.get(key);
+
+            if (document != null) {
+                this.hits.increment();
+
+                // Update the access order
+                synchronized (this.weights) {
+                    this.weights.get(key);
+                }
+            } else {
+                this.misses.increment();
+            }
+
+            return document;
+        }
+
+        void set(String key, XWikiDocument document)
+        {
+            long documentWeight = ShardedDocumentCache.getWeight(document);
+
+            synchronized (this.weights) {
+                // Remember the weight before setting the entry in case setting it evicts it right away (the listener
+                // is then called in the same critical section)
+                Long previousWeight = this.weights.put(key, documentWeight);
+                this.weight += previousWeight != null ? documentWeight - previousWeight : documentWeight;
+
+                this.cache.set(key, document);
+
+                // The weight of the evicted entries was already forgotten so the listener won't count them a second
+                // time
+                for (String evictedKey : trim()) {
+                    this.evictions.increment();
+                    this.cache.remove(evictedKey);
+                }
+            }
+        }
+
+        private List<String> trim()
+        {
+            List<String> evictedKeys = new ArrayList<>();
+
+            if (this.maxWeight > 0) {
+                // Always keep at least the last inserted entry, even if it's too big on its own
+                Iterator<Map.Entry<String, Long>> iterator = this.weights.entrySet().iterator();
+                while (this.weight > this.maxWeight && this.weights.size() > 1) {
+                    Map.Entry<String, Long> eldest = iterator.next();
+                    this.weight -= eldest.getValue();
+                    evictedKeys.add(eldest.getKey());
+                    iterator.remove();
+                }
+            }
+
+            return evictedKeys;
+        }
+
+        void remove(String key)
+        {
+            synchronized (this.weights) {
+                forget(key);
+
+                this.cache.remove(key);
+            }
+        }
+
+        void removeAll()
+        {
+            synchronized (this.weights) {
+                this.weights.clear();
+                this.weight = 0;
+
+                this.cache.removeAll();
+            }
+        }
+
+        void dispose()
+        {
+            this.cache.removeCacheEntryListener(this);
+            this.cache.dispose();
+        }
+
+        private Long forget(String key)
+        {
+            synchronized (this.weights) {
+                Long entryWeight = this.weights.remove(key);
+                if (entryWeight != null) {
+                    this.weight -= entryWeight;
+                }
+
+                return entryWeight;
+            }
+        }
+
+        @Override
+        public void cacheEntryAdded(CacheEntryEvent<XWikiDocument> event)
+        {
+            // The weight is computed when the entry is set
+        }
+
+        @Override
+        public void cacheEntryRemoved(CacheEntryEvent<XWikiDocument> event)
+        {
+            // Entries explicitly removed are forgotten before being removed from the cache so the only ones still
+            // known here are the ones evicted by the cache itself
+            if (forget(event.getEntry().getKey()) != null) {
+                this.evictions.increment();
+            }
+        }
+
+        @Override
+        public void cacheEntryModified(CacheEntryEvent<XWikiDocument> event)
+        {
+            // The weight is computed when the entry is set
+        }
+
+        String getWiki()
+        {
+            return this.wiki;
+        }
+
+        Cache<XWikiDocument> getCache()
+        {
+            return this.cache;
+        }
+
+        int getSize()
+        {
+            synchronized (this.weights) {
+                return this.weights.size();
+            }
+        }
+
+        long getWeight()
+        {
+            synchronized (this.weights) {
+                return this.weight;
+            }
+        }
+
+        long getMaxWeight()
+        {
+            return this.maxWeight;
+        }
+
+        long getHits()
+        {
+            return this.hits.sum();
+        }
+
+        long getMisses()
+        {
+            return this.misses.sum();
+        }
+
+        long getEvictions()
+        {
+            return this.evictions.sum();
+        }
+    }
+
+    /**
+     * @param name the name of the cache, used as prefix for the name of each shard
+     * @param cacheManager used to create the cache of each shard
+     * @param jmxProvider used to register the statistics of each shard
+     * @param shardCapacity the maximum number of documents in each shard
+     * @param shardMaxWeight the maximum estimated weight of the documents in each shard, 0 for no limit
+     */
+    public ShardedDocumentCache(String name, CacheManager cacheManager, Provider<JMXBeanRegistration> jmxProvider,
+        int shardCapacity, long shardMaxWeight)
+    {
+        this.name = name;
+        this.cacheManager = cacheManager;
+        this.jmxProvider = jmxProvider;
+        this.shardCapacity = shardCapacity;
+        this.shardMaxWeight = shardMaxWeight;
+    }
+
+    /**
+     * @param document the document
+     * @return the estimated memory weight of the document
+     */
+    public static long getWeight(XWikiDocument document)
+    {
+        long weight = DOCUMENT_WEIGHT;
+
+        String content = document.getContent();
+        if (content != null) {
+            weight += content.length();
+        }
+
+        for (List<BaseObject> objects : document.getXObjects().values()) {
+            weight += objects.size() * OBJECT_WEIGHT;
+        }
+
+        weight += document.getAttachmentList().size() * ATTACHMENT_WEIGHT;
+
+        return weight;
+    }
+
+    /**
+     * @param key the uid serialization of a document reference
+     * @return the identifier of the wiki of the document
+     */
+    static String getWiki(String key)
+    {
+        int separator = key.indexOf(':');
+        if (separator > 0) {
+            try {
+                int length = Integer.parseInt(key.substring(0, separator));
+                int end = separator + 1 + length;
+                if (length > 0 && end <= key.length()) {
+                    return key.substring(separator + 1, end);
+                }
+            } catch (NumberFormatException e) {
+                // Not a uid serialization
+            }
+        }
+
+        return DEFAULT_SHARD;
+    }
+
+    /**
+     * Remove the shard associated with the passed wiki (typically because the wiki was deleted) and release its
+     * resources.
+     *
+     * @param wiki the identifier of the wiki
+     */
+    public void removeShard(String wiki)
+    {
+        Shard shard = this.shards.remove(wiki);
+        if (shard != null) {
+            disposeShard(shard);
+        }
+    }
+
+    private void disposeShard(Shard shard)
+    {
+        shard.dispose();
+
+        try {
+            this.jmxProvider.get().unregisterMBean(getJMXName(shard.getWiki()));
+        } catch (Exception e) {
+            LOGGER.debug("Failed to unregister the statistics of the document cache shard for wiki [{}]",
+                shard.getWiki(), e);
+        }
+    }
+
+    private String getJMXName(String wiki)
+    {
+        return "type=DocumentCache,name=" + this.name + ",wiki=" + wiki;
+    }
+
+    private Shard getShard(String key, boolean create)
+    {
+        String wiki = getWiki(key);
+
+        Shard shard = this.shards.get(wiki);
+        if (shard == null && create) {
+            shard = this.shards.computeIfAbsent(wiki, this::createShard);
+        }
+
+        return shard;
+    }
+
+    private Shard createShard(String wiki)
+    {
+        Cache<XWikiDocument> shardCache;
+        try {
+            shardCache = this.cacheManager
+                .createNewCache(new LRUCacheConfiguration(this.name + '.' + wiki, this.shardCapacity));
+        } catch (CacheException e) {
+            LOGGER.error("Failed to create the document cache shard for wiki [{}]", wiki, e);
+
+            return null;
+        }
+
+        Shard shard = new Shard(wiki, shardCache, this.shardMaxWeight);
+        this.listeners.forEach(shardCache::addCacheEntryListener);
+
+        try {
+            this.jmxProvider.get().registerMBean(new JMXDocumentCacheShard(shard), getJMXName(wiki));
+        } catch (Exception e) {
+            LOGGER.warn("Failed to register the statistics of the document cache shard for wiki [{}]: {}", wiki,
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+
+        return shard;
+    }
+
+    /**
+     * @return the statistics of each shard, indexed by wiki identifier
+     */
+    public Map<String, JMXDocumentCacheShardMBean> getShardStatistics()
+    {
+        Map<String, JMXDocumentCacheShardMBean> statistics = new LinkedHashMap<>();
+        this.shards.forEach((wiki, shard) -> statistics.put(wiki, new JMXDocumentCacheShard(shard)));
+
+        return statistics;
+    }
+
+    @Override
+    public void set(String key, XWikiDocument value)
+    {
+        Shard shard = getShard(key, true);
+        if (shard != null) {
+            shard.set(key, value);
+        }
+    }
+
+    @Override
+    public XWikiDocument get(String key)
+    {
+        Shard shard = getShard(key, false);
+
+        return shard != null ? shard.get(key) : null;
+    }
+
+    @Override
+    public void remove(String key)
+    {
+        Shard shard = getShard(key, false);
+        if (shard != null) {
+            shard.remove(key);
+        }
+    }
+
+    @Override
+    public void removeAll()
+    {
+        this.shards.values().forEach(Shard::removeAll);
+    }
+
+    @Override
+    public void addCacheEntryListener(CacheEntryListener<XWikiDocument> listener)
+    {
+        this.listeners.add(listener);
+        this.shards.values().forEach(shard -> shard.getCache().addCacheEntryListener(listener));
+    }
+
+    @Override
+    public void removeCacheEntryListener(CacheEntryListener<XWikiDocument> listener)
+    {
+        this.listeners.remove(listener);
+        this.shards.values().forEach(shard -> shard.getCache().removeCacheEntryListener(listener));
+    }
+
+    @Override
+    public void dispose()
+    {
+        this.shards.values().forEach(this::disposeShard);
+
+        this.shards.clear();
+    }
+}
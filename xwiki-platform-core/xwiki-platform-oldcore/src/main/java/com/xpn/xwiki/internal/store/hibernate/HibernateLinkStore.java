@@ -0,0 +1,220 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store.hibernate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.link.LinkException;
+import org.xwiki.link.LinkStore;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.AttachmentReference;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.PageReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * {@link LinkStore} implementation based on the links saved in the database (the {@code xwikilinks} table). Contrary
+ * to the Solr based implementation, the links are updated synchronously when a document is saved (when the storage of
+ * links in the database is enabled) and the backlinks can be paginated directly in the database.
+ * <p>
+ * Only links to documents and attachments are stored in the database, the other entity types are not supported.
+ *
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+@Component
+@Named(HibernateLinkStore.HINT)
+@Singleton
+public class HibernateLinkStore implements LinkStore
+{
+    /**
+     * The hint of this component.
+     */
+    public static final String HINT = "database";
+
+    private static final String BACKLINKS_WHERE = " from XWikiLink as backlink where backlink.id.link = :link";
+
+    private static final String ATTACHMENT_BACKLINKS_WHERE =
+        BACKLINKS_WHERE + " and backlink.id.type = :type and backlink.attachmentName = :attachmentName";
+
+    private static final String LINK = "link";
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    @Named("compactwiki")
+    private EntityReferenceSerializer<String> compactWikiSerializer;
+
+    @Inject
+    @Named("currentmixed")
+    private DocumentReferenceResolver<String> currentMixedResolver;
+
+    @Inject
+    @Named("current")
+    private DocumentReferenceResolver<PageReference> currentPageResolver;
+
+    @Inject
+    @Named("current")
+    private DocumentReferenceResolver<EntityReference> currentResolver;
+
+    /**
+     * @param reference the reference of the entity targeted by the links
+     * @return {@code true} if the links to the passed entity are stored in the database
+     */
+    public static boolean isSupported(EntityReference reference)
+    {
+        EntityType type = reference.getType();
+
+        return type == EntityType.DOCUMENT || type == EntityType.ATTACHMENT || type == EntityType.PAGE
+            || type == EntityType.PAGE_ATTACHMENT;
+    }
+
+    @Override
+    public Set<EntityReference> resolveLinkedEntities(EntityReference reference) throws LinkException
+    {
+        DocumentReference documentReference = toDocumentReference(reference);
+        WikiReference wikiReference = documentReference.getWikiReference();
+
+        List<Object[]> results;
+        try {
+            // The links are associated with the identifier of the (translated) document containing them.
+            results = this.queryManager
+                .createQuery("select link.id.link, link.id.type, link.attachmentName from XWikiLink as link"
+                    + " where link.id.docId = :docId", Query.HQL)
+                .setWiki(wikiReference.getName()).bindValue("docId", new XWikiDocument(documentReference).getId())
+                .execute();
+        } catch (QueryException e) {
+            throw new LinkException("Failed to load the links of the entity [" + reference + "]", e);
+        }
+
+        Set<EntityReference> links = new LinkedHashSet<>(results.size());
+        for (Object[] result : results) {
+            // The links are serialized relatively to the wiki of the document containing them.
+            DocumentReference linkedDocument = this.currentMixedResolver.resolve((String) result[0], wikiReference);
+            if (EntityType.ATTACHMENT.getLowerCase().equals(result[1]) && result[2] != null) {
+                links.add(new AttachmentReference((String) result[2], linkedDocument));
+            } else {
+                links.add(linkedDocument);
+            }
+        }
+
+        return links;
+    }
+
+    @Override
+    public Set<EntityReference> resolveBackLinkedEntities(EntityReference reference) throws LinkException
+    {
+        return new LinkedHashSet<>(resolveBackLinkedEntities(reference, 0, 0));
+    }
+
+    @Override
+    public List<EntityReference> resolveBackLinkedEntities(EntityReference reference, int offset, int limit)
+        throws LinkException
+    {
+        List<String> fullNames;
+        try {
+            Query query = createBacklinksQuery("select distinct backlink.fullName", reference,
+                " order by backlink.fullName");
+            fullNames = query.setOffset(offset).setLimit(limit).execute();
+        } catch (QueryException e) {
+            throw new LinkException("Failed to load the backlinks of the entity [" + reference + "]", e);
+        }
+
+        WikiReference wikiReference = new WikiReference(reference.extractReference(EntityType.WIKI));
+        List<EntityReference> backlinks = new ArrayList<>(fullNames.size());
+        for (String fullName : fullNames) {
+            backlinks.add(this.currentMixedResolver.resolve(fullName, wikiReference));
+        }
+
+        return backlinks;
+    }
+
+    @Override
+    public long countBackLinkedEntities(EntityReference reference) throws LinkException
+    {
+        try {
+            List<Long> results =
+                createBacklinksQuery("select count(distinct backlink.fullName)", reference, "").execute();
+
+            return results.isEmpty() ? 0 : results.get(0);
+        } catch (QueryException e) {
+            throw new LinkException("Failed to count the backlinks of the entity [" + reference + "]", e);
+        }
+    }
+
+    private Query createBacklinksQuery(String select, EntityReference reference, String orderBy)
+        throws QueryException
+    {
+        DocumentReference documentReference = toDocumentReference(reference);
+        WikiReference wikiReference = documentReference.getWikiReference();
+        // The links are stored relatively to the wiki of the document containing them, and only the links from the
+        // same wiki are currently found, like the backlinks of the legacy store API.
+        String link = this.compactWikiSerializer.serialize(documentReference, wikiReference);
+
+        Query query;
+        EntityReference attachmentReference = reference.extractReference(EntityType.ATTACHMENT);
+        if (attachmentReference == null) {
+            attachmentReference = reference.extractReference(EntityType.PAGE_ATTACHMENT);
+        }
+        if (attachmentReference != null) {
+            query = this.queryManager.createQuery(select + ATTACHMENT_BACKLINKS_WHERE + orderBy, Query.HQL)
+                .bindValue(LINK, link).bindValue("type", EntityType.ATTACHMENT.getLowerCase())
+                .bindValue("attachmentName", attachmentReference.getName());
+        } else {
+            query = this.queryManager.createQuery(select + BACKLINKS_WHERE + orderBy, Query.HQL).bindValue(LINK, link);
+        }
+
+        return query.setWiki(wikiReference.getName());
+    }
+
+    private DocumentReference toDocumentReference(EntityReference reference) throws LinkException
+    {
+        if (!isSupported(reference)) {
+            throw new LinkException("Links to entities of type [" + reference.getType()
+                + "] are not stored in the database");
+        }
+
+        EntityReference pageReference = reference.extractReference(EntityType.PAGE);
+        if (pageReference != null) {
+            // Like when the links are saved, resolve the page reference to the document which exists.
+            return this.currentPageResolver.resolve(pageReference instanceof PageReference
+                ? (PageReference) pageReference : new PageReference(pageReference));
+        }
+
+        return this.currentResolver.resolve(reference.extractReference(EntityType.DOCUMENT));
+    }
+}
@@ -19,11 +19,19 @@
  */
 package com.xpn.xwiki.store;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Provider;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,15 +43,18 @@
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.management.JMXBeanRegistration;
 import org.xwiki.model.reference.AttachmentReference;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.model.reference.WikiReference;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.ApplicationStoppedEvent;
 import org.xwiki.observation.event.Event;
 import org.xwiki.observation.remote.RemoteObservationManagerContext;
 import org.xwiki.query.QueryManager;
@@ -55,6 +66,8 @@
 import com.xpn.xwiki.doc.XWikiLink;
 import com.xpn.xwiki.doc.XWikiLock;
 import com.xpn.xwiki.internal.store.AbstractXWikiStore;
+import com.xpn.xwiki.internal.store.DocumentExistenceFilter;
+import com.xpn.xwiki.internal.store.ShardedDocumentCache;
 import com.xpn.xwiki.objects.classes.BaseClass;
 import com.xpn.xwiki.web.Utils;
 
@@ -69,7 +82,7 @@
 @Named("cache")
 @InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
 public class XWikiCacheStore extends AbstractXWikiStore
-    implements XWikiCacheStoreInterface, EventListener, Initializable
+    implements XWikiCacheStoreInterface, EventListener, Initializable, Disposable
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(XWikiCacheStore.class);
 
@@ -96,17 +109,62 @@ public class XWikiCacheStore extends AbstractXWikiStore
     @Named("xwikicfg")
     private ConfigurationSource configuration;
 
+    /**
+     * Used to expose the statistics of the document cache when it's sharded per wiki.
+     */
+    @Inject
+    private Provider<JMXBeanRegistration> jmxProvider;
+
     private XWikiStoreInterface store;
 
     private Cache<XWikiDocument> cache;
 
     private Cache<Boolean> pageExistCache;
 
+    /**
+     * Optional filter used to know that a document does not exist without asking the underlying store.
+     */
+    private DocumentExistenceFilter existenceFilter;
+
+    /**
+     * The documents currently being loaded from the underlying store, so that concurrent loads of the same document
+     * wait for the same result instead of all asking the underlying store.
+     */
+    private final Map<String, DocumentLoad> loadingDocuments = new ConcurrentHashMap<>();
+
+    /**
+     * The number of documents being loaded by the current thread. A thread which is already loading a document never
+     * waits for another thread to avoid dead locks (loading a document can require loading its classes).
+     */
+    private final ThreadLocal<Integer> loadingDepth = ThreadLocal.withInitial(() -> 0);
+
+    private final LongAdder coalescedLoads = new LongAdder();
+
     /**
      * Used to cache the values asked by {@link #getLimitSize(XWikiContext, Class, String)}.
      */
     private Cache<Integer> limitSizePropertyCache;
 
+    /**
+     * A load of a document from the underlying store shared by all the threads asking for the same document at the
+     * same time. It's completed with {@code null} when the loaded document cannot be shared.
+     *
+     * @version $Id$
+     */
+    private static final class DocumentLoad extends CompletableFuture<XWikiDocument>
+    {
+        /**
+         * {@code true} when the document was modified since the load started, in which case the loaded document might
+         * be outdated.
+         */
+        private boolean invalidated;
+
+        synchronized void invalidate()
+        {
+            this.invalidated = true;
+        }
+    }
+
     /**
      * Default constructor generally used by the Component Manager.
      */
@@ -127,6 +185,7 @@ public XWikiCacheStore(XWikiStoreInterface store, XWikiContext context) throws X
         this.uidStringEntityReferenceSerializer = Utils.getComponent(EntityReferenceSerializer.TYPE_STRING, "uid");
         this.cacheManager = Utils.getComponent(CacheManager.class);
         this.configuration = Utils.getComponent(ConfigurationSource.class, "xwikicfg");
+        this.jmxProvider = () -> Utils.getComponent(JMXBeanRegistration.class);
 
         initCache(context);
 
@@ -154,7 +213,7 @@ public String getName()
     @Override
     public List<Event> getEvents()
     {
-        return Arrays.<Event>asList(new WikiDeletedEvent());
+        return Arrays.<Event>asList(new WikiDeletedEvent(), new ApplicationStoppedEvent());
     }
 
     private void initListener()
@@ -166,13 +225,26 @@ private void initListener()
     private void initCache() throws CacheException
     {
         int pageCacheCapacity = this.configuration.getProperty("xwiki.store.cache.capacity", 500);
-        this.cache =
-            this.cacheManager.createNewCache(new LRUCacheConfiguration("xwiki.store.pagecache", pageCacheCapacity));
+        if ("1".equals(this.configuration.getProperty("xwiki.store.cache.sharded", "0"))) {
+            // One cache per wiki, the capacity being the capacity of each wiki cache
+            long shardMaxWeight = this.configuration.getProperty("xwiki.store.cache.shard.maxweight", 67108864L);
+            this.cache = new ShardedDocumentCache("xwiki.store.pagecache", this.cacheManager, this.jmxProvider,
+                pageCacheCapacity, shardMaxWeight);
+        } else {
+            this.cache =
+                this.cacheManager.createNewCache(new LRUCacheConfiguration("xwiki.store.pagecache", pageCacheCapacity));
+        }
 
         int pageExistCacheCapacity = this.configuration.getProperty("xwiki.store.cache.pageexistcapacity", 10000);
         this.pageExistCache = this.cacheManager
             .createNewCache(new LRUCacheConfiguration("xwiki.store.pageexistcache", pageExistCacheCapacity));
 
+        if ("1".equals(this.configuration.getProperty("xwiki.store.cache.existfilter", "0"))) {
+            double falsePositiveProbability =
+                this.configuration.getProperty("xwiki.store.cache.existfilter.fpp", 0.01D);
+            this.existenceFilter = new DocumentExistenceFilter(this::getQueryManager, falsePositiveProbability);
+        }
+
         // There won't be many values in this cache, but they will be accessed a lot.
         int limitSizePropertyCacheCapacity = 10;
         this.limitSizePropertyCache = this.cacheManager.createNewCache(
@@ -222,10 +294,17 @@ public void renameXWikiDoc(XWikiDocument doc, DocumentReference newReference, XW
         // Make sure to use the right XWikiContext instance to avoid issues
         XWikiContext context = getExecutionXContext(inputxcontext, true);
         try {
+            if (this.existenceFilter != null) {
+                XWikiDocument newDoc = new XWikiDocument(newReference, newReference.getLocale());
+                this.existenceFilter.add(newReference.getWikiReference().getName(), newDoc.getFullName(),
+                    newDoc.getLanguage());
+            }
+
             this.store.renameXWikiDoc(doc, newReference, context);
         } finally {
             // Flushing the cache for old document
             String key = getKey(doc, context);
+            invalidateLoad(key);
             getCache().remove(key);
             getPageExistCache().remove(key);
 
@@ -236,6 +315,7 @@ public void renameXWikiDoc(XWikiDocument doc, DocumentReference newReference, XW
             }
             XWikiDocument newDoc = new XWikiDocument(newReference, newReference.getLocale());
             key = getKey(newDoc, context);
+            invalidateLoad(key);
             getCache().remove(key);
             getPageExistCache().remove(key);
             context.setWikiReference(originalWikiReference);
@@ -252,12 +332,18 @@ public void saveXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext, boolean
         XWikiContext context = getExecutionXContext(inputxcontext, true);
 
         try {
+            // Make sure the document is not considered as missing as soon as it's in the database
+            if (this.existenceFilter != null) {
+                this.existenceFilter.add(context.getWikiId(), doc.getFullName(), doc.getLanguage());
+            }
+
             this.store.saveXWikiDoc(doc, context, bTransaction);
 
             doc.setStore(this.store);
         } finally {
             // Flushing the cache
             String key = getKey(doc, context);
+            invalidateLoad(key);
             getCache().remove(key);
             getPageExistCache().remove(key);
 
@@ -274,17 +360,37 @@ public void saveXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext, boolean
     @Override
     public void flushCache()
     {
+        this.loadingDocuments.keySet().forEach(this::invalidateLoad);
         getCache().removeAll();
         getPageExistCache().removeAll();
         getLimitSizePropertyCache().removeAll();
+        if (this.existenceFilter != null) {
+            this.existenceFilter.clear();
+        }
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.existenceFilter != null) {
+            this.existenceFilter.dispose();
+        }
     }
 
     @Override
     public void onEvent(Event event, Object source, Object data)
     {
-        // only react to remote events since local actions are already taken into account
-        if (this.remoteObservationManagerContext.isRemoteState()) {
-            if (event instanceof WikiDeletedEvent) {
+        if (event instanceof ApplicationStoppedEvent) {
+            // This store is instantiated per lookup so the component manager won't dispose it
+            dispose();
+        } else if (event instanceof WikiDeletedEvent) {
+            // The documents of a deleted wiki won't be accessed anymore
+            if (this.cache instanceof ShardedDocumentCache) {
+                ((ShardedDocumentCache) this.cache).removeShard(((WikiDeletedEvent) event).getWikiId());
+            }
+
+            // only react to remote events since local actions are already taken into account
+            if (this.remoteObservationManagerContext.isRemoteState()) {
                 flushCache();
             }
         }
@@ -300,6 +406,15 @@ public void invalidate(XWikiDocument document)
     {
         String key = document.getKey();
 
+        // Make sure a load which might have started before the modification is not cached
+        invalidateLoad(key);
+
+        // The document might have been created on another cluster member
+        if (this.existenceFilter != null) {
+            this.existenceFilter.add(document.getDocumentReference().getWikiReference().getName(),
+                document.getFullName(), document.getLanguage());
+        }
+
         if (getCache() != null) {
             getCache().remove(key);
         }
@@ -365,61 +480,301 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext)
             // Calculate the cache key
             String key = getKey(doc, context);
 
-            LOGGER.debug("Starting checking for Document [{}] in cache", key);
+            XWikiDocument cachedoc = getCachedDocument(key, doc, context);
 
-            XWikiDocument cachedoc;
-            try {
-                cachedoc = getCache().get(key);
-            } catch (Exception e) {
-                LOGGER.error("Failed to get document [{}] from cache", key, e);
-
-                cachedoc = null;
+            if (cachedoc == null) {
+                cachedoc = loadSingleFlight(key, doc, context);
             }
 
-            if (cachedoc != null) {
-                cachedoc.setFromCache(true);
+            cachedoc.setStore(this);
+            LOGGER.debug("Ending checking for Document [{}] in cache", key);
 
-                LOGGER.debug("Document [{}] was retrieved from cache", key);
-            } else {
-                Boolean result = getPageExistCache().get(key);
+            return cachedoc;
+        } finally {
+            restoreExecutionXContext();
+        }
+    }
 
-                if (result == Boolean.FALSE) {
-                    LOGGER.debug("Document [{}] doesn't exist in cache, returning an empty one", key);
+    @Override
+    public List<XWikiDocument> loadXWikiDocs(List<XWikiDocument> documents, XWikiContext inputxcontext)
+        throws XWikiException
+    {
+        // Make sure to use the right XWikiContext instance to avoid issues
+        XWikiContext context = getExecutionXContext(inputxcontext, true);
 
-                    cachedoc = doc;
-                    cachedoc.setNew(true);
+        try {
+            List<XWikiDocument> cachedocs = new ArrayList<>(documents.size());
+
+            // Get what's available from the cache
+            List<Integer> missingIndexes = new ArrayList<>();
+            List<String> missingKeys = new ArrayList<>();
+            List<XWikiDocument> missingDocuments = new ArrayList<>();
+            for (XWikiDocument doc : documents) {
+                String key = getKey(doc, context);
+
+                XWikiDocument cachedoc = getCachedDocument(key, doc, context);
+                if (cachedoc == null) {
+                    missingIndexes.add(cachedocs.size());
+                    missingKeys.add(key);
+                    missingDocuments.add(doc);
+                }
 
-                    // Make sure to always return a document with an original version, even for one that does not exist.
-                    // Allow writing more generic code.
-                    cachedoc
-                        .setOriginalDocument(new XWikiDocument(cachedoc.getDocumentReference(), cachedoc.getLocale()));
-                } else {
-                    LOGGER.debug("Trying to get Document [{}] from persistent storage", key);
+                cachedocs.add(cachedoc);
+            }
 
-                    cachedoc = this.store.loadXWikiDoc(doc, context);
+            // Load the rest from the persistent storage in one go
+            if (!missingDocuments.isEmpty()) {
+                List<XWikiDocument> loadedDocuments = loadMissingDocuments(missingKeys, missingDocuments, context);
 
-                    LOGGER.debug("Document [{}] was retrieved from persistent storage", key);
+                for (int i = 0; i < loadedDocuments.size(); ++i) {
+                    cachedocs.set(missingIndexes.get(i), loadedDocuments.get(i));
+                }
+            }
 
-                    if (cachedoc.isNew()) {
-                        getPageExistCache().set(key, Boolean.FALSE);
-                    } else {
-                        getCache().set(key, cachedoc);
+            for (XWikiDocument cachedoc : cachedocs) {
+                cachedoc.setStore(this);
+            }
+
+            return cachedocs;
+        } finally {
+            restoreExecutionXContext();
+        }
+    }
+
+    /**
+     * Load several documents from the underlying store at once. Like for a single document, the loads are registered
+     * so that a document modified while being loaded is not cached, and so that the concurrent loads of the same
+     * documents can reuse the result.
+     */
+    private List<XWikiDocument> loadMissingDocuments(List<String> keys, List<XWikiDocument> documents,
+        XWikiContext context) throws XWikiException
+    {
+        // Only the loads registered by this call are allowed to cache their result, the other ones are not invalidated
+        // when the document is modified
+        Map<String, DocumentLoad> loads = new HashMap<>();
+        Map<String, XWikiDocument> sharedDocuments = new HashMap<>();
+        for (String key : keys) {
+            if (!loads.containsKey(key)) {
+                DocumentLoad load = new DocumentLoad();
+                if (this.loadingDocuments.putIfAbsent(key, load) == null) {
+                    loads.put(key, load);
+                }
+            }
+        }
 
-                        // Also update exist cache
-                        getPageExistCache().set(key, Boolean.TRUE);
+        this.loadingDepth.set(this.loadingDepth.get() + 1);
+        try {
+            LOGGER.debug("Trying to get Documents {} from persistent storage", keys);
+
+            List<XWikiDocument> loadedDocuments = this.store.loadXWikiDocs(documents, context);
+
+            LOGGER.debug("Documents {} were retrieved from persistent storage", keys);
+
+            for (int i = 0; i < loadedDocuments.size(); ++i) {
+                String key = keys.get(i);
+                XWikiDocument loadedDocument = loadedDocuments.get(i);
+
+                DocumentLoad load = loads.get(key);
+                if (load != null && !sharedDocuments.containsKey(key)) {
+                    synchronized (load) {
+                        // A load which started before a modification of the document might return an outdated version
+                        if (!load.invalidated) {
+                            cacheLoadedDocument(key, loadedDocument);
+                            sharedDocuments.put(key, loadedDocument);
+                        } else {
+                            LOGGER.debug("Document [{}] was modified while being loaded, not caching it", key);
+                        }
                     }
+                }
+            }
+
+            return loadedDocuments;
+        } finally {
+            for (Map.Entry<String, DocumentLoad> entry : loads.entrySet()) {
+                this.loadingDocuments.remove(entry.getKey(), entry.getValue());
+                entry.getValue().complete(sharedDocuments.get(entry.getKey()));
+            }
+            this.loadingDepth.set(this.loadingDepth.get() - 1);
+        }
+    }
 
-                    LOGGER.debug("Document [{}] was put in cache", key);
+    /**
+     * Load the document from the underlying store, or wait for the result of another thread already loading it.
+     */
+    private XWikiDocument loadSingleFlight(String key, XWikiDocument doc, XWikiContext context)
+        throws XWikiException
+    {
+        DocumentLoad load = new DocumentLoad();
+        DocumentLoad currentLoad = this.loadingDocuments.putIfAbsent(key, load);
+
+        while (currentLoad != null && this.loadingDepth.get() == 0) {
+            XWikiDocument loadedDocument = waitForLoad(currentLoad);
+
+            if (loadedDocument != null) {
+                this.coalescedLoads.increment();
+
+                if (loadedDocument.isNew()) {
+                    // Don't share the instance of a document which does not exist, it's the one of the other caller
+                    doc.setNew(true);
+                    doc.setOriginalDocument(new XWikiDocument(doc.getDocumentReference(), doc.getLocale()));
+
+                    return doc;
                 }
+
+                return loadedDocument;
             }
 
-            cachedoc.setStore(this);
-            LOGGER.debug("Ending checking for Document [{}] in cache", key);
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
 
-            return cachedoc;
+            // The concurrent load failed or was invalidated, try again
+            currentLoad = this.loadingDocuments.putIfAbsent(key, load);
+        }
+
+        // Only the shared load is allowed to cache its result, the other ones are not invalidated when the document is
+        // modified
+        boolean shared = currentLoad == null;
+        XWikiDocument sharedDocument = null;
+
+        this.loadingDepth.set(this.loadingDepth.get() + 1);
+        try {
+            LOGGER.debug("Trying to get Document [{}] from persistent storage", key);
+
+            XWikiDocument loadedDocument = this.store.loadXWikiDoc(doc, context);
+
+            LOGGER.debug("Document [{}] was retrieved from persistent storage", key);
+
+            if (shared) {
+                synchronized (load) {
+                    // A load which started before a modification of the document might return an outdated version
+                    if (!load.invalidated) {
+                        cacheLoadedDocument(key, loadedDocument);
+                        sharedDocument = loadedDocument;
+                    } else {
+                        LOGGER.debug("Document [{}] was modified while being loaded, not caching it", key);
+                    }
+                }
+            }
+
+            return loadedDocument;
         } finally {
-            restoreExecutionXContext();
+            if (shared) {
+                // Stop sharing the load before completing it so that the waiting threads which need to try again
+                // don't find it again
+                this.loadingDocuments.remove(key, load);
+                load.complete(sharedDocument);
+            }
+            this.loadingDepth.set(this.loadingDepth.get() - 1);
+        }
+    }
+
+    /**
+     * @param load the load of the document by another thread
+     * @return the loaded document, {@code null} if it cannot be shared
+     */
+    XWikiDocument waitForLoad(CompletableFuture<XWikiDocument> load)
+    {
+        try {
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Never completed exceptionally
         }
+
+        return null;
+    }
+
+    /**
+     * Make sure that a load of the document which might have started before it was modified is not cached nor shared.
+     *
+     * @param key the cache key of the modified document
+     */
+    private void invalidateLoad(String key)
+    {
+        DocumentLoad load = this.loadingDocuments.remove(key);
+
+        if (load != null) {
+            load.invalidate();
+        }
+    }
+
+    /**
+     * @return the number of document loads which reused the result of a concurrent load of the same document instead
+     *         of asking the underlying store
+     * @since 16.6.0RC1
+     */
+    @Unstable
+    public long getCoalescedLoadCount()
+    {
+        return this.coalescedLoads.sum();
+    }
+
+    /**
+     * @param key the cache key of the document
+     * @param doc the document to load
+     * @param context the XWiki context
+     * @return the document found in the cache, an empty document when the document is known to not exist or
+     *         {@code null} when the document must be loaded from the persistent storage
+     */
+    private XWikiDocument getCachedDocument(String key, XWikiDocument doc, XWikiContext context)
+    {
+        LOGGER.debug("Starting checking for Document [{}] in cache", key);
+
+        XWikiDocument cachedoc;
+        try {
+            cachedoc = getCache().get(key);
+        } catch (Exception e) {
+            LOGGER.error("Failed to get document [{}] from cache", key, e);
+
+            cachedoc = null;
+        }
+
+        if (cachedoc != null) {
+            cachedoc.setFromCache(true);
+
+            LOGGER.debug("Document [{}] was retrieved from cache", key);
+        } else {
+            Boolean result = getPageExistCache().get(key);
+
+            if (result == null && !mightExist(doc, context)) {
+                result = Boolean.FALSE;
+            }
+
+            if (result == Boolean.FALSE) {
+                LOGGER.debug("Document [{}] doesn't exist in cache, returning an empty one", key);
+
+                cachedoc = doc;
+                cachedoc.setNew(true);
+
+                // Make sure to always return a document with an original version, even for one that does not exist.
+                // Allow writing more generic code.
+                cachedoc.setOriginalDocument(new XWikiDocument(cachedoc.getDocumentReference(), cachedoc.getLocale()));
+            }
+        }
+
+        return cachedoc;
+    }
+
+    private boolean mightExist(XWikiDocument doc, XWikiContext context)
+    {
+        return this.existenceFilter == null
+            || this.existenceFilter.mightExist(context.getWikiId(), doc.getFullName(), doc.getLanguage());
+    }
+
+    private void cacheLoadedDocument(String key, XWikiDocument loadedDocument)
+    {
+        if (loadedDocument.isNew()) {
+            getPageExistCache().set(key, Boolean.FALSE);
+        } else {
+            getCache().set(key, loadedDocument);
+
+            // Also update exist cache
+            getPageExistCache().set(key, Boolean.TRUE);
+        }
+
+        LOGGER.debug("Document [{}] was put in cache", key);
     }
 
     @Override
@@ -434,6 +789,7 @@ public void deleteXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext) throws
 
             this.store.deleteXWikiDoc(doc, context);
 
+            invalidateLoad(key);
             getCache().remove(key);
             getPageExistCache().remove(key);
             getPageExistCache().set(key, Boolean.FALSE);
@@ -772,6 +1128,10 @@ public boolean exists(XWikiDocument doc, XWikiContext inputxcontext) throws XWik
             } catch (Exception e) {
             }
 
+            if (!mightExist(doc, context)) {
+                return false;
+            }
+
             boolean result = this.store.exists(doc, context);
             getPageExistCache().set(key, Boolean.valueOf(result));
 
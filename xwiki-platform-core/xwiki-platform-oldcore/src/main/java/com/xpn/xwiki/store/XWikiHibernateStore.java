@@ -25,6 +25,7 @@
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -106,9 +107,16 @@
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.objects.BaseProperty;
 import com.xpn.xwiki.objects.BaseStringProperty;
+import com.xpn.xwiki.objects.DBStringListProperty;
+import com.xpn.xwiki.objects.DateProperty;
+import com.xpn.xwiki.objects.DoubleProperty;
+import com.xpn.xwiki.objects.FloatProperty;
+import com.xpn.xwiki.objects.IntegerProperty;
 import com.xpn.xwiki.objects.LargeStringProperty;
 import com.xpn.xwiki.objects.ListProperty;
+import com.xpn.xwiki.objects.LongProperty;
 import com.xpn.xwiki.objects.PropertyInterface;
+import com.xpn.xwiki.objects.StringListProperty;
 import com.xpn.xwiki.objects.StringProperty;
 import com.xpn.xwiki.objects.classes.BaseClass;
 import com.xpn.xwiki.objects.classes.PropertyClass;
@@ -127,6 +135,21 @@
 @Singleton
 public class XWikiHibernateStore extends XWikiHibernateBaseStore implements XWikiStoreInterface, Initializable
 {
+    /**
+     * The maximum number of documents loaded with the same queries by {@link #loadXWikiDocs(List, XWikiContext)}, to
+     * stay far from the limits of the databases regarding the number of values in a {@code IN} clause.
+     */
+    private static final int LOAD_BATCH_SIZE = 500;
+
+    /**
+     * The property types which are loaded with one query per type when loading the objects of a document, the others
+     * being loaded one by one.
+     */
+    private static final Set<String> BULK_LOADED_PROPERTY_TYPES = Set.of(IntegerProperty.class.getName(),
+        LongProperty.class.getName(), FloatProperty.class.getName(), DoubleProperty.class.getName(),
+        StringProperty.class.getName(), DateProperty.class.getName(), LargeStringProperty.class.getName(),
+        StringListProperty.class.getName(), DBStringListProperty.class.getName());
+
     @Inject
     private Logger logger;
 
@@ -205,6 +228,87 @@ public class XWikiHibernateStore extends XWikiHibernateBaseStore implements XWik
      */
     private final Map<Long, ReentrantLock> spaceSavingLockMap = Collections.synchronizedMap(new ReferenceMap<>());
 
+    /**
+     * The objects and properties of a document as they are currently stored in the database, used to write only what
+     * changed when saving the document instead of checking the existence of each object and property.
+     *
+     * @version $Id$
+     */
+    private static final class PersistedObjects
+    {
+        /**
+         * The stored objects indexed by id, each one described by its name, class name, number and guid.
+         */
+        private final Map<Long, Object[]> objects = new HashMap<>();
+
+        /**
+         * The class type of the stored properties indexed by object id and property name.
+         */
+        private final Map<Long, Map<String, String>> properties = new HashMap<>();
+
+        /**
+         * {@code true} if the properties which value did not change can be skipped, i.e. when the stored document is
+         * still the one that was modified.
+         */
+        private boolean skipCleanProperties;
+
+        /**
+         * The saved properties, which value dirty flag is cleared only once the transaction is committed.
+         */
+        private final List<BaseProperty> savedProperties = new ArrayList<>();
+
+        boolean contains(BaseCollection object)
+        {
+            return this.objects.containsKey(object.getId());
+        }
+
+        boolean isModified(BaseObject object)
+        {
+            Object[] stored = this.objects.get(object.getId());
+
+            return stored == null || !Objects.equals(stored[0], object.getName())
+                || !Objects.equals(stored[1], object.getClassName()) || !Objects.equals(stored[2], object.getNumber())
+                || !Objects.equals(stored[3], object.getGuid());
+        }
+
+        String getClassType(PropertyInterface property)
+        {
+            Map<String, String> objectProperties = this.properties.get(property.getId());
+
+            return objectProperties != null ? objectProperties.get(property.getName()) : null;
+        }
+    }
+
+    /**
+     * The properties of several objects loaded at once, see {@link #loadProperties(Collection, Session)}.
+     *
+     * @version $Id$
+     */
+    private static final class LoadedProperties
+    {
+        /**
+         * The name and class type of the stored properties, indexed by object id.
+         */
+        private final Map<Long, List<Object[]>> types = new HashMap<>();
+
+        /**
+         * The loaded properties, indexed by object id and property name.
+         */
+        private final Map<Long, Map<String, BaseProperty>> properties = new HashMap<>();
+
+        List<Object[]> getTypes(BaseCollection object)
+        {
+            return this.types.getOrDefault(object.getId(), Collections.emptyList());
+        }
+
+        BaseProperty getProperty(BaseCollection object, String name)
+        {
+            Map<String, BaseProperty> objectProperties = this.properties.get(object.getId());
+
+            return objectProperties != null ? objectProperties.get(name) : null;
+        }
+    }
+
     /**
      * This allows to initialize our storage engine. The hibernate config file path is taken from xwiki.cfg or directly
      * in the WEB-INF directory.
@@ -708,7 +812,12 @@ public void saveXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext, boolean
                         context.addBaseClass(bclass);
                     }
 
+                    PersistedObjects persistedObjects = null;
                     if (doc.hasElement(XWikiDocument.HAS_OBJECTS)) {
+                        // Get what is currently stored with two queries so that only the objects and properties
+                        // which changed are written, instead of checking the existence of each of them
+                        persistedObjects = loadPersistedObjects(doc, session);
+
                         // TODO: Delete all objects for which we don't have a name in the Map
                         for (List<BaseObject> objects : doc.getXObjects().values()) {
                             for (BaseObject obj : objects) {
@@ -718,7 +827,7 @@ public void saveXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext, boolean
                                     if (StringUtils.isEmpty(obj.getGuid())) {
                                         obj.setGuid(null);
                                     }
-                                    saveXWikiCollection(obj, context, false);
+                                    saveXWikiCollection(obj, persistedObjects, context, false);
                                 }
                             }
                         }
@@ -731,6 +840,14 @@ public void saveXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext, boolean
                         endTransaction(context, true);
                     }
 
+                    // The values are only known to be stored once the transaction is committed: if it's rolled back,
+                    // the properties stay dirty so that saving the document again writes them
+                    if (persistedObjects != null) {
+                        for (BaseProperty property : persistedObjects.savedProperties) {
+                            property.setValueDirty(false);
+                        }
+                    }
+
                     doc.setNew(false);
 
                     // Make sure that properly saved documents aren't restricted.
@@ -763,6 +880,44 @@ public void saveXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext, boolean
         }
     }
 
+    private PersistedObjects loadPersistedObjects(XWikiDocument document, Session session)
+    {
+        PersistedObjects persistedObjects = new PersistedObjects();
+
+        // The value dirty flags only tell what changed since the document was loaded. If the stored document was
+        // modified in the meantime (e.g. by another cluster node, or by a save which was rolled back), all the
+        // properties are written like before so that the stored values are overwritten and not merged.
+        // Note that the document was not flushed yet (FlushMode.COMMIT) so this reads the stored version.
+        XWikiDocument originalDocument = document.getOriginalDocument();
+        if (originalDocument != null) {
+            Query<String> versionQuery = session.createQuery(
+                "select xwikidoc.version from XWikiDocument as xwikidoc where xwikidoc.id = :id", String.class);
+            versionQuery.setParameter("id", document.getId());
+            persistedObjects.skipCleanProperties =
+                Objects.equals(versionQuery.uniqueResult(), originalDocument.getVersion());
+        }
+
+        Query<Object[]> query = session.createQuery("select obj.id, obj.name, obj.className, obj.number, obj.guid "
+            + "from BaseObject as obj where obj.name = :name", Object[].class);
+        query.setParameter("name", document.getFullName());
+        for (Object[] result : query.list()) {
+            persistedObjects.objects.put((Long) result[0], Arrays.copyOfRange(result, 1, result.length));
+        }
+
+        if (!persistedObjects.objects.isEmpty()) {
+            Query<Object[]> propertyQuery = session.createQuery("select prop.id.id, prop.id.name, prop.classType "
+                + "from BaseProperty as prop, BaseObject as obj where obj.name = :name and prop.id.id = obj.id",
+                Object[].class);
+            propertyQuery.setParameter("name", document.getFullName());
+            for (Object[] result : propertyQuery.list()) {
+                persistedObjects.properties.computeIfAbsent((Long) result[0], k -> new HashMap<>())
+                    .put((String) result[1], (String) result[2]);
+            }
+        }
+
+        return persistedObjects;
+    }
+
     private void updateXWikiSpaceTable(XWikiDocument document, Session session)
     {
         if (document.getLocale().equals(Locale.ROOT)) {
@@ -1055,118 +1210,7 @@ public XWikiDocument loadXWikiDoc(XWikiDocument defaultDocument, XWikiContext in
                         return defaultDocument;
                     }
 
-                    doc.setStore(this);
-                    doc.setNew(false);
-                    doc.setMostRecent(true);
-                    // Fix for XWIKI-1651
-                    doc.setDate(new Date(doc.getDate().getTime()));
-                    doc.setCreationDate(new Date(doc.getCreationDate().getTime()));
-                    doc.setContentUpdateDate(new Date(doc.getContentUpdateDate().getTime()));
-
-                    // Loading the attachment list
-                    if (doc.hasElement(XWikiDocument.HAS_ATTACHMENTS)) {
-                        loadAttachmentList(doc, context, false);
-                    }
-
-                    // TODO: handle the case where there are no xWikiClass and xWikiObject in the Database
-                    BaseClass bclass = new BaseClass();
-                    String cxml = doc.getXClassXML();
-                    if (cxml != null) {
-                        bclass.fromXML(cxml);
-                        doc.setXClass(bclass);
-                        bclass.setDirty(false);
-                    }
-
-                    // Store this XWikiClass in the context so that we can use it in case of recursive usage
-                    // of classes
-                    context.addBaseClass(bclass);
-
-                    if (doc.hasElement(XWikiDocument.HAS_OBJECTS)) {
-                        Query<BaseObject> query = session.createQuery(
-                            "from BaseObject as bobject where bobject.name = :name order by bobject.number",
-                            BaseObject.class);
-                        query.setParameter("name", doc.getFullName());
-
-                        Iterator<BaseObject> it = query.list().iterator();
-
-                        EntityReference localGroupEntityReference = new EntityReference("XWikiGroups",
-                            EntityType.DOCUMENT, new EntityReference("XWiki", EntityType.SPACE));
-                        DocumentReference groupsDocumentReference = new DocumentReference(context.getWikiId(),
-                            localGroupEntityReference.getParent().getName(), localGroupEntityReference.getName());
-
-                        boolean hasGroups = false;
-                        while (it.hasNext()) {
-                            BaseObject object = it.next();
-                            DocumentReference classReference = object.getXClassReference();
-
-                            if (classReference == null) {
-                                continue;
-                            }
-
-                            // It seems to search before is case insensitive. And this would break the loading if we get
-                            // an
-                            // object which doesn't really belong to this document
-                            if (!object.getDocumentReference().equals(doc.getDocumentReference())) {
-                                continue;
-                            }
-
-                            BaseObject newobject;
-                            if (classReference.equals(doc.getDocumentReference())) {
-                                newobject = bclass.newCustomClassInstance(true);
-                            } else {
-                                newobject = BaseClass.newCustomClassInstance(classReference, true, context);
-                            }
-                            if (newobject != null) {
-                                newobject.setId(object.getId());
-                                newobject.setXClassReference(object.getRelativeXClassReference());
-                                newobject.setDocumentReference(object.getDocumentReference());
-                                newobject.setNumber(object.getNumber());
-                                newobject.setGuid(object.getGuid());
-                                object = newobject;
-                            }
-
-                            if (classReference.equals(groupsDocumentReference)) {
-                                // Groups objects are handled differently.
-                                hasGroups = true;
-                            } else {
-                                loadXWikiCollectionInternal(object, doc, context, false, true);
-                            }
-                            doc.setXObject(object.getNumber(), object);
-                        }
-
-                        // AFAICT this was added as an emergency patch because loading of objects has proven
-                        // too slow and the objects which cause the most overhead are the XWikiGroups objects
-                        // as each group object (each group member) would otherwise cost 2 database queries.
-                        // This will do every group member in a single query.
-                        if (hasGroups) {
-                            Query<Object[]> query2 = session.createQuery(
-                                "select bobject.number, prop.value from StringProperty as prop,"
-                                    + "BaseObject as bobject where bobject.name = :name and bobject.className='XWiki.XWikiGroups' "
-                                    + "and bobject.id=prop.id.id and prop.id.name='member' order by bobject.number",
-                                Object[].class);
-                            query2.setParameter("name", doc.getFullName());
-
-                            Iterator<Object[]> it2 = query2.list().iterator();
-                            while (it2.hasNext()) {
-                                Object[] result = it2.next();
-                                Integer number = (Integer) result[0];
-                                String member = (String) result[1];
-                                BaseObject obj =
-                                    BaseClass.newCustomClassInstance(groupsDocumentReference, true, context);
-                                obj.setDocumentReference(doc.getDocumentReference());
-                                obj.setXClassReference(localGroupEntityReference);
-                                obj.setNumber(number.intValue());
-                                obj.setStringValue("member", member);
-                                doc.setXObject(obj.getNumber(), obj);
-                            }
-                        }
-                    }
-
-                    doc.setContentDirty(false);
-                    doc.setMetaDataDirty(false);
-
-                    // We need to ensure that the loaded document becomes the original document
-                    doc.setOriginalDocument(doc.clone());
+                    initializeLoadedDocument(doc, null, null, session, context);
 
                     if (bTransaction) {
                         endTransaction(context, false);
@@ -1199,6 +1243,354 @@ public XWikiDocument loadXWikiDoc(XWikiDocument defaultDocument, XWikiContext in
         }
     }
 
+    @Override
+    public List<XWikiDocument> loadXWikiDocs(List<XWikiDocument> defaultDocuments, XWikiContext inputxcontext)
+        throws XWikiException
+    {
+        XWikiContext context = getExecutionXContext(inputxcontext, true);
+
+        try {
+            // Dynamic custom mappings require a dedicated session factory for each document
+            if (defaultDocuments.size() < 2 || context.getWiki().hasDynamicCustomMappings()) {
+                return XWikiStoreInterface.super.loadXWikiDocs(defaultDocuments, context);
+            }
+
+            List<XWikiDocument> documents = new ArrayList<>(defaultDocuments.size());
+            for (int i = 0; i < defaultDocuments.size(); i += LOAD_BATCH_SIZE) {
+                documents.addAll(loadXWikiDocBatch(
+                    defaultDocuments.subList(i, Math.min(i + LOAD_BATCH_SIZE, defaultDocuments.size())), context));
+            }
+
+            return documents;
+        } finally {
+            restoreExecutionXContext();
+        }
+    }
+
+    private List<XWikiDocument> loadXWikiDocBatch(List<XWikiDocument> defaultDocuments, XWikiContext context)
+        throws XWikiException
+    {
+        List<XWikiDocument> documents = new ArrayList<>(defaultDocuments.size());
+
+        boolean bTransaction = true;
+        MonitorPlugin monitor = Util.getMonitorPlugin(context);
+        try {
+            // Start monitoring timer
+            if (monitor != null) {
+                monitor.startTimer(HINT);
+            }
+            checkHibernate(context);
+
+            bTransaction = bTransaction && beginTransaction(context);
+            try {
+                Session session = getSession(context);
+                session.setHibernateFlushMode(FlushMode.MANUAL);
+
+                // Load all the documents at once
+                Set<Long> ids = new HashSet<>();
+                defaultDocuments.forEach(defaultDocument -> ids.add(defaultDocument.getId()));
+                Query<XWikiDocument> query =
+                    session.createQuery("from XWikiDocument as doc where doc.id in (:ids)", XWikiDocument.class);
+                query.setParameterList("ids", ids);
+                Map<Long, XWikiDocument> loadedDocuments = new HashMap<>();
+                for (XWikiDocument doc : query.list()) {
+                    loadedDocuments.put(doc.getId(), doc);
+                }
+
+                Map<Long, List<XWikiAttachment>> attachments = loadAttachmentLists(loadedDocuments.values(), session);
+                Map<String, List<BaseObject>> objects = loadObjectLists(loadedDocuments.values(), session);
+
+                Set<Long> initializedDocuments = new HashSet<>();
+                for (XWikiDocument defaultDocument : defaultDocuments) {
+                    XWikiDocument doc = loadedDocuments.get(defaultDocument.getId());
+                    if (doc == null) {
+                        defaultDocument.setNew(true);
+
+                        // Make sure to always return a document with an original version, even for one that does not
+                        // exist.
+                        defaultDocument.setOriginalDocument(
+                            new XWikiDocument(defaultDocument.getDocumentReference(), defaultDocument.getLocale()));
+
+                        documents.add(defaultDocument);
+                    } else {
+                        // The same document might be asked several times
+                        if (initializedDocuments.add(doc.getId())) {
+                            initializeLoadedDocument(doc,
+                                attachments.getOrDefault(doc.getId(), Collections.emptyList()),
+                                objects.getOrDefault(doc.getFullName(), Collections.emptyList()), session, context);
+
+                            this.logger.debug("Loaded XWikiDocument: [{}]", doc.getDocumentReferenceWithLocale());
+                        }
+
+                        documents.add(doc);
+                    }
+                }
+
+                if (bTransaction) {
+                    endTransaction(context, false);
+                }
+            } finally {
+                if (bTransaction) {
+                    try {
+                        endTransaction(context, false);
+                    } catch (Exception e) {
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Object[] args = {defaultDocuments.stream().map(XWikiDocument::getDocumentReferenceWithLocale).toList()};
+            throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
+                XWikiException.ERROR_XWIKI_STORE_HIBERNATE_READING_DOC, "Exception while reading documents {0}", e,
+                args);
+        } finally {
+            // End monitoring timer
+            if (monitor != null) {
+                monitor.endTimer(HINT);
+            }
+        }
+
+        return documents;
+    }
+
+    private Map<Long, List<XWikiAttachment>> loadAttachmentLists(Collection<XWikiDocument> documents,
+        Session session)
+    {
+        Set<Long> ids = new HashSet<>();
+        for (XWikiDocument document : documents) {
+            if (document.hasElement(XWikiDocument.HAS_ATTACHMENTS)) {
+                ids.add(document.getId());
+            }
+        }
+
+        Map<Long, List<XWikiAttachment>> attachments = new HashMap<>();
+        if (!ids.isEmpty()) {
+            Query<XWikiAttachment> query = session.createQuery(
+                "from XWikiAttachment as attach where attach.docId in (:docids)", XWikiAttachment.class);
+            query.setParameterList("docids", ids);
+            for (XWikiAttachment attachment : query.list()) {
+                attachments.computeIfAbsent(attachment.getDocId(), k -> new ArrayList<>()).add(attachment);
+            }
+        }
+
+        return attachments;
+    }
+
+    private Map<String, List<BaseObject>> loadObjectLists(Collection<XWikiDocument> documents, Session session)
+    {
+        Set<String> names = new HashSet<>();
+        for (XWikiDocument document : documents) {
+            if (document.hasElement(XWikiDocument.HAS_OBJECTS)) {
+                names.add(document.getFullName());
+            }
+        }
+
+        Map<String, List<BaseObject>> objects = new HashMap<>();
+        if (!names.isEmpty()) {
+            Query<BaseObject> query = session.createQuery(
+                "from BaseObject as bobject where bobject.name in (:names) order by bobject.name, bobject.number",
+                BaseObject.class);
+            query.setParameterList("names", names);
+            for (BaseObject object : query.list()) {
+                objects.computeIfAbsent(object.getName(), k -> new ArrayList<>()).add(object);
+            }
+        }
+
+        return objects;
+    }
+
+    /**
+     * Load the properties of the passed objects with one query to get their types and then one query per property
+     * table.
+     *
+     * @param objectIds the identifiers of the objects for which to load the properties
+     * @param session the current session
+     * @return the loaded properties
+     */
+    private LoadedProperties loadProperties(List<Long> objectIds, Session session)
+    {
+        LoadedProperties loadedProperties = new LoadedProperties();
+
+        for (int i = 0; i < objectIds.size(); i += LOAD_BATCH_SIZE) {
+            List<Long> ids = objectIds.subList(i, Math.min(i + LOAD_BATCH_SIZE, objectIds.size()));
+
+            Query<Object[]> query = session.createQuery(
+                "select prop.id.id, prop.name, prop.classType from BaseProperty as prop where prop.id.id in (:ids)",
+                Object[].class);
+            query.setParameterList("ids", ids);
+            Set<String> classTypes = new HashSet<>();
+            for (Object[] result : query.list()) {
+                loadedProperties.types.computeIfAbsent((Long) result[0], k -> new ArrayList<>())
+                    .add(new Object[] {result[1], result[2]});
+                classTypes.add((String) result[2]);
+            }
+
+            for (String classType : classTypes) {
+                // Unknown types are loaded one by one, see #loadXWikiCollectionInternal
+                if (BULK_LOADED_PROPERTY_TYPES.contains(classType)) {
+                    // Several property types share the same table so the stored type must be checked too
+                    Query<BaseProperty> propertyQuery = session.createQuery(
+                        "from " + classType + " as prop where prop.id.id in (:ids) and prop.classType = :classType",
+                        BaseProperty.class);
+                    propertyQuery.setParameterList("ids", ids);
+                    propertyQuery.setParameter("classType", classType);
+                    for (BaseProperty property : propertyQuery.list()) {
+                        loadedProperties.properties.computeIfAbsent(property.getId(), k -> new HashMap<>())
+                            .put(property.getName(), property);
+                    }
+                }
+            }
+        }
+
+        return loadedProperties;
+    }
+
+    /**
+     * Initialize a document freshly loaded from the database: attachments, class and objects.
+     *
+     * @param doc the loaded document
+     * @param attachments the attachments of the document, or null to load them from the database
+     * @param objects the objects of the document ordered by number, or null to load them from the database
+     * @param session the current session
+     * @param context the XWiki context
+     * @throws XWikiException when failing to load the class or the objects of the document
+     */
+    private void initializeLoadedDocument(XWikiDocument doc, List<XWikiAttachment> attachments,
+        List<BaseObject> objects, Session session, XWikiContext context) throws XWikiException
+    {
+        doc.setStore(this);
+        doc.setNew(false);
+        doc.setMostRecent(true);
+        // Fix for XWIKI-1651
+        doc.setDate(new Date(doc.getDate().getTime()));
+        doc.setCreationDate(new Date(doc.getCreationDate().getTime()));
+        doc.setContentUpdateDate(new Date(doc.getContentUpdateDate().getTime()));
+
+        // Loading the attachment list
+        if (doc.hasElement(XWikiDocument.HAS_ATTACHMENTS)) {
+            if (attachments != null) {
+                attachments.forEach(doc::setAttachment);
+            } else {
+                loadAttachmentList(doc, context, false);
+            }
+        }
+
+        // TODO: handle the case where there are no xWikiClass and xWikiObject in the Database
+        BaseClass bclass = new BaseClass();
+        String cxml = doc.getXClassXML();
+        if (cxml != null) {
+            bclass.fromXML(cxml);
+            doc.setXClass(bclass);
+            bclass.setDirty(false);
+        }
+
+        // Store this XWikiClass in the context so that we can use it in case of recursive usage
+        // of classes
+        context.addBaseClass(bclass);
+
+        if (doc.hasElement(XWikiDocument.HAS_OBJECTS)) {
+            List<BaseObject> documentObjects = objects;
+            if (documentObjects == null) {
+                Query<BaseObject> query = session.createQuery(
+                    "from BaseObject as bobject where bobject.name = :name order by bobject.number",
+                    BaseObject.class);
+                query.setParameter("name", doc.getFullName());
+                documentObjects = query.list();
+            }
+
+            Iterator<BaseObject> it = documentObjects.iterator();
+
+            EntityReference localGroupEntityReference = new EntityReference("XWikiGroups",
+                EntityType.DOCUMENT, new EntityReference("XWiki", EntityType.SPACE));
+            DocumentReference groupsDocumentReference = new DocumentReference(context.getWikiId(),
+                localGroupEntityReference.getParent().getName(), localGroupEntityReference.getName());
+
+            // Load the properties of all the objects at once instead of object by object (the group objects are
+            // handled separately)
+            List<Long> objectIds = new ArrayList<>(documentObjects.size());
+            for (BaseObject object : documentObjects) {
+                if (object.getXClassReference() != null
+                    && !object.getXClassReference().equals(groupsDocumentReference)) {
+                    objectIds.add(object.getId());
+                }
+            }
+            LoadedProperties loadedProperties = loadProperties(objectIds, session);
+
+            boolean hasGroups = false;
+            while (it.hasNext()) {
+                BaseObject object = it.next();
+                DocumentReference classReference = object.getXClassReference();
+
+                if (classReference == null) {
+                    continue;
+                }
+
+                // It seems to search before is case insensitive. And this would break the loading if we get an
+                // object which doesn't really belong to this document
+                if (!object.getDocumentReference().equals(doc.getDocumentReference())) {
+                    continue;
+                }
+
+                BaseObject newobject;
+                if (classReference.equals(doc.getDocumentReference())) {
+                    newobject = bclass.newCustomClassInstance(true);
+                } else {
+                    newobject = BaseClass.newCustomClassInstance(classReference, true, context);
+                }
+                if (newobject != null) {
+                    newobject.setId(object.getId());
+                    newobject.setXClassReference(object.getRelativeXClassReference());
+                    newobject.setDocumentReference(object.getDocumentReference());
+                    newobject.setNumber(object.getNumber());
+                    newobject.setGuid(object.getGuid());
+                    object = newobject;
+                }
+
+                if (classReference.equals(groupsDocumentReference)) {
+                    // Groups objects are handled differently.
+                    hasGroups = true;
+                } else {
+                    loadXWikiCollectionInternal(object, doc, loadedProperties, context, false, true);
+                }
+                doc.setXObject(object.getNumber(), object);
+            }
+
+            // AFAICT this was added as an emergency patch because loading of objects has proven
+            // too slow and the objects which cause the most overhead are the XWikiGroups objects
+            // as each group object (each group member) would otherwise cost 2 database queries.
+            // This will do every group member in a single query.
+            if (hasGroups) {
+                Query<Object[]> query2 = session.createQuery(
+                    "select bobject.number, prop.value, bobject.guid from StringProperty as prop,"
+                        + "BaseObject as bobject where bobject.name = :name and bobject.className='XWiki.XWikiGroups' "
+                        + "and bobject.id=prop.id.id and prop.id.name='member' order by bobject.number",
+                    Object[].class);
+                query2.setParameter("name", doc.getFullName());
+
+                Iterator<Object[]> it2 = query2.list().iterator();
+                while (it2.hasNext()) {
+                    Object[] result = it2.next();
+                    Integer number = (Integer) result[0];
+                    String member = (String) result[1];
+                    BaseObject obj = BaseClass.newCustomClassInstance(groupsDocumentReference, true, context);
+                    obj.setDocumentReference(doc.getDocumentReference());
+                    obj.setXClassReference(localGroupEntityReference);
+                    obj.setNumber(number.intValue());
+                    obj.setGuid((String) result[2]);
+                    obj.setStringValue("member", member);
+                    // The member is what is stored so there is no need to write it again when saving the document
+                    ((BaseProperty) obj.getField("member")).setValueDirty(false);
+                    doc.setXObject(obj.getNumber(), obj);
+                }
+            }
+        }
+
+        doc.setContentDirty(false);
+        doc.setMetaDataDirty(false);
+
+        // We need to ensure that the loaded document becomes the original document
+        doc.setOriginalDocument(doc.clone());
+    }
+
     @Override
     public void deleteXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext) throws XWikiException
     {
@@ -1356,6 +1748,20 @@ private void checkObjectClassIsLocal(BaseCollection object, XWikiContext context
     @Deprecated
     public void saveXWikiCollection(BaseCollection object, XWikiContext inputxcontext, boolean bTransaction)
         throws XWikiException
+    {
+        saveXWikiCollection(object, null, inputxcontext, bTransaction);
+    }
+
+    /**
+     * @param object the collection to save
+     * @param persistedObjects what is currently stored for the document of the object, or {@code null} to query the
+     *            database to know if the object and its properties need to be inserted or updated
+     * @param inputxcontext the XWiki context
+     * @param bTransaction true if the save should be done in its own transaction
+     * @throws XWikiException when failing to save the collection
+     */
+    private void saveXWikiCollection(BaseCollection object, PersistedObjects persistedObjects,
+        XWikiContext inputxcontext, boolean bTransaction) throws XWikiException
     {
         XWikiContext context = getExecutionXContext(inputxcontext, true);
 
@@ -1376,26 +1782,37 @@ public void saveXWikiCollection(BaseCollection object, XWikiContext inputxcontex
             try {
                 Session session = getSession(context);
 
-                // Verify if the property already exists
                 Query<Long> query;
-                if (stats) {
-                    query = session.createQuery(
-                        "select obj.id from " + object.getClass().getName() + " as obj where obj.id = :id", Long.class);
-                } else {
-                    query = session.createQuery("select obj.id from BaseObject as obj where obj.id = :id", Long.class);
-                }
-                query.setParameter("id", object.getId());
-                if (query.uniqueResult() == null) {
-                    if (stats) {
-                        session.save(object);
-                    } else {
+                if (persistedObjects != null) {
+                    // We already know what is stored, only write the object if it's new or modified
+                    if (!persistedObjects.contains(object)) {
                         session.save("com.xpn.xwiki.objects.BaseObject", object);
+                    } else if (persistedObjects.isModified((BaseObject) object)) {
+                        session.update("com.xpn.xwiki.objects.BaseObject", object);
                     }
                 } else {
+                    // Verify if the property already exists
                     if (stats) {
-                        session.update(object);
+                        query = session.createQuery(
+                            "select obj.id from " + object.getClass().getName() + " as obj where obj.id = :id",
+                            Long.class);
                     } else {
-                        session.update("com.xpn.xwiki.objects.BaseObject", object);
+                        query =
+                            session.createQuery("select obj.id from BaseObject as obj where obj.id = :id", Long.class);
+                    }
+                    query.setParameter("id", object.getId());
+                    if (query.uniqueResult() == null) {
+                        if (stats) {
+                            session.save(object);
+                        } else {
+                            session.save("com.xpn.xwiki.objects.BaseObject", object);
+                        }
+                    } else {
+                        if (stats) {
+                            session.update(object);
+                        } else {
+                            session.update("com.xpn.xwiki.objects.BaseObject", object);
+                        }
                     }
                 }
                 /*
@@ -1460,7 +1877,7 @@ public void saveXWikiCollection(BaseCollection object, XWikiContext inputxcontex
 
                         String pname = prop.getName();
                         if (pname != null && !pname.trim().equals("") && !handledProps.contains(pname)) {
-                            saveXWikiPropertyInternal(prop, context, false);
+                            saveXWikiPropertyInternal(prop, persistedObjects, context, false);
                         }
                     }
                 }
@@ -1506,6 +1923,13 @@ private void loadXWikiCollectionInternal(BaseCollection object, XWikiContext con
 
     private void loadXWikiCollectionInternal(BaseCollection object1, XWikiDocument doc, XWikiContext inputxcontext,
         boolean bTransaction, boolean alreadyLoaded) throws XWikiException
+    {
+        loadXWikiCollectionInternal(object1, doc, null, inputxcontext, bTransaction, alreadyLoaded);
+    }
+
+    private void loadXWikiCollectionInternal(BaseCollection object1, XWikiDocument doc,
+        LoadedProperties loadedProperties, XWikiContext inputxcontext, boolean bTransaction, boolean alreadyLoaded)
+        throws XWikiException
     {
         XWikiContext context = getExecutionXContext(inputxcontext, true);
 
@@ -1567,11 +1991,17 @@ private void loadXWikiCollectionInternal(BaseCollection object1, XWikiDocument d
 
                     // Load strings, integers, dates all at once
 
-                    Query<Object[]> query = session.createQuery(
-                        "select prop.name, prop.classType from BaseProperty as prop where prop.id.id = :id",
-                        Object[].class);
-                    query.setParameter("id", object.getId());
-                    for (Object[] result : query.list()) {
+                    List<Object[]> storedProperties;
+                    if (loadedProperties != null) {
+                        storedProperties = loadedProperties.getTypes(object);
+                    } else {
+                        Query<Object[]> query = session.createQuery(
+                            "select prop.name, prop.classType from BaseProperty as prop where prop.id.id = :id",
+                            Object[].class);
+                        query.setParameter("id", object.getId());
+                        storedProperties = query.list();
+                    }
+                    for (Object[] result : storedProperties) {
                         String name = (String) result[0];
                         // No need to load fields already loaded from
                         // custom mapping
@@ -1581,11 +2011,19 @@ private void loadXWikiCollectionInternal(BaseCollection object1, XWikiDocument d
                         String classType = (String) result[1];
                         BaseProperty property = null;
 
+                        BaseProperty loadedProperty =
+                            loadedProperties != null ? loadedProperties.getProperty(object, name) : null;
                         try {
-                            property = (BaseProperty) Class.forName(classType).newInstance();
-                            property.setObject(object);
-                            property.setName(name);
-                            loadXWikiProperty(property, context, false);
+                            if (loadedProperty != null) {
+                                property = loadedProperty;
+                                property.setObject(object);
+                                initializeLoadedProperty(property);
+                            } else {
+                                property = (BaseProperty) Class.forName(classType).newInstance();
+                                property.setObject(object);
+                                property.setName(name);
+                                loadXWikiProperty(property, context, false);
+                            }
                         } catch (Exception e) {
                             // WORKAROUND IN CASE OF MIXMATCH BETWEEN STRING AND LARGESTRING
                             try {
@@ -1744,6 +2182,27 @@ public void deleteXWikiCollection(BaseCollection object, XWikiContext inputxcont
         }
     }
 
+    private void initializeLoadedProperty(BaseProperty property)
+    {
+        // In Oracle, empty string are converted to NULL. Since an undefined property is not found at all, it is
+        // safe to assume that a retrieved NULL value should actually be an empty string.
+        if (property instanceof BaseStringProperty) {
+            BaseStringProperty stringProperty = (BaseStringProperty) property;
+            if (stringProperty.getValue() == null) {
+                stringProperty.setValue("");
+            }
+        }
+        property.setValueDirty(false);
+
+        // TODO: understand why collections are lazy loaded
+        // Let's force reading lists if there is a list
+        // This seems to be an issue since Hibernate 3.0
+        // Without this test ViewEditTest.testUpdateAdvanceObjectProp fails
+        if (property instanceof ListProperty) {
+            ((ListProperty) property).getList();
+        }
+    }
+
     private void loadXWikiProperty(PropertyInterface property, XWikiContext context, boolean bTransaction)
         throws XWikiException
     {
@@ -1751,28 +2210,17 @@ private void loadXWikiProperty(PropertyInterface property, XWikiContext context,
             try {
                 try {
                     session.load(property, (Serializable) property);
-                    // In Oracle, empty string are converted to NULL. Since an undefined property is not found at all,
-                    // it is
-                    // safe to assume that a retrieved NULL value should actually be an empty string.
-                    if (property instanceof BaseStringProperty) {
-                        BaseStringProperty stringProperty = (BaseStringProperty) property;
-                        if (stringProperty.getValue() == null) {
-                            stringProperty.setValue("");
-                        }
-                    }
-                    ((BaseProperty) property).setValueDirty(false);
+                    initializeLoadedProperty((BaseProperty) property);
                 } catch (ObjectNotFoundException e) {
                     // Let's accept that there is no data in property tables but log it
                     this.logger.error("No data for property [{}] of object id [{}]", property.getName(),
                         property.getId());
-                }
 
-                // TODO: understand why collections are lazy loaded
-                // Let's force reading lists if there is a list
-                // This seems to be an issue since Hibernate 3.0
-                // Without this test ViewEditTest.testUpdateAdvanceObjectProp fails
-                if (property instanceof ListProperty) {
-                    ((ListProperty) property).getList();
+                    // TODO: understand why collections are lazy loaded
+                    // Let's force reading lists if there is a list
+                    if (property instanceof ListProperty) {
+                        ((ListProperty) property).getList();
+                    }
                 }
             } catch (Exception e) {
                 BaseCollection obj = property.getObject();
@@ -1787,8 +2235,8 @@ private void loadXWikiProperty(PropertyInterface property, XWikiContext context,
         });
     }
 
-    private void saveXWikiPropertyInternal(final PropertyInterface property, final XWikiContext context,
-        final boolean runInOwnTransaction) throws XWikiException
+    private void saveXWikiPropertyInternal(final PropertyInterface property, final PersistedObjects persistedObjects,
+        final XWikiContext context, final boolean runInOwnTransaction) throws XWikiException
     {
         // Clone runInOwnTransaction so the value passed is not altered.
         boolean bTransaction = runInOwnTransaction;
@@ -1800,18 +2248,26 @@ private void saveXWikiPropertyInternal(final PropertyInterface property, final X
             try {
                 final Session session = this.getSession(context);
 
-                Query<String> query = session.createQuery(
-                    "select prop.classType from BaseProperty as prop where prop.id.id = :id and prop.id.name= :name",
-                    String.class);
-                query.setParameter("id", property.getId());
-                query.setParameter("name", property.getName());
+                String oldClassType;
+                if (persistedObjects != null) {
+                    oldClassType = persistedObjects.getClassType(property);
+                } else {
+                    Query<String> query = session.createQuery("select prop.classType from BaseProperty as prop "
+                        + "where prop.id.id = :id and prop.id.name= :name", String.class);
+                    query.setParameter("id", property.getId());
+                    query.setParameter("name", property.getName());
 
-                String oldClassType = query.uniqueResult();
+                    oldClassType = query.uniqueResult();
+                }
                 String newClassType = ((BaseProperty) property).getClassType();
                 if (oldClassType == null) {
                     session.save(property);
                 } else if (oldClassType.equals(newClassType)) {
-                    session.update(property);
+                    // When we know what is stored, there is no need to write a property which value did not change
+                    if (persistedObjects == null || !persistedObjects.skipCleanProperties
+                        || ((BaseProperty) property).isValueDirty()) {
+                        session.update(property);
+                    }
                 } else {
                     // The property type has changed. We cannot simply update its value because the new value and the
                     // old
@@ -1831,7 +2287,12 @@ private void saveXWikiPropertyInternal(final PropertyInterface property, final X
                     session.save(property);
                 }
 
-                ((BaseProperty) property).setValueDirty(false);
+                if (persistedObjects != null) {
+                    // Cleared by saveXWikiDoc once the transaction is committed
+                    persistedObjects.savedProperties.add((BaseProperty) property);
+                } else {
+                    ((BaseProperty) property).setValueDirty(false);
+                }
 
                 if (bTransaction) {
                     endTransaction(context, true);
@@ -19,12 +19,14 @@
  */
 package com.xpn.xwiki.store;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.xwiki.component.annotation.Role;
 import org.xwiki.model.reference.AttachmentReference;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.query.QueryManager;
+import org.xwiki.stability.Unstable;
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
@@ -59,6 +61,28 @@ default void renameXWikiDoc(XWikiDocument doc, DocumentReference newReference, X
 
     XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext context) throws XWikiException;
 
+    /**
+     * Load several documents of the current wiki at once. Each passed document is used the same way as the document
+     * passed to {@link #loadXWikiDoc(XWikiDocument, XWikiContext)}.
+     *
+     * @param documents the documents to load
+     * @param context the XWiki context
+     * @return the loaded documents, in the same order as the passed documents
+     * @throws XWikiException when failing to load the documents
+     * @since 16.6.0RC1
+     */
+    @Unstable
+    default List<XWikiDocument> loadXWikiDocs(List<XWikiDocument> documents, XWikiContext context)
+        throws XWikiException
+    {
+        List<XWikiDocument> loadedDocuments = new ArrayList<>(documents.size());
+        for (XWikiDocument document : documents) {
+            loadedDocuments.add(loadXWikiDoc(document, context));
+        }
+
+        return loadedDocuments;
+    }
+
     void deleteXWikiDoc(XWikiDocument doc, XWikiContext context) throws XWikiException;
 
     List<String> getClassList(XWikiContext context) throws XWikiException;
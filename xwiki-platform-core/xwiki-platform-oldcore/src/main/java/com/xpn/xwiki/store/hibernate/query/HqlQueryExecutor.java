@@ -50,6 +50,7 @@
 import org.xwiki.query.QueryParameter;
 import org.xwiki.query.SecureQuery;
 import org.xwiki.query.WrappingQuery;
+import org.xwiki.query.internal.FilteredPagination;
 import org.xwiki.security.authorization.ContextualAuthorizationManager;
 import org.xwiki.security.authorization.Right;
 
@@ -164,6 +165,20 @@ public <T> List<T> execute(final Query query) throws QueryException
             // Filter the query
             Query filteredQuery = filterQuery(query);
 
+            if (FilteredPagination.isFilteredPagination(query)) {
+                // Fetch windows of rows until the filtered page is full
+                return FilteredPagination.execute(query,
+                    (offset, limit) -> getStore().executeRead(getContext(), session -> {
+                        org.hibernate.query.Query<T> hquery = createQuery(session, filteredQuery);
+                        hquery.setFirstResult(offset);
+                        if (limit > 0) {
+                            hquery.setMaxResults(limit);
+                        }
+
+                        return hquery.list();
+                    }));
+            }
+
             // Execute the query
             List<T> results = getStore().executeRead(getContext(), session -> {
                 org.hibernate.query.Query<T> hquery = createQuery(session, filteredQuery);
@@ -253,6 +253,7 @@ private void importPackageFilterStream(XWikiAttachment packFile, XWikiRequest re
         xarProperties.setVerbose(true);
         instanceProperties.setVerbose(true);
         instanceProperties.setStoppedWhenSaveFail(false);
+        instanceProperties.setSaveThreads((int) context.getWiki().ParamAsLong("xwiki.action.import.saveThreads", 1));
         LoggerManager loggerManager = Utils.getComponent(LoggerManager.class);
         LogQueue logger = new LogQueue();
         if (loggerManager != null) {
@@ -41,6 +41,7 @@
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.PageReference;
+import org.xwiki.rendering.block.XDOM;
 import org.xwiki.rendering.configuration.ExtendedRenderingConfiguration;
 import org.xwiki.rendering.syntax.Syntax;
 import org.xwiki.security.authorization.Right;
@@ -363,6 +364,30 @@ public void getSections10() throws XWikiException
         assertEquals("1.1", header2.getSectionLevel());
     }
 
+    @Test
+    void getReadOnlyXDOM()
+    {
+        this.document.setContent("= header 1=\nheader 1 content");
+        this.document.setSyntax(Syntax.XWIKI_2_1);
+
+        XDOM readOnlyXDOM = this.document.getReadOnlyXDOM();
+
+        // The cached XDOM is shared
+        assertSame(readOnlyXDOM, this.document.getReadOnlyXDOM());
+
+        // The modifiable XDOM is a copy
+        XDOM xdom = this.document.getXDOM();
+        assertNotSame(readOnlyXDOM, xdom);
+        assertEquals(readOnlyXDOM.getChildren().size(), xdom.getChildren().size());
+        xdom.setChildren(List.of());
+        assertTrue(xdom.getChildren().isEmpty());
+        assertEquals(1, this.document.getReadOnlyXDOM().getChildren().size());
+
+        // Changing the content resets the cache
+        this.document.setContent("other content");
+        assertNotSame(readOnlyXDOM, this.document.getReadOnlyXDOM());
+    }
+
     @Test
     public void getSections() throws XWikiException
     {
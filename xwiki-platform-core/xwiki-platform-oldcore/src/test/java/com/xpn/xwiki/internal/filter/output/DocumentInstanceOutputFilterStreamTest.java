@@ -29,6 +29,7 @@
 import java.util.Map;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.junit.jupiter.api.Test;
 import org.suigeneris.jrcs.rcs.Version;
 import org.xwiki.filter.FilterException;
@@ -52,7 +53,13 @@
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
 
 /**
  * Validate {@link DocumentInstanceOutputFilterStream}.
@@ -168,6 +175,25 @@ void importDocument1WithPreserveVersion() throws FilterException, XWikiException
         assertDocument1PreserveVersion(document);
     }
 
+    @Test
+    void importDocument1WithPreserveVersionInSaveThreads() throws FilterException, XWikiException, ParseException
+    {
+        DocumentInstanceOutputProperties outputProperties = new DocumentInstanceOutputProperties();
+
+        outputProperties.setVersionPreserved(true);
+        outputProperties.setVerbose(false);
+        outputProperties.setSaveThreads(2);
+
+        importFromXML("document1", outputProperties);
+
+        XWikiDocument document = this.oldcore.getSpyXWiki().getDocument(new DocumentReference("wiki", "space", "page"),
+            this.oldcore.getXWikiContext());
+
+        assertFalse(document.isNew());
+
+        assertDocument1PreserveVersion(document);
+    }
+
     @Test
     void importDocument1WithDeletePreviousAndPreserveVersion() throws FilterException, XWikiException, ParseException
     {
@@ -681,4 +707,88 @@ void importDocumentWithRevisionsAndPreserveVersion() throws FilterException, XWi
 
         assertEquals("42.3", document3.getVersion());
     }
+
+    private void assertDocumentWithRevisions(String name) throws XWikiException
+    {
+        XWikiDocument document = this.oldcore.getSpyXWiki().getDocument(new DocumentReference("wiki", "space", name),
+            this.oldcore.getXWikiContext());
+
+        assertFalse(document.isNew());
+        assertEquals("42.3", document.getVersion());
+        assertEquals("content3", document.getContent());
+
+        // The revisions of each document are saved in order
+        Version[] versions = document.getRevisions(this.oldcore.getXWikiContext());
+        assertEquals(3, versions.length);
+        XWikiDocumentArchive archive = document.getDocumentArchive(this.oldcore.getXWikiContext());
+        for (int i = 0; i < versions.length; ++i) {
+            XWikiDocument revision = archive.loadDocument(versions[i], this.oldcore.getXWikiContext());
+            assertEquals("42." + (i + 1), revision.getVersion());
+            assertEquals("content" + (i + 1), revision.getContent());
+        }
+    }
+
+    private XWikiException failSave(String name) throws XWikiException
+    {
+        XWikiException saveException = new XWikiException();
+        doThrow(saveException).when(this.oldcore.getSpyXWiki()).saveDocument(
+            argThat(document -> document != null && document.getDocumentReference().getName().equals(name)), any(),
+            anyBoolean(), any());
+
+        return saveException;
+    }
+
+    @Test
+    void importDocumentsWithRevisionsInSaveThreads() throws FilterException, XWikiException
+    {
+        DocumentInstanceOutputProperties outputProperties = new DocumentInstanceOutputProperties();
+
+        outputProperties.setVersionPreserved(true);
+        outputProperties.setVerbose(false);
+        outputProperties.setSaveThreads(2);
+
+        importFromXML("documentswithrevisions", outputProperties);
+
+        assertDocumentWithRevisions("page1");
+        assertDocumentWithRevisions("page2");
+        assertDocumentWithRevisions("page3");
+    }
+
+    @Test
+    void importDocumentsWithSaveFailureInSaveThreads() throws XWikiException
+    {
+        XWikiException saveException = failSave("page2");
+
+        DocumentInstanceOutputProperties outputProperties = new DocumentInstanceOutputProperties();
+
+        outputProperties.setVersionPreserved(true);
+        outputProperties.setVerbose(false);
+        outputProperties.setSaveThreads(2);
+
+        // The failure of a save thread is reported to the reading thread, at the latest when closing the stream
+        FilterException exception =
+            assertThrows(FilterException.class, () -> importFromXML("documentswithrevisions", outputProperties));
+        assertSame(saveException, ExceptionUtils.getRootCause(exception));
+    }
+
+    @Test
+    void importDocumentsWithSaveFailureInSaveThreadsWithoutStopping() throws FilterException, XWikiException
+    {
+        failSave("page2");
+
+        DocumentInstanceOutputProperties outputProperties = new DocumentInstanceOutputProperties();
+
+        outputProperties.setVersionPreserved(true);
+        outputProperties.setVerbose(false);
+        outputProperties.setSaveThreads(2);
+        outputProperties.setStoppedWhenSaveFail(false);
+
+        importFromXML("documentswithrevisions", outputProperties);
+
+        // The other documents are still saved
+        assertDocumentWithRevisions("page1");
+        assertTrue(this.oldcore.getSpyXWiki()
+            .getDocument(new DocumentReference("wiki", "space", "page2"), this.oldcore.getXWikiContext()).isNew());
+        assertDocumentWithRevisions("page3");
+    }
 }
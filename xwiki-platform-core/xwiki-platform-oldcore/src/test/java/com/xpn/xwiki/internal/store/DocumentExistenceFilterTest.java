@@ -0,0 +1,72 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link DocumentExistenceFilter}.
+ *
+ * @version $Id$
+ */
+class DocumentExistenceFilterTest
+{
+    @Test
+    void bloomFilter()
+    {
+        DocumentExistenceFilter.BloomFilter filter = new DocumentExistenceFilter.BloomFilter(1000, 0.01);
+
+        for (int i = 0; i < 1000; ++i) {
+            filter.put("Space.Page" + i);
+        }
+
+        // No false negative
+        for (int i = 0; i < 1000; ++i) {
+            assertTrue(filter.mightContain("Space.Page" + i));
+        }
+
+        // Few false positives
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; ++i) {
+            if (filter.mightContain("Other.Page" + i)) {
+                ++falsePositives;
+            }
+        }
+        assertTrue(falsePositives < 300, "Too many false positives: " + falsePositives);
+    }
+
+    @Test
+    void emptyBloomFilter()
+    {
+        DocumentExistenceFilter.BloomFilter filter = new DocumentExistenceFilter.BloomFilter(10, 0.01);
+
+        assertFalse(filter.mightContain("Space.Page"));
+
+        assertTrue(filter.put("Space.Page"));
+
+        assertTrue(filter.mightContain("Space.Page"));
+
+        // Adding the same element again does not change the filter
+        assertFalse(filter.put("Space.Page"));
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store;
+
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheEntry;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+import org.xwiki.management.JMXBeanRegistration;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+import static com.xpn.xwiki.test.mockito.OldcoreMatchers.isCacheConfiguration;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link ShardedDocumentCache}.
+ *
+ * @version $Id$
+ */
+class ShardedDocumentCacheTest
+{
+    private static final String KEY1 = "4:wiki5:space5:page10:";
+
+    private static final String KEY2 = "4:wiki5:space5:page20:";
+
+    private static final String OTHER_KEY = "5:other5:space4:page0:";
+
+    private CacheManager cacheManager;
+
+    private JMXBeanRegistration jmx;
+
+    private Cache<XWikiDocument> wikiCache;
+
+    private Cache<XWikiDocument> otherCache;
+
+    private ShardedDocumentCache cache;
+
+    @BeforeEach
+    void beforeEach() throws Exception
+    {
+        this.cacheManager = mock(CacheManager.class);
+        this.jmx = mock(JMXBeanRegistration.class);
+
+        this.wikiCache = mock(Cache.class, "wiki");
+        when(this.cacheManager.<XWikiDocument>createNewCache(isCacheConfiguration("pagecache.wiki")))
+            .thenReturn(this.wikiCache);
+        this.otherCache = mock(Cache.class, "other");
+        when(this.cacheManager.<XWikiDocument>createNewCache(isCacheConfiguration("pagecache.other")))
+            .thenReturn(this.otherCache);
+
+        this.cache = new ShardedDocumentCache("pagecache", this.cacheManager, () -> this.jmx, 100, 10000);
+    }
+
+    private XWikiDocument mockDocument(int contentLength)
+    {
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getContent()).thenReturn(StringUtils.repeat('a', contentLength));
+
+        return document;
+    }
+
+    @Test
+    void getWiki()
+    {
+        assertEquals("wiki", ShardedDocumentCache.getWiki(KEY1));
+        assertEquals("other", ShardedDocumentCache.getWiki(OTHER_KEY));
+        assertEquals("unknown", ShardedDocumentCache.getWiki("wiki:space.page"));
+        assertEquals("unknown", ShardedDocumentCache.getWiki("10:wiki"));
+    }
+
+    @Test
+    void setAndGetPerWiki()
+    {
+        XWikiDocument document = mockDocument(10);
+        XWikiDocument otherDocument = mockDocument(10);
+
+        this.cache.set(KEY1, document);
+        this.cache.set(OTHER_KEY, otherDocument);
+
+        verify(this.wikiCache).set(KEY1, document);
+        verify(this.otherCache).set(OTHER_KEY, otherDocument);
+        verify(this.jmx).registerMBean(any(JMXDocumentCacheShard.class),
+            eq("type=DocumentCache,name=pagecache,wiki=wiki"));
+        verify(this.jmx).registerMBean(any(JMXDocumentCacheShard.class),
+            eq("type=DocumentCache,name=pagecache,wiki=other"));
+
+        when(this.wikiCache.get(KEY1)).thenReturn(document);
+
+        assertSame(document, this.cache.get(KEY1));
+        assertNull(this.cache.get(KEY2));
+        // No shard exist for that wiki
+        assertNull(this.cache.get("7:unknown5:space4:page0:"));
+
+        JMXDocumentCacheShardMBean statistics = this.cache.getShardStatistics().get("wiki");
+        assertEquals(1, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+        assertEquals(1, statistics.getSize());
+        assertEquals(4096 + 10, statistics.getWeight());
+
+        this.cache.remove(KEY1);
+
+        verify(this.wikiCache).remove(KEY1);
+        assertEquals(0, statistics.getSize());
+        assertEquals(0, statistics.getWeight());
+        assertEquals(0, statistics.getEvictions());
+    }
+
+    @Test
+    void evictWhenTooHeavy()
+    {
+        XWikiDocument document1 = mockDocument(4000);
+        XWikiDocument document2 = mockDocument(4000);
+
+        this.cache.set(KEY1, document1);
+        verify(this.wikiCache, never()).remove(any());
+
+        this.cache.set(KEY2, document2);
+
+        // The least recently used document is evicted to stay under the maximum weight
+        verify(this.wikiCache).remove(KEY1);
+        verify(this.wikiCache, never()).remove(KEY2);
+
+        JMXDocumentCacheShardMBean statistics = this.cache.getShardStatistics().get("wiki");
+        assertEquals(1, statistics.getEvictions());
+        assertEquals(1, statistics.getSize());
+        assertEquals(4096 + 4000, statistics.getWeight());
+    }
+
+    @Test
+    void evictSeveralWhenTooHeavy()
+    {
+        this.cache.set(KEY1, mockDocument(100));
+        this.cache.set(KEY2, mockDocument(100));
+        verify(this.wikiCache, never()).remove(any());
+
+        String key3 = "4:wiki5:space5:page30:";
+        this.cache.set(key3, mockDocument(5000));
+
+        // Both previous documents have to be evicted to stay under the maximum weight
+        verify(this.wikiCache).remove(KEY1);
+        verify(this.wikiCache).remove(KEY2);
+        verify(this.wikiCache, never()).remove(key3);
+
+        JMXDocumentCacheShardMBean statistics = this.cache.getShardStatistics().get("wiki");
+        assertEquals(2, statistics.getEvictions());
+        assertEquals(1, statistics.getSize());
+        assertEquals(4096 + 5000, statistics.getWeight());
+    }
+
+    @Test
+    void evictLeastRecentlyUsed()
+    {
+        XWikiDocument document1 = mockDocument(500);
+        XWikiDocument document2 = mockDocument(500);
+        XWikiDocument document3 = mockDocument(500);
+
+        this.cache.set(KEY1, document1);
+        this.cache.set(KEY2, document2);
+
+        // Access the first document to make the second one the least recently used
+        when(this.wikiCache.get(KEY1)).thenReturn(document1);
+        this.cache.get(KEY1);
+
+        String key3 = "4:wiki5:space5:page30:";
+        this.cache.set(key3, document3);
+
+        verify(this.wikiCache).remove(KEY2);
+        verify(this.wikiCache, never()).remove(KEY1);
+    }
+
+    @Test
+    void evictedWhileSetting()
+    {
+        XWikiDocument document = mockDocument(10);
+
+        // Simulate a cache which evicts the entry right away
+        doAnswer(invocation -> {
+            ArgumentCaptor<CacheEntryListener<XWikiDocument>> listenerCaptor =
+                ArgumentCaptor.forClass(CacheEntryListener.class);
+            verify(this.wikiCache).addCacheEntryListener(listenerCaptor.capture());
+            CacheEntryEvent<XWikiDocument> event = mock(CacheEntryEvent.class);
+            CacheEntry<XWikiDocument> entry = mock(CacheEntry.class);
+            when(entry.getKey()).thenReturn(KEY1);
+            when(event.getEntry()).thenReturn(entry);
+            listenerCaptor.getValue().cacheEntryRemoved(event);
+
+            return null;
+        }).when(this.wikiCache).set(KEY1, document);
+
+        this.cache.set(KEY1, document);
+
+        // The weights should not remember an entry which is not in the cache anymore
+        JMXDocumentCacheShardMBean statistics = this.cache.getShardStatistics().get("wiki");
+        assertEquals(0, statistics.getSize());
+        assertEquals(0, statistics.getWeight());
+        assertEquals(1, statistics.getEvictions());
+    }
+
+    @Test
+    void removeShard()
+    {
+        this.cache.set(KEY1, mockDocument(10));
+        this.cache.set(OTHER_KEY, mockDocument(10));
+
+        this.cache.removeShard("other");
+
+        verify(this.otherCache).dispose();
+        verify(this.jmx).unregisterMBean("type=DocumentCache,name=pagecache,wiki=other");
+        verify(this.wikiCache, never()).dispose();
+        assertEquals(Set.of("wiki"), this.cache.getShardStatistics().keySet());
+
+        assertNull(this.cache.get(OTHER_KEY));
+        verify(this.otherCache, never()).get(any());
+    }
+}
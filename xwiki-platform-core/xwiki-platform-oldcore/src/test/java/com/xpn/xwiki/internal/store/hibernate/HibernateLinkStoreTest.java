@@ -0,0 +1,177 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store.hibernate;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.xwiki.link.LinkException;
+import org.xwiki.model.reference.AttachmentReference;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.test.junit5.mockito.OldcoreTest;
+import com.xpn.xwiki.test.reference.ReferenceComponentList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link HibernateLinkStore}.
+ * 
+ * @version $Id$
+ */
+@OldcoreTest
+@ReferenceComponentList
+class HibernateLinkStoreTest
+{
+    private static final DocumentReference TARGET = new DocumentReference("wiki", "Space", "Target");
+
+    private static final String BACKLINKS_WHERE = " from XWikiLink as backlink where backlink.id.link = :link";
+
+    private static final String ATTACHMENT_BACKLINKS_WHERE =
+        BACKLINKS_WHERE + " and backlink.id.type = :type and backlink.attachmentName = :attachmentName";
+
+    @InjectMockComponents
+    private HibernateLinkStore store;
+
+    @MockComponent
+    private QueryManager queryManager;
+
+    @Mock
+    private Query query;
+
+    @BeforeEach
+    void beforeEach() throws Exception
+    {
+        when(this.queryManager.createQuery(anyString(), any())).thenReturn(this.query);
+        when(this.query.bindValue(anyString(), any())).thenReturn(this.query);
+        when(this.query.setWiki(anyString())).thenReturn(this.query);
+        when(this.query.setOffset(anyInt())).thenReturn(this.query);
+        when(this.query.setLimit(anyInt())).thenReturn(this.query);
+    }
+
+    @Test
+    void isSupported()
+    {
+        assertTrue(HibernateLinkStore.isSupported(TARGET));
+        assertTrue(HibernateLinkStore.isSupported(new AttachmentReference("file.txt", TARGET)));
+        assertFalse(HibernateLinkStore.isSupported(TARGET.getLastSpaceReference()));
+        assertFalse(HibernateLinkStore.isSupported(TARGET.getWikiReference()));
+    }
+
+    @Test
+    void resolveLinkedEntities() throws Exception
+    {
+        when(this.query.<Object[]>execute()).thenReturn(List.of(new Object[] {"Space.Other", "document", null},
+            new Object[] {"otherwiki:Space.Page", "attachment", "file.txt"}));
+
+        assertEquals(Set.of(new DocumentReference("wiki", "Space", "Other"),
+            new AttachmentReference("file.txt", new DocumentReference("otherwiki", "Space", "Page"))),
+            this.store.resolveLinkedEntities(TARGET));
+
+        verify(this.queryManager).createQuery("select link.id.link, link.id.type, link.attachmentName"
+            + " from XWikiLink as link where link.id.docId = :docId", Query.HQL);
+        verify(this.query).setWiki("wiki");
+        verify(this.query).bindValue("docId", new XWikiDocument(TARGET).getId());
+    }
+
+    @Test
+    void resolveBackLinkedEntities() throws Exception
+    {
+        when(this.query.<String>execute()).thenReturn(List.of("Space.Source", "Other.Page"));
+
+        assertEquals(
+            List.of(new DocumentReference("wiki", "Space", "Source"), new DocumentReference("wiki", "Other", "Page")),
+            this.store.resolveBackLinkedEntities(TARGET, 10, 20));
+
+        verify(this.queryManager).createQuery(
+            "select distinct backlink.fullName" + BACKLINKS_WHERE + " order by backlink.fullName", Query.HQL);
+        verify(this.query).bindValue("link", "Space.Target");
+        verify(this.query).setWiki("wiki");
+        verify(this.query).setOffset(10);
+        verify(this.query).setLimit(20);
+    }
+
+    @Test
+    void resolveAllBackLinkedEntities() throws Exception
+    {
+        when(this.query.<String>execute()).thenReturn(List.of("Space.Source"));
+
+        assertEquals(Set.of(new DocumentReference("wiki", "Space", "Source")),
+            this.store.resolveBackLinkedEntities(TARGET));
+
+        verify(this.query).setOffset(0);
+        verify(this.query).setLimit(0);
+    }
+
+    @Test
+    void resolveAttachmentBackLinkedEntities() throws Exception
+    {
+        when(this.query.<String>execute()).thenReturn(List.of("Space.Source"));
+
+        assertEquals(List.of(new DocumentReference("wiki", "Space", "Source")),
+            this.store.resolveBackLinkedEntities(new AttachmentReference("file.txt", TARGET), 0, 10));
+
+        verify(this.queryManager).createQuery(
+            "select distinct backlink.fullName" + ATTACHMENT_BACKLINKS_WHERE + " order by backlink.fullName",
+            Query.HQL);
+        verify(this.query).bindValue("link", "Space.Target");
+        verify(this.query).bindValue("type", "attachment");
+        verify(this.query).bindValue("attachmentName", "file.txt");
+    }
+
+    @Test
+    void countBackLinkedEntities() throws Exception
+    {
+        when(this.query.<Long>execute()).thenReturn(List.of(2L));
+
+        assertEquals(2, this.store.countBackLinkedEntities(TARGET));
+
+        verify(this.queryManager).createQuery("select count(distinct backlink.fullName)" + BACKLINKS_WHERE,
+            Query.HQL);
+        verify(this.query).bindValue("link", "Space.Target");
+        verify(this.query).setWiki("wiki");
+    }
+
+    @Test
+    void resolveBackLinkedEntitiesWithUnsupportedReference()
+    {
+        SpaceReference spaceReference = TARGET.getLastSpaceReference();
+
+        assertThrows(LinkException.class, () -> this.store.resolveBackLinkedEntities(spaceReference, 0, 10));
+        assertThrows(LinkException.class, () -> this.store.countBackLinkedEntities(spaceReference));
+    }
+}
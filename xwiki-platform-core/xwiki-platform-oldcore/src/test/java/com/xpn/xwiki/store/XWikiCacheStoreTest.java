@@ -19,6 +19,13 @@
  */
 package com.xpn.xwiki.store;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.xwiki.cache.Cache;
@@ -26,23 +33,34 @@
 import org.xwiki.model.internal.reference.UidStringEntityReferenceSerializer;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.ApplicationStoppedEvent;
 import org.xwiki.observation.remote.RemoteObservationManagerContext;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
 import org.xwiki.test.annotation.ComponentList;
 
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.store.DocumentExistenceFilter;
 import com.xpn.xwiki.test.MockitoOldcore;
 import com.xpn.xwiki.test.junit5.mockito.InjectMockitoOldcore;
 import com.xpn.xwiki.test.junit5.mockito.OldcoreTest;
 
 import static com.xpn.xwiki.test.mockito.OldcoreMatchers.isCacheConfiguration;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -121,6 +139,187 @@ void loadXWikiDoc() throws Exception
         verifyNoMoreInteractions(this.existCache);
     }
 
+    @Test
+    void loadXWikiDocs() throws Exception
+    {
+        this.oldcore.getXWikiContext().setWikiId("wiki");
+        this.oldcore.getSpyXWiki().saveDocument(new XWikiDocument(new DocumentReference("wiki", "space", "page")),
+            this.oldcore.getXWikiContext());
+
+        XWikiCacheStore store = new XWikiCacheStore(this.oldcore.getMockStore(), this.oldcore.getXWikiContext());
+
+        XWikiDocument cachedDocument = new XWikiDocument(new DocumentReference("wiki", "space", "cached"));
+        when(this.cache.get("4:wiki5:space6:cached0:")).thenReturn(cachedDocument);
+        when(this.existCache.get("4:wiki5:space7:missing0:")).thenReturn(Boolean.FALSE);
+
+        XWikiDocument pageDocument = new XWikiDocument(new DocumentReference("wiki", "space", "page"));
+        List<XWikiDocument> documents = store.loadXWikiDocs(List.of(pageDocument,
+            new XWikiDocument(new DocumentReference("wiki", "space", "missing")),
+            new XWikiDocument(new DocumentReference("wiki", "space", "cached"))), this.oldcore.getXWikiContext());
+
+        assertEquals(3, documents.size());
+        assertFalse(documents.get(0).isNew());
+        assertEquals(new DocumentReference("wiki", "space", "page"), documents.get(0).getDocumentReference());
+        assertTrue(documents.get(1).isNew());
+        assertSame(cachedDocument, documents.get(2));
+
+        // Only the document which is not in any cache is loaded from the store
+        verify(this.oldcore.getMockStore()).loadXWikiDocs(List.of(pageDocument), this.oldcore.getXWikiContext());
+        verify(this.cache).set(eq("4:wiki5:space4:page0:"), any(XWikiDocument.class));
+        verify(this.existCache).set("4:wiki5:space4:page0:", Boolean.TRUE);
+    }
+
+    @Test
+    void loadXWikiDocConcurrently() throws Exception
+    {
+        this.oldcore.getXWikiContext().setWikiId("wiki");
+
+        DocumentReference reference = new DocumentReference("wiki", "space", "page");
+        XWikiDocument storedDocument = new XWikiDocument(reference);
+        storedDocument.setNew(false);
+
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        reset(this.oldcore.getMockStore());
+        when(this.oldcore.getMockStore().loadXWikiDoc(any(), any())).then(invocation -> {
+            loading.countDown();
+            release.await();
+
+            return storedDocument;
+        });
+
+        CountDownLatch waiting = new CountDownLatch(1);
+        XWikiCacheStore store = new XWikiCacheStore(this.oldcore.getMockStore(), this.oldcore.getXWikiContext())
+        {
+            @Override
+            XWikiDocument waitForLoad(CompletableFuture<XWikiDocument> load)
+            {
+                waiting.countDown();
+
+                return super.waitForLoad(load);
+            }
+        };
+
+        AtomicReference<XWikiDocument> result1 = new AtomicReference<>();
+        Thread thread1 = new Thread(() -> result1.set(load(store, reference)));
+        thread1.start();
+        loading.await();
+
+        AtomicReference<XWikiDocument> result2 = new AtomicReference<>();
+        Thread thread2 = new Thread(() -> result2.set(load(store, reference)));
+        thread2.start();
+
+        // Wait for the second thread to wait for the first load
+        waiting.await();
+
+        release.countDown();
+        thread1.join();
+        thread2.join();
+
+        assertSame(storedDocument, result1.get());
+        assertSame(storedDocument, result2.get());
+        verify(this.oldcore.getMockStore()).loadXWikiDoc(any(), any());
+        assertEquals(1, store.getCoalescedLoadCount());
+    }
+
+    @Test
+    void loadXWikiDocConcurrentlyWithSave() throws Exception
+    {
+        this.oldcore.getXWikiContext().setWikiId("wiki");
+
+        DocumentReference reference = new DocumentReference("wiki", "space", "page");
+        XWikiDocument storedDocument = new XWikiDocument(reference);
+        storedDocument.setNew(false);
+
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        reset(this.oldcore.getMockStore());
+        when(this.oldcore.getMockStore().loadXWikiDoc(any(), any())).then(invocation -> {
+            loading.countDown();
+            release.await();
+
+            return storedDocument;
+        });
+
+        XWikiCacheStore store = new XWikiCacheStore(this.oldcore.getMockStore(), this.oldcore.getXWikiContext());
+
+        AtomicReference<XWikiDocument> result = new AtomicReference<>();
+        Thread thread = new Thread(() -> result.set(load(store, reference)));
+        thread.start();
+        loading.await();
+
+        // Save the document while it's being loaded
+        store.saveXWikiDoc(new XWikiDocument(reference), this.oldcore.getXWikiContext(), true);
+
+        release.countDown();
+        thread.join();
+
+        // The document loaded before the save is returned to its caller but not cached
+        assertSame(storedDocument, result.get());
+        verify(this.cache, never()).set(any(), any());
+        verify(this.existCache, never()).set(any(), any());
+    }
+
+    @Test
+    void loadXWikiDocsConcurrentlyWithSave() throws Exception
+    {
+        this.oldcore.getXWikiContext().setWikiId("wiki");
+
+        DocumentReference reference = new DocumentReference("wiki", "space", "page");
+        XWikiDocument storedDocument = new XWikiDocument(reference);
+        storedDocument.setNew(false);
+        DocumentReference otherReference = new DocumentReference("wiki", "space", "other");
+        XWikiDocument otherStoredDocument = new XWikiDocument(otherReference);
+        otherStoredDocument.setNew(false);
+
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        reset(this.oldcore.getMockStore());
+        when(this.oldcore.getMockStore().loadXWikiDocs(any(), any())).then(invocation -> {
+            loading.countDown();
+            release.await();
+
+            return List.of(storedDocument, otherStoredDocument);
+        });
+
+        XWikiCacheStore store = new XWikiCacheStore(this.oldcore.getMockStore(), this.oldcore.getXWikiContext());
+
+        AtomicReference<List<XWikiDocument>> result = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                result.set(store.loadXWikiDocs(
+                    List.of(new XWikiDocument(reference), new XWikiDocument(otherReference)),
+                    this.oldcore.getXWikiContext()));
+            } catch (XWikiException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+        loading.await();
+
+        // Save one of the documents while they are being loaded
+        store.saveXWikiDoc(new XWikiDocument(reference), this.oldcore.getXWikiContext(), true);
+
+        release.countDown();
+        thread.join();
+
+        // Both documents are returned but only the one which was not saved is cached
+        assertEquals(List.of(storedDocument, otherStoredDocument), result.get());
+        verify(this.cache, never()).set(eq("4:wiki5:space4:page0:"), any());
+        verify(this.existCache, never()).set(eq("4:wiki5:space4:page0:"), any());
+        verify(this.cache).set("4:wiki5:space5:other0:", otherStoredDocument);
+        verify(this.existCache).set("4:wiki5:space5:other0:", Boolean.TRUE);
+    }
+
+    private XWikiDocument load(XWikiCacheStore store, DocumentReference reference)
+    {
+        try {
+            return store.loadXWikiDoc(new XWikiDocument(reference), this.oldcore.getXWikiContext());
+        } catch (XWikiException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Test
     void saveXWikiDocumentFailing() throws XWikiException
     {
@@ -142,4 +341,57 @@ void saveXWikiDocumentFailing() throws XWikiException
         verify(this.cache).remove("4:wiki5:space4:page0:");
         verify(this.existCache).remove("4:wiki5:space4:page0:");
     }
+
+    @Test
+    void existenceFilter() throws Exception
+    {
+        this.oldcore.getXWikiContext().setWikiId("wiki");
+        this.oldcore.getMockXWikiCfg().setProperty("xwiki.store.cache.existfilter", "1");
+
+        QueryManager queryManager = mock(QueryManager.class);
+        when(this.oldcore.getMockStore().getQueryManager()).thenReturn(queryManager);
+        Query countQuery = mock(Query.class, "count");
+        when(queryManager.createQuery("select count(doc.id) from XWikiDocument doc", Query.HQL))
+            .thenReturn(countQuery);
+        when(countQuery.setWiki("wiki")).thenReturn(countQuery);
+        when(countQuery.execute()).thenReturn(List.of(1L));
+        Query listQuery = mock(Query.class, "list");
+        when(queryManager.createQuery(startsWith("select doc.id, doc.fullName"), eq(Query.HQL)))
+            .thenReturn(listQuery);
+        when(listQuery.execute()).thenReturn(List.<Object[]>of(new Object[] {1L, "space.page", ""}));
+
+        XWikiCacheStore store = new XWikiCacheStore(this.oldcore.getMockStore(), this.oldcore.getXWikiContext());
+        DocumentExistenceFilter filter = (DocumentExistenceFilter) FieldUtils.readField(store, "existenceFilter", true);
+
+        // The filter is built in the background the first time the wiki is accessed
+        long timeout = System.currentTimeMillis() + 10000;
+        while (filter.mightExist("wiki", "space.missing", "")) {
+            if (System.currentTimeMillis() > timeout) {
+                fail("The document existence filter was not built in time");
+            }
+            Thread.sleep(10);
+        }
+
+        clearInvocations(this.oldcore.getMockStore());
+
+        // A document missing from the filter is never asked to the underlying store
+        assertFalse(
+            store.exists(new XWikiDocument(new DocumentReference("wiki", "space", "missing")),
+                this.oldcore.getXWikiContext()));
+        verify(this.oldcore.getMockStore(), never()).exists(any(), any());
+
+        // A document in the filter is
+        store.exists(new XWikiDocument(new DocumentReference("wiki", "space", "page")),
+            this.oldcore.getXWikiContext());
+        verify(this.oldcore.getMockStore()).exists(any(), any());
+
+        // Saved documents are added to the filter
+        store.saveXWikiDoc(new XWikiDocument(new DocumentReference("wiki", "space", "new")),
+            this.oldcore.getXWikiContext(), true);
+        assertTrue(filter.mightExist("wiki", "space.new", ""));
+
+        // The filter stops building when the application is stopped
+        store.onEvent(new ApplicationStoppedEvent(), null, null);
+        assertTrue(((ExecutorService) FieldUtils.readField(filter, "executor", true)).isShutdown());
+    }
 }
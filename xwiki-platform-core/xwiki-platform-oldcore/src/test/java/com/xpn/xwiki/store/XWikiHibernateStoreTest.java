@@ -19,10 +19,12 @@
  */
 package com.xpn.xwiki.store;
 
+import java.io.Serializable;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 
@@ -30,6 +32,7 @@
 import javax.inject.Provider;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
@@ -67,8 +70,11 @@
 import com.xpn.xwiki.internal.store.hibernate.HibernateStore;
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.objects.BaseProperty;
+import com.xpn.xwiki.objects.BaseStringProperty;
+import com.xpn.xwiki.objects.IntegerProperty;
 import com.xpn.xwiki.objects.LargeStringProperty;
 import com.xpn.xwiki.objects.StringProperty;
+import com.xpn.xwiki.objects.classes.BaseClass;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -76,10 +82,13 @@
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -349,6 +358,312 @@ void saveObjectWithPropertyTypeChange() throws Exception
         verify(session).save(property);
     }
 
+    /**
+     * Mock a stored document with a single object holding a string property.
+     */
+    private XWikiDocument mockStoredDocument(BaseObject object, StringProperty property, String storedVersion)
+        throws Exception
+    {
+        DocumentReference documentReference = new DocumentReference("myWiki", "Space", "Page");
+        DocumentReference classReference = new DocumentReference("myWiki", "Space", "MyClass");
+        when(this.xcontext.getWikiId()).thenReturn("myWiki");
+
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getId()).thenReturn(42L);
+        when(document.getDocumentReference()).thenReturn(documentReference);
+        when(document.getFullName()).thenReturn("Space.Page");
+        // Not the default locale so that the space table is left alone
+        when(document.getLocale()).thenReturn(Locale.ENGLISH);
+        when(document.getXObjects()).thenReturn(Collections.singletonMap(classReference, List.of(object)));
+        when(document.hasElement(XWikiDocument.HAS_OBJECTS)).thenReturn(true);
+        XWikiDocument originalDocument = mock(XWikiDocument.class);
+        when(originalDocument.getVersion()).thenReturn("1.1");
+        when(document.getOriginalDocument()).thenReturn(originalDocument);
+
+        when(object.getId()).thenReturn(1L);
+        when(object.getName()).thenReturn("Space.Page");
+        when(object.getClassName()).thenReturn("Space.MyClass");
+        when(object.getNumber()).thenReturn(0);
+        when(object.getGuid()).thenReturn("guid");
+        when(object.getXClassReference()).thenReturn(classReference);
+        when(object.getPropertyList()).thenReturn(Collections.singleton("prop"));
+        property.setId(1L);
+        property.setName("prop");
+        property.setValue("value");
+        when(object.getField("prop")).thenReturn(property);
+
+        when(this.hibernateStore.getSessionFactory()).thenReturn(mock(SessionFactory.class));
+        when(this.hibernateStore.beginTransaction(any())).thenReturn(true);
+
+        when(this.session.createQuery("select xwikidoc.id from XWikiDocument as xwikidoc where xwikidoc.id = :id"))
+            .thenReturn(mock(Query.class));
+        Query<String> versionQuery = mock(Query.class);
+        when(this.session.createQuery("select xwikidoc.version from XWikiDocument as xwikidoc where xwikidoc.id = :id",
+            String.class)).thenReturn(versionQuery);
+        when(versionQuery.uniqueResult()).thenReturn(storedVersion);
+        Query<Object[]> objectQuery = mock(Query.class);
+        when(this.session.createQuery("select obj.id, obj.name, obj.className, obj.number, obj.guid "
+            + "from BaseObject as obj where obj.name = :name", Object[].class)).thenReturn(objectQuery);
+        when(objectQuery.list())
+            .thenReturn(List.<Object[]>of(new Object[] {1L, "Space.Page", "Space.MyClass", 0, "guid"}));
+        Query<Object[]> propertyQuery = mock(Query.class);
+        when(this.session.createQuery("select prop.id.id, prop.id.name, prop.classType "
+            + "from BaseProperty as prop, BaseObject as obj where obj.name = :name and prop.id.id = obj.id",
+            Object[].class)).thenReturn(propertyQuery);
+        when(propertyQuery.list())
+            .thenReturn(List.<Object[]>of(new Object[] {1L, "prop", StringProperty.class.getName()}));
+
+        return document;
+    }
+
+    @Test
+    void saveDocumentWithUnchangedObject() throws Exception
+    {
+        BaseObject object = mock(BaseObject.class);
+        StringProperty property = new StringProperty();
+        XWikiDocument document = mockStoredDocument(object, property, "1.1");
+        property.setValueDirty(false);
+
+        this.store.saveXWikiDoc(document, this.xcontext);
+
+        verify(this.session).update(document);
+        verify(this.session, never()).save(eq("com.xpn.xwiki.objects.BaseObject"), any());
+        verify(this.session, never()).update(eq("com.xpn.xwiki.objects.BaseObject"), any());
+        verify(this.session, never()).save(property);
+        verify(this.session, never()).update(property);
+        verify(this.hibernateStore).endTransaction(true);
+    }
+
+    @Test
+    void saveDocumentWithModifiedProperty() throws Exception
+    {
+        BaseObject object = mock(BaseObject.class);
+        StringProperty property = new StringProperty();
+        XWikiDocument document = mockStoredDocument(object, property, "1.1");
+        property.setValueDirty(false);
+        property.setValue("modified");
+
+        assertTrue(property.isValueDirty());
+
+        this.store.saveXWikiDoc(document, this.xcontext);
+
+        verify(this.session, never()).update(eq("com.xpn.xwiki.objects.BaseObject"), any());
+        verify(this.session).update(property);
+        assertFalse(property.isValueDirty());
+    }
+
+    @Test
+    void saveDocumentModifiedInTheMeantime() throws Exception
+    {
+        BaseObject object = mock(BaseObject.class);
+        StringProperty property = new StringProperty();
+        // The stored document was saved by someone else (e.g. another cluster node) since it was loaded
+        XWikiDocument document = mockStoredDocument(object, property, "2.1");
+        property.setValueDirty(false);
+
+        this.store.saveXWikiDoc(document, this.xcontext);
+
+        // The property is overwritten even if it did not change locally
+        verify(this.session).update(property);
+    }
+
+    @Test
+    void saveDocumentWithRemovedObject() throws Exception
+    {
+        BaseObject object = mock(BaseObject.class);
+        StringProperty property = new StringProperty();
+        XWikiDocument document = mockStoredDocument(object, property, "1.1");
+        property.setValueDirty(false);
+
+        BaseObject removedObject = mock(BaseObject.class);
+        BaseClass removedClass = mock(BaseClass.class);
+        when(removedClass.getCustomClass()).thenReturn("");
+        when(removedObject.getXClass(this.xcontext)).thenReturn(removedClass);
+        when(document.getXObjectsToRemove()).thenReturn(List.of(removedObject));
+
+        this.store.saveXWikiDoc(document, this.xcontext);
+
+        verify(this.session).delete(removedObject);
+        verify(document).setXObjectsToRemove(new ArrayList<>());
+        verify(this.session, never()).update(property);
+    }
+
+    @Test
+    void saveDocumentAgainAfterRollback() throws Exception
+    {
+        BaseObject object = mock(BaseObject.class);
+        StringProperty property = new StringProperty();
+        XWikiDocument document = mockStoredDocument(object, property, "1.1");
+        property.setValueDirty(false);
+        property.setValue("modified");
+
+        doThrow(new HibernateException("commit failed")).doNothing().when(this.hibernateStore).endTransaction(true);
+
+        assertThrows(XWikiException.class, () -> this.store.saveXWikiDoc(document, this.xcontext));
+
+        // The transaction was rolled back so the value is still to be written
+        assertTrue(property.isValueDirty());
+        verify(this.hibernateStore).endTransaction(false);
+
+        this.store.saveXWikiDoc(document, this.xcontext);
+
+        verify(this.session, times(2)).update(property);
+        assertFalse(property.isValueDirty());
+    }
+
+    private static final String PROPERTY_TYPES_STATEMENT =
+        "select prop.id.id, prop.name, prop.classType from BaseProperty as prop where prop.id.id in (:ids)";
+
+    private static String getPropertiesStatement(Class<? extends BaseProperty> type)
+    {
+        return "from " + type.getName() + " as prop where prop.id.id in (:ids) and prop.classType = :classType";
+    }
+
+    /**
+     * Mock the loading of a document with the passed stored objects.
+     */
+    private XWikiDocument mockLoadDocument(List<BaseObject> storedObjects, List<Object[]> storedPropertyTypes)
+        throws Exception
+    {
+        DocumentReference documentReference = new DocumentReference("myWiki", "Space", "Page");
+        DocumentReference classReference = new DocumentReference("myWiki", "Space", "MyClass");
+        when(this.xcontext.getWikiId()).thenReturn("myWiki");
+
+        when(this.hibernateStore.getSessionFactory()).thenReturn(mock(SessionFactory.class));
+        when(this.hibernateStore.beginTransaction(any())).thenReturn(true);
+
+        XWikiDocument loadedDocument = mock(XWikiDocument.class);
+        when(loadedDocument.getDocumentReference()).thenReturn(documentReference);
+        when(loadedDocument.getFullName()).thenReturn("Space.Page");
+        when(loadedDocument.getDate()).thenReturn(new Date());
+        when(loadedDocument.getCreationDate()).thenReturn(new Date());
+        when(loadedDocument.getContentUpdateDate()).thenReturn(new Date());
+        when(loadedDocument.hasElement(XWikiDocument.HAS_OBJECTS)).thenReturn(true);
+        when(this.session.get(XWikiDocument.class, 42L)).thenReturn(loadedDocument);
+
+        // Keep the stored objects instead of creating custom class instances
+        when(this.xcontext.getWiki().getXClass(classReference, this.xcontext)).thenReturn(mock(BaseClass.class));
+
+        long id = 1;
+        for (BaseObject object : storedObjects) {
+            when(object.getId()).thenReturn(id);
+            when(object.getNumber()).thenReturn((int) id - 1);
+            when(object.getXClassReference()).thenReturn(classReference);
+            when(object.getDocumentReference()).thenReturn(documentReference);
+            id++;
+        }
+
+        Query<BaseObject> objectQuery = mock(Query.class);
+        when(this.session.createQuery("from BaseObject as bobject where bobject.name = :name order by bobject.number",
+            BaseObject.class)).thenReturn(objectQuery);
+        when(objectQuery.list()).thenReturn(storedObjects);
+
+        Query<Object[]> typesQuery = mock(Query.class);
+        when(this.session.createQuery(PROPERTY_TYPES_STATEMENT, Object[].class)).thenReturn(typesQuery);
+        when(typesQuery.list()).thenReturn(storedPropertyTypes);
+
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getId()).thenReturn(42L);
+
+        return document;
+    }
+
+    private <T extends BaseProperty> Query<BaseProperty> mockLoadProperties(Class<T> type, BaseProperty... properties)
+    {
+        Query<BaseProperty> query = mock(Query.class);
+        when(this.session.createQuery(getPropertiesStatement(type), BaseProperty.class)).thenReturn(query);
+        when(query.list()).thenReturn(Arrays.asList(properties));
+
+        return query;
+    }
+
+    private static <T extends BaseProperty> T newProperty(T property, long objectId, String name, Object value)
+    {
+        property.setId(objectId);
+        property.setName(name);
+        property.setValue(value);
+
+        return property;
+    }
+
+    @Test
+    void loadDocumentWithMixedPropertyTypes() throws Exception
+    {
+        BaseObject object1 = mock(BaseObject.class);
+        BaseObject object2 = mock(BaseObject.class);
+        XWikiDocument document = mockLoadDocument(List.of(object1, object2),
+            List.of(new Object[] {1L, "string", StringProperty.class.getName()},
+                new Object[] {1L, "integer", IntegerProperty.class.getName()},
+                new Object[] {2L, "string", StringProperty.class.getName()},
+                new Object[] {2L, "textarea", LargeStringProperty.class.getName()}));
+
+        StringProperty string1 = newProperty(new StringProperty(), 1L, "string", "value1");
+        StringProperty string2 = newProperty(new StringProperty(), 2L, "string", "value2");
+        IntegerProperty integer1 = newProperty(new IntegerProperty(), 1L, "integer", 42);
+        LargeStringProperty textarea2 = newProperty(new LargeStringProperty(), 2L, "textarea", "text");
+        Query<BaseProperty> stringQuery = mockLoadProperties(StringProperty.class, string1, string2);
+        mockLoadProperties(IntegerProperty.class, integer1);
+        mockLoadProperties(LargeStringProperty.class, textarea2);
+
+        this.store.loadXWikiDoc(document, this.xcontext);
+
+        verify(object1).addField("string", string1);
+        verify(object1).addField("integer", integer1);
+        verify(object2).addField("string", string2);
+        verify(object2).addField("textarea", textarea2);
+        assertFalse(string1.isValueDirty());
+        assertFalse(integer1.isValueDirty());
+
+        // One query for the types and one query per type, whatever the number of objects
+        verify(this.session).createQuery(PROPERTY_TYPES_STATEMENT, Object[].class);
+        verify(this.session).createQuery(getPropertiesStatement(StringProperty.class), BaseProperty.class);
+        verify(stringQuery).setParameterList("ids", List.of(1L, 2L));
+        verify(stringQuery).setParameter("classType", StringProperty.class.getName());
+        verify(this.session, never()).load(any(BaseProperty.class), any(Serializable.class));
+    }
+
+    @Test
+    void loadDocumentWithObjectWithoutProperties() throws Exception
+    {
+        BaseObject object1 = mock(BaseObject.class);
+        BaseObject object2 = mock(BaseObject.class);
+        XWikiDocument document = mockLoadDocument(List.of(object1, object2),
+            List.<Object[]>of(new Object[] {2L, "string", StringProperty.class.getName()}));
+
+        StringProperty string2 = newProperty(new StringProperty(), 2L, "string", "value2");
+        mockLoadProperties(StringProperty.class, string2);
+
+        this.store.loadXWikiDoc(document, this.xcontext);
+
+        verify(object1, never()).addField(anyString(), any());
+        verify(object2).addField("string", string2);
+    }
+
+    @Test
+    void loadDocumentWithPropertiesLoadedOneByOne() throws Exception
+    {
+        BaseObject object = mock(BaseObject.class);
+        XWikiDocument document = mockLoadDocument(List.of(object),
+            List.of(new Object[] {1L, "string", StringProperty.class.getName()},
+                new Object[] {1L, "custom", BaseStringProperty.class.getName()}));
+
+        // The value is not found in the table of the stored type
+        mockLoadProperties(StringProperty.class);
+
+        this.store.loadXWikiDoc(document, this.xcontext);
+
+        // Both properties are loaded from their own class
+        verify(this.session).load(argThat((BaseProperty property) -> property.getClass() == StringProperty.class
+            && "string".equals(property.getName())), any(Serializable.class));
+        verify(this.session).load(argThat((BaseProperty property) -> property.getClass() == BaseStringProperty.class
+            && "custom".equals(property.getName())), any(Serializable.class));
+        // Unknown types are never loaded in bulk
+        verify(this.session, never()).createQuery(getPropertiesStatement(BaseStringProperty.class),
+            BaseProperty.class);
+        verify(object).addField(eq("string"), any(StringProperty.class));
+        verify(object).addField(eq("custom"), any(BaseStringProperty.class));
+    }
+
     @Test
     void existsWithRootLocale() throws Exception
     {
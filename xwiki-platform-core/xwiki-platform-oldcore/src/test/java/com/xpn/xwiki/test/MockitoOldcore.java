@@ -121,6 +121,7 @@
 import static com.xpn.xwiki.test.mockito.OldcoreMatchers.anyXWikiDocument;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
@@ -654,6 +655,8 @@ public XWikiDocument answer(InvocationOnMock invocation) throws Throwable
                 return document;
             }
         });
+        // Rely on the default implementation (calling loadXWikiDoc for each document)
+        when(getMockStore().loadXWikiDocs(anyList(), anyXWikiContext())).thenCallRealMethod();
         when(getMockStore().exists(anyXWikiDocument(), anyXWikiContext())).then(new Answer<Boolean>()
         {
             @Override
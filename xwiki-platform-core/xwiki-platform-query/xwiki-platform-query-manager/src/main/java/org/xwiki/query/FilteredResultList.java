@@ -0,0 +1,96 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.query;
+
+import java.util.ArrayList;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * The result of a query executed with {@link Query#setFilteredPagination(boolean) filtered pagination}, with
+ * information about the total number of filtered results.
+ * 
+ * @param <T> the type of the results
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+@Unstable
+public class FilteredResultList<T> extends ArrayList<T>
+{
+    private static final long serialVersionUID = 1L;
+
+    private final long total;
+
+    private final boolean totalExact;
+
+    private final long scanned;
+
+    /**
+     * @param total the number of filtered results found while filling the page
+     * @param totalExact true if all the rows were scanned
+     * @param scanned the number of rows read before filtering
+     */
+    public FilteredResultList(long total, boolean totalExact, long scanned)
+    {
+        this.total = total;
+        this.totalExact = totalExact;
+        this.scanned = scanned;
+    }
+
+    /**
+     * @return the total number of filtered results if {@link #isTotalExact()} is true, a lower bound otherwise
+     */
+    public long getTotal()
+    {
+        return this.total;
+    }
+
+    /**
+     * @return true if all the rows matching the query were scanned, in which case {@link #getTotal()} is exact
+     */
+    public boolean isTotalExact()
+    {
+        return this.totalExact;
+    }
+
+    /**
+     * @return the number of rows read from the store before filtering
+     */
+    public long getScanned()
+    {
+        return this.scanned;
+    }
+
+    /**
+     * Estimate the total number of filtered results based on the proportion of rows kept so far.
+     * 
+     * @param unfilteredTotal the total number of rows matching the query before filtering (usually obtained with a
+     *            count query)
+     * @return the estimated total number of filtered results
+     */
+    public long estimateTotal(long unfilteredTotal)
+    {
+        if (this.totalExact || this.scanned == 0 || unfilteredTotal <= this.scanned) {
+            return this.total;
+        }
+
+        return Math.max(this.total, Math.round((double) unfilteredTotal * this.total / this.scanned));
+    }
+}
@@ -22,6 +22,8 @@
 import java.util.List;
 import java.util.Map;
 
+import org.xwiki.stability.Unstable;
+
 /**
  * This is a Query interface, representing all queries in various languages for various stores.
  *
@@ -186,6 +188,37 @@ default QueryParameter bindValue(String variable)
      */
     int getOffset();
 
+    /**
+     * When enabled, the rows removed by the {@link QueryFilter}s while filtering the results (for example the entities
+     * the current user is not allowed to view) are replaced by fetching more rows, so that the result contains
+     * {@link #getLimit()} elements as long as enough matching rows exist. In this mode the offset is expressed in
+     * filtered results and the executor returns a {@link FilteredResultList}.
+     * <p>
+     * This is only a hint: the queries and executors which don't support it ignore it and return a standard list
+     * (the default implementation does nothing), so callers should check if the result is an instance of
+     * {@link FilteredResultList} before relying on it.
+     * 
+     * @param filteredPagination true if the limit and offset should be applied to the filtered results
+     * @return this query
+     * @since 16.6.0RC1
+     */
+    @Unstable
+    default Query setFilteredPagination(boolean filteredPagination)
+    {
+        return this;
+    }
+
+    /**
+     * @return true if the limit and offset should be applied to the filtered results
+     * @see #setFilteredPagination(boolean)
+     * @since 16.6.0RC1
+     */
+    @Unstable
+    default boolean isFilteredPagination()
+    {
+        return false;
+    }
+
     /**
      * @param <T> expected type of elements in the result list.
      * @return result list of the query. If several fields are selected then T=Object[].
@@ -162,6 +162,18 @@ public int getOffset()
         return getWrappedQuery().getOffset();
     }
 
+    @Override
+    public Query setFilteredPagination(boolean filteredPagination)
+    {
+        return getWrappedQuery().setFilteredPagination(filteredPagination);
+    }
+
+    @Override
+    public boolean isFilteredPagination()
+    {
+        return getWrappedQuery().isFilteredPagination();
+    }
+
     @Override
     public <T> List<T> execute() throws QueryException
     {
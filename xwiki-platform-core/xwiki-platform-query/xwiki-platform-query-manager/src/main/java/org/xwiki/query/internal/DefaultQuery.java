@@ -89,6 +89,11 @@ public class DefaultQuery implements SecureQuery
      */
     private int offset;
 
+    /**
+     * @see #isFilteredPagination()
+     */
+    private boolean filteredPagination;
+
     /**
      * @see #isCurrentAuthorChecked()
      */
@@ -242,6 +247,19 @@ public Query setOffset(int offset)
         return this;
     }
 
+    @Override
+    public boolean isFilteredPagination()
+    {
+        return this.filteredPagination;
+    }
+
+    @Override
+    public Query setFilteredPagination(boolean filteredPagination)
+    {
+        this.filteredPagination = filteredPagination;
+        return this;
+    }
+
     @Override
     public boolean isCurrentAuthorChecked()
     {
@@ -0,0 +1,147 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.query.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xwiki.query.FilteredResultList;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryFilter;
+
+/**
+ * Helper used by query executors to implement {@link Query#setFilteredPagination(boolean)}: the rows are fetched by
+ * windows which are filtered until the requested page is full.
+ * 
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+public final class FilteredPagination
+{
+    /**
+     * The minimum number of rows fetched at once.
+     */
+    private static final int MIN_WINDOW = 50;
+
+    /**
+     * The maximum number of rows fetched at once.
+     */
+    private static final int MAX_WINDOW = 1000;
+
+    /**
+     * Execute a window of the query, without applying the result filters.
+     * 
+     * @param <T> the type of the results
+     */
+    @FunctionalInterface
+    public interface WindowExecutor<T>
+    {
+        /**
+         * @param offset the index of the first row to return
+         * @param limit the maximum number of rows to return
+         * @return the rows
+         * @throws Exception when failing to execute the query
+         */
+        List<T> execute(int offset, int limit) throws Exception;
+    }
+
+    private FilteredPagination()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param query the query to execute
+     * @return true if the query should be executed with {@link #execute(Query, WindowExecutor)}
+     */
+    public static boolean isFilteredPagination(Query query)
+    {
+        return query.isFilteredPagination() && query.getFilters() != null && !query.getFilters().isEmpty();
+    }
+
+    /**
+     * @param <T> the type of the results
+     * @param query the query to execute
+     * @param executor execute a window of the query
+     * @return the filtered page
+     * @throws Exception when failing to execute the query
+     */
+    public static <T> FilteredResultList<T> execute(Query query, WindowExecutor<T> executor) throws Exception
+    {
+        int limit = query.getLimit();
+        int offset = Math.max(0, query.getOffset());
+
+        List<T> page = new ArrayList<>();
+        long kept = 0;
+        long scanned = 0;
+        boolean exhausted = false;
+
+        if (limit <= 0) {
+            // No limit: everything has to be read anyway
+            List<T> rows = executor.execute(0, 0);
+            scanned = rows.size();
+            exhausted = true;
+            for (T row : filter(query, rows)) {
+                if (kept++ >= offset) {
+                    page.add(row);
+                }
+            }
+        } else {
+            int window = Math.min(Math.max(offset + limit, MIN_WINDOW), MAX_WINDOW);
+            while (!exhausted && page.size() < limit) {
+                List<T> rows = executor.execute((int) scanned, window);
+                scanned += rows.size();
+                exhausted = rows.size() < window;
+
+                for (T row : filter(query, rows)) {
+                    if (kept++ >= offset && page.size() < limit) {
+                        page.add(row);
+                    }
+                }
+
+                window = nextWindow(offset + limit - kept, kept, scanned);
+            }
+        }
+
+        FilteredResultList<T> result = new FilteredResultList<>(kept, exhausted, scanned);
+        result.addAll(page);
+
+        return result;
+    }
+
+    private static int nextWindow(long missing, long kept, long scanned)
+    {
+        // Guess how many rows are needed to get the missing results based on the proportion of rows kept so far
+        double ratio = kept > 0 ? (double) kept / scanned : 0.1;
+        long window = Math.round(missing / ratio * 1.2);
+
+        return (int) Math.min(Math.max(window, MIN_WINDOW), MAX_WINDOW);
+    }
+
+    private static <T> List<T> filter(Query query, List<T> rows)
+    {
+        List<T> filteredRows = rows;
+        for (QueryFilter filter : query.getFilters()) {
+            filteredRows = filter.filterResults(filteredRows);
+        }
+
+        return filteredRows;
+    }
+}
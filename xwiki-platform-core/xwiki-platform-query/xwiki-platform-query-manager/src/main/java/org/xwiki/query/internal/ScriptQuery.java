@@ -262,6 +262,19 @@ public int getOffset()
         return this.query.getOffset();
     }
 
+    @Override
+    public Query setFilteredPagination(boolean filteredPagination)
+    {
+        this.query.setFilteredPagination(filteredPagination);
+        return this;
+    }
+
+    @Override
+    public boolean isFilteredPagination()
+    {
+        return this.query.isFilteredPagination();
+    }
+
     @Override
     public <T> List<T> execute() throws QueryException
     {
@@ -19,8 +19,12 @@
  */
 package org.xwiki.query.internal;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -36,6 +40,8 @@
  * Removes from the query results the rows that correspond to entities that the current user doesn't have the right to
  * view. This filter expects an {@link EntityReference} on the first column so you need another filter that creates the
  * entity reference (like the "attachment" or "user" filter) to be applied before this one.
+ * <p>
+ * Use {@link org.xwiki.query.Query#setFilteredPagination(boolean)} to get full pages of viewable results.
  * 
  * @version $Id$
  * @since 9.8
@@ -58,18 +64,34 @@ public String filterStatement(String statement, String language)
     @Override
     public List filterResults(List results)
     {
-        List<Object> filteredResults = new LinkedList<>();
+        List<EntityReference> entityReferences = new ArrayList<>(results.size());
         for (Object result : results) {
-            EntityReference entityReference = null;
-            if (result instanceof EntityReference) {
-                entityReference = (EntityReference) result;
-            } else if (result instanceof Object[] && ((Object[]) result)[0] instanceof EntityReference) {
-                entityReference = (EntityReference) ((Object[]) result)[0];
-            }
-            if (entityReference != null && this.authorization.hasAccess(Right.VIEW, entityReference)) {
-                filteredResults.add(result);
+            entityReferences.add(getEntityReference(result));
+        }
+
+        // Check all the entities at once. The same entity can appear several times in the results (e.g. when joining)
+        // but it's checked only once.
+        Map<EntityReference, Boolean> checkedReferences = this.authorization.hasAccessOnEntities(Right.VIEW,
+            entityReferences.stream().filter(Objects::nonNull).collect(Collectors.toCollection(LinkedHashSet::new)));
+
+        List<Object> filteredResults = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            EntityReference entityReference = entityReferences.get(i);
+            if (entityReference != null && Boolean.TRUE.equals(checkedReferences.get(entityReference))) {
+                filteredResults.add(results.get(i));
             }
         }
         return filteredResults;
     }
+
+    private EntityReference getEntityReference(Object result)
+    {
+        if (result instanceof EntityReference) {
+            return (EntityReference) result;
+        } else if (result instanceof Object[] && ((Object[]) result)[0] instanceof EntityReference) {
+            return (EntityReference) ((Object[]) result)[0];
+        }
+
+        return null;
+    }
 }
@@ -0,0 +1,127 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.query.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.query.FilteredResultList;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryExecutor;
+import org.xwiki.query.QueryFilter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for {@link FilteredPagination}.
+ * 
+ * @version $Id$
+ */
+class FilteredPaginationTest
+{
+    private static final List<Integer> ROWS = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+
+    /**
+     * Keep only the multiples of 10.
+     */
+    private static final QueryFilter FILTER = new NoOpQueryFilter()
+    {
+        @Override
+        public List filterResults(List results)
+        {
+            List<Integer> filteredResults = new ArrayList<>();
+            for (Object result : results) {
+                if ((Integer) result % 10 == 0) {
+                    filteredResults.add((Integer) result);
+                }
+            }
+            return filteredResults;
+        }
+    };
+
+    private List<int[]> windows = new ArrayList<>();
+
+    private List<Integer> executeWindow(int offset, int limit)
+    {
+        this.windows.add(new int[] { offset, limit });
+
+        if (limit <= 0) {
+            return ROWS;
+        }
+
+        return ROWS.subList(Math.min(offset, ROWS.size()), Math.min(offset + limit, ROWS.size()));
+    }
+
+    private Query createQuery(int offset, int limit)
+    {
+        Query query = new DefaultQuery("statement", Query.HQL, mock(QueryExecutor.class));
+        query.addFilter(FILTER);
+        query.setFilteredPagination(true);
+        query.setOffset(offset);
+        query.setLimit(limit);
+
+        return query;
+    }
+
+    @Test
+    void execute() throws Exception
+    {
+        Query query = createQuery(5, 20);
+
+        assertTrue(FilteredPagination.isFilteredPagination(query));
+
+        FilteredResultList<Integer> results = FilteredPagination.execute(query, this::executeWindow);
+
+        List<Integer> expected = IntStream.range(5, 25).map(i -> i * 10).boxed().collect(Collectors.toList());
+        assertEquals(expected, results);
+        assertFalse(results.isTotalExact());
+        assertTrue(results.getTotal() >= 25);
+        assertEquals(results.getScanned(), this.windows.stream().mapToInt(w -> Math.min(w[1], 1000 - w[0])).sum());
+        assertEquals(100, results.estimateTotal(1000));
+    }
+
+    @Test
+    void executeUntilTheEnd() throws Exception
+    {
+        FilteredResultList<Integer> results = FilteredPagination.execute(createQuery(95, 20), this::executeWindow);
+
+        assertEquals(List.of(950, 960, 970, 980, 990), results);
+        assertTrue(results.isTotalExact());
+        assertEquals(100, results.getTotal());
+        assertEquals(1000, results.getScanned());
+    }
+
+    @Test
+    void executeWithoutLimit() throws Exception
+    {
+        FilteredResultList<Integer> results = FilteredPagination.execute(createQuery(98, 0), this::executeWindow);
+
+        assertEquals(List.of(980, 990), results);
+        assertTrue(results.isTotalExact());
+        assertEquals(100, results.getTotal());
+        assertEquals(1, this.windows.size());
+    }
+}
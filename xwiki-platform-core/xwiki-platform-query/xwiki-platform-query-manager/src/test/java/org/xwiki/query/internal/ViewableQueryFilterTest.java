@@ -37,6 +37,9 @@
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -63,6 +66,7 @@ public void configure() throws Exception
     {
         when(this.authorization.hasAccess(Right.VIEW, authorized)).thenReturn(true);
         when(this.authorization.hasAccess(Right.VIEW, unauthorized)).thenReturn(false);
+        when(this.authorization.hasAccessOnEntities(any(), any())).thenCallRealMethod();
     }
 
     @Test
@@ -109,4 +113,15 @@ public void filterResultsWithTwoColumnsNotEntityReference()
         List<Object> results = Collections.singletonList(new Object[]{ 17, this.authorized });
         assertEquals(Collections.emptyList(), this.filter.filterResults(results));
     }
+
+    @Test
+    void filterResultsChecksEachEntityOnce()
+    {
+        List<Object> results = Arrays.asList(new Object[] { this.authorized, 1 }, new Object[] { this.authorized, 2 },
+            new Object[] { this.unauthorized, 3 }, new Object[] { this.unauthorized, 4 });
+        assertEquals(2, this.filter.filterResults(results).size());
+
+        verify(this.authorization, times(1)).hasAccess(Right.VIEW, this.authorized);
+        verify(this.authorization, times(1)).hasAccess(Right.VIEW, this.unauthorized);
+    }
 }
@@ -27,7 +27,9 @@
 import org.xwiki.query.WrappingQuery;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
 import static org.mockito.Mockito.mock;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertSame;
 
 /**
@@ -48,4 +50,15 @@ void bindValueReturnsThisTest()
         assertSame(wrappingQuery, wrappingQuery.bindValues(List.of("hello", "world")));
         assertSame(wrappingQuery, wrappingQuery.bindValues(Map.of("hello", "world")));
     }
+
+    @Test
+    void filteredPaginationNotSupported()
+    {
+        // A query implementation which does not know about filtered pagination
+        Query wrappedQuery = mock(Query.class, CALLS_REAL_METHODS);
+        Query wrappingQuery = new WrappingQuery(wrappedQuery);
+
+        assertSame(wrappedQuery, wrappingQuery.setFilteredPagination(true));
+        assertFalse(wrappingQuery.isFilteredPagination());
+    }
 }
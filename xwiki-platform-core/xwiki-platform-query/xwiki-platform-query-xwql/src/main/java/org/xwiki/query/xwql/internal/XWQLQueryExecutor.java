@@ -92,6 +92,7 @@ public <T> List<T> execute(Query query) throws QueryException
             nativeQuery.setLimit(query.getLimit());
             nativeQuery.setOffset(query.getOffset());
             nativeQuery.setWiki(query.getWiki());
+            nativeQuery.setFilteredPagination(query.isFilteredPagination());
             if (query.getFilters() != null) {
                 for (QueryFilter filter : query.getFilters()) {
                     nativeQuery.addFilter(filter);
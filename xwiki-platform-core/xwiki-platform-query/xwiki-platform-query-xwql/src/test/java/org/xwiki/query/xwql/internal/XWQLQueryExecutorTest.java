@@ -0,0 +1,132 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.query.xwql.internal;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.jmock.Expectations;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.model.ModelContext;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+import org.xwiki.query.internal.DefaultQuery;
+import org.xwiki.test.jmock.JMockRule;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Validate {@link XWQLQueryExecutor}.
+ *
+ * @version $Id$
+ */
+public class XWQLQueryExecutorTest
+{
+    private static final String STATEMENT = "where doc.space = 'Main'";
+
+    private static final String NATIVE_STATEMENT = "select doc.fullName from XWikiDocument doc";
+
+    @Rule
+    public final JMockRule mockery = new JMockRule();
+
+    private QueryTranslator translator = this.mockery.mock(QueryTranslator.class);
+
+    private ComponentManager componentManager = this.mockery.mock(ComponentManager.class);
+
+    private ModelContext modelContext = this.mockery.mock(ModelContext.class);
+
+    private QueryManager queryManager = this.mockery.mock(QueryManager.class);
+
+    private Query nativeQuery = this.mockery.mock(Query.class);
+
+    private XWQLQueryExecutor executor = new XWQLQueryExecutor();
+
+    @Before
+    public void setUp() throws Exception
+    {
+        ReflectionUtils.setFieldValue(this.executor, "translator", this.translator);
+        ReflectionUtils.setFieldValue(this.executor, "componentManager", this.componentManager);
+        ReflectionUtils.setFieldValue(this.executor, "context", this.modelContext);
+
+        WikiReference currentReference = new WikiReference("wiki");
+
+        this.mockery.checking(new Expectations()
+        {{
+                allowing(modelContext).getCurrentEntityReference();
+                will(returnValue(currentReference));
+                allowing(modelContext).setCurrentEntityReference(currentReference);
+
+                allowing(translator).translate(STATEMENT);
+                will(returnValue(NATIVE_STATEMENT));
+                allowing(translator).getOutputLanguage();
+                will(returnValue("hql"));
+
+                allowing(componentManager).getInstance(QueryManager.class);
+                will(returnValue(queryManager));
+                allowing(queryManager).createQuery(NATIVE_STATEMENT, "hql");
+                will(returnValue(nativeQuery));
+
+                allowing(nativeQuery).execute();
+                will(returnValue(Collections.emptyList()));
+            }});
+    }
+
+    @Test
+    public void executeWithFilteredPagination() throws Exception
+    {
+        DefaultQuery query = new DefaultQuery(STATEMENT, "xwql", this.executor);
+        query.setLimit(10);
+        query.setOffset(20);
+        query.setFilteredPagination(true);
+
+        this.mockery.checking(new Expectations()
+        {{
+                oneOf(nativeQuery).setLimit(10);
+                oneOf(nativeQuery).setOffset(20);
+                oneOf(nativeQuery).setWiki(null);
+                oneOf(nativeQuery).setFilteredPagination(true);
+            }});
+
+        List<Object> results = this.executor.execute(query);
+
+        assertEquals(Collections.emptyList(), results);
+    }
+
+    @Test
+    public void executeWithoutFilteredPagination() throws Exception
+    {
+        DefaultQuery query = new DefaultQuery(STATEMENT, "xwql", this.executor);
+
+        this.mockery.checking(new Expectations()
+        {{
+                allowing(nativeQuery).setLimit(with(any(Integer.class)));
+                allowing(nativeQuery).setOffset(with(any(Integer.class)));
+                allowing(nativeQuery).setWiki(with(aNull(String.class)));
+                oneOf(nativeQuery).setFilteredPagination(false);
+            }});
+
+        this.executor.execute(query);
+    }
+}
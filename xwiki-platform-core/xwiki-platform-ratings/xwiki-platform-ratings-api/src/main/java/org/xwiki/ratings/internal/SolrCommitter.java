@@ -0,0 +1,87 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.ratings.internal;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+
+/**
+ * Commit the changes made to a Solr core with soft commits, and with a hard commit from time to time.
+ * <p>
+ * A soft commit makes the changes visible to the next queries without paying the price of a hard commit, the
+ * durability being ensured by the transaction log. The regular hard commits flush the changes to stable storage and
+ * keep the transaction log small. They are done here rather than with the {@code autoCommit} configuration of the
+ * core, since an existing core, or a remote Solr server, doesn't get the updated configuration.
+ *
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+public final class SolrCommitter
+{
+    /**
+     * The minimum time between two hard commits.
+     */
+    private static final long HARD_COMMIT_INTERVAL = TimeUnit.SECONDS.toMillis(15);
+
+    private final LongSupplier clock;
+
+    private final AtomicLong lastHardCommit;
+
+    /**
+     * Default constructor.
+     */
+    public SolrCommitter()
+    {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock the current time in milliseconds
+     */
+    SolrCommitter(LongSupplier clock)
+    {
+        this.clock = clock;
+        this.lastHardCommit = new AtomicLong(clock.getAsLong());
+    }
+
+    /**
+     * Commit the changes, with a hard commit if the previous one is older than the hard commit interval and with a
+     * soft commit otherwise.
+     *
+     * @param client the client of the core to commit
+     * @throws SolrServerException if there is an error on the server
+     * @throws IOException if there is a communication error with the server
+     */
+    public void commit(SolrClient client) throws SolrServerException, IOException
+    {
+        long now = this.clock.getAsLong();
+        long last = this.lastHardCommit.get();
+        if (now - last >= HARD_COMMIT_INTERVAL && this.lastHardCommit.compareAndSet(last, now)) {
+            client.commit();
+        } else {
+            client.commit(true, true, true);
+        }
+    }
+}
@@ -59,6 +59,8 @@
 import org.xwiki.ratings.events.DeletedRatingEvent;
 import org.xwiki.ratings.events.UpdatedRatingEvent;
 import org.xwiki.ratings.internal.averagerating.AverageRatingManager;
+import org.xwiki.ratings.internal.averagerating.PendingVotes;
+import org.xwiki.ratings.internal.averagerating.VotesDelta;
 import org.xwiki.search.solr.Solr;
 import org.xwiki.search.solr.SolrException;
 import org.xwiki.search.solr.SolrUtils;
@@ -101,6 +103,10 @@ public class SolrRatingsManager implements RatingsManager
 
     private String identifier;
 
+    private final PendingVotes pendingVotes = new PendingVotes();
+
+    private final SolrCommitter committer = new SolrCommitter();
+
     /**
      * Retrieve the solr client for storing ratings based on the configuration.
      * If the configuration specifies to use a dedicated core (see {@link RatingsConfiguration#hasDedicatedCore()}),
@@ -134,6 +140,37 @@ private AverageRatingManager getAverageRatingManager() throws RatingsException
         return this.averageRatingManager;
     }
 
+    /**
+     * Make the changes visible to the next queries without paying the price of a hard commit each time, see
+     * {@link SolrCommitter}.
+     */
+    private void softCommit() throws SolrServerException, IOException, SolrException
+    {
+        this.committer.commit(this.getRatingSolrClient());
+    }
+
+    /**
+     * Record a change of votes to apply to the average rating of the given reference, without blocking.
+     *
+     * @param reference the rated reference
+     * @param delta the change of votes
+     */
+    private void addPendingVotes(EntityReference reference, VotesDelta delta)
+    {
+        this.pendingVotes.add(reference, delta);
+    }
+
+    /**
+     * Apply the pending changes of votes to the average ratings, all at once.
+     *
+     * @param wait {@code true} if the changes of votes being applied by another thread should be waited for,
+     *     {@code false} to leave them to the other thread
+     */
+    private void applyPendingVotes(boolean wait) throws RatingsException
+    {
+        this.pendingVotes.apply(wait, this.getAverageRatingManager());
+    }
+
     @Override
     public String getIdentifier()
     {
@@ -333,18 +370,20 @@ public Rating saveRating(EntityReference reference, UserReference user, int vote
             try {
                 // Store the new document in Solr
                 this.getRatingSolrClient().add(solrInputDocument);
-                this.getRatingSolrClient().commit();
+                this.softCommit();
 
                 // Send the appropriate notification
                 this.observationManager.notify(event, this.getIdentifier(), result);
 
-                // If we store the average, we also compute the new informations for it.
+                // If we store the average, we also compute the new informations for it. The concurrent votes are
+                // coalesced and applied together by one of the voting threads.
                 if (storeAverage) {
                     if (oldRating == null) {
-                        this.getAverageRatingManager().addVote(reference, vote);
+                        this.addPendingVotes(reference, VotesDelta.addedVote(vote));
                     } else {
-                        this.getAverageRatingManager().updateVote(reference, oldRating.getVote(), vote);
+                        this.addPendingVotes(reference, VotesDelta.updatedVote(oldRating.getVote(), vote));
                     }
+                    this.applyPendingVotes(false);
                 }
             } catch (SolrServerException | IOException | SolrException e) {
                 throw new RatingsException(
@@ -406,11 +445,12 @@ public boolean removeRating(String ratingIdentifier) throws RatingsException
         if (!ratings.isEmpty()) {
             try {
                 this.getRatingSolrClient().deleteById(ratingIdentifier);
-                this.getRatingSolrClient().commit();
+                this.softCommit();
                 Rating rating = ratings.get(0);
                 this.observationManager.notify(new DeletedRatingEvent(rating), this.getIdentifier(), rating);
                 if (this.getRatingConfiguration().isAverageStored()) {
-                    this.getAverageRatingManager().removeVote(rating.getReference(), rating.getVote());
+                    this.addPendingVotes(rating.getReference(), VotesDelta.removedVote(rating.getVote()));
+                    this.applyPendingVotes(false);
                 }
                 return true;
             } catch (SolrServerException | IOException | SolrException e) {
@@ -443,6 +483,8 @@ public long removeRatings(EntityReference entityReference) throws RatingsExcepti
             this.getRatingSolrClient().deleteByQuery(filterQuery);
             this.getRatingSolrClient().commit();
             if (this.getRatingConfiguration().isAverageStored()) {
+                // Make sure the pending votes won't recreate the removed average ratings.
+                this.applyPendingVotes(true);
                 this.getAverageRatingManager().removeAverageRatings(entityReference);
             }
         } catch (SolrServerException | IOException | SolrException e) {
@@ -511,6 +553,7 @@ public long moveRatings(EntityReference oldReference, EntityReference newReferen
             }
         } while (!rawRatings.isEmpty());
         if (this.getRatingConfiguration().isAverageStored()) {
+            this.applyPendingVotes(true);
             this.getAverageRatingManager().moveAverageRatings(oldReference, newReference);
         }
         return result;
@@ -520,6 +563,7 @@ public long moveRatings(EntityReference oldReference, EntityReference newReferen
     public AverageRating getAverageRating(EntityReference entityReference) throws RatingsException
     {
         if (this.getRatingConfiguration().isAverageStored()) {
+            this.applyPendingVotes(true);
             return this.getAverageRatingManager().getAverageRating(entityReference);
         } else {
             throw new RatingsException(AVERAGE_RATING_NOT_ENABLED_ERROR_MESSAGE);
@@ -558,6 +602,9 @@ public AverageRating recomputeAverageRating(EntityReference entityReference) thr
             } while (!ratings.isEmpty());
 
             float newAverage = (numberOfVotes > 0) ? Float.valueOf(sumOfVotes) / numberOfVotes : 0;
+            // Apply the pending votes first so that they are not applied again on top of the recomputed average,
+            // which already includes them.
+            this.applyPendingVotes(true);
             return this.getAverageRatingManager().resetAverageRating(entityReference, newAverage, numberOfVotes);
         } else {
             throw new RatingsException(AVERAGE_RATING_NOT_ENABLED_ERROR_MESSAGE);
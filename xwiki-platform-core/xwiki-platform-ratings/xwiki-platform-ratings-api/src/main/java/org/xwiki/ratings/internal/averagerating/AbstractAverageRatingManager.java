@@ -19,9 +19,12 @@
  */
 package org.xwiki.ratings.internal.averagerating;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Inject;
 
@@ -80,6 +83,20 @@ protected AverageRating createAverageRating(EntityReference entityReference, Str
 
     protected abstract void saveAverageRating(AverageRating averageRating) throws RatingsException;
 
+    /**
+     * Save several average ratings. Implementations should override it when they are able to save them at once.
+     *
+     * @param averageRatings the average ratings to save
+     * @throws RatingsException in case of problem when saving the average ratings
+     * @since 16.6.0RC1
+     */
+    protected void saveAverageRatings(Collection<AverageRating> averageRatings) throws RatingsException
+    {
+        for (AverageRating averageRating : averageRatings) {
+            saveAverageRating(averageRating);
+        }
+    }
+
     private AverageRating updateAverageRating(AverageRating averageRating, float oldAverageVote, int oldTotalVote)
         throws RatingsException
     {
@@ -131,6 +148,54 @@ public AverageRating updateVote(EntityReference entityReference, int oldVote, in
         return this.updateAverageRating(averageRating, oldAverageVote, oldTotalVote);
     }
 
+    @Override
+    public List<AverageRating> updateVotes(Map<EntityReference, VotesDelta> votes) throws RatingsException
+    {
+        List<AverageRating> oldAverageRatings = new ArrayList<>(votes.size());
+        List<AverageRating> averageRatings = new ArrayList<>(votes.size());
+        for (Map.Entry<EntityReference, VotesDelta> entry : votes.entrySet()) {
+            AverageRating oldAverageRating = getAverageRating(entry.getKey());
+            VotesDelta delta = entry.getValue();
+            int totalVote = oldAverageRating.getNbVotes() + delta.getVotesCount();
+            float votesSum = oldAverageRating.getAverageVote() * oldAverageRating.getNbVotes() + delta.getVotesSum();
+
+            oldAverageRatings.add(oldAverageRating);
+            averageRatings.add(new DefaultAverageRating(oldAverageRating)
+                .setTotalVote(totalVote)
+                .setAverageVote((totalVote > 0) ? votesSum / totalVote : 0)
+                .setUpdatedAt(new Date()));
+        }
+
+        for (int i = 0; i < averageRatings.size(); i++) {
+            AverageRating averageRating = averageRatings.get(i);
+            AverageRating oldAverageRating = oldAverageRatings.get(i);
+            this.getObservationManager().notify(new UpdatingAverageRatingEvent(averageRating,
+                oldAverageRating.getAverageVote(), oldAverageRating.getNbVotes()), this.getIdentifier(),
+                Collections.singletonList(averageRating));
+        }
+        try {
+            this.saveAverageRatings(averageRatings);
+        } catch (RatingsException e) {
+            for (int i = 0; i < averageRatings.size(); i++) {
+                AverageRating averageRating = averageRatings.get(i);
+                AverageRating oldAverageRating = oldAverageRatings.get(i);
+                this.getObservationManager().notify(new UpdateAverageRatingFailedEvent(averageRating,
+                    oldAverageRating.getAverageVote(), oldAverageRating.getNbVotes()), this.getIdentifier(),
+                    Collections.singletonList(averageRating));
+            }
+            throw e;
+        }
+        for (int i = 0; i < averageRatings.size(); i++) {
+            AverageRating averageRating = averageRatings.get(i);
+            AverageRating oldAverageRating = oldAverageRatings.get(i);
+            this.getObservationManager().notify(new UpdatedAverageRatingEvent(averageRating,
+                oldAverageRating.getAverageVote(), oldAverageRating.getNbVotes()), this.getIdentifier(),
+                Collections.singletonList(averageRating));
+        }
+
+        return averageRatings;
+    }
+
     @Override
     public AverageRating resetAverageRating(EntityReference entityReference, float averageVote, int totalVote)
         throws RatingsException
@@ -19,6 +19,9 @@
  */
 package org.xwiki.ratings.internal.averagerating;
 
+import java.util.List;
+import java.util.Map;
+
 import org.xwiki.component.annotation.Role;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.ratings.AverageRating;
@@ -153,6 +156,18 @@ public String getFieldName()
      */
     AverageRating updateVote(EntityReference entityReference, int oldVote, int newVote) throws RatingsException;
 
+    /**
+     * Apply several changes of votes at once.
+     * This method will save all the updated average ratings together and triggers the appropriate events for each
+     * of them.
+     *
+     * @param votes the change to apply to the average rating of each reference
+     * @return the updated average ratings
+     * @throws RatingsException in case of problem during the operation.
+     * @since 16.6.0RC1
+     */
+    List<AverageRating> updateVotes(Map<EntityReference, VotesDelta> votes) throws RatingsException;
+
     /**
      * Force resetting the data of average rating to the given value and saving them.
      * This should be used in case of re-computation of the average rating.
@@ -0,0 +1,124 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.ratings.internal.averagerating;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.ratings.RatingsException;
+
+/**
+ * The changes of votes not yet applied to the average ratings. The changes recorded concurrently are coalesced and
+ * applied together by a single thread.
+ *
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+public final class PendingVotes
+{
+    /**
+     * The changes of votes indexed by rated reference. A {@code null} value indicates that the changes are being
+     * applied and that a new entry should be used.
+     */
+    private final Map<EntityReference, AtomicReference<VotesDelta>> votes = new ConcurrentHashMap<>();
+
+    /**
+     * Lock held while applying the pending changes of votes to the average ratings.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Record a change of votes to apply to the average rating of the given reference, without blocking.
+     *
+     * @param reference the rated reference
+     * @param delta the change of votes
+     */
+    public void add(EntityReference reference, VotesDelta delta)
+    {
+        boolean added = false;
+        while (!added) {
+            AtomicReference<VotesDelta> referenceVotes =
+                this.votes.computeIfAbsent(reference, key -> new AtomicReference<>(VotesDelta.EMPTY));
+            added = referenceVotes.getAndUpdate(current -> current != null ? current.add(delta) : null) != null;
+            if (!added) {
+                // The changes of this entry are being applied, make sure it's removed and use a new one.
+                this.votes.remove(reference, referenceVotes);
+            }
+        }
+    }
+
+    /**
+     * Apply the pending changes of votes to the average ratings, all at once.
+     *
+     * @param wait {@code true} if the changes of votes being applied by another thread should be waited for,
+     *     {@code false} to leave them to the other thread
+     * @param averageRatingManager the manager used to update the average ratings
+     * @throws RatingsException in case of problem when updating the average ratings, the changes are then kept to be
+     *     applied later
+     */
+    public void apply(boolean wait, AverageRatingManager averageRatingManager) throws RatingsException
+    {
+        if (wait) {
+            this.lock.lock();
+            try {
+                applyLocked(averageRatingManager);
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        // Checking again after releasing the lock ensures that the changes added while another thread was applying
+        // the previous ones are not forgotten.
+        while (!this.votes.isEmpty() && this.lock.tryLock()) {
+            try {
+                applyLocked(averageRatingManager);
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    private void applyLocked(AverageRatingManager averageRatingManager) throws RatingsException
+    {
+        Map<EntityReference, VotesDelta> drainedVotes = new LinkedHashMap<>();
+        for (Map.Entry<EntityReference, AtomicReference<VotesDelta>> entry : this.votes.entrySet()) {
+            VotesDelta delta = entry.getValue().getAndSet(null);
+            this.votes.remove(entry.getKey(), entry.getValue());
+            if (delta != null && !delta.isEmpty()) {
+                drainedVotes.put(entry.getKey(), delta);
+            }
+        }
+
+        if (!drainedVotes.isEmpty()) {
+            try {
+                averageRatingManager.updateVotes(drainedVotes);
+            } catch (RatingsException | RuntimeException e) {
+                // Keep the changes so that they are applied with the next ones instead of being lost.
+                drainedVotes.forEach(this::add);
+
+                throw e;
+            }
+        }
+    }
+}
@@ -42,6 +42,7 @@
 import org.xwiki.ratings.AverageRating;
 import org.xwiki.ratings.RatingsException;
 import org.xwiki.ratings.RatingsManager;
+import org.xwiki.ratings.internal.SolrCommitter;
 import org.xwiki.search.solr.Solr;
 import org.xwiki.search.solr.SolrException;
 import org.xwiki.search.solr.SolrUtils;
@@ -67,6 +68,8 @@ public class SolrAverageRatingManager extends AbstractAverageRatingManager
     @Inject
     private Solr solr;
 
+    private final SolrCommitter committer = new SolrCommitter();
+
     private SolrClient getAverageRatingSolrClient() throws SolrException
     {
         return this.solr.getClient(AverageRatingSolrCoreInitializer.DEFAULT_AVERAGE_RATING_SOLR_CORE);
@@ -238,4 +241,22 @@ protected void saveAverageRating(AverageRating averageRating) throws RatingsExce
                 e);
         }
     }
+
+    @Override
+    protected void saveAverageRatings(Collection<AverageRating> averageRatings) throws RatingsException
+    {
+        List<SolrInputDocument> documents = new ArrayList<>(averageRatings.size());
+        for (AverageRating averageRating : averageRatings) {
+            documents.add(this.getInputDocumentFromAverageRating(averageRating));
+        }
+
+        try {
+            this.getAverageRatingSolrClient().add(documents);
+            // A soft commit is enough to make the new values visible to the next updates, see SolrCommitter.
+            this.committer.commit(this.getAverageRatingSolrClient());
+        } catch (SolrException | SolrServerException | IOException e) {
+            throw new RatingsException(String.format("Error when trying to save average ratings %s", averageRatings),
+                e);
+        }
+    }
 }
@@ -0,0 +1,151 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.ratings.internal.averagerating;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.xwiki.text.XWikiToStringBuilder;
+
+/**
+ * Immutable change to apply to an average rating: the sum of the added votes (minus the removed ones) and the number
+ * of added votes (minus the removed ones).
+ *
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+public final class VotesDelta
+{
+    /**
+     * A change which does not modify the average rating.
+     */
+    public static final VotesDelta EMPTY = new VotesDelta(0, 0);
+
+    private final long votesSum;
+
+    private final int votesCount;
+
+    /**
+     * @param votesSum the sum of the added votes minus the sum of the removed votes
+     * @param votesCount the number of added votes minus the number of removed votes
+     */
+    public VotesDelta(long votesSum, int votesCount)
+    {
+        this.votesSum = votesSum;
+        this.votesCount = votesCount;
+    }
+
+    /**
+     * @param vote the added vote
+     * @return the change corresponding to a new vote
+     */
+    public static VotesDelta addedVote(int vote)
+    {
+        return new VotesDelta(vote, 1);
+    }
+
+    /**
+     * @param vote the removed vote
+     * @return the change corresponding to a removed vote
+     */
+    public static VotesDelta removedVote(int vote)
+    {
+        return new VotesDelta(-vote, -1);
+    }
+
+    /**
+     * @param oldVote the previous value of the vote
+     * @param newVote the new value of the vote
+     * @return the change corresponding to an updated vote
+     */
+    public static VotesDelta updatedVote(int oldVote, int newVote)
+    {
+        return new VotesDelta((long) newVote - oldVote, 0);
+    }
+
+    /**
+     * @param other the change to combine with this one
+     * @return a new change combining both changes
+     */
+    public VotesDelta add(VotesDelta other)
+    {
+        return new VotesDelta(this.votesSum + other.votesSum, this.votesCount + other.votesCount);
+    }
+
+    /**
+     * @return the sum of the added votes minus the sum of the removed votes
+     */
+    public long getVotesSum()
+    {
+        return this.votesSum;
+    }
+
+    /**
+     * @return the number of added votes minus the number of removed votes
+     */
+    public int getVotesCount()
+    {
+        return this.votesCount;
+    }
+
+    /**
+     * @return {@code true} if this change does not modify the average rating
+     */
+    public boolean isEmpty()
+    {
+        return this.votesSum == 0 && this.votesCount == 0;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        VotesDelta that = (VotesDelta) o;
+
+        return new EqualsBuilder()
+            .append(this.votesSum, that.votesSum)
+            .append(this.votesCount, that.votesCount)
+            .isEquals();
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return new HashCodeBuilder(17, 37)
+            .append(this.votesSum)
+            .append(this.votesCount)
+            .toHashCode();
+    }
+
+    @Override
+    public String toString()
+    {
+        return new XWikiToStringBuilder(this)
+            .append("votesSum", this.votesSum)
+            .append("votesCount", this.votesCount)
+            .toString();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.ratings.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.junit.jupiter.api.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link SolrCommitter}.
+ *
+ * @version $Id$
+ */
+class SolrCommitterTest
+{
+    @Test
+    void commit() throws Exception
+    {
+        AtomicLong time = new AtomicLong(1000);
+        SolrCommitter committer = new SolrCommitter(time::get);
+        SolrClient client = mock(SolrClient.class);
+
+        committer.commit(client);
+        time.addAndGet(10000);
+        committer.commit(client);
+
+        verify(client, times(2)).commit(true, true, true);
+
+        // The previous hard commit is too old
+        time.addAndGet(5000);
+        committer.commit(client);
+
+        verify(client).commit();
+
+        time.addAndGet(14000);
+        committer.commit(client);
+
+        verify(client, times(3)).commit(true, true, true);
+        verify(client).commit();
+    }
+}
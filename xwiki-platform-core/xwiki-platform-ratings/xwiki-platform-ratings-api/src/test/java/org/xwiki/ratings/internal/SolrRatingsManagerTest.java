@@ -54,6 +54,7 @@
 import org.xwiki.ratings.events.UpdatedRatingEvent;
 import org.xwiki.ratings.internal.averagerating.AverageRatingManager;
 import org.xwiki.ratings.internal.averagerating.DefaultAverageRating;
+import org.xwiki.ratings.internal.averagerating.VotesDelta;
 import org.xwiki.search.solr.Solr;
 import org.xwiki.search.solr.SolrUtils;
 import org.xwiki.test.annotation.BeforeComponent;
@@ -401,10 +402,10 @@ void removeRatingExisting() throws Exception
 
         assertTrue(this.manager.removeRating(ratingingId));
         verify(this.solrClient).deleteById(ratingingId);
-        verify(this.solrClient).commit();
+        verify(this.solrClient).commit(true, true, true);
         verify(this.observationManager).notify(any(DeletedRatingEvent.class), eq(managerId), eq(rating));
         verify(this.configuration).isAverageStored();
-        verify(this.averageRatingManager).removeVote(reference1, 8);
+        verify(this.averageRatingManager).updateVotes(Map.of(reference1, VotesDelta.removedVote(8)));
     }
 
     @Test
@@ -498,9 +499,9 @@ void saveRatingZeroNotExisting() throws Exception
 
         assertEquals(expectedRating, this.manager.saveRating(reference, userReference, 0));
         verify(this.solrClient).add(any(SolrInputDocument.class));
-        verify(this.solrClient).commit();
+        verify(this.solrClient).commit(true, true, true);
         verify(this.observationManager).notify(any(CreatedRatingEvent.class), eq(managerId), eq(expectedRating));
-        verify(this.averageRatingManager).addVote(reference, 0);
+        verify(this.averageRatingManager).updateVotes(Map.of(reference, VotesDelta.addedVote(0)));
     }
 
     @Test
@@ -587,10 +588,11 @@ void saveRatingExisting() throws Exception
 
         assertEquals(expectedRating, this.manager.saveRating(reference, userReference, newVote));
         verify(this.solrClient).add(any(SolrInputDocument.class));
-        verify(this.solrClient).commit();
+        verify(this.solrClient).commit(true, true, true);
         verify(this.observationManager).notify(new UpdatedRatingEvent(expectedRating, oldVote), managerId,
             expectedRating);
-        verify(this.averageRatingManager).updateVote(reference, oldVote, newVote);
+        verify(this.averageRatingManager)
+            .updateVotes(Map.of(reference, VotesDelta.updatedVote(oldVote, newVote)));
     }
 
     @Test
@@ -709,9 +711,9 @@ void saveRatingExistingToZero() throws Exception
         assertNull(this.manager.saveRating(reference, userReference, newVote));
         verify(this.solrClient, never()).add(any(SolrInputDocument.class));
         verify(this.solrClient).deleteById("myRating");
-        verify(this.solrClient).commit();
+        verify(this.solrClient).commit(true, true, true);
         verify(this.observationManager).notify(any(DeletedRatingEvent.class), eq(managerId), eq(oldRating));
-        verify(this.averageRatingManager).removeVote(reference, oldVote);
+        verify(this.averageRatingManager).updateVotes(Map.of(reference, VotesDelta.removedVote(oldVote)));
 
         when(this.configuration.isZeroStored()).thenReturn(true);
         DefaultRating expectedRating = new DefaultRating("myRating")
@@ -20,6 +20,8 @@
 package org.xwiki.ratings.internal.averagerating;
 
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -180,6 +182,32 @@ void updateVote() throws Exception
             Collections.singletonList(this.averageRating));
     }
 
+    @Test
+    void updateVotes() throws Exception
+    {
+        String managerId = "votes";
+        when(this.averageRating.getId()).thenReturn("myId");
+        when(this.averageRating.getAverageVote()).thenReturn(2.5f);
+        when(this.averageRating.getNbVotes()).thenReturn(4);
+        when(this.ratingsManager.getIdentifier()).thenReturn(managerId);
+
+        List<AverageRating> averageRatings =
+            this.averageRatingsManager.updateVotes(Map.of(this.entityReference, new VotesDelta(7, 2)));
+
+        assertEquals(1, averageRatings.size());
+        AverageRating averageRating = averageRatings.get(0);
+        DefaultAverageRating expectedAverageRating = new DefaultAverageRating("myId")
+            .setTotalVote(6)
+            .setAverageVote(17f / 6)
+            .setUpdatedAt(averageRating.getUpdatedAt());
+        assertEquals(expectedAverageRating, averageRating);
+        assertTrue(this.averageRatingsManager.isSaved);
+        verify(this.observationManager).notify(new UpdatingAverageRatingEvent(expectedAverageRating, 2.5f, 4),
+            managerId, Collections.singletonList(expectedAverageRating));
+        verify(this.observationManager).notify(new UpdatedAverageRatingEvent(expectedAverageRating, 2.5f, 4),
+            managerId, Collections.singletonList(expectedAverageRating));
+    }
+
     @Test
     void resetAverageRating() throws Exception
     {
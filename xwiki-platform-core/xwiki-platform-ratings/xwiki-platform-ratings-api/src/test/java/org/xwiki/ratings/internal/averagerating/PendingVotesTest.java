@@ -0,0 +1,145 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.ratings.internal.averagerating;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.ratings.RatingsException;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link PendingVotes}.
+ *
+ * @version $Id$
+ */
+class PendingVotesTest
+{
+    private static final EntityReference REFERENCE1 = new DocumentReference("wiki", "Space", "Page1");
+
+    private static final EntityReference REFERENCE2 = new DocumentReference("wiki", "Space", "Page2");
+
+    private final PendingVotes pendingVotes = new PendingVotes();
+
+    private final AverageRatingManager averageRatingManager = mock(AverageRatingManager.class);
+
+    @Test
+    void apply() throws Exception
+    {
+        this.pendingVotes.add(REFERENCE1, VotesDelta.addedVote(5));
+        this.pendingVotes.add(REFERENCE1, VotesDelta.updatedVote(5, 3));
+        this.pendingVotes.add(REFERENCE2, VotesDelta.removedVote(2));
+
+        this.pendingVotes.apply(false, this.averageRatingManager);
+
+        verify(this.averageRatingManager)
+            .updateVotes(Map.of(REFERENCE1, new VotesDelta(3, 1), REFERENCE2, VotesDelta.removedVote(2)));
+
+        // Nothing left to apply
+        this.pendingVotes.apply(true, this.averageRatingManager);
+
+        verify(this.averageRatingManager).updateVotes(any());
+    }
+
+    @Test
+    void applyEmptyChanges() throws Exception
+    {
+        this.pendingVotes.add(REFERENCE1, VotesDelta.addedVote(5));
+        this.pendingVotes.add(REFERENCE1, VotesDelta.removedVote(5));
+
+        this.pendingVotes.apply(true, this.averageRatingManager);
+
+        verify(this.averageRatingManager, never()).updateVotes(any());
+    }
+
+    @Test
+    void applyConcurrentVotes() throws Exception
+    {
+        CountDownLatch updating = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            updating.countDown();
+            assertTrue(resume.await(10, TimeUnit.SECONDS));
+            return null;
+        }).doReturn(null).when(this.averageRatingManager).updateVotes(any());
+
+        // The first voter applies its vote and gets blocked while holding the lock.
+        this.pendingVotes.add(REFERENCE1, VotesDelta.addedVote(5));
+        CompletableFuture<Void> firstVoter = CompletableFuture.runAsync(() -> {
+            try {
+                this.pendingVotes.apply(false, this.averageRatingManager);
+            } catch (RatingsException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertTrue(updating.await(10, TimeUnit.SECONDS));
+
+        // The next voters don't wait for the lock and leave their votes to the first voter.
+        this.pendingVotes.add(REFERENCE1, VotesDelta.addedVote(3));
+        this.pendingVotes.apply(false, this.averageRatingManager);
+        this.pendingVotes.add(REFERENCE1, VotesDelta.addedVote(4));
+        this.pendingVotes.add(REFERENCE2, VotesDelta.removedVote(2));
+        this.pendingVotes.apply(false, this.averageRatingManager);
+
+        verify(this.averageRatingManager).updateVotes(any());
+
+        // The first voter checks the pending votes again after releasing the lock and applies them all at once.
+        resume.countDown();
+        firstVoter.get(10, TimeUnit.SECONDS);
+
+        verify(this.averageRatingManager).updateVotes(Map.of(REFERENCE1, VotesDelta.addedVote(5)));
+        verify(this.averageRatingManager)
+            .updateVotes(Map.of(REFERENCE1, new VotesDelta(7, 2), REFERENCE2, VotesDelta.removedVote(2)));
+        verify(this.averageRatingManager, times(2)).updateVotes(any());
+    }
+
+    @Test
+    void applyWhenUpdateFails() throws Exception
+    {
+        RatingsException exception = new RatingsException("error");
+        when(this.averageRatingManager.updateVotes(any())).thenThrow(exception).thenReturn(null);
+
+        this.pendingVotes.add(REFERENCE1, VotesDelta.addedVote(5));
+
+        assertSame(exception,
+            assertThrows(RatingsException.class, () -> this.pendingVotes.apply(false, this.averageRatingManager)));
+
+        // The changes are kept and applied with the next ones.
+        this.pendingVotes.add(REFERENCE1, VotesDelta.addedVote(3));
+        this.pendingVotes.apply(true, this.averageRatingManager);
+
+        verify(this.averageRatingManager).updateVotes(Map.of(REFERENCE1, new VotesDelta(8, 2)));
+    }
+}
@@ -124,6 +124,20 @@ public class DefaultSolrConfiguration implements SolrConfiguration
      */
     public static final int SOLR_INDEXER_QUEUE_CAPACITY_DEFAULT = 100000;
 
+    /**
+     * The name of the configuration property containing the number of metadata extraction threads.
+     * 
+     * @since 16.6.0RC1
+     */
+    public static final String SOLR_INDEXER_THREADS_PROPERTY = "solr.indexer.threads";
+
+    /**
+     * The default number of metadata extraction threads.
+     * 
+     * @since 16.6.0RC1
+     */
+    public static final int SOLR_INDEXER_THREADS_DEFAULT = 1;
+
     /**
      * The name of the configuration property indicating if a synchronization should be run at startup.
      */
@@ -145,6 +159,21 @@ public class DefaultSolrConfiguration implements SolrConfiguration
     public static final SynchronizeAtStartupMode SOLR_SYNCHRONIZE_AT_STARTUP_MODE_DEFAULT =
         SynchronizeAtStartupMode.FARM;
 
+    /**
+     * The name of the configuration property indicating if the synchronization executed at startup should be
+     * incremental.
+     * 
+     * @since 16.6.0RC1
+     */
+    public static final String SOLR_SYNCHRONIZE_AT_STARTUP_INCREMENTAL = "solr.synchronizeAtStartupIncremental";
+
+    /**
+     * Indicate if the synchronization executed at startup should be incremental by default.
+     * 
+     * @since 16.6.0RC1
+     */
+    public static final boolean SOLR_SYNCHRONIZE_AT_STARTUP_INCREMENTAL_DEFAULT = false;
+
     /**
      * The Solr configuration source.
      */
@@ -200,6 +229,12 @@ public int getIndexerQueueCapacity()
             SOLR_INDEXER_QUEUE_CAPACITY_DEFAULT);
     }
 
+    @Override
+    public int getIndexerThreads()
+    {
+        return Math.max(1, this.configuration.getProperty(SOLR_INDEXER_THREADS_PROPERTY, SOLR_INDEXER_THREADS_DEFAULT));
+    }
+
     @Override
     public boolean synchronizeAtStartup()
     {
@@ -238,4 +273,11 @@ public SynchronizeAtStartupMode synchronizeAtStartupMode()
         }
         return result;
     }
+
+    @Override
+    public boolean synchronizeAtStartupIncremental()
+    {
+        return this.configuration.getProperty(SOLR_SYNCHRONIZE_AT_STARTUP_INCREMENTAL,
+            SOLR_SYNCHRONIZE_AT_STARTUP_INCREMENTAL_DEFAULT);
+    }
 }
@@ -19,14 +19,27 @@
  */
 package org.xwiki.search.solr.internal;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.common.SolrInputDocument;
 import org.slf4j.Logger;
 import org.xwiki.bridge.internal.DocumentContextExecutor;
@@ -53,6 +66,7 @@
 import org.xwiki.search.solr.internal.api.SolrInstance;
 import org.xwiki.search.solr.internal.job.IndexerJob;
 import org.xwiki.search.solr.internal.job.IndexerRequest;
+import org.xwiki.search.solr.internal.job.SynchronizationMarkStore;
 import org.xwiki.search.solr.internal.metadata.LengthSolrInputDocument;
 import org.xwiki.search.solr.internal.metadata.SolrMetadataExtractor;
 import org.xwiki.search.solr.internal.reference.SolrReferenceResolver;
@@ -67,6 +81,11 @@
  * This implementation does not directly process the given leaf-references, but adds them to a processing queue, in the
  * order they were received. The {@link Runnable} part of this implementation is the one that sequentially reads and
  * processes the queue.
+ * <p>
+ * When more than one indexer thread is configured, the metadata of the entities to index is extracted in parallel by a
+ * pool of extraction threads (the entities belonging to the same document are always handled by the same thread) while
+ * the index thread keeps sending the extracted documents and the delete operations to Solr in the order they were
+ * received.
  * 
  * @version $Id$
  * @since 5.1M2
@@ -180,6 +199,66 @@ public ResolveQueueEntry(EntityReference reference, boolean recurse, IndexOperat
         }
     }
 
+    /**
+     * An index queue entry which is being processed by the extraction threads.
+     * 
+     * @version $Id$
+     */
+    private static class ExtractionEntry
+    {
+        /**
+         * The index queue entry.
+         */
+        public final IndexQueueEntry entry;
+
+        /**
+         * The result of the metadata extraction, {@code null} if the entry is not an index operation.
+         */
+        public final Future<LengthSolrInputDocument> document;
+
+        /**
+         * @param entry the index queue entry
+         * @param document the result of the metadata extraction
+         */
+        ExtractionEntry(IndexQueueEntry entry, Future<LengthSolrInputDocument> document)
+        {
+            this.entry = entry;
+            this.document = document;
+        }
+    }
+
+    /**
+     * Gather the throughput of a stage of the indexing pipeline.
+     * 
+     * @version $Id$
+     */
+    private static class StageStatistics
+    {
+        private final AtomicLong count = new AtomicLong();
+
+        private final AtomicLong time = new AtomicLong();
+
+        /**
+         * @param entries the number of processed entries
+         * @param nanos the time spent processing the entries, in nanoseconds
+         */
+        void add(long entries, long nanos)
+        {
+            this.count.addAndGet(entries);
+            this.time.addAndGet(nanos);
+        }
+
+        @Override
+        public String toString()
+        {
+            long entries = this.count.get();
+            long millis = TimeUnit.NANOSECONDS.toMillis(this.time.get());
+
+            return String.format("%d entries in %d ms (%d entries/s)", entries, millis,
+                millis > 0 ? entries * 1000 / millis : entries);
+        }
+    }
+
     /**
      * Extract children references from passed references and dispatch them to the index queue.
      * 
@@ -301,6 +380,12 @@ public void runInternal()
     @Inject
     private Provider<XWikiContext> xWikiContextProvider;
 
+    /**
+     * Used to remember the synchronizations which are complete once the queue is empty.
+     */
+    @Inject
+    private SynchronizationMarkStore markStore;
+
     /**
      * The queue of index operation to perform.
      */
@@ -321,6 +406,12 @@ public void runInternal()
      */
     private Thread resolveThread;
 
+    /**
+     * The threads in which the metadata of the entities to index is extracted, partitioned by document. {@code null}
+     * when the metadata is extracted directly in the index thread.
+     */
+    private List<ExecutorService> extractors;
+
     /**
      * Indicate of the component has been disposed.
      */
@@ -331,6 +422,21 @@ public void runInternal()
      */
     private volatile int batchSize;
 
+    /**
+     * The number of entries taken from the index queue and waiting for their metadata to be extracted.
+     */
+    private volatile int extractionSize;
+
+    /**
+     * The throughput of the metadata extraction.
+     */
+    private final StageStatistics extractionStatistics = new StageStatistics();
+
+    /**
+     * The throughput of the commits to the Solr server.
+     */
+    private final StageStatistics commitStatistics = new StageStatistics();
+
     @Override
     public void initialize() throws InitializationException
     {
@@ -338,6 +444,18 @@ public void initialize() throws InitializationException
         this.resolveQueue = new LinkedBlockingQueue<>();
         this.indexQueue = new LinkedBlockingQueue<>(this.configuration.getIndexerQueueCapacity());
 
+        // Start the extraction threads
+        int threads = this.configuration.getIndexerThreads();
+        if (threads > 1) {
+            this.extractors = new ArrayList<>(threads);
+            for (int i = 0; i < threads; ++i) {
+                BasicThreadFactory factory = new BasicThreadFactory.Builder()
+                    .namingPattern("XWiki Solr extraction thread " + i).daemon(true)
+                    .priority(Thread.NORM_PRIORITY - 1).build();
+                this.extractors.add(Executors.newSingleThreadExecutor(factory));
+            }
+        }
+
         // Launch the resolve thread
         this.resolveThread = new Thread(new Resolver());
         this.resolveThread.setName("XWiki Solr resolve thread");
@@ -390,9 +508,20 @@ public void run()
 
             // Add to the batch until either the batch size is achieved, the queue gets emptied or the
             // INDEX_QUEUE_ENTRY_STOP is retrieved from the queue.
-            if (!processBatch(queueEntry)) {
+            boolean proceed = this.extractors != null ? processParallelBatch(queueEntry) : processBatch(queueEntry);
+            if (!proceed) {
                 break;
             }
+
+            // Everything queued by the synchronizations which ended so far is indexed
+            if (getQueueSize() == 0) {
+                this.markStore.commitPendingMarks();
+            }
+        }
+
+        // Stop the extraction threads
+        if (this.extractors != null) {
+            this.extractors.forEach(ExecutorService::shutdownNow);
         }
 
         this.logger.debug("Stop SOLR indexer thread");
@@ -419,13 +548,12 @@ private boolean processBatch(IndexQueueEntry queueEntry)
 
             // For the current contiguous operations queue, group the changes
             try {
-                ExecutionContext executionContext = new ExecutionContext();
-                this.ecim.initialize(executionContext);
-                XWikiContext xcontext = (XWikiContext) executionContext.getProperty(XWikiContext.EXECUTIONCONTEXT_KEY);
-                xcontext.setUserReference(indexingUserConfig.getIndexingUserReference());
+                initializeExecutionContext();
 
                 if (IndexOperation.INDEX.equals(operation)) {
+                    long start = System.nanoTime();
                     LengthSolrInputDocument solrDocument = getSolrDocument(batchEntry.reference);
+                    this.extractionStatistics.add(1, System.nanoTime() - start);
                     if (solrDocument != null) {
                         solrInstance.add(solrDocument);
                         length += solrDocument.getLength();
@@ -462,11 +590,191 @@ private boolean processBatch(IndexQueueEntry queueEntry)
         return true;
     }
 
+    /**
+     * Process a batch of operations that were just read from the index operations queue, extracting the metadata of
+     * the entities to index in the extraction threads. The operations are sent to the Solr server in the order they
+     * were read from the queue. This method also commits the batch when it finishes to process it.
+     * 
+     * @param queueEntry the batch to process
+     * @return {@code true} to wait for another batch, {@code false} to stop the indexing thread
+     */
+    private boolean processParallelBatch(IndexQueueEntry queueEntry)
+    {
+        int windowSize = Math.max(this.configuration.getIndexerBatchSize(), this.extractors.size());
+        int length = 0;
+
+        // Sliding window of the entries being extracted: it's refilled from the queue each time its head is sent to
+        // the Solr server so that the extraction threads never wait for the whole window to be processed
+        Deque<ExtractionEntry> window = new ArrayDeque<>(windowSize);
+
+        IndexQueueEntry batchEntry = queueEntry;
+        while (true) {
+            // Fill the window with the entries available in the queue and start extracting their metadata
+            for (; batchEntry != null && window.size() < windowSize; batchEntry = this.indexQueue.poll()) {
+                if (batchEntry == INDEX_QUEUE_ENTRY_STOP) {
+                    // Discard the current batch and stop the indexing thread.
+                    window.stream().filter(e -> e.document != null).forEach(e -> e.document.cancel(true));
+                    this.extractionSize = 0;
+
+                    return false;
+                }
+
+                window.add(new ExtractionEntry(batchEntry, startExtraction(batchEntry)));
+                this.extractionSize = window.size();
+            }
+
+            if (window.isEmpty()) {
+                break;
+            }
+
+            // Send the head of the window to the Solr server, in the order of the queue
+            length += apply(window.poll());
+            this.extractionSize = window.size();
+
+            // Commit the index changes so that they become available to queries.
+            if (shouldCommit(length, this.batchSize)) {
+                commit();
+                length = 0;
+            }
+
+            // Check if some new entries arrived in the meantime
+            if (batchEntry == null) {
+                batchEntry = this.indexQueue.poll();
+            }
+        }
+
+        // Commit what's left
+        if (this.batchSize > 0) {
+            commit();
+        }
+
+        return true;
+    }
+
+    /**
+     * @param entry the index queue entry
+     * @return the result of the metadata extraction or {@code null} if the entry is not an index operation
+     */
+    private Future<LengthSolrInputDocument> startExtraction(IndexQueueEntry entry)
+    {
+        if (!IndexOperation.INDEX.equals(entry.operation)) {
+            return null;
+        }
+
+        // Make sure all the entities of a document are extracted by the same thread so that they are handled in the
+        // order they were received.
+        EntityReference documentReference = entry.reference.extractReference(EntityType.DOCUMENT);
+        EntityReference partitionReference = documentReference != null ? documentReference : entry.reference;
+        ExecutorService extractor =
+            this.extractors.get(Math.floorMod(partitionReference.hashCode(), this.extractors.size()));
+
+        return extractor.submit(() -> extract(entry.reference));
+    }
+
+    /**
+     * Extract the metadata of the passed entity in a dedicated execution context.
+     * 
+     * @param reference the reference to extract metadata from
+     * @return the extracted metadata or {@code null} if the reference type is not supported
+     * @throws SolrIndexerException if problems occur
+     * @throws ExecutionContextException when failing to initialize the execution context
+     */
+    private LengthSolrInputDocument extract(EntityReference reference)
+        throws SolrIndexerException, ExecutionContextException
+    {
+        long start = System.nanoTime();
+        try {
+            initializeExecutionContext();
+
+            return getSolrDocument(reference);
+        } finally {
+            this.execution.removeContext();
+
+            this.extractionStatistics.add(1, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Send the passed operation to the Solr server.
+     * 
+     * @param extractionEntry the operation to send
+     * @return the length of the document sent to the Solr server
+     */
+    private int apply(ExtractionEntry extractionEntry)
+    {
+        IndexQueueEntry batchEntry = extractionEntry.entry;
+        int length = 0;
+
+        try {
+            if (IndexOperation.INDEX.equals(batchEntry.operation)) {
+                LengthSolrInputDocument solrDocument = extractionEntry.document.get();
+                if (solrDocument != null) {
+                    this.solrInstance.add(solrDocument);
+                    length = solrDocument.getLength();
+                    ++this.batchSize;
+                }
+            } else if (IndexOperation.DELETE.equals(batchEntry.operation)) {
+                delete(batchEntry);
+            }
+        } catch (InterruptedException e) {
+            this.logger.warn("The SOLR index thread has been interrupted while processing entry [{}]", batchEntry, e);
+
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            this.logger.error("Failed to process entry [{}]", batchEntry, e.getCause());
+        } catch (Throwable e) {
+            this.logger.error("Failed to process entry [{}]", batchEntry, e);
+        }
+
+        return length;
+    }
+
+    /**
+     * @param batchEntry the delete operation to send to the Solr server
+     * @throws SolrServerException if there is an error on the server
+     * @throws IOException if there's a communication error
+     * @throws SolrIndexerException when failing to resolve the identifier of the entry to delete
+     * @throws ExecutionContextException when failing to initialize the execution context
+     */
+    private void delete(IndexQueueEntry batchEntry)
+        throws SolrServerException, IOException, SolrIndexerException, ExecutionContextException
+    {
+        try {
+            initializeExecutionContext();
+
+            if (batchEntry.reference == null) {
+                this.solrInstance.deleteByQuery(batchEntry.deleteQuery);
+            } else {
+                this.solrInstance.delete(this.solrRefereceResolver.getId(batchEntry.reference));
+            }
+
+            ++this.batchSize;
+        } finally {
+            this.execution.removeContext();
+        }
+    }
+
+    /**
+     * Initialize a new execution context for the current thread, using the indexing user as context user.
+     * 
+     * @throws ExecutionContextException when failing to initialize the execution context
+     */
+    private void initializeExecutionContext() throws ExecutionContextException
+    {
+        ExecutionContext executionContext = new ExecutionContext();
+        this.ecim.initialize(executionContext);
+        XWikiContext xcontext = (XWikiContext) executionContext.getProperty(XWikiContext.EXECUTIONCONTEXT_KEY);
+        xcontext.setUserReference(this.indexingUserConfig.getIndexingUserReference());
+    }
+
     /**
      * Commit.
      */
     private void commit()
     {
+        int size = this.batchSize;
+        long start = System.nanoTime();
+
         try {
             solrInstance.commit();
         } catch (Exception e) {
@@ -481,6 +789,11 @@ private void commit()
         }
 
         this.batchSize = 0;
+
+        this.commitStatistics.add(size, System.nanoTime() - start);
+
+        this.logger.debug("Solr indexer throughput: extraction [{}], commit [{}]", this.extractionStatistics,
+            this.commitStatistics);
     }
 
     /**
@@ -585,7 +898,7 @@ private void addToQueue(EntityReference reference, boolean recurse, IndexOperati
     @Override
     public int getQueueSize()
     {
-        return this.indexQueue.size() + this.resolveQueue.size() + this.batchSize;
+        return this.indexQueue.size() + this.resolveQueue.size() + this.extractionSize + this.batchSize;
     }
 
     @Override
@@ -98,6 +98,13 @@
      */
     int getIndexerQueueCapacity();
 
+    /**
+     * @return the number of threads used to extract the metadata of the entities to index, {@code 1} to extract them
+     *         directly in the index thread
+     * @since 16.6.0RC1
+     */
+    int getIndexerThreads();
+
     /**
      * @return true if a full synchronization job between the database and SOLR index should be run when XWiki starts
      * @since 6.1M2
@@ -121,4 +128,14 @@
      * @since 12.5RC1
      */
     SynchronizeAtStartupMode synchronizeAtStartupMode();
+
+    /**
+     * @return true if the synchronization executed at startup should only compare the documents modified since the
+     *         last completed synchronization
+     * @since 16.6.0RC1
+     */
+    default boolean synchronizeAtStartupIncremental()
+    {
+        return false;
+    }
 }
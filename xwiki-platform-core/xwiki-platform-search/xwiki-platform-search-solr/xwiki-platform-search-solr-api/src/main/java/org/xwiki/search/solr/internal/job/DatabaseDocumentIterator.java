@@ -230,6 +230,9 @@ private Query getQuery() throws QueryException
                     whereClause += " and doc.name = :name";
                 }
             }
+            if (this.modifiedSince != null) {
+                whereClause += (whereClause.isEmpty() ? " where" : " and") + " doc.date >= :modifiedSince";
+            }
 
             query = queryManager.createQuery(select + whereClause + orderBy, Query.HQL).setLimit(LIMIT);
             countQuery = queryManager.createQuery(whereClause, Query.HQL).addFilter(countFilter);
@@ -240,6 +243,9 @@ private Query getQuery() throws QueryException
                     query.bindValue("name", documentReference.getName());
                 }
             }
+            if (this.modifiedSince != null) {
+                query.bindValue("modifiedSince", this.modifiedSince);
+            }
 
             for (Map.Entry<String, Object> parameter : query.getNamedParameters().entrySet()) {
                 countQuery.bindValue(parameter.getKey(), parameter.getValue());
@@ -19,6 +19,8 @@
  */
 package org.xwiki.search.solr.internal.job;
 
+import java.util.Date;
+
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.xwiki.model.internal.reference.comparator.DocumentReferenceComparator;
@@ -102,6 +104,13 @@ public void setRootReference(EntityReference rootReference)
         next.setRootReference(rootReference);
     }
 
+    @Override
+    public void setModifiedSince(Date modifiedSince)
+    {
+        previous.setModifiedSince(modifiedSince);
+        next.setModifiedSince(modifiedSince);
+    }
+
     @Override
     public boolean hasNext()
     {
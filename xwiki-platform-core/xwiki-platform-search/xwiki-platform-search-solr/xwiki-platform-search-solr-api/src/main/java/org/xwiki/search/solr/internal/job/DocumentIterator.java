@@ -19,6 +19,7 @@
  */
 package org.xwiki.search.solr.internal.job;
 
+import java.util.Date;
 import java.util.Iterator;
 
 import org.apache.commons.lang3.tuple.Pair;
@@ -45,6 +46,15 @@
      */
     void setRootReference(EntityReference rootReference);
 
+    /**
+     * Only iterate the documents modified since the passed date.
+     * 
+     * @param modifiedSince the minimum modification date (included) of the iterated documents, {@code null} to iterate
+     *            all the documents
+     * @since 16.6.0RC1
+     */
+    void setModifiedSince(Date modifiedSince);
+
     /**
      * @return estimate the size of the iterated store for showing progress information
      */
@@ -20,6 +20,8 @@
 package org.xwiki.search.solr.internal.job;
 
 import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -32,6 +34,7 @@
 import org.xwiki.job.DefaultJobStatus;
 import org.xwiki.job.GroupedJob;
 import org.xwiki.job.JobGroupPath;
+import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.EntityReferenceSerializer;
@@ -59,6 +62,11 @@ public class IndexerJob extends AbstractJob<IndexerRequest, DefaultJobStatus<Ind
      */
     private static final JobGroupPath GROUP = new JobGroupPath(Arrays.asList("solr", "indexer"));
 
+    /**
+     * Margin removed from the last synchronization date to cover clock differences between cluster members.
+     */
+    private static final long MARK_MARGIN = TimeUnit.MINUTES.toMillis(10);
+
     /**
      * Used to send documents to index or delete to/from Solr index.
      */
@@ -76,6 +84,9 @@ public class IndexerJob extends AbstractJob<IndexerRequest, DefaultJobStatus<Ind
     @Inject
     private EntityReferenceSerializer<String> entityReferenceSerializer;
 
+    @Inject
+    private transient SynchronizationMarkStore markStore;
+
     @Override
     public String getType()
     {
@@ -95,13 +106,29 @@ public JobGroupPath getGroupPath()
     @Override
     protected void runInternal() throws Exception
     {
+        EntityReference rootReference = getRequest().getRootReference();
+        Date startDate = new Date();
+
         if (getRequest().isOverwrite()) {
-            EntityReference rootReference = getRequest().getRootReference();
             this.logger.info("Index documents in [{}].", rootReference);
             this.indexer.index(rootReference, true);
         } else {
             updateSolrIndex();
         }
+
+        if (isMarkSupported(rootReference)) {
+            // Remember the date of this synchronization only once everything it queued was actually indexed, which is
+            // checked by the indexer thread so that the job (and the other indexing jobs) don't wait for it
+            this.markStore.setPendingMark(rootReference, startDate);
+            if (this.indexer.getQueueSize() == 0) {
+                this.markStore.commitPendingMarks();
+            }
+        }
+    }
+
+    private boolean isMarkSupported(EntityReference rootReference)
+    {
+        return rootReference == null || rootReference.getType() == EntityType.WIKI;
     }
 
     /**
@@ -112,6 +139,17 @@ private void updateSolrIndex()
         DiffDocumentIterator<String> iterator = new DiffDocumentIterator<>(this.solrIterator, this.databaseIterator);
         iterator.setRootReference(getRequest().getRootReference());
 
+        if (getRequest().isIncremental() && isMarkSupported(getRequest().getRootReference())) {
+            Date mark = this.markStore.getMark(getRequest().getRootReference());
+            if (mark != null) {
+                Date modifiedSince = new Date(mark.getTime() - MARK_MARGIN);
+                this.logger.info("Synchronize documents modified since [{}].", modifiedSince);
+                iterator.setModifiedSince(modifiedSince);
+            } else {
+                this.logger.info("No previous synchronization found, falling back to a full synchronization.");
+            }
+        }
+
         this.progressManager.pushLevelProgress(2, this);
 
         try {
@@ -53,6 +53,11 @@ public class IndexerRequest extends AbstractRequest
      */
     private boolean removeMissing = true;
 
+    /**
+     * @see #isIncremental()
+     */
+    private boolean incremental;
+
     /**
      * The default constructor.
      */
@@ -118,6 +123,27 @@ public void setRemoveMissing(boolean removeMissing)
         this.removeMissing = removeMissing;
     }
 
+    /**
+     * @return if true and a previous synchronization of the same root completed, only the documents modified since
+     *         that synchronization are compared, otherwise the whole database is compared with the whole index
+     * @since 16.6.0RC1
+     */
+    public boolean isIncremental()
+    {
+        return this.incremental;
+    }
+
+    /**
+     * @param incremental if true and a previous synchronization of the same root completed, only the documents
+     *            modified since that synchronization are compared, otherwise the whole database is compared with the
+     *            whole index
+     * @since 16.6.0RC1
+     */
+    public void setIncremental(boolean incremental)
+    {
+        this.incremental = incremental;
+    }
+
     @Override
     public boolean equals(Object o)
     {
@@ -135,6 +161,7 @@ public boolean equals(Object o)
             .appendSuper(super.equals(o))
             .append(overwrite, that.overwrite)
             .append(removeMissing, that.removeMissing)
+            .append(incremental, that.incremental)
             .append(rootReference, that.rootReference)
             .isEquals();
     }
@@ -147,6 +174,7 @@ public int hashCode()
             .append(rootReference)
             .append(overwrite)
             .append(removeMissing)
+            .append(incremental)
             .toHashCode();
     }
 }
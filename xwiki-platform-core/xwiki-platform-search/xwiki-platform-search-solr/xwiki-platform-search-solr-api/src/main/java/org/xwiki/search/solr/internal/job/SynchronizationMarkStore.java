@@ -0,0 +1,184 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal.job;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.environment.Environment;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+
+/**
+ * Remember, for each synchronization root (the farm or a wiki), the date of the last completed synchronization
+ * between the database and the Solr index. An incremental synchronization only needs to look at the documents
+ * modified since that date.
+ * <p>
+ * The marks are stored next to the default embedded Solr home so that deleting the index also forgets the marks.
+ * 
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+@Component(roles = SynchronizationMarkStore.class)
+@Singleton
+public class SynchronizationMarkStore
+{
+    private static final String FILE_PATH = "store/solr/synchronization.properties";
+
+    private static final String FARM_KEY = "farm";
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    @Inject
+    private Logger logger;
+
+    private Properties marks;
+
+    /**
+     * The marks of the synchronizations which are waiting for the indexing queue to be empty to be complete.
+     */
+    private final Map<String, Long> pendingMarks = new HashMap<>();
+
+    /**
+     * @param rootReference the root of the synchronization, {@code null} for the whole farm
+     * @return the date of the last completed synchronization of the passed root, {@code null} if none is known
+     */
+    public synchronized Date getMark(EntityReference rootReference)
+    {
+        long time = NumberUtils.toLong(getMarks().getProperty(getKey(rootReference)), -1);
+
+        return time >= 0 ? new Date(time) : null;
+    }
+
+    /**
+     * @param rootReference the root of the synchronization, {@code null} for the whole farm
+     * @param date the date at which the completed synchronization started
+     */
+    public synchronized void setMark(EntityReference rootReference, Date date)
+    {
+        getMarks().setProperty(getKey(rootReference), String.valueOf(date.getTime()));
+
+        save();
+    }
+
+    /**
+     * Remember the date of a synchronization which is complete only once everything it queued is indexed.
+     * 
+     * @param rootReference the root of the synchronization, {@code null} for the whole farm
+     * @param date the date at which the synchronization started
+     * @see #commitPendingMarks()
+     */
+    public synchronized void setPendingMark(EntityReference rootReference, Date date)
+    {
+        this.pendingMarks.put(getKey(rootReference), date.getTime());
+    }
+
+    /**
+     * Save the pending marks, to be called when the indexing queue is empty.
+     */
+    public synchronized void commitPendingMarks()
+    {
+        if (!this.pendingMarks.isEmpty()) {
+            Properties properties = getMarks();
+            this.pendingMarks.forEach((key, time) -> properties.setProperty(key, String.valueOf(time)));
+            this.pendingMarks.clear();
+
+            save();
+        }
+    }
+
+    /**
+     * @param rootReference the root of the synchronization, {@code null} for the whole farm
+     */
+    public synchronized void removeMark(EntityReference rootReference)
+    {
+        String key = getKey(rootReference);
+
+        this.pendingMarks.remove(key);
+
+        if (getMarks().remove(key) != null) {
+            save();
+        }
+    }
+
+    private String getKey(EntityReference rootReference)
+    {
+        return rootReference != null ? this.serializer.serialize(rootReference) : FARM_KEY;
+    }
+
+    private File getFile()
+    {
+        return new File(this.environment.getPermanentDirectory(), FILE_PATH);
+    }
+
+    private Properties getMarks()
+    {
+        if (this.marks == null) {
+            this.marks = new Properties();
+
+            File file = getFile();
+            if (file.exists()) {
+                try (InputStream stream = Files.newInputStream(file.toPath())) {
+                    this.marks.load(stream);
+                } catch (IOException e) {
+                    this.logger.warn("Failed to read the Solr synchronization marks from [{}], a full"
+                        + " synchronization will be executed: {}", file, e.getMessage());
+                }
+            }
+        }
+
+        return this.marks;
+    }
+
+    private void save()
+    {
+        File file = getFile();
+        File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+
+        try {
+            file.getParentFile().mkdirs();
+            try (OutputStream stream = Files.newOutputStream(tmpFile.toPath())) {
+                this.marks.store(stream, null);
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            this.logger.warn("Failed to save the Solr synchronization marks to [{}]: {}", file, e.getMessage());
+        }
+    }
+}
@@ -19,17 +19,21 @@
  */
 package org.xwiki.search.solr.internal.metadata;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrQuery.ORDER;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
@@ -43,6 +47,7 @@
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.EntityReferenceResolver;
 import org.xwiki.model.reference.PageReference;
+import org.xwiki.model.reference.WikiReference;
 import org.xwiki.search.solr.Solr;
 import org.xwiki.search.solr.SolrException;
 import org.xwiki.search.solr.SolrUtils;
@@ -50,6 +55,9 @@
 import org.xwiki.search.solr.internal.SolrSearchCoreUtils;
 import org.xwiki.search.solr.internal.api.FieldUtils;
 
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.internal.store.hibernate.HibernateLinkStore;
+
 /**
  * @version $Id$
  */
@@ -57,6 +65,8 @@
 @Singleton
 public class DefaultLinkStore implements LinkStore
 {
+    private static final int BACKLINKS_BATCH_SIZE = 1000;
+
     @Inject
     private Solr solr;
 
@@ -80,6 +90,13 @@ public class DefaultLinkStore implements LinkStore
     @Named("current")
     private DocumentReferenceResolver<PageReference> currentDocumentResolver;
 
+    @Inject
+    @Named(HibernateLinkStore.HINT)
+    private Provider<LinkStore> databaseStoreProvider;
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
     private SolrClient getClient() throws LinkException
     {
         try {
@@ -135,6 +152,104 @@ public Set<EntityReference> resolveLinkedEntities(EntityReference target) throws
 
     @Override
     public Set<EntityReference> resolveBackLinkedEntities(EntityReference reference) throws LinkException
+    {
+        Set<EntityReference> references = new HashSet<>();
+
+        String excludedWiki = null;
+        LinkStore databaseStore = getDatabaseStore(reference);
+        if (databaseStore != null) {
+            references.addAll(databaseStore.resolveBackLinkedEntities(reference));
+            excludedWiki = reference.extractReference(EntityType.WIKI).getName();
+        }
+
+        // Load the backlinks by batches instead of asking Solr for all the matching documents at once
+        int offset = 0;
+        List<EntityReference> batch;
+        do {
+            batch = searchBackLinkedEntities(reference, excludedWiki, offset, BACKLINKS_BATCH_SIZE);
+            references.addAll(batch);
+            offset += BACKLINKS_BATCH_SIZE;
+        } while (batch.size() == BACKLINKS_BATCH_SIZE);
+
+        return references;
+    }
+
+    @Override
+    public List<EntityReference> resolveBackLinkedEntities(EntityReference reference, int offset, int limit)
+        throws LinkException
+    {
+        LinkStore databaseStore = getDatabaseStore(reference);
+        if (databaseStore == null) {
+            return searchBackLinkedEntities(reference, null, offset, limit);
+        }
+
+        // The backlinks from the wiki of the entity come first, followed by the backlinks from the other wikis.
+        List<EntityReference> references = new ArrayList<>();
+        long databaseCount = databaseStore.countBackLinkedEntities(reference);
+        if (offset < databaseCount) {
+            references.addAll(databaseStore.resolveBackLinkedEntities(reference, offset, limit));
+        }
+        if (limit <= 0 || references.size() < limit) {
+            references.addAll(searchBackLinkedEntities(reference, reference.extractReference(EntityType.WIKI).getName(),
+                (int) Math.max(0, offset - databaseCount), limit > 0 ? limit - references.size() : limit));
+        }
+
+        return references;
+    }
+
+    private List<EntityReference> searchBackLinkedEntities(EntityReference reference, String excludedWiki,
+        int offset, int limit) throws LinkException
+    {
+        SolrQuery solrQuery = createBackLinksQuery(reference, excludedWiki);
+
+        solrQuery.setStart(offset);
+        solrQuery.setRows(limit > 0 ? limit : Integer.MAX_VALUE - 1);
+        // Make sure the pages are stable
+        solrQuery.setSort(FieldUtils.REFERENCE, ORDER.asc);
+
+        // Load only the field we need
+        solrQuery.setFields(FieldUtils.REFERENCE);
+
+        SolrDocumentList solrDocuments = search(solrQuery).getResults();
+
+        List<EntityReference> references = new ArrayList<>(solrDocuments.size());
+        for (SolrDocument solrDocument : solrDocuments) {
+            String referenceStr = (String) solrDocument.getFieldValue(FieldUtils.REFERENCE);
+
+            if (referenceStr != null) {
+                references.add(this.referenceResolver.resolve(referenceStr, null));
+            }
+        }
+
+        return references;
+    }
+
+    @Override
+    public long countBackLinkedEntities(EntityReference reference) throws LinkException
+    {
+        long count = 0;
+
+        String excludedWiki = null;
+        LinkStore databaseStore = getDatabaseStore(reference);
+        if (databaseStore != null) {
+            count += databaseStore.countBackLinkedEntities(reference);
+            excludedWiki = reference.extractReference(EntityType.WIKI).getName();
+        }
+
+        SolrQuery solrQuery = createBackLinksQuery(reference, excludedWiki);
+
+        // We only need the number of results
+        solrQuery.setRows(0);
+
+        return count + search(solrQuery).getResults().getNumFound();
+    }
+
+    /**
+     * @param reference the entity targeted by the links
+     * @param excludedWiki the wiki whose backlinks are resolved from the database, {@code null} to search all wikis
+     * @return the Solr query matching the entities linking to the passed entity
+     */
+    private SolrQuery createBackLinksQuery(EntityReference reference, String excludedWiki)
     {
         // Get the PAGE based reference
         EntityReference pageBasedReference = toPageBasedReference(reference);
@@ -158,31 +273,51 @@ public Set<EntityReference> resolveBackLinkedEntities(EntityReference reference)
         filter.append(this.utils.toCompleteFilterQueryString(this.linkSerializer.serialize(documentBasedReference)));
 
         SolrQuery solrQuery = new SolrQuery(filter.toString());
+        if (excludedWiki != null) {
+            solrQuery.addFilterQuery(
+                "-" + FieldUtils.WIKI + ':' + this.utils.toCompleteFilterQueryString(excludedWiki));
+        }
 
-        solrQuery.setRows(Integer.MAX_VALUE - 1);
-
-        // Load only the field we need
-        solrQuery.setFields(FieldUtils.REFERENCE);
+        return solrQuery;
+    }
 
-        QueryResponse response;
+    @SuppressWarnings("resource")
+    private QueryResponse search(SolrQuery solrQuery) throws LinkException
+    {
         try {
-            response = getClient().query(solrQuery);
+            return getClient().query(solrQuery);
         } catch (Exception e) {
             throw new LinkException("Failed to search Solr for the backlinks of an entity", e);
         }
+    }
 
-        SolrDocumentList solrDocuments = response.getResults();
+    /**
+     * The links to documents and attachments are also stored in the database when enabled in the wiki preferences
+     * ("backlinks") or in xwiki.cfg ("xwiki.backlinks"). Those are updated synchronously when a document is saved
+     * while the Solr index can lag behind, so we prefer them when available. Each wiki only stores the links of its
+     * own documents though, so the backlinks from the other wikis are still resolved from Solr.
+     */
+    private LinkStore getDatabaseStore(EntityReference reference)
+    {
+        XWikiContext xcontext = this.xcontextProvider.get();
+        if (xcontext != null && xcontext.getWiki() != null && HibernateLinkStore.isSupported(reference)
+            && hasBacklinks(new WikiReference(reference.extractReference(EntityType.WIKI)), xcontext)) {
+            return this.databaseStoreProvider.get();
+        }
 
-        Set<EntityReference> references = new HashSet<>(solrDocuments.size());
-        for (SolrDocument solrDocument : solrDocuments) {
-            String referenceStr = (String) solrDocument.getFieldValue(FieldUtils.REFERENCE);
+        return null;
+    }
 
-            if (referenceStr != null) {
-                references.add(this.referenceResolver.resolve(referenceStr, null));
-            }
+    private boolean hasBacklinks(WikiReference wikiReference, XWikiContext xcontext)
+    {
+        // The storage of links is configured in the preferences of the wiki which holds them.
+        String currentWiki = xcontext.getWikiId();
+        try {
+            xcontext.setWikiId(wikiReference.getName());
+            return "1".equals(xcontext.getWiki().getXWikiPreference("backlinks", "xwiki.backlinks", "0", xcontext));
+        } finally {
+            xcontext.setWikiId(currentWiki);
         }
-
-        return references;
     }
 
     EntityReference toDocumentBasedReference(EntityReference entityReference)
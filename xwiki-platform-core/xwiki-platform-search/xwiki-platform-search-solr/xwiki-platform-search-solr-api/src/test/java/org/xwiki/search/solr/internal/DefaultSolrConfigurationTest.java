@@ -85,6 +85,20 @@ public void getIndexerQueueCapacity()
 
     }
 
+    @Test
+    public void getIndexerThreads()
+    {
+        when(this.source.getProperty(DefaultSolrConfiguration.SOLR_INDEXER_THREADS_PROPERTY,
+            DefaultSolrConfiguration.SOLR_INDEXER_THREADS_DEFAULT)).thenReturn(4);
+
+        assertEquals(4, this.configuration.getIndexerThreads());
+
+        when(this.source.getProperty(DefaultSolrConfiguration.SOLR_INDEXER_THREADS_PROPERTY,
+            DefaultSolrConfiguration.SOLR_INDEXER_THREADS_DEFAULT)).thenReturn(0);
+
+        assertEquals(1, this.configuration.getIndexerThreads());
+    }
+
     @Test
     public void synchronizeAtStartup()
     {
@@ -0,0 +1,171 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Named;
+import javax.inject.Provider;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.bridge.internal.DocumentContextExecutor;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.search.solr.internal.api.SolrConfiguration;
+import org.xwiki.search.solr.internal.api.SolrInstance;
+import org.xwiki.search.solr.internal.metadata.LengthSolrInputDocument;
+import org.xwiki.search.solr.internal.metadata.SolrMetadataExtractor;
+import org.xwiki.search.solr.internal.reference.SolrReferenceResolver;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link DefaultSolrIndexer}.
+ * 
+ * @version $Id$
+ */
+@ComponentTest
+class DefaultSolrIndexerTest
+{
+    private static final int DOCUMENTS = 20;
+
+    @InjectMockComponents
+    private DefaultSolrIndexer indexer;
+
+    @MockComponent
+    private SolrConfiguration configuration;
+
+    @MockComponent
+    private SolrInstance solrInstance;
+
+    @MockComponent
+    private SolrReferenceResolver solrReferenceResolver;
+
+    @MockComponent
+    private ExecutionContextManager ecim;
+
+    @MockComponent
+    private DocumentContextExecutor documentContextExecutor;
+
+    @MockComponent
+    private Provider<XWikiContext> xcontextProvider;
+
+    @MockComponent
+    @Named("document")
+    private SolrMetadataExtractor documentExtractor;
+
+    private final List<String> operations = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeComponent
+    void beforeComponent() throws Exception
+    {
+        when(this.configuration.getIndexerThreads()).thenReturn(4);
+        when(this.configuration.getIndexerQueueCapacity()).thenReturn(100);
+        when(this.configuration.getIndexerBatchSize()).thenReturn(5);
+        when(this.configuration.getIndexerBatchMaxLengh()).thenReturn(10000);
+
+        XWikiContext xcontext = mock(XWikiContext.class);
+        when(xcontext.getWiki()).thenReturn(mock(XWiki.class));
+        when(this.xcontextProvider.get()).thenReturn(xcontext);
+        doAnswer(invocation -> {
+            invocation.<ExecutionContext>getArgument(0).setProperty(XWikiContext.EXECUTIONCONTEXT_KEY, xcontext);
+            return null;
+        }).when(this.ecim).initialize(any());
+
+        when(this.documentContextExecutor.call(any(), any()))
+            .thenAnswer(invocation -> invocation.<Callable<?>>getArgument(0).call());
+    }
+
+    @AfterEach
+    void afterEach() throws Exception
+    {
+        this.indexer.dispose();
+    }
+
+    private DocumentReference getDocumentReference(int index)
+    {
+        return new DocumentReference("wiki", "Space", "Page" + index);
+    }
+
+    @Test
+    void indexWithSeveralThreads() throws Exception
+    {
+        CountDownLatch done = new CountDownLatch(DOCUMENTS + 1);
+
+        when(this.documentExtractor.getSolrDocument(any())).thenAnswer(invocation -> {
+            EntityReference reference = invocation.getArgument(0);
+            if (reference.equals(getDocumentReference(0))) {
+                // Make the first extraction slower than the others
+                Thread.sleep(100);
+            }
+
+            LengthSolrInputDocument document = new LengthSolrInputDocument();
+            document.setField("id", reference.getName());
+            return document;
+        });
+        doAnswer(invocation -> {
+            this.operations.add(invocation.<SolrInputDocument>getArgument(0).getFieldValue("id").toString());
+            done.countDown();
+            return null;
+        }).when(this.solrInstance).add(any(SolrInputDocument.class));
+        when(this.solrReferenceResolver.getId(any())).thenReturn("deleted");
+        doAnswer(invocation -> {
+            this.operations.add("delete " + invocation.getArgument(0));
+            done.countDown();
+            return null;
+        }).when(this.solrInstance).delete(any(String.class));
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < DOCUMENTS; ++i) {
+            if (i == DOCUMENTS / 2) {
+                this.indexer.delete(new DocumentReference("wiki", "Space", "Deleted"), false);
+                expected.add("delete deleted");
+            }
+            this.indexer.index(getDocumentReference(i), false);
+            expected.add("Page" + i);
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        // The operations are sent to Solr in the order they were received even if the extraction is done in parallel
+        assertEquals(expected, this.operations);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal.job;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Named;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.search.solr.internal.api.SolrIndexer;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link IndexerJob}.
+ * 
+ * @version $Id$
+ */
+@ComponentTest
+class IndexerJobTest
+{
+    private static final WikiReference WIKI = new WikiReference("wiki");
+
+    private static final DocumentReference DOCUMENT = new DocumentReference("wiki", "space", "page");
+
+    @InjectMockComponents
+    private IndexerJob job;
+
+    @MockComponent
+    private SolrIndexer indexer;
+
+    @MockComponent
+    @Named("database")
+    private DocumentIterator<String> databaseIterator;
+
+    @MockComponent
+    @Named("solr")
+    private DocumentIterator<String> solrIterator;
+
+    @MockComponent
+    private SynchronizationMarkStore markStore;
+
+    @BeforeEach
+    void beforeEach()
+    {
+        // One document which is not indexed yet
+        when(this.databaseIterator.size()).thenReturn(1L);
+        when(this.databaseIterator.hasNext()).thenReturn(true, false);
+        when(this.databaseIterator.next()).thenReturn(new ImmutablePair<>(DOCUMENT, "1.1"));
+    }
+
+    private void run(IndexerRequest request)
+    {
+        this.job.initialize(request);
+        this.job.run();
+    }
+
+    @Test
+    void synchronizeWithNotEmptyQueue()
+    {
+        when(this.indexer.getQueueSize()).thenReturn(1);
+
+        IndexerRequest request = new IndexerRequest();
+        request.setRootReference(WIKI);
+        run(request);
+
+        verify(this.indexer).index(DOCUMENT, true);
+        verify(this.databaseIterator, never()).setModifiedSince(any());
+
+        // The job does not wait for the queue to be empty to remember the synchronization
+        verify(this.markStore).setPendingMark(eq(WIKI), any(Date.class));
+        verify(this.markStore, never()).commitPendingMarks();
+    }
+
+    @Test
+    void synchronizeWithEmptyQueue()
+    {
+        IndexerRequest request = new IndexerRequest();
+        request.setRootReference(WIKI);
+        run(request);
+
+        verify(this.markStore).setPendingMark(eq(WIKI), any(Date.class));
+        verify(this.markStore).commitPendingMarks();
+    }
+
+    @Test
+    void synchronizeIncrementally()
+    {
+        Date mark = new Date();
+        when(this.markStore.getMark(WIKI)).thenReturn(mark);
+
+        IndexerRequest request = new IndexerRequest();
+        request.setRootReference(WIKI);
+        request.setIncremental(true);
+        run(request);
+
+        Date modifiedSince = new Date(mark.getTime() - TimeUnit.MINUTES.toMillis(10));
+        verify(this.databaseIterator).setModifiedSince(modifiedSince);
+        verify(this.solrIterator).setModifiedSince(modifiedSince);
+        verify(this.indexer).index(DOCUMENT, true);
+    }
+
+    @Test
+    void synchronizeDocument()
+    {
+        IndexerRequest request = new IndexerRequest();
+        request.setRootReference(DOCUMENT);
+        request.setIncremental(true);
+        run(request);
+
+        // Only the synchronizations of the farm or of a wiki are remembered
+        verify(this.markStore, never()).getMark(any());
+        verify(this.markStore, never()).setPendingMark(any(), any());
+    }
+}
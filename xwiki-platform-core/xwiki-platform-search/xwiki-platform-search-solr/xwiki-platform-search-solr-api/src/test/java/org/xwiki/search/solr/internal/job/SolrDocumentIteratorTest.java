@@ -21,6 +21,7 @@
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 
@@ -32,6 +33,7 @@
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.xwiki.localization.LocaleUtils;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
@@ -45,6 +47,7 @@
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -92,6 +95,29 @@ void size() throws Exception
         verify(this.resolver).getQuery(rootReference);
     }
 
+    @Test
+    void sizeModifiedSince() throws Exception
+    {
+        SolrDocumentList results = mock(SolrDocumentList.class);
+        when(results.getNumFound()).thenReturn(3L);
+
+        QueryResponse response = mock(QueryResponse.class);
+        when(response.getResults()).thenReturn(results);
+
+        when(this.solrInstance.query(any(SolrQuery.class))).thenReturn(response);
+
+        DocumentIterator<String> iterator = this.solrIterator;
+        iterator.setRootReference(new WikiReference("wiki"));
+        iterator.setModifiedSince(new Date(1700000000000L));
+
+        assertEquals(3, iterator.size());
+
+        ArgumentCaptor<SolrQuery> queryCaptor = ArgumentCaptor.forClass(SolrQuery.class);
+        verify(this.solrInstance).query(queryCaptor.capture());
+        assertTrue(Arrays.asList(queryCaptor.getValue().getFilterQueries())
+            .contains("date:[2023-11-14T22:13:20Z TO *]"));
+    }
+
     @Test
     void sizeWithException()
     {
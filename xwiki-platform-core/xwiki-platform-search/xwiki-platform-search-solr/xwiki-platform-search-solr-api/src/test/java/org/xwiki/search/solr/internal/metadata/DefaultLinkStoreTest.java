@@ -25,12 +25,15 @@
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Provider;
 
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.common.SolrInputDocument;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.xwiki.bridge.DocumentAccessBridge;
 import org.xwiki.internal.model.reference.CurrentPageReferenceDocumentReferenceResolver;
+import org.xwiki.link.LinkStore;
 import org.xwiki.model.reference.AttachmentReference;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.PageAttachmentReference;
@@ -48,9 +51,13 @@
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
 
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.test.reference.ReferenceComponentList;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 /**
@@ -75,6 +82,13 @@
     @MockComponent
     private DocumentAccessBridge bridge;
 
+    @MockComponent
+    private Provider<XWikiContext> xcontextProvider;
+
+    @MockComponent
+    @Named("database")
+    private Provider<LinkStore> databaseStoreProvider;
+
     @Inject
     private Solr solr;
 
@@ -144,5 +158,64 @@ void resolveEntities() throws Exception
             this.store.resolveBackLinkedEntities(new SpaceReference("wiki", "page1")));
         assertEquals(Set.of(documentReference),
             this.store.resolveBackLinkedEntities(new PageReference("wiki", "page1")));
+
+        // Paginated backlinks
+
+        assertEquals(List.of(documentReference), this.store.resolveBackLinkedEntities(document1DocumentLink, 0, 10));
+        assertEquals(List.of(), this.store.resolveBackLinkedEntities(document1DocumentLink, 1, 10));
+        assertEquals(1, this.store.countBackLinkedEntities(document1DocumentLink));
+        assertEquals(0, this.store.countBackLinkedEntities(doesnotexist));
+    }
+
+    @Test
+    void resolveBackLinkedEntitiesFromDatabaseAndOtherWikis() throws Exception
+    {
+        XWikiContext xcontext = mock(XWikiContext.class);
+        XWiki xwiki = mock(XWiki.class);
+        when(this.xcontextProvider.get()).thenReturn(xcontext);
+        when(xcontext.getWiki()).thenReturn(xwiki);
+        when(xcontext.getWikiId()).thenReturn("currentwiki");
+        when(xwiki.getXWikiPreference("backlinks", "xwiki.backlinks", "0", xcontext)).thenReturn("1");
+
+        DocumentReference target = new DocumentReference("wiki", "Space", "Target");
+        DocumentReference localBacklink = new DocumentReference("wiki", "Space", "Local", Locale.ROOT);
+        DocumentReference remoteBacklink = new DocumentReference("otherwiki", "Space", "Remote", Locale.ROOT);
+
+        LinkStore databaseStore = mock(LinkStore.class);
+        when(this.databaseStoreProvider.get()).thenReturn(databaseStore);
+        when(databaseStore.resolveBackLinkedEntities(target)).thenReturn(Set.of(localBacklink));
+        when(databaseStore.resolveBackLinkedEntities(target, 0, 10)).thenReturn(List.of(localBacklink));
+        when(databaseStore.resolveBackLinkedEntities(target, 0, 1)).thenReturn(List.of(localBacklink));
+        when(databaseStore.countBackLinkedEntities(target)).thenReturn(1L);
+
+        // The backlinks from the wiki of the target are resolved from the database, even when indexed in Solr.
+        SolrClient client = this.solr.getClient("search");
+        client.add(createBacklink(localBacklink, "wiki:Space.Local_"));
+        client.add(createBacklink(remoteBacklink, "otherwiki:Space.Remote_"));
+        client.commit();
+
+        assertEquals(Set.of(localBacklink, remoteBacklink), this.store.resolveBackLinkedEntities(target));
+        assertEquals(List.of(localBacklink, remoteBacklink), this.store.resolveBackLinkedEntities(target, 0, 10));
+        assertEquals(List.of(localBacklink), this.store.resolveBackLinkedEntities(target, 0, 1));
+        assertEquals(List.of(remoteBacklink), this.store.resolveBackLinkedEntities(target, 1, 10));
+        assertEquals(2, this.store.countBackLinkedEntities(target));
+
+        // The links storage is checked in the preferences of the wiki of the target.
+        InOrder inOrder = inOrder(xcontext, xwiki);
+        inOrder.verify(xcontext).setWikiId("wiki");
+        inOrder.verify(xwiki).getXWikiPreference("backlinks", "xwiki.backlinks", "0", xcontext);
+        inOrder.verify(xcontext).setWikiId("currentwiki");
+    }
+
+    private SolrInputDocument createBacklink(DocumentReference documentReference, String solrId)
+    {
+        SolrInputDocument inputDocument = new SolrInputDocument("id", solrId);
+        inputDocument.setField(FieldUtils.VERSION, "1.1");
+        inputDocument.setField(FieldUtils.WIKI, documentReference.getWikiReference().getName());
+        inputDocument.setField(FieldUtils.REFERENCE, "document:" + documentReference.getWikiReference().getName()
+            + ":Space." + documentReference.getName() + ';');
+        inputDocument.addField(FieldUtils.LINKS, "entity:document:wiki:Space.Target");
+        inputDocument.addField(FieldUtils.LINKS_EXTENDED, "entity:document:wiki:Space.Target");
+        return inputDocument;
     }
 }
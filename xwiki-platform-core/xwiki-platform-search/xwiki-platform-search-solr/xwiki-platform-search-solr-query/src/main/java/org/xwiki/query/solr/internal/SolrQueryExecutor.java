@@ -22,8 +22,12 @@
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -40,6 +44,7 @@
 import org.xwiki.job.event.status.JobProgressManager;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReference;
 import org.xwiki.query.Query;
 import org.xwiki.query.QueryException;
 import org.xwiki.query.QueryExecutor;
@@ -235,25 +240,34 @@ protected void filterResponse(QueryResponse response, List<DocumentReference> us
         SolrDocumentList results = response.getResults();
         long numResults = results.size();
 
-        results.removeIf(result -> {
-            boolean keep = false;
+        // Resolve the document references first so that the access of each user can be checked on all of them at once.
+        Map<SolrDocument, DocumentReference> resultReferences = new IdentityHashMap<>();
+        for (SolrDocument result : results) {
             try {
-                DocumentReference resultDocumentReference = this.solrDocumentReferenceResolver.resolve(result);
-
-                keep = isAllowed(resultDocumentReference, usersToCheck);
+                resultReferences.put(result, this.solrDocumentReferenceResolver.resolve(result));
             } catch (Exception e) {
                 // Don't take any risk of including a result for which we cannot determine the document reference and
                 // thus cannot determine if the given users have access to it or not.
                 this.logger.warn("Removing bad result: {}", result, e);
             }
+        }
 
-            // FIXME: We should update maxScore as well when removing the top scored item. How do we do that?
-            // Sorting based on score might be a not so expensive option.
+        Set<DocumentReference> allowedReferences = new HashSet<>(resultReferences.values());
+        for (DocumentReference user : usersToCheck) {
+            if (allowedReferences.isEmpty()) {
+                break;
+            }
+            Map<EntityReference, Boolean> access =
+                this.authorization.hasAccessOnEntities(Right.VIEW, user, allowedReferences);
+            allowedReferences.removeIf(reference -> !Boolean.TRUE.equals(access.get(reference)));
+        }
 
-            // FIXME: What about highlighting, facets and all the other data inside the QueryResponse?
+        // FIXME: We should update maxScore as well when removing the top scored item. How do we do that?
+        // Sorting based on score might be a not so expensive option.
 
-            return !keep;
-        });
+        // FIXME: What about highlighting, facets and all the other data inside the QueryResponse?
+        results.removeIf(result -> !resultReferences.containsKey(result)
+            || !allowedReferences.contains(resultReferences.get(result)));
 
         long numFilteredResults = numResults - results.size();
 
@@ -263,15 +277,4 @@ protected void filterResponse(QueryResponse response, List<DocumentReference> us
 
         results.setNumFound(numFound);
     }
-
-    protected boolean isAllowed(DocumentReference resultDocumentReference, List<DocumentReference> usersToCheck)
-    {
-        for (DocumentReference user : usersToCheck) {
-            if (!this.authorization.hasAccess(Right.VIEW, user, resultDocumentReference)) {
-                return false;
-            }
-        }
-
-        return true;
-    }
 }
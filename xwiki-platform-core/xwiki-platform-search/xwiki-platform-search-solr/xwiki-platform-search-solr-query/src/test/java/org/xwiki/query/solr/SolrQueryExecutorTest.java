@@ -163,6 +163,7 @@ public void filterResponse() throws Exception
         DocumentReferenceResolver<SolrDocument> resolver = this.componentManager.getInstance(resolverType);
 
         AuthorizationManager authorizationManager = this.componentManager.getInstance(AuthorizationManager.class);
+        when(authorizationManager.hasAccessOnEntities(any(), any(), any())).thenCallRealMethod();
 
         DocumentReference currentUserReference = new DocumentReference("xwiki", "XWiki", "currentuser");
         this.oldCore.getXWikiContext().setUserReference(currentUserReference);
@@ -238,6 +239,7 @@ public void filterResponseWithException() throws Exception
         DocumentReferenceResolver<SolrDocument> resolver = this.componentManager.getInstance(resolverType);
 
         AuthorizationManager authorizationManager = this.componentManager.getInstance(AuthorizationManager.class);
+        when(authorizationManager.hasAccessOnEntities(any(), any(), any())).thenCallRealMethod();
 
         DocumentReference currentUserReference = new DocumentReference("xwiki", "XWiki", "currentuser");
         this.oldCore.getXWikiContext().setUserReference(currentUserReference);
@@ -19,8 +19,13 @@
  */
 package org.xwiki.security.authorization;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.xwiki.component.annotation.Role;
 import org.xwiki.model.reference.EntityReference;
+import org.xwiki.stability.Unstable;
 
 /**
  * This API is for checking the access rights of current user in the current context. It replaces
@@ -80,4 +85,28 @@
      * @return {@code true} if the user has the specified right on the entity, {@code false} otherwise
      */
     boolean hasAccess(Right right, EntityReference entityReference);
+
+    /**
+     * Verifies if access identified by {@code right} on each of the given entities would be allowed in the current
+     * context. The result is the same as calling {@link #hasAccess(Right, EntityReference)} for each entity, but
+     * implementations are free to share the work common to all the entities which makes it a better choice when
+     * filtering a list of results.
+     * This function should be used for interface matters, use {@link #checkAccess} at security checkpoints.
+     *
+     * @param right the right to check
+     * @param entityReferences the entities on which to check the right
+     * @return the access for each entity, in the iteration order of the passed collection
+     * @since 16.6.0RC1
+     */
+    @Unstable
+    default Map<EntityReference, Boolean> hasAccessOnEntities(Right right,
+        Collection<? extends EntityReference> entityReferences)
+    {
+        Map<EntityReference, Boolean> result = new LinkedHashMap<>();
+        for (EntityReference entityReference : entityReferences) {
+            result.computeIfAbsent(entityReference, reference -> hasAccess(right, reference));
+        }
+
+        return result;
+    }
 }
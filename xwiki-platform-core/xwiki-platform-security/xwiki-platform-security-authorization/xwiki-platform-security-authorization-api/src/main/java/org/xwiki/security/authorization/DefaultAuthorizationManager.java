@@ -20,8 +20,12 @@
 package org.xwiki.security.authorization;
 
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.inject.Inject;
@@ -125,6 +129,49 @@ public boolean hasAccess(Right right, DocumentReference userReference, EntityRef
         }
     }
 
+    @Override
+    public Map<EntityReference, Boolean> hasAccessOnEntities(Right right, DocumentReference userReference,
+        Collection<? extends EntityReference> entityReferences)
+    {
+        Map<EntityReference, Boolean> result = new LinkedHashMap<>();
+
+        // The checks which don't depend on the entity are done only once for the whole collection.
+        Boolean globalAccess = null;
+        if (isSuperAdmin(userReference)) {
+            globalAccess = Boolean.TRUE;
+        } else if (right == null || right == Right.ILLEGAL || (!right.isReadOnly() && xwikiBridge.isWikiReadOnly())
+            || (userReference == null && xwikiBridge.needsAuthentication(right))) {
+            globalAccess = Boolean.FALSE;
+        }
+        if (globalAccess != null) {
+            for (EntityReference entityReference : entityReferences) {
+                result.put(entityReference, globalAccess);
+            }
+
+            return result;
+        }
+
+        UserSecurityReference user = securityReferenceFactory.newUserReference(userReference);
+        // The access found for the user on the ancestors shared by the entities.
+        Map<SecurityReference, SecurityAccess> resolvedAccess = new HashMap<>();
+        for (EntityReference entityReference : entityReferences) {
+            if (!result.containsKey(entityReference)) {
+                boolean access;
+                try {
+                    access = evaluateSecurityAccess(right, userReference, user, entityReference, resolvedAccess);
+                } catch (Exception e) {
+                    this.logger.error(String.format("Failed to load rights for user [%s] on [%s].",
+                        (userReference == null) ? AuthorizationException.NULL_USER : userReference,
+                        (entityReference == null) ? AuthorizationException.NULL_ENTITY : entityReference), e);
+                    access = false;
+                }
+                result.put(entityReference, access);
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Verifies if the user identified by {@code userReference} has the access identified by {@code right} on the
      * entity identified by {@code entityReference}. Note that some rights may be checked higher in hierarchy of the
@@ -168,7 +215,8 @@ private boolean evaluateSecurityAccess(Right right, DocumentReference userRefere
     {
         SecurityAccess securityAccess = getAccess(
             securityReferenceFactory.newUserReference(userReference),
-            securityReferenceFactory.newEntityReference(entityReference)
+            securityReferenceFactory.newEntityReference(entityReference),
+            null
         );
 
         RuleState access = securityAccess.get(right);
@@ -181,6 +229,18 @@ private boolean evaluateSecurityAccess(Right right, DocumentReference userRefere
         return access == RuleState.ALLOW;
     }
 
+    private boolean evaluateSecurityAccess(Right right, DocumentReference userReference, UserSecurityReference user,
+        EntityReference entityReference, Map<SecurityReference, SecurityAccess> resolvedAccess)
+        throws AuthorizationException
+    {
+        SecurityAccess securityAccess =
+            getAccess(user, securityReferenceFactory.newEntityReference(entityReference), resolvedAccess);
+
+        RuleState access = securityAccess.get(right);
+        logAccess(access, userReference, entityReference, right, "access inquiry", true);
+        return access == RuleState.ALLOW;
+    }
+
     @Override
     public Right register(RightDescription rightDescription) throws UnableToRegisterRightException
     {
@@ -227,17 +287,24 @@ public void unregister(Right right) throws AuthorizationException
      *
      * @param user The user identity.
      * @param entity The entity.  May be of type DOCUMENT, WIKI, or SPACE.
+     * @param resolvedAccess the access already found for the user on entities with rules, used to skip the cache
+     *            lookups when checking several entities sharing the same ancestors; {@code null} to not remember them
      * @return the cached access entry.
      * @exception org.xwiki.security.authorization.AuthorizationException if an error occurs
      */
-    private SecurityAccess getAccess(UserSecurityReference user, SecurityReference entity)
-        throws AuthorizationException
+    private SecurityAccess getAccess(UserSecurityReference user, SecurityReference entity,
+        Map<SecurityReference, SecurityAccess> resolvedAccess) throws AuthorizationException
     {
         for (SecurityReference ref = entity; ref != null; ref = ref.getParentSecurityReference()) {
             if (Right.getEnabledRights(ref.getSecurityType()).isEmpty()) {
                 // Skip search on entity types that will obviously have empty/useless list of rules.
                 continue;
             }
+            // Entities without rules inherit the access of their closest ancestor having some, so an access already
+            // resolved for that ancestor is also valid for the entity.
+            if (resolvedAccess != null && resolvedAccess.containsKey(ref)) {
+                return resolvedAccess.get(ref);
+            }
             SecurityRuleEntry entry = securityCache.get(ref);
             if (entry == null) {
                 SecurityAccess access = securityCacheLoader.load(user, entity).getAccess();
@@ -259,6 +326,10 @@ private SecurityAccess getAccess(UserSecurityReference user, SecurityReference e
 
                     logger.debug("3. Got entry for user {} on {} from cache: [{}]", user, entity, access);
 
+                    if (resolvedAccess != null) {
+                        resolvedAccess.put(ref, access);
+                    }
+
                     return access;
                 }
             } 
@@ -28,9 +28,12 @@
 import java.util.HashSet;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -62,6 +65,11 @@
 
 /**
  * Default implementation of the security cache.
+ * <p>
+ * Reading the cache does not take any lock as long as no invalidation is in progress: only the modifications of the
+ * cache (insertions and invalidations) are serialized. A reader which runs concurrently with an invalidation detects
+ * it (see {@link #invalidations}) and reads the cache again once the invalidation is finished, so that it never gets
+ * an entry in the middle of an invalidation cascade.
  *
  * @version $Id$
  * @since 4.0M2
@@ -83,14 +91,15 @@ public class DefaultSecurityCache implements SecurityCache, Initializable
     @Inject
     private Logger logger;
 
-    /** Fair read-write lock used for fair scheduling of cache access. */
-    private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock(true);
+    /** Fair lock used to serialize the modifications of the cache. Reading the cache does not require it. */
+    private final Lock writeLock = new ReentrantLock(true);
 
-    /** Fair read lock. */
-    private final Lock readLock = readWriteLock.readLock();
-
-    /** Fair write lock. */
-    private final Lock writeLock = readWriteLock.writeLock();
+    /**
+     * Incremented when an invalidation starts and when it ends (while holding the write lock): an odd value means that
+     * an invalidation is in progress and a value modified during a read means that the read might have seen a
+     * partially invalidated cache.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
 
     private final ReadWriteLock invalidationReadWriteLock = new ReentrantReadWriteLock(true);
 
@@ -115,7 +124,7 @@ public class DefaultSecurityCache implements SecurityCache, Initializable
      * complete and to support correct hierarchical cache invalidation. When an entry is removed from the cache, the
      * GC will also remove it from the internal entries unless it is still referenced as a parent somewhere else. For
      * this to work, the only strong references to SecurityCacheEntry are stored during entry creation, in the cache
-     * and in the list of parents.
+     * and in the list of parents. All accesses to this map must be synchronized on it.
      */
     private final Map<String, SecurityCacheEntry> internalEntries =
         new ReferenceMap<>(AbstractReferenceMap.ReferenceStrength.HARD, AbstractReferenceMap.ReferenceStrength.WEAK);
@@ -153,22 +162,23 @@ public void initialize() throws InitializationException
         /**
          * The cached security entry.
          */
-        private SecurityEntry entry;
+        private volatile SecurityEntry entry;
 
         /**
-         * Parents of this cached entry.
+         * Parents of this cached entry. The collection is never modified once assigned so that it can be read without
+         * locking.
          */
-        private Collection<SecurityCacheEntry> parents;
+        private volatile Collection<SecurityCacheEntry> parents;
 
         /**
-         * Children of this cached entry.
+         * Children of this cached entry. Only accessed while holding the write lock.
          */
         private Collection<SecurityCacheEntry> children;
 
         /**
          * True if this entry has been removed.
          */
-        private boolean disposed;
+        private volatile boolean disposed;
 
         /**
          * Create a new cache entry for a security rule, linking it to its parent.
@@ -306,7 +316,7 @@ private SecurityCacheEntry(SecurityEntry entry, Collection<GroupSecurityReferenc
             int parentSize = groups.size() + ((parentReference == null) ? 0 : 1);
             if (parentSize > 0) {
                 if (parentReference != null) {
-                    this.parents = new ArrayList<>(parentSize);
+                    Collection<SecurityCacheEntry> newParents = new ArrayList<>(parentSize);
                     SecurityCacheEntry parent = DefaultSecurityCache.this.getEntry(parentReference);
                     if (parent == null) {
                         throw new ParentEntryEvictedException(String.format(
@@ -314,8 +324,9 @@ private SecurityCacheEntry(SecurityEntry entry, Collection<GroupSecurityReferenc
                                 + " is no longer available in the cache.",
                             parentReference, entry, groups));
                     }
-                    this.parents.add(parent);
-                    this.parents.addAll(getParentGroups(groups, parentReference));
+                    newParents.add(parent);
+                    newParents.addAll(getParentGroups(groups, parentReference));
+                    this.parents = newParents;
                     // Wait until here to avoid that in case of an exception there is a reference to the new object
                     // in the parent's children.
                     parent.addChild(this);
@@ -454,9 +465,12 @@ String getKey()
         public void dispose()
         {
             if (!disposed) {
-                DefaultSecurityCache.this.cache.remove(getKey());
-                DefaultSecurityCache.this.internalEntries.remove(getKey());
+                // Mark the entry as disposed first so that concurrent readers stop using it as soon as possible
                 disposed = true;
+                DefaultSecurityCache.this.cache.remove(getKey());
+                synchronized (DefaultSecurityCache.this.internalEntries) {
+                    DefaultSecurityCache.this.internalEntries.remove(getKey());
+                }
 
                 disconnectFromParents();
                 disposeChildren();
@@ -662,40 +676,99 @@ private SecurityCacheEntry getShadowEntry(SecurityReference userReference, Secur
 
     /**
      * Get a security cache entry from the cache or the internal map. In the latter case, the entry is re-inserted
-     * into the cache. This method can be called without locking, it uses the read lock internally.
+     * into the cache if the write lock is available. This method does not require any lock.
      *
      * @param key the key of the entry to retrieve
-     * @throws IllegalStateException if the entry has been disposed (this should never happen)
      * @return the entry corresponding to the given key, null if none is available in the cache
      */
     private SecurityCacheEntry getInternal(String key)
     {
-        readLock.lock();
-        try {
-            SecurityCacheEntry result = cache.get(key);
-            if (result == null) {
-                // Try to get the entry from the internal map which may have, e.g., parents that are no longer in the
-                // cache but still referenced by entries in the cache.
-                // Synchronize to avoid concurrent modification of the map as get() may trigger the eviction of
-                // garbage collected entries. All other operations are done under the write lock.
-                synchronized (this.internalEntries) {
-                    result = this.internalEntries.get(key);
-                }
+        SecurityCacheEntry result = this.cache.get(key);
+        if (result == null) {
+            // Try to get the entry from the internal map which may have, e.g., parents that are no longer in the
+            // cache but still referenced by entries in the cache.
+            // Synchronize to avoid concurrent modification of the map as get() may trigger the eviction of
+            // garbage collected entries.
+            synchronized (this.internalEntries) {
+                result = this.internalEntries.get(key);
+            }
+
+            if (result != null && !result.disposed) {
+                // Try re-inserting the entry into the cache to give it another chance of being stored directly.
+                reinsert(key, result);
+            }
+        }
 
-                if (result != null) {
-                    // Try re-inserting the entry into the cache to give it another chance of being stored directly.
-                    this.cache.set(key, result);
+        // The entry is being removed by a concurrent invalidation: consider it's not in the cache anymore.
+        if (result != null && result.disposed) {
+            return null;
+        }
+
+        return result;
+    }
+
+    /**
+     * Re-insert in the cache an entry found in the internal map. Like any other insertion, it's done while holding the
+     * write lock so that an entry being disposed by an invalidation cannot be put back in the cache. The re-insertion
+     * is only an optimization so it's skipped when the lock is not immediately available to not block the reader.
+     *
+     * @param key the key of the entry
+     * @param entry the entry to re-insert
+     */
+    private void reinsert(String key, SecurityCacheEntry entry)
+    {
+        if (this.writeLock.tryLock()) {
+            try {
+                if (!entry.disposed && this.cache.get(key) == null) {
+                    this.cache.set(key, entry);
                 }
+            } finally {
+                this.writeLock.unlock();
             }
+        }
+    }
 
-            if (result != null && result.disposed) {
-                throw new IllegalCacheStateException(
-                    String.format("Entry [%s] has been disposed without being removed from the cache.", result));
+    /**
+     * Execute a read of the cache without locking unless an invalidation is in progress or happened during the read, in
+     * which case the read is executed again while holding the shared invalidation read lock. This lock only excludes
+     * the invalidations, so the readers never wait for the insertions nor for each other.
+     *
+     * @param reader the read to execute
+     * @param <T> the type of the result
+     * @return the result of the read
+     */
+    private <T> T read(Supplier<T> reader)
+    {
+        long version = this.invalidations.get();
+        if ((version & 1) == 0) {
+            T result = reader.get();
+            if (this.invalidations.get() == version) {
+                return result;
             }
+        }
 
-            return result;
+        // Wait for the invalidation to be finished
+        this.invalidationReadLock.lock();
+        try {
+            return reader.get();
+        } finally {
+            this.invalidationReadLock.unlock();
+        }
+    }
+
+    /**
+     * Dispose an entry while indicating to the readers that an invalidation is in progress. Must be called while
+     * holding the write lock.
+     *
+     * @param entry the entry to dispose
+     */
+    private void invalidate(SecurityCacheEntry entry)
+    {
+        this.invalidations.incrementAndGet();
+        try {
+            entry.dispose();
         } finally {
-            readLock.unlock();
+            this.invalidations.incrementAndGet();
         }
     }
 
@@ -755,7 +828,9 @@ private void addEntry(String key, SecurityCacheEntry entry)
         // layer for access entries, this is not the purpose of the internal entries map. Instead, the size of the
         // cache should be increased if this is desired.
         if (!(entry.getEntry() instanceof SecurityAccessEntry)) {
-            this.internalEntries.put(key, entry);
+            synchronized (this.internalEntries) {
+                this.internalEntries.put(key, entry);
+            }
         }
 
         if (entry.disposed) {
@@ -886,14 +961,16 @@ private void internalAdd(SecurityAccessEntry entry, SecurityReference wiki)
      */
     SecurityEntry get(String entryKey)
     {
-        SecurityCacheEntry entry = getInternal(entryKey);
-        return (entry != null) ? entry.getEntry() : null;
+        return read(() -> {
+            SecurityCacheEntry entry = getInternal(entryKey);
+            return (entry != null) ? entry.getEntry() : null;
+        });
     }
 
     @Override
     public SecurityAccessEntry get(UserSecurityReference user, SecurityReference entity)
     {
-        SecurityCacheEntry entry = getEntry(user, entity);
+        SecurityCacheEntry entry = read(() -> getEntry(user, entity));
         if (entry == null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Miss read access entry for [{}].", getEntryKey(user, entity));
@@ -909,7 +986,7 @@ public SecurityAccessEntry get(UserSecurityReference user, SecurityReference ent
     @Override
     public SecurityRuleEntry get(SecurityReference entity)
     {
-        SecurityCacheEntry entry = getEntry(entity);
+        SecurityCacheEntry entry = read(() -> getEntry(entity));
         if (entry == null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Miss read rule entry for [{}].", getEntryKey(entity));
@@ -935,7 +1012,7 @@ public void remove(UserSecurityReference user, SecurityReference entity)
                     if (logger.isDebugEnabled()) {
                         logger.debug("Remove outdated access entry for [{}].", getEntryKey(user, entity));
                     }
-                    entry.dispose();
+                    invalidate(entry);
                 }
             } finally {
                 writeLock.unlock();
@@ -958,7 +1035,7 @@ public void remove(SecurityReference entity)
                     if (logger.isDebugEnabled()) {
                         logger.debug("Remove outdated rule entry for [{}].", getEntryKey(entity));
                     }
-                    entry.dispose();
+                    invalidate(entry);
                 }
             } finally {
                 writeLock.unlock();
@@ -970,6 +1047,11 @@ public void remove(SecurityReference entity)
 
     @Override
     public Collection<GroupSecurityReference> getImmediateGroupsFor(UserSecurityReference user)
+    {
+        return read(() -> getImmediateGroupsForInternal(user));
+    }
+
+    private Collection<GroupSecurityReference> getImmediateGroupsForInternal(UserSecurityReference user)
     {
         Collection<GroupSecurityReference> groups = new HashSet<>();
 
@@ -980,8 +1062,9 @@ public Collection<GroupSecurityReference> getImmediateGroupsFor(UserSecurityRefe
             return null;
         }
 
-        if (userEntry.parents != null) {
-            for (SecurityCacheEntry parent : userEntry.parents) {
+        Collection<SecurityCacheEntry> parents = userEntry.parents;
+        if (parents != null) {
+            for (SecurityCacheEntry parent : parents) {
                 // Add the parent group (if we have not already seen it)
                 SecurityReference parentRef = parent.getEntry().getReference();
                 if (parentRef instanceof GroupSecurityReference) {
@@ -994,6 +1077,12 @@ public Collection<GroupSecurityReference> getImmediateGroupsFor(UserSecurityRefe
 
     @Override
     public Collection<GroupSecurityReference> getGroupsFor(UserSecurityReference user, SecurityReference entityWiki)
+    {
+        return read(() -> getGroupsForInternal(user, entityWiki));
+    }
+
+    private Collection<GroupSecurityReference> getGroupsForInternal(UserSecurityReference user,
+        SecurityReference entityWiki)
     {
         Collection<GroupSecurityReference> groups = new HashSet<>();
 
@@ -1018,9 +1107,10 @@ public Collection<GroupSecurityReference> getGroupsFor(UserSecurityReference use
         while (!entriesToExplore.isEmpty()) {
             SecurityCacheEntry entry = entriesToExplore.pop();
 
-            if (entry.parents != null) {
+            Collection<SecurityCacheEntry> parents = entry.parents;
+            if (parents != null) {
                 // We add the parents of the current entry
-                for (SecurityCacheEntry parent : entry.parents) {
+                for (SecurityCacheEntry parent : parents) {
                     // When exploring the parents of a global user in a given wiki, only explore parents that are
                     // either from the desired wiki or that are shadow entries. This avoids leaving that wiki and
                     // ensures that for a group, all parents in the wanted wiki are explored (otherwise, e.g., the main
@@ -24,6 +24,7 @@
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -491,6 +492,31 @@ void inheritancePolicyForGlobalFullWikiAccess() throws Exception
             getDoc("docDenyA", "any space", "wikiAllowA"));
     }
 
+    @Test
+    void hasAccessOnEntities() throws Exception
+    {
+        initialiseWikiMock("inheritancePolicyForGlobalFullWikiAccess");
+
+        List<EntityReference> entities = List.of(getXDoc("any document", "any space"),
+            getXDoc("any document", "spaceAllowA"), getXDoc("docDenyA", "spaceAllowA"),
+            getXDoc("docAllowA", "any space"), getDoc("any document", "any space", "wikiNoRules"),
+            getDoc("docDenyA", "spaceAllowA", "wikiNoRules"));
+
+        Map<EntityReference, Boolean> access =
+            this.authorizationManager.hasAccessOnEntities(VIEW, getXUser("userA"), entities);
+
+        assertEquals(entities, new ArrayList<>(access.keySet()));
+        for (EntityReference entity : entities) {
+            assertEquals(this.authorizationManager.hasAccess(VIEW, getXUser("userA"), entity), access.get(entity),
+                String.format("Unexpected access on [%s].", getEntityReadableName(entity)));
+        }
+        assertEquals(List.of(false, true, true, true, false, true), new ArrayList<>(access.values()));
+
+        // Superadmin has access everywhere.
+        access = this.authorizationManager.hasAccessOnEntities(VIEW, SUPERADMIN, entities);
+        assertTrue(access.values().stream().allMatch(Boolean.TRUE::equals));
+    }
+
     @Test
     void inheritancePolicyForLocalWikiAccess() throws Exception
     {
@@ -28,7 +28,16 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.xwiki.cache.CacheException;
@@ -65,9 +74,11 @@
 import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
@@ -859,6 +870,175 @@ public boolean keepAccess(SecurityAccessEntry entry)
         });
     }
 
+    @Test
+    void readDuringInvalidation() throws Exception
+    {
+        this.securityCache.add(mockSecurityRuleEntry(newEntityReference(null)));
+        this.securityCache.add(mockSecurityRuleEntry(newEntityReference(new WikiReference("wiki"))));
+        SecurityReference spaceReference = newEntityReference(new SpaceReference("wiki", "space"));
+        this.securityCache.add(mockSecurityRuleEntry(spaceReference));
+        String spaceKey = this.cache.getLastInsertedKey();
+        SecurityReference documentReference = newEntityReference(new DocumentReference("wiki", "space", "page"));
+        this.securityCache.add(mockSecurityRuleEntry(documentReference));
+
+        // Block the invalidation of the space before its children are invalidated
+        CountDownLatch invalidationStarted = new CountDownLatch(1);
+        CountDownLatch releaseInvalidation = new CountDownLatch(1);
+        this.cache.setRemoveHook(key -> {
+            if (key.equals(spaceKey)) {
+                invalidationStarted.countDown();
+                await(releaseInvalidation);
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?> invalidation = executor.submit(() -> this.securityCache.remove(spaceReference));
+            assertTrue(invalidationStarted.await(10, TimeUnit.SECONDS));
+
+            // The entry of the document is still in the cache but the reader should not return it
+            Future<SecurityRuleEntry> read = executor.submit(() -> this.securityCache.get(documentReference));
+
+            releaseInvalidation.countDown();
+            invalidation.get(10, TimeUnit.SECONDS);
+
+            assertNull(read.get(10, TimeUnit.SECONDS));
+        } finally {
+            releaseInvalidation.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void readDuringInsertion() throws Exception
+    {
+        this.securityCache.add(mockSecurityRuleEntry(newEntityReference(null)));
+        SecurityReference wikiReference = newEntityReference(new WikiReference("wiki"));
+        SecurityRuleEntry wikiEntry = mockSecurityRuleEntry(wikiReference);
+        this.securityCache.add(wikiEntry);
+        SecurityReference spaceReference = newEntityReference(new SpaceReference("wiki", "space"));
+        this.securityCache.add(mockSecurityRuleEntry(spaceReference));
+        String spaceKey = this.cache.getLastInsertedKey();
+        SecurityReference documentReference = newEntityReference(new DocumentReference("wiki", "space", "page"));
+        this.securityCache.add(mockSecurityRuleEntry(documentReference));
+
+        // Block the invalidation of the space before its children are invalidated
+        CountDownLatch invalidationStarted = new CountDownLatch(1);
+        CountDownLatch releaseInvalidation = new CountDownLatch(1);
+        this.cache.setRemoveHook(key -> {
+            if (key.equals(spaceKey)) {
+                invalidationStarted.countDown();
+                await(releaseInvalidation);
+            }
+        });
+
+        // Block the next insertion while it holds the lock of the cache modifications
+        CountDownLatch insertionStarted = new CountDownLatch(1);
+        CountDownLatch releaseInsertion = new CountDownLatch(1);
+        AtomicBoolean blockInsertion = new AtomicBoolean(true);
+        this.cache.setSetHook(key -> {
+            if (blockInsertion.getAndSet(false)) {
+                insertionStarted.countDown();
+                await(releaseInsertion);
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?> invalidation = executor.submit(() -> this.securityCache.remove(spaceReference));
+            assertTrue(invalidationStarted.await(10, TimeUnit.SECONDS));
+
+            // Queue an insertion behind the invalidation
+            SecurityReference otherSpaceReference = newEntityReference(new SpaceReference("wiki", "other"));
+            SecurityRuleEntry otherSpaceEntry = mockSecurityRuleEntry(otherSpaceReference);
+            Future<?> insertion = executor.submit(() -> {
+                this.securityCache.add(otherSpaceEntry);
+                return null;
+            });
+            ReentrantLock writeLock = (ReentrantLock) FieldUtils.readField(this.securityCache, "writeLock", true);
+            while (!writeLock.hasQueuedThreads()) {
+                Thread.sleep(10);
+            }
+
+            // Start a read which has to wait for the end of the invalidation
+            Future<SecurityRuleEntry> read = executor.submit(() -> this.securityCache.get(documentReference));
+
+            releaseInvalidation.countDown();
+            invalidation.get(10, TimeUnit.SECONDS);
+            assertTrue(insertionStarted.await(10, TimeUnit.SECONDS));
+
+            // The readers should not wait for the insertion, nor for each other
+            assertNull(read.get(10, TimeUnit.SECONDS));
+            assertSame(wikiEntry,
+                executor.submit(() -> this.securityCache.get(wikiReference)).get(10, TimeUnit.SECONDS));
+            assertFalse(insertion.isDone());
+
+            releaseInsertion.countDown();
+            insertion.get(10, TimeUnit.SECONDS);
+        } finally {
+            releaseInvalidation.countDown();
+            releaseInsertion.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void reinsertDuringInvalidation() throws Exception
+    {
+        this.securityCache.add(mockSecurityRuleEntry(newEntityReference(null)));
+        this.securityCache.add(mockSecurityRuleEntry(newEntityReference(new WikiReference("wiki"))));
+        SecurityReference spaceReference = newEntityReference(new SpaceReference("wiki", "space"));
+        this.securityCache.add(mockSecurityRuleEntry(spaceReference));
+        String spaceKey = this.cache.getLastInsertedKey();
+
+        // Evict the space entry from the cache so that it's only available in the internal entries
+        this.cache.remove(spaceKey);
+
+        // Block the reader just before it puts back the space entry in the cache
+        CountDownLatch reinsertStarted = new CountDownLatch(1);
+        CountDownLatch releaseReinsert = new CountDownLatch(1);
+        this.cache.setSetHook(key -> {
+            if (key.equals(spaceKey)) {
+                reinsertStarted.countDown();
+                await(releaseReinsert);
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<SecurityRuleEntry> read = executor.submit(() -> this.securityCache.get(spaceReference));
+            assertTrue(reinsertStarted.await(10, TimeUnit.SECONDS));
+
+            // Invalidate the entry while it's being re-inserted
+            Future<?> invalidation = executor.submit(() -> this.securityCache.remove(spaceReference));
+            try {
+                invalidation.get(100, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Expected: the invalidation waits for the end of the re-insertion
+            }
+
+            releaseReinsert.countDown();
+            read.get(10, TimeUnit.SECONDS);
+            invalidation.get(10, TimeUnit.SECONDS);
+        } finally {
+            releaseReinsert.countDown();
+            executor.shutdownNow();
+        }
+
+        // The invalidated entry should not have been put back in the cache
+        assertNull(this.cache.get(spaceKey));
+        assertNull(this.securityCache.get(spaceReference));
+    }
+
+    private static void await(CountDownLatch latch)
+    {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Test
     void testKeyCollisions() throws Exception
     {
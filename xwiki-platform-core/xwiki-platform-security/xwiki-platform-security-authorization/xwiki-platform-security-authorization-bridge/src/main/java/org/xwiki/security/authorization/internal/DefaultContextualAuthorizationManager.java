@@ -19,8 +19,13 @@
  */
 package org.xwiki.security.authorization.internal;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.inject.Inject;
@@ -122,6 +127,33 @@ private boolean hasAccess(Right right, DocumentReference user, EntityReference e
         return checkPreAccess(right) && this.authorizationManager.hasAccess(right, user, getFullReference(entity));
     }
 
+    @Override
+    public Map<EntityReference, Boolean> hasAccessOnEntities(Right right,
+        Collection<? extends EntityReference> entityReferences)
+    {
+        if (CONTENT_AUTHOR_RIGHTS.contains(right)) {
+            // The user depends on the entity (its content author) so there is nothing to share between the entities.
+            return ContextualAuthorizationManager.super.hasAccessOnEntities(right, entityReferences);
+        }
+
+        List<EntityReference> fullReferences = new ArrayList<>(entityReferences.size());
+        for (EntityReference entityReference : entityReferences) {
+            fullReferences.add(getFullReference(entityReference));
+        }
+
+        Map<EntityReference, Boolean> fullResult = this.authorizationManager.hasAccessOnEntities(right,
+            getCurrentUser(right, null), fullReferences);
+
+        // Map the result back to the references as they were passed.
+        Map<EntityReference, Boolean> result = new LinkedHashMap<>();
+        int index = 0;
+        for (EntityReference entityReference : entityReferences) {
+            result.putIfAbsent(entityReference, Boolean.TRUE.equals(fullResult.get(fullReferences.get(index++))));
+        }
+
+        return result;
+    }
+
     private EntityReference getFullReference(EntityReference reference)
     {
         return reference != null ? this.resolver.resolve(reference, reference.getType()) : null;
@@ -32,6 +32,7 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.skinx.internal.SkinExtensionResponse;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -66,6 +67,14 @@ public class JsxAction extends AbstractSxAction
 
     private static final String SOURCE_MAPS_SESSION_ATTRIBUTE = JsxAction.class.getName() + ".sourceMaps";
 
+    /**
+     * The context key used to collect the source map generated while creating a response which can be shared between
+     * requests.
+     */
+    private static final String RESPONSE_SOURCE_MAP_CONTEXT_KEY = JsxAction.class.getName() + ".responseSourceMap";
+
+    private static final String SOURCE_MAP_HEADER = "X-SourceMap";
+
     /**
      * We need to add minify=false so that we don't try to minify the source map.
      */
@@ -99,7 +108,7 @@ public long getLastModifiedDate()
                 @Override
                 public String getContent()
                 {
-                    return loadSourceMap(context);
+                    return loadSourceMap(sxSource, context);
                 }
 
                 @Override
@@ -121,6 +130,34 @@ public String getContentType()
         }
     }
 
+    @Override
+    protected SkinExtensionResponse createResponse(SxSource sxSource, Extension sxType, boolean minify,
+        XWikiContext context)
+    {
+        // Collect the source map with the response instead of saving it in the session, so that it can be shared
+        context.put(RESPONSE_SOURCE_MAP_CONTEXT_KEY, "");
+        try {
+            byte[] content = getContent(sxSource, sxType, minify, context);
+            String sourceMap = (String) context.get(RESPONSE_SOURCE_MAP_CONTEXT_KEY);
+
+            return new SkinExtensionResponse(content, StringUtils.defaultIfEmpty(sourceMap, null));
+        } finally {
+            context.remove(RESPONSE_SOURCE_MAP_CONTEXT_KEY);
+        }
+    }
+
+    @Override
+    protected void sendResponse(SkinExtensionResponse extensionResponse, XWikiContext context)
+    {
+        if (extensionResponse.getSourceMap() != null) {
+            // The source map is kept with the response and retrieved again when requested.
+            context.getResponse().setHeader(SOURCE_MAP_HEADER,
+                extendQueryString(context.getURL().toString(), SOURCE_MAP_PARAMS));
+        }
+
+        super.sendResponse(extensionResponse, context);
+    }
+
     @Override
     protected String compress(String source, SxCompressor compressor, XWikiContext context)
     {
@@ -134,10 +171,14 @@ protected String compress(String source, SxCompressor compressor, XWikiContext c
                 // The browser's developer tools will attempt to load the source code when debugging the compressed
                 // code. The source code URL is specified in the source map.
                 sourceMap = fixSourceURL(sourceMap, context);
-                // Indicate the URL to the source map using the dedicated HTTP header. This is how the browser's
-                // developer tools will know how to download the source map.
-                // See https://developer.mozilla.org/en-US/docs/Tools/Debugger/How_to/Use_a_source_map
-                context.getResponse().setHeader("X-SourceMap", saveSourceMap(sourceMap, context));
+                if (context.containsKey(RESPONSE_SOURCE_MAP_CONTEXT_KEY)) {
+                    context.put(RESPONSE_SOURCE_MAP_CONTEXT_KEY, sourceMap);
+                } else {
+                    // Indicate the URL to the source map using the dedicated HTTP header. This is how the browser's
+                    // developer tools will know how to download the source map.
+                    // See https://developer.mozilla.org/en-US/docs/Tools/Debugger/How_to/Use_a_source_map
+                    context.getResponse().setHeader(SOURCE_MAP_HEADER, saveSourceMap(sourceMap, context));
+                }
             }
         }
 
@@ -169,24 +210,33 @@ private String saveSourceMap(String sourceMap, XWikiContext context)
     }
 
     /**
+     * @param sxSource the source of the extension for which the source map is requested
      * @param context the XWiki context
      * @return the source map that corresponds to the current HTTP request
      */
-    private String loadSourceMap(XWikiContext context)
+    private String loadSourceMap(SxSource sxSource, XWikiContext context)
     {
+        // The source map of an extension which doesn't depend on the request is kept with its minified response
+        SkinExtensionResponse extensionResponse = getStaticResponse(sxSource, JSX, true, context);
+        if (extensionResponse != null) {
+            return StringUtils.defaultString(extensionResponse.getSourceMap());
+        }
+
         @SuppressWarnings("unchecked")
         Map<String, String> sourceMaps =
             (Map<String, String>) context.getRequest().getSession().getAttribute(SOURCE_MAPS_SESSION_ATTRIBUTE);
         if (sourceMaps != null) {
-            String sourceMapKey = context.getURL().toString();
-            // Remove the source map parameters from the query string.
-            sourceMapKey = sourceMapKey.replaceFirst("(\\?)" + SOURCE_MAP_PARAMS + "(&|$)", "$1");
-            sourceMapKey = StringUtils.removeEnd(sourceMapKey, "?");
-            return sourceMaps.getOrDefault(sourceMapKey, "");
+            return sourceMaps.getOrDefault(removeSourceMapParams(context.getURL().toString()), "");
         }
         return "";
     }
 
+    private String removeSourceMapParams(String url)
+    {
+        String result = url.replaceFirst("(\\?)" + SOURCE_MAP_PARAMS + "(&|$)", "$1");
+        return StringUtils.removeEnd(result, "?");
+    }
+
     private String extendQueryString(String url, String params)
     {
         // We add the new parameters at the start of the query string to be sure they are not overwritten by the rest of
@@ -221,7 +271,9 @@ private String fixSourceURL(String sourceMapJSON, XWikiContext context)
     private String getSourceURL(XWikiContext context)
     {
         XWikiURLFactory urlFactory = context.getURLFactory();
-        String sourceURL = extendQueryString(urlFactory.getRequestURL(context).toString(), "minify=false");
+        // The source map can be generated while handling the source map request
+        String sourceURL =
+            extendQueryString(removeSourceMapParams(urlFactory.getRequestURL(context).toString()), "minify=false");
         try {
             // Try to return a relative source URL because this is going to be saved in the source map.
             return urlFactory.getURL(new URL(sourceURL), context);
@@ -20,11 +20,14 @@
 package com.xpn.xwiki.web.sx;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 
 import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
+import org.xwiki.skinx.internal.SkinExtensionResponse;
+import org.xwiki.skinx.internal.SkinExtensionResponseCache;
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
@@ -58,14 +61,19 @@ public abstract class AbstractSxAction extends XWikiAction
     /** What http header parameter is used to specify when the cache should expire. */
     private static final String CACHE_EXPIRES_HEADER = "Expires";
 
-    /** The response will be sent to the browser as a byte array in this character set. */
-    private static final String RESPONSE_CHARACTER_SET = "UTF-8";
+    /** The http header used to identify the content of the response. */
+    private static final String ETAG_HEADER = "ETag";
+
+    /** The http header listing the entity tags of the cached versions the client already has. */
+    private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
 
     /** If the user passes this parameter in the URL, we will look for the script in the jar files. */
     private static final String JAR_RESOURCE_REQUEST_PARAMETER = "resource";
 
     private DebugConfiguration debugConfiguration;
 
+    private SkinExtensionResponseCache responseCache;
+
     /** @return the logging object of the concrete subclass. */
     protected abstract Logger getLogger();
 
@@ -83,8 +91,6 @@ public void renderExtension(SxSource sxSource, Extension sxType, XWikiContext co
     {
         XWikiResponse response = context.getResponse();
 
-        String extensionContent = sxSource.getContent();
-
         response.setContentType(sxType.getContentType());
 
         if (sxSource.getLastModifiedDate() > 0) {
@@ -106,18 +112,115 @@ public void renderExtension(SxSource sxSource, Extension sxType, XWikiContext co
             response.setHeader(CACHE_CONTROL_HEADER, "no-cache, no-store, must-revalidate");
         }
 
-        if (getDebugConfiguration().isMinify()) {
-            extensionContent = compress(extensionContent, sxType.getCompressor(), context);
+        boolean minify = getDebugConfiguration().isMinify();
+
+        SkinExtensionResponse extensionResponse = getStaticResponse(sxSource, sxType, minify, context);
+        if (extensionResponse != null) {
+            sendResponse(extensionResponse, context);
+        } else {
+            // The content is evaluated for each request so it's not worth tagging or compressing it.
+            send(getContent(sxSource, sxType, minify, context), response);
+        }
+    }
+
+    /**
+     * @param sxSource the source of the extension
+     * @param sxType the type of extension
+     * @param minify {@code true} if the content should be minified
+     * @param context the XWiki context
+     * @return the tagged and compressed response for an extension which does not depend on the request, {@code null}
+     *         if the content of the extension is evaluated for each request
+     * @since 16.6.0RC1
+     */
+    protected SkinExtensionResponse getStaticResponse(SxSource sxSource, Extension sxType, boolean minify,
+        XWikiContext context)
+    {
+        if (sxSource instanceof SxDocumentSource && ((SxDocumentSource) sxSource).isRequestIndependent()) {
+            // Only the document is involved so the result can be reused until the document is modified.
+            return getResponseCache().get(((SxDocumentSource) sxSource).getDocument(), sxType.getClassName(),
+                String.valueOf(minify), () -> createResponse(sxSource, sxType, minify, context));
+        } else if (sxSource instanceof SxResourceSource) {
+            // The resource can be tagged but it's not cached since the extension providing it can be upgraded.
+            return createResponse(sxSource, sxType, minify, context);
+        }
+
+        return null;
+    }
+
+    /**
+     * @param sxSource the source of the extension
+     * @param sxType the type of extension
+     * @param minify {@code true} if the content should be minified
+     * @param context the XWiki context
+     * @return the response to send for the extension, which can be shared with other requests
+     * @since 16.6.0RC1
+     */
+    protected SkinExtensionResponse createResponse(SxSource sxSource, Extension sxType, boolean minify,
+        XWikiContext context)
+    {
+        return new SkinExtensionResponse(getContent(sxSource, sxType, minify, context));
+    }
+
+    /**
+     * Send a tagged response, or only its status when the client already has it.
+     *
+     * @param extensionResponse the response to send
+     * @param context the XWiki context
+     * @since 16.6.0RC1
+     */
+    protected void sendResponse(SkinExtensionResponse extensionResponse, XWikiContext context)
+    {
+        XWikiResponse response = context.getResponse();
+
+        boolean gzip = extensionResponse.canSendGzip(context.getRequest().getHeader("Accept-Encoding"));
+        if (extensionResponse.getGzipContent() != null) {
+            // The sent bytes depend on the accepted encodings.
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+
+        response.setHeader(ETAG_HEADER, extensionResponse.getETag(gzip));
+        if (extensionResponse.matches(context.getRequest().getHeader(IF_NONE_MATCH_HEADER))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+            send(extensionResponse.getGzipContent(), response);
+        } else {
+            send(extensionResponse.getContent(), response);
         }
+    }
 
+    private void send(byte[] content, XWikiResponse response)
+    {
         try {
-            response.setContentLength(extensionContent.getBytes(RESPONSE_CHARACTER_SET).length);
-            response.getOutputStream().write(extensionContent.getBytes(RESPONSE_CHARACTER_SET));
+            response.setContentLength(content.length);
+            response.getOutputStream().write(content);
         } catch (IOException ex) {
             getLogger().warn("Failed to send SX content: [{}]", ex.getMessage());
         }
     }
 
+    /**
+     * @param sxSource the source of the extension
+     * @param sxType the type of extension
+     * @param minify {@code true} if the content should be minified
+     * @param context the XWiki context
+     * @return the bytes to send for the extension
+     * @since 16.6.0RC1
+     */
+    protected byte[] getContent(SxSource sxSource, Extension sxType, boolean minify, XWikiContext context)
+    {
+        String extensionContent = sxSource.getContent();
+
+        if (minify) {
+            extensionContent = compress(extensionContent, sxType.getCompressor(), context);
+        }
+
+        return extensionContent.getBytes(StandardCharsets.UTF_8);
+    }
+
     protected String compress(String source, SxCompressor compressor, XWikiContext context)
     {
         return compressor.compress(source);
@@ -147,6 +250,15 @@ public String render(XWikiContext context) throws XWikiException
         return null;
     }
 
+    private SkinExtensionResponseCache getResponseCache()
+    {
+        if (this.responseCache == null) {
+            this.responseCache = Utils.getComponent(SkinExtensionResponseCache.class);
+        }
+
+        return this.responseCache;
+    }
+
     protected DebugConfiguration getDebugConfiguration()
     {
         if (this.debugConfiguration == null) {
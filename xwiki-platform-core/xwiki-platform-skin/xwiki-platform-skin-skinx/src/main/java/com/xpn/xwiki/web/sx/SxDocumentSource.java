@@ -55,6 +55,9 @@ public class SxDocumentSource implements SxSource
     /** The name of the property in the script extension object which contains the content type. */
     private static final String CONTENT_TYPE_PROPERTY_NAME = "contentType";
 
+    /** The value of the content type property for LESS content. */
+    private static final String LESS_CONTENT_TYPE = "LESS";
+
     /** The name of the property in the script extension object which tells us if the content should be parsed. */
     private static final String PARSE_CONTENT_PROPERTY_NAME = "parse";
 
@@ -129,7 +132,7 @@ public String getContent()
                 }
                 String sxContent = sxObj.getLargeStringValue(CONTENT_PROPERTY_NAME);
                 int parse = sxObj.getIntValue(PARSE_CONTENT_PROPERTY_NAME);
-                if ("LESS".equals(sxObj.getStringValue(CONTENT_TYPE_PROPERTY_NAME))) {
+                if (LESS_CONTENT_TYPE.equals(sxObj.getStringValue(CONTENT_TYPE_PROPERTY_NAME))) {
                     LESSCompiler lessCompiler = Utils.getComponent(LESSCompiler.class);
                     LESSResourceReferenceFactory lessResourceReferenceFactory =
                         Utils.getComponent(LESSResourceReferenceFactory.class);
@@ -167,6 +170,35 @@ public String getContent()
         return resultBuilder.toString();
     }
 
+    /**
+     * @return the document containing the extension
+     * @since 16.6.0RC1
+     */
+    public XWikiDocument getDocument()
+    {
+        return this.document;
+    }
+
+    /**
+     * @return {@code true} if the content only depends on the document (no Velocity or LESS evaluation), in which case
+     *         the result can be shared between requests
+     * @since 16.6.0RC1
+     */
+    public boolean isRequestIndependent()
+    {
+        List<BaseObject> objects = this.document.getObjects(this.extension.getClassName());
+        if (objects != null) {
+            for (BaseObject sxObj : objects) {
+                if (sxObj != null && (sxObj.getIntValue(PARSE_CONTENT_PROPERTY_NAME) == 1
+                    || LESS_CONTENT_TYPE.equals(sxObj.getStringValue(CONTENT_TYPE_PROPERTY_NAME)))) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
     @Override
     public long getLastModifiedDate()
     {
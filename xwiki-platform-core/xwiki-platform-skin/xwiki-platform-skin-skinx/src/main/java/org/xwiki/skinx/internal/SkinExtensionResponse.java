@@ -0,0 +1,191 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.skinx.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * The bytes sent for a skin extension, along with their gzip compressed version, strong entity tags computed from
+ * the content (one for each encoding, since the sent bytes differ) and the source map generated by the minification.
+ * Instances are immutable so that they can be shared between requests.
+ *
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+public class SkinExtensionResponse
+{
+    /**
+     * Below this size compressing the content does not save enough bytes to be worth the {@code Content-Encoding}.
+     */
+    static final int MIN_COMPRESSED_SIZE = 1024;
+
+    private static final String ETAG_QUOTE = "\"";
+
+    private static final String WEAK_ETAG_PREFIX = "W/";
+
+    private static final String GZIP_ETAG_SUFFIX = "-gzip";
+
+    private final byte[] content;
+
+    private final byte[] gzipContent;
+
+    private final String etag;
+
+    private final String gzipEtag;
+
+    private final String sourceMap;
+
+    /**
+     * @param content the raw bytes of the skin extension
+     */
+    public SkinExtensionResponse(byte[] content)
+    {
+        this(content, null);
+    }
+
+    /**
+     * @param content the raw bytes of the skin extension
+     * @param sourceMap the source map generated when minifying the skin extension, {@code null} if none
+     */
+    public SkinExtensionResponse(byte[] content, String sourceMap)
+    {
+        this.content = content;
+        this.sourceMap = sourceMap;
+        this.gzipContent = gzip(content);
+
+        String hash = DigestUtils.sha256Hex(content).substring(0, 32);
+        this.etag = ETAG_QUOTE + hash + ETAG_QUOTE;
+        this.gzipEtag = this.gzipContent != null ? ETAG_QUOTE + hash + GZIP_ETAG_SUFFIX + ETAG_QUOTE : null;
+    }
+
+    private static byte[] gzip(byte[] content)
+    {
+        if (content.length < MIN_COMPRESSED_SIZE) {
+            return null;
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(content.length / 4);
+        try (GZIPOutputStream gzipOutput = new GZIPOutputStream(output)) {
+            gzipOutput.write(content);
+        } catch (IOException e) {
+            // Cannot happen with an in-memory stream.
+            throw new UncheckedIOException(e);
+        }
+
+        byte[] compressed = output.toByteArray();
+
+        // Don't keep (and send) a compressed version which is not smaller than the original.
+        return compressed.length < content.length ? compressed : null;
+    }
+
+    /**
+     * @return the raw bytes of the skin extension
+     */
+    public byte[] getContent()
+    {
+        return this.content;
+    }
+
+    /**
+     * @return the gzip compressed bytes of the skin extension, or {@code null} if the content is not worth compressing
+     */
+    public byte[] getGzipContent()
+    {
+        return this.gzipContent;
+    }
+
+    /**
+     * @return the source map generated when minifying the skin extension, {@code null} if none
+     */
+    public String getSourceMap()
+    {
+        return this.sourceMap;
+    }
+
+    /**
+     * @return the strong entity tag (including the surrounding quotes) identifying the uncompressed content
+     */
+    public String getETag()
+    {
+        return this.etag;
+    }
+
+    /**
+     * @param gzip {@code true} if the gzip compressed content is sent
+     * @return the strong entity tag (including the surrounding quotes) identifying the sent bytes
+     */
+    public String getETag(boolean gzip)
+    {
+        return gzip && this.gzipEtag != null ? this.gzipEtag : this.etag;
+    }
+
+    /**
+     * @param ifNoneMatch the value of the {@code If-None-Match} request header, can be {@code null}
+     * @return {@code true} if the client already has this content and a {@code 304 Not Modified} can be sent instead
+     */
+    public boolean matches(String ifNoneMatch)
+    {
+        if (StringUtils.isBlank(ifNoneMatch)) {
+            return false;
+        }
+
+        for (String candidate : StringUtils.split(ifNoneMatch, ',')) {
+            String tag = candidate.trim();
+            if ("*".equals(tag)) {
+                return true;
+            }
+            // The weak comparison is the one to use for If-None-Match (RFC 9110, section 13.1.2), and both encodings
+            // represent the same content.
+            tag = StringUtils.removeStart(tag, WEAK_ETAG_PREFIX);
+            if (this.etag.equals(tag) || tag.equals(this.gzipEtag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param acceptEncoding the value of the {@code Accept-Encoding} request header, can be {@code null}
+     * @return {@code true} if a gzip compressed version exists and is accepted by the client
+     */
+    public boolean canSendGzip(String acceptEncoding)
+    {
+        if (this.gzipContent == null || acceptEncoding == null) {
+            return false;
+        }
+
+        for (String candidate : StringUtils.split(acceptEncoding, ',')) {
+            String[] parts = StringUtils.split(candidate, ';');
+            if (parts.length > 0 && "gzip".equalsIgnoreCase(parts[0].trim())) {
+                // Honor an explicit refusal ("gzip;q=0").
+                return parts.length < 2 || !StringUtils.deleteWhitespace(parts[1]).matches("q=0(\\.0*)?");
+            }
+        }
+
+        return false;
+    }
+}
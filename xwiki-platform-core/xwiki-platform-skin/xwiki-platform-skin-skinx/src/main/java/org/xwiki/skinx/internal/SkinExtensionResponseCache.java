@@ -0,0 +1,108 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.skinx.internal;
+
+import java.util.function.Supplier;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Keep the prepared (minified, compressed and tagged) responses of the document skin extensions which don't depend on
+ * the request, to avoid recomputing them each time a page asks for them.
+ * <p>
+ * The key contains the version and the date of the document, so there is no need to listen to document modifications:
+ * an updated (or deleted and recreated) document simply won't find the previous entry, which is eventually evicted.
+ *
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+@Component(roles = SkinExtensionResponseCache.class)
+@Singleton
+public class SkinExtensionResponseCache implements Initializable, Disposable
+{
+    private static final String CACHE_KEY_SEPARATOR = "/";
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    private Cache<SkinExtensionResponse> cache;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.cache = this.cacheManager.createNewCache(new LRUCacheConfiguration("skinx.responses", 500, 86400));
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the skin extension responses cache.", e);
+        }
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.cache != null) {
+            this.cache.dispose();
+        }
+    }
+
+    /**
+     * @param document the document holding the skin extension objects
+     * @param extensionType the type of skin extension (e.g. {@code ssx})
+     * @param variant what else (than the document) the content depends on (e.g. minification)
+     * @param responseSupplier called to produce the response when it's not already in the cache
+     * @return the cached response, or the one created by the supplier
+     */
+    public SkinExtensionResponse get(XWikiDocument document, String extensionType, String variant,
+        Supplier<SkinExtensionResponse> responseSupplier)
+    {
+        StringBuilder key = new StringBuilder();
+        key.append(extensionType).append(CACHE_KEY_SEPARATOR);
+        key.append(variant).append(CACHE_KEY_SEPARATOR);
+        key.append(document.getVersion()).append(CACHE_KEY_SEPARATOR);
+        key.append(document.getDate() != null ? document.getDate().getTime() : 0).append(CACHE_KEY_SEPARATOR);
+        key.append(this.serializer.serialize(document.getDocumentReference()));
+        String cacheKey = key.toString();
+
+        SkinExtensionResponse response = this.cache.get(cacheKey);
+        if (response == null) {
+            // Two concurrent requests might compute the same response, which is harmless.
+            response = responseSupplier.get();
+            this.cache.set(cacheKey, response);
+        }
+
+        return response;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.skinx.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link SkinExtensionResponse}.
+ *
+ * @version $Id$
+ */
+class SkinExtensionResponseTest
+{
+    private static final byte[] LARGE_CONTENT =
+        StringUtils.repeat(".panel { color: red; }\n", 200).getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void etag()
+    {
+        SkinExtensionResponse response = new SkinExtensionResponse(LARGE_CONTENT);
+
+        assertTrue(response.getETag().startsWith("\""));
+        assertTrue(response.getETag().endsWith("\""));
+        assertEquals(response.getETag(), new SkinExtensionResponse(LARGE_CONTENT.clone()).getETag());
+        assertNotEquals(response.getETag(), new SkinExtensionResponse("other".getBytes(StandardCharsets.UTF_8)).getETag());
+    }
+
+    @Test
+    void etagPerEncoding()
+    {
+        SkinExtensionResponse response = new SkinExtensionResponse(LARGE_CONTENT);
+
+        assertEquals(response.getETag(), response.getETag(false));
+        assertNotEquals(response.getETag(), response.getETag(true));
+        assertTrue(response.getETag(true).endsWith("-gzip\""));
+
+        // No compressed version for small content
+        SkinExtensionResponse smallResponse = new SkinExtensionResponse("a { }".getBytes(StandardCharsets.UTF_8));
+        assertEquals(smallResponse.getETag(), smallResponse.getETag(true));
+    }
+
+    @Test
+    void matches()
+    {
+        SkinExtensionResponse response = new SkinExtensionResponse(LARGE_CONTENT);
+        String etag = response.getETag();
+
+        assertFalse(response.matches(null));
+        assertFalse(response.matches(""));
+        assertFalse(response.matches("\"other\""));
+        assertTrue(response.matches(etag));
+        assertTrue(response.matches("W/" + etag));
+        assertTrue(response.matches("\"other\", " + etag));
+        assertTrue(response.matches(response.getETag(true)));
+        assertTrue(response.matches("W/" + response.getETag(true)));
+        assertTrue(response.matches("*"));
+    }
+
+    @Test
+    void gzip() throws IOException
+    {
+        SkinExtensionResponse response = new SkinExtensionResponse(LARGE_CONTENT);
+
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(response.getGzipContent()))) {
+            assertArrayEquals(LARGE_CONTENT, input.readAllBytes());
+        }
+
+        assertTrue(response.canSendGzip("gzip, deflate, br"));
+        assertTrue(response.canSendGzip("br;q=1.0, GZIP;q=0.5"));
+        assertFalse(response.canSendGzip("gzip;q=0"));
+        assertFalse(response.canSendGzip("deflate"));
+        assertFalse(response.canSendGzip(null));
+    }
+
+    @Test
+    void sourceMap()
+    {
+        assertNull(new SkinExtensionResponse(LARGE_CONTENT).getSourceMap());
+
+        SkinExtensionResponse response = new SkinExtensionResponse(LARGE_CONTENT, "{\"version\":3}");
+
+        assertEquals("{\"version\":3}", response.getSourceMap());
+        // The source map is not part of the sent content
+        assertEquals(new SkinExtensionResponse(LARGE_CONTENT).getETag(), response.getETag());
+    }
+
+    @Test
+    void gzipSkippedForSmallContent()
+    {
+        SkinExtensionResponse response = new SkinExtensionResponse("a { }".getBytes(StandardCharsets.UTF_8));
+
+        assertNull(response.getGzipContent());
+        assertFalse(response.canSendGzip("gzip"));
+    }
+}
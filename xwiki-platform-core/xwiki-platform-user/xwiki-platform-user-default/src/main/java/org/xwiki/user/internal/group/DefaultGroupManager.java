@@ -33,8 +33,6 @@
 import org.xwiki.component.annotation.Component;
 import org.xwiki.model.internal.reference.EntityReferenceFactory;
 import org.xwiki.model.reference.DocumentReference;
-import org.xwiki.model.reference.DocumentReferenceResolver;
-import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.model.reference.WikiReference;
 import org.xwiki.user.group.GroupException;
 import org.xwiki.user.group.GroupManager;
@@ -64,16 +62,16 @@ public class DefaultGroupManager implements GroupManager
     private MembersCache membersCache;
 
     @Inject
-    private WikiDescriptorManager wikis;
+    private GroupMembersGraph membersGraph;
 
     @Inject
-    private Provider<XWikiContext> xcontextProvider;
+    private GroupMembersLoader membersLoader;
 
     @Inject
-    private EntityReferenceSerializer<String> serializer;
+    private WikiDescriptorManager wikis;
 
     @Inject
-    private DocumentReferenceResolver<String> resolver;
+    private Provider<XWikiContext> xcontextProvider;
 
     @Inject
     private EntityReferenceFactory referenceFactory;
@@ -299,22 +297,12 @@ private Collection<DocumentReference> get(GroupCacheEntry entry, boolean recurse
 
     @Override
     public Collection<DocumentReference> getMembers(DocumentReference reference, boolean recurse) throws GroupException
-    {
-        return getMembers(reference, recurse, null);
-    }
-
-    private Collection<DocumentReference> getMembers(DocumentReference reference, boolean recurse,
-        Set<DocumentReference> rootMembers) throws GroupException
     {
         // Try in the cache
         GroupCacheEntry entry = this.membersCache.getCacheEntry(reference, true);
 
         Collection<DocumentReference> members = get(entry, recurse);
         if (members != null) {
-            if (rootMembers != null) {
-                rootMembers.addAll(members);
-            }
-
             return members;
         }
 
@@ -324,85 +312,18 @@ private Collection<DocumentReference> getMembers(DocumentReference reference, bo
             // Check if it was calculated by another thread in the meantime
             members = get(entry, recurse);
             if (members != null) {
-                if (rootMembers != null) {
-                    rootMembers.addAll(members);
-                }
-
                 return members;
             }
 
-            // Get direct members
-            members = entry.getDirect();
-            if (members == null) {
-                members = entry.setDirect(getMembers(reference));
-            }
-
-            // Get all members
             if (recurse) {
-                Set<DocumentReference> resolvedMembers = new LinkedHashSet<>();
-
-                if (rootMembers == null) {
-                    rootMembers = resolvedMembers;
-                }
-
-                // Make sure asked reference won't be resolved
-                resolvedMembers.add(reference);
-
-                // Recursively resolve sub-groups
-                for (DocumentReference member : members) {
-                    // Protect against cross references between groups
-                    if (!rootMembers.contains(member)) {
-                        rootMembers.add(member);
-                        resolvedMembers.add(member);
-
-                        Collection<DocumentReference> subMembers = getMembers(member, true, rootMembers);
-
-                        if (subMembers != null) {
-                            resolvedMembers.addAll(subMembers);
-                        } else {
-                            members = null;
-                        }
-                    } else {
-                        members = null;
-                    }
-                }
-
-                // Remove asked reference from members
-                resolvedMembers.remove(reference);
-
-                if (members != null || rootMembers == resolvedMembers) {
-                    members = entry.setAll(resolvedMembers);
-                }
+                // Get all members from the membership graph which maintains the transitive closure of each group
+                members = entry.setAll(this.membersGraph.getAllMembers(reference, this.membersLoader));
             } else {
-                if (rootMembers != null) {
-                    rootMembers.addAll(members);
-                }
+                // Get direct members
+                members = entry.setDirect(this.membersLoader.getMembers(reference));
             }
 
             return members;
         }
     }
-
-    private Collection<DocumentReference> getMembers(DocumentReference reference) throws GroupException
-    {
-        XWikiContext xcontext = this.xcontextProvider.get();
-
-        XWikiGroupService groupService = getXWikiGroupService(xcontext);
-
-        Collection<String> memberStrings;
-        try {
-            memberStrings =
-                groupService.getAllMembersNamesForGroup(this.serializer.serialize(reference), -1, 0, xcontext);
-        } catch (XWikiException e) {
-            throw new GroupException("Failed to get members of group [" + reference + "]", e);
-        }
-
-        Set<DocumentReference> members = new LinkedHashSet<>();
-
-        for (String memberString : memberStrings) {
-            members.add(this.referenceFactory.getReference(this.resolver.resolve(memberString, reference)));
-        }
-
-        return members;
-    }
 }
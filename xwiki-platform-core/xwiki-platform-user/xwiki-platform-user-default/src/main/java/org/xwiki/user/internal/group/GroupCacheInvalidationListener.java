@@ -29,6 +29,8 @@
 import javax.inject.Singleton;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
 import org.xwiki.bridge.event.DocumentCreatedEvent;
 import org.xwiki.bridge.event.DocumentDeletedEvent;
 import org.xwiki.bridge.event.DocumentUpdatedEvent;
@@ -40,6 +42,7 @@
 import org.xwiki.observation.AbstractEventListener;
 import org.xwiki.observation.event.Event;
 import org.xwiki.security.authorization.cache.SecurityCache;
+import org.xwiki.user.group.GroupException;
 
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.internal.mandatory.XWikiGroupsDocumentInitializer;
@@ -70,6 +73,15 @@ public class GroupCacheInvalidationListener extends AbstractEventListener
     @Inject
     private MembersCache membersCache;
 
+    @Inject
+    private GroupMembersGraph membersGraph;
+
+    @Inject
+    private GroupMembersLoader membersLoader;
+
+    @Inject
+    private Logger logger;
+
     /**
      * Default constructor.
      */
@@ -86,25 +98,47 @@ public void onEvent(Event event, Object source, Object data)
             WikiReference wikiReference = new WikiReference(((WikiDeletedEvent) event).getWikiId());
             this.groupsCache.cleanCache(wikiReference.getName());
             this.membersCache.cleanCache(wikiReference.getName());
+            // Groups from other wikis can contain members of the deleted wiki
+            this.membersGraph.removeAll();
         } else {
             XWikiDocument newDocument = (XWikiDocument) source;
             XWikiDocument previousDocument = newDocument.getOriginalDocument();
 
             DocumentReference documentReference = newDocument.getDocumentReference();
 
+            Set<DocumentReference> previousMembers = getMembers(previousDocument);
+            Set<DocumentReference> newMembers = getMembers(newDocument);
+
+            // Update the membership graph first so that the caches cannot be filled again with outdated members. The
+            // graph loads the members from the group service, the ones parsed here are only used to find the cache
+            // entries to remove.
+            if (event instanceof DocumentDeletedEvent) {
+                this.membersGraph.remove(documentReference);
+            } else if (!previousMembers.isEmpty() || !newMembers.isEmpty()) {
+                updateGraph(documentReference);
+            }
+
             // Remove the entity from the cache
             this.groupsCache.cleanCache(documentReference);
             this.membersCache.cleanCache(documentReference);
 
             // Remove the previous and new group members from the cache
-            Set<DocumentReference> previousMembers = getMembers(previousDocument);
-            Set<DocumentReference> newMembers = getMembers(newDocument);
-
             invalidate(previousMembers, newMembers);
             invalidate(newMembers, previousMembers);
         }
     }
 
+    private void updateGraph(DocumentReference group)
+    {
+        try {
+            this.membersGraph.update(group, this.membersLoader);
+        } catch (GroupException e) {
+            // The group is invalidated in the graph, its members will be loaded again when needed
+            this.logger.warn("Failed to update the members of group [{}] in the membership graph: {}", group,
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+    }
+
     private void invalidate(Set<DocumentReference> members1, Set<DocumentReference> members2)
     {
         for (DocumentReference member : members1) {
@@ -0,0 +1,530 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.user.internal.group;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.user.group.GroupException;
+
+/**
+ * In-memory graph of the group memberships, with the transitive closure of the members of each resolved group.
+ * <p>
+ * Each entity is associated with an integer identifier so that the direct members, the reverse edges (the groups
+ * directly containing an entity) and the transitive closures can be stored as {@link BitSet}s. The direct members of
+ * an entity are always obtained from the {@link MembersLoader}, lazily, and all the entities missing to compute a
+ * closure are loaded in the same pass. When a group is modified, its new direct members are loaded and the added
+ * members are merged into the closures containing the group. The closures are only recomputed in memory when members
+ * are removed.
+ * <p>
+ * Only the groups reached while resolving members are known, so the graph cannot tell all the groups of an entity.
+ * <p>
+ * The identifiers of the deleted entities (and of their members which are not members of another loaded group) are
+ * reused, and the whole graph is cleared when it reaches {@link #MAX_ENTITIES} entities.
+ * 
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+@Component(roles = GroupMembersGraph.class)
+@Singleton
+public class GroupMembersGraph
+{
+    /**
+     * Load the direct members of a group.
+     * 
+     * @version $Id$
+     */
+    @FunctionalInterface
+    public interface MembersLoader
+    {
+        /**
+         * @param group the reference of the group
+         * @return the direct members of the group
+         * @throws GroupException when failing to load the members
+         */
+        Collection<DocumentReference> getMembers(DocumentReference group) throws GroupException;
+    }
+
+    /**
+     * The number of entities above which the graph is cleared before resolving new members. It's a soft limit since
+     * the resolution of the members of a single group can add more entities.
+     */
+    static final int MAX_ENTITIES = 100000;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int maxEntities = MAX_ENTITIES;
+
+    private final Map<DocumentReference, Integer> identifiers = new HashMap<>();
+
+    /**
+     * The reference of each entity, {@code null} for a free identifier.
+     */
+    private final List<DocumentReference> references = new ArrayList<>();
+
+    /**
+     * The direct members of each entity, {@code null} when not loaded yet.
+     */
+    private final List<BitSet> directMembers = new ArrayList<>();
+
+    /**
+     * The loaded entities directly containing each entity.
+     */
+    private final List<BitSet> directGroups = new ArrayList<>();
+
+    /**
+     * The transitive closure of the members of each entity (not including the entity itself), {@code null} when not
+     * computed yet.
+     */
+    private final List<BitSet> allMembers = new ArrayList<>();
+
+    /**
+     * The version of the direct members of each entity, modified each time they are invalidated to detect the members
+     * loaded concurrently.
+     */
+    private final List<Long> versions = new ArrayList<>();
+
+    /**
+     * The identifiers of the removed entities, to reuse.
+     */
+    private final Deque<Integer> freeIdentifiers = new ArrayDeque<>();
+
+    /**
+     * The last version given to the direct members of an entity.
+     */
+    private long lastVersion;
+
+    /**
+     * @param group the reference of the group
+     * @param loader used to load the direct members of the entities which are not in the graph yet
+     * @return the members of the group and of its sub-groups, recursively
+     * @throws GroupException when failing to load the members of a group
+     */
+    public Set<DocumentReference> getAllMembers(DocumentReference group, MembersLoader loader) throws GroupException
+    {
+        // Most of the time the closure is already known
+        this.lock.readLock().lock();
+        try {
+            Integer groupId = this.identifiers.get(group);
+            if (groupId != null && this.allMembers.get(groupId) != null) {
+                return toReferences(this.allMembers.get(groupId));
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+
+        boolean checkSize = true;
+        while (true) {
+            // The version of each entity reachable from the group and for which the direct members are not loaded
+            Map<DocumentReference, Long> missingGroups = new LinkedHashMap<>();
+
+            this.lock.writeLock().lock();
+            try {
+                // Only check the size before resolving the members to make sure a large group can be resolved
+                if (checkSize && this.identifiers.size() >= this.maxEntities) {
+                    clear();
+                }
+                checkSize = false;
+
+                int groupId = getIdentifier(group);
+
+                BitSet members = this.allMembers.get(groupId);
+                if (members == null) {
+                    BitSet missingIds = new BitSet();
+                    members = computeAllMembers(groupId, missingIds);
+                    missingIds.stream().forEach(missingId -> missingGroups.put(this.references.get(missingId),
+                        this.versions.get(missingId)));
+                }
+
+                if (members != null) {
+                    return toReferences(members);
+                }
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+
+            // Don't hold the lock while loading the members from the database
+            Map<DocumentReference, Collection<DocumentReference>> loadedMembers = new HashMap<>();
+            for (DocumentReference missingGroup : missingGroups.keySet()) {
+                loadedMembers.put(missingGroup, loader.getMembers(missingGroup));
+            }
+
+            this.lock.writeLock().lock();
+            try {
+                for (Map.Entry<DocumentReference, Long> missingGroup : missingGroups.entrySet()) {
+                    // Ignore the loaded members if the group was modified in the meantime since they might be outdated
+                    Integer missingId = this.identifiers.get(missingGroup.getKey());
+                    if (missingId != null && this.versions.get(missingId).equals(missingGroup.getValue())
+                        && this.directMembers.get(missingId) == null) {
+                        setDirectMembers(missingId, loadedMembers.get(missingGroup.getKey()));
+                    }
+                }
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Forget the direct members of a modified group, and the closures depending on them. The direct members are
+     * loaded again when needed.
+     * 
+     * @param group the reference of the group
+     */
+    public void invalidate(DocumentReference group)
+    {
+        this.lock.writeLock().lock();
+        try {
+            Integer groupId = this.identifiers.get(group);
+            if (groupId != null) {
+                invalidate(groupId, false);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Apply the modification of a group to the graph. The direct members of the group are loaded again, and the
+     * closures depending on them are updated in place when members were only added. When members were removed, those
+     * closures are invalidated since a removed member might still be reachable through another path.
+     * 
+     * @param group the reference of the group
+     * @param loader used to load the direct members of the group and of its new members
+     * @throws GroupException when failing to load the members, the group is then invalidated
+     */
+    public void update(DocumentReference group, MembersLoader loader) throws GroupException
+    {
+        long loadVersion;
+
+        this.lock.writeLock().lock();
+        try {
+            Integer groupId = this.identifiers.get(group);
+            if (groupId == null) {
+                // Nothing depends on this group
+                return;
+            }
+
+            // Discard the members being loaded concurrently since they might be outdated
+            loadVersion = ++this.lastVersion;
+            this.versions.set(groupId, loadVersion);
+
+            if (this.directMembers.get(groupId) == null) {
+                // The members will be loaded when needed
+                return;
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        boolean updated = false;
+        try {
+            // Don't hold the lock while loading the members from the database
+            Collection<DocumentReference> members = loader.getMembers(group);
+
+            // Make sure the closures of the new members are known, it's immediate for the members already resolved
+            for (DocumentReference member : members) {
+                getAllMembers(member, loader);
+            }
+
+            this.lock.writeLock().lock();
+            try {
+                // Ignore the loaded members if the group was modified in the meantime, it is invalidated instead
+                Integer groupId = this.identifiers.get(group);
+                if (groupId != null && this.versions.get(groupId) == loadVersion
+                    && this.directMembers.get(groupId) != null) {
+                    updateDirectMembers(groupId, members);
+                    updated = true;
+                }
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        } finally {
+            if (!updated) {
+                invalidate(group);
+            }
+        }
+    }
+
+    /**
+     * Forget a deleted entity. It's kept as long as it's a member of a loaded group, but its members are released when
+     * they are not members of another loaded group.
+     * 
+     * @param reference the reference of the deleted entity
+     */
+    public void remove(DocumentReference reference)
+    {
+        this.lock.writeLock().lock();
+        try {
+            Integer entityId = this.identifiers.get(reference);
+            if (entityId != null) {
+                invalidate(entityId, true);
+
+                if (this.directGroups.get(entityId).isEmpty()) {
+                    free(entityId);
+                }
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forget everything about the graph.
+     */
+    public void removeAll()
+    {
+        this.lock.writeLock().lock();
+        try {
+            clear();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of entities in the graph
+     */
+    int size()
+    {
+        this.lock.readLock().lock();
+        try {
+            return this.identifiers.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private void clear()
+    {
+        this.identifiers.clear();
+        this.references.clear();
+        this.directMembers.clear();
+        this.directGroups.clear();
+        this.allMembers.clear();
+        this.versions.clear();
+        this.freeIdentifiers.clear();
+    }
+
+    private int getIdentifier(DocumentReference reference)
+    {
+        return this.identifiers.computeIfAbsent(reference, key -> {
+            Integer entityId = this.freeIdentifiers.poll();
+            if (entityId != null) {
+                this.references.set(entityId, key);
+                this.versions.set(entityId, ++this.lastVersion);
+            } else {
+                entityId = this.references.size();
+                this.references.add(key);
+                this.directMembers.add(null);
+                this.directGroups.add(new BitSet());
+                this.allMembers.add(null);
+                this.versions.add(++this.lastVersion);
+            }
+
+            return entityId;
+        });
+    }
+
+    /**
+     * Release the identifier of an entity which is not a member of any loaded group and which members are not loaded.
+     */
+    private void free(int entityId)
+    {
+        this.identifiers.remove(this.references.get(entityId));
+        this.references.set(entityId, null);
+        this.directMembers.set(entityId, null);
+        this.allMembers.set(entityId, null);
+        this.versions.set(entityId, ++this.lastVersion);
+        this.freeIdentifiers.push(entityId);
+    }
+
+    private void invalidate(int groupId, boolean releaseMembers)
+    {
+        // Discard the members being loaded concurrently
+        this.versions.set(groupId, ++this.lastVersion);
+
+        BitSet previousMembers = this.directMembers.get(groupId);
+        if (previousMembers != null) {
+            // Some members might still be reachable through another path, it's simpler to recompute
+            getAncestors(groupId).stream().forEach(ancestorId -> this.allMembers.set(ancestorId, null));
+
+            this.directMembers.set(groupId, null);
+            previousMembers.stream().forEach(memberId -> {
+                BitSet memberGroups = this.directGroups.get(memberId);
+                memberGroups.clear(groupId);
+
+                // Not much is known about an entity without any loaded group or members, no need to keep it. It's not
+                // done for a modified group since most of its members are usually still there.
+                BitSet memberMembers = this.directMembers.get(memberId);
+                if (releaseMembers && memberGroups.isEmpty() && memberId != groupId
+                    && (memberMembers == null || memberMembers.isEmpty())) {
+                    free(memberId);
+                }
+            });
+        }
+    }
+
+    private void setDirectMembers(int groupId, Collection<DocumentReference> members)
+    {
+        BitSet newMembers = new BitSet();
+        for (DocumentReference member : members) {
+            int memberId = getIdentifier(member);
+            newMembers.set(memberId);
+            this.directGroups.get(memberId).set(groupId);
+        }
+        this.directMembers.set(groupId, newMembers);
+    }
+
+    private void updateDirectMembers(int groupId, Collection<DocumentReference> members)
+    {
+        BitSet previousMembers = this.directMembers.get(groupId);
+        BitSet newMembers = new BitSet();
+        members.forEach(member -> newMembers.set(getIdentifier(member)));
+
+        BitSet addedMembers = (BitSet) newMembers.clone();
+        addedMembers.andNot(previousMembers);
+        BitSet removedMembers = (BitSet) previousMembers.clone();
+        removedMembers.andNot(newMembers);
+
+        this.directMembers.set(groupId, newMembers);
+        addedMembers.stream().forEach(memberId -> this.directGroups.get(memberId).set(groupId));
+        removedMembers.stream().forEach(memberId -> this.directGroups.get(memberId).clear(groupId));
+
+        BitSet ancestors = getAncestors(groupId);
+
+        // Everything reachable from an added member is now reachable from the group and the groups containing it
+        BitSet reachable = (BitSet) addedMembers.clone();
+        boolean resolved = removedMembers.isEmpty();
+        for (int memberId = addedMembers.nextSetBit(0); resolved && memberId >= 0;
+            memberId = addedMembers.nextSetBit(memberId + 1)) {
+            BitSet memberAllMembers = this.allMembers.get(memberId);
+            if (memberAllMembers != null) {
+                reachable.or(memberAllMembers);
+            } else {
+                resolved = false;
+            }
+        }
+
+        if (resolved) {
+            ancestors.stream().forEach(ancestorId -> {
+                BitSet ancestorAllMembers = this.allMembers.get(ancestorId);
+                if (ancestorAllMembers != null) {
+                    ancestorAllMembers.or(reachable);
+                    // Make sure the group is not its own member
+                    ancestorAllMembers.clear(ancestorId);
+                }
+            });
+        } else {
+            // Some members might still be reachable through another path, it's simpler to recompute
+            ancestors.stream().forEach(ancestorId -> this.allMembers.set(ancestorId, null));
+        }
+    }
+
+    /**
+     * @param groupId the identifier of the group
+     * @param missingIds filled with the entities reachable from the group and for which the direct members are not
+     *            loaded
+     * @return the closure of the members of the group or {@code null} if some direct members need to be loaded first
+     */
+    private BitSet computeAllMembers(int groupId, BitSet missingIds)
+    {
+        BitSet members = new BitSet();
+        members.set(groupId);
+
+        Deque<Integer> toVisit = new ArrayDeque<>();
+        toVisit.push(groupId);
+        while (!toVisit.isEmpty()) {
+            int entityId = toVisit.pop();
+
+            BitSet entityAllMembers = this.allMembers.get(entityId);
+            if (entityId != groupId && entityAllMembers != null) {
+                // Reuse the already computed closure
+                members.or(entityAllMembers);
+            } else {
+                BitSet entityMembers = this.directMembers.get(entityId);
+                if (entityMembers == null) {
+                    // Keep walking to find all the entities to load at once
+                    missingIds.set(entityId);
+                } else {
+                    entityMembers.stream().filter(memberId -> !members.get(memberId)).forEach(memberId -> {
+                        members.set(memberId);
+                        toVisit.push(memberId);
+                    });
+                }
+            }
+        }
+
+        if (!missingIds.isEmpty()) {
+            return null;
+        }
+
+        // Make sure the group is not its own member
+        members.clear(groupId);
+
+        this.allMembers.set(groupId, members);
+
+        return members;
+    }
+
+    /**
+     * @return the group and all the groups containing it, recursively
+     */
+    private BitSet getAncestors(int groupId)
+    {
+        BitSet ancestors = new BitSet();
+        ancestors.set(groupId);
+
+        Deque<Integer> toVisit = new ArrayDeque<>();
+        toVisit.push(groupId);
+        while (!toVisit.isEmpty()) {
+            this.directGroups.get(toVisit.pop()).stream().filter(parentId -> !ancestors.get(parentId))
+                .forEach(parentId -> {
+                    ancestors.set(parentId);
+                    toVisit.push(parentId);
+                });
+        }
+
+        return ancestors;
+    }
+
+    private Set<DocumentReference> toReferences(BitSet members)
+    {
+        Set<DocumentReference> result = new LinkedHashSet<>(members.cardinality());
+        members.stream().forEach(memberId -> result.add(this.references.get(memberId)));
+
+        return result;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.user.internal.group;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.model.internal.reference.EntityReferenceFactory;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.user.group.GroupException;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.user.api.XWikiGroupService;
+
+/**
+ * Load the direct members of a group from the {@link XWikiGroupService}.
+ * 
+ * @version $Id$
+ * @since 16.6.0RC1
+ */
+@Component(roles = GroupMembersLoader.class)
+@Singleton
+public class GroupMembersLoader implements GroupMembersGraph.MembersLoader
+{
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    @Inject
+    private DocumentReferenceResolver<String> resolver;
+
+    @Inject
+    private EntityReferenceFactory referenceFactory;
+
+    @Override
+    public Collection<DocumentReference> getMembers(DocumentReference group) throws GroupException
+    {
+        XWikiContext xcontext = this.xcontextProvider.get();
+
+        Collection<String> memberStrings;
+        try {
+            XWikiGroupService groupService = xcontext.getWiki().getGroupService(xcontext);
+
+            memberStrings = groupService.getAllMembersNamesForGroup(this.serializer.serialize(group), -1, 0, xcontext);
+        } catch (XWikiException e) {
+            throw new GroupException("Failed to get members of group [" + group + "]", e);
+        }
+
+        Set<DocumentReference> members = new LinkedHashSet<>();
+
+        for (String memberString : memberStrings) {
+            members.add(this.referenceFactory.getReference(this.resolver.resolve(memberString, group)));
+        }
+
+        return members;
+    }
+}
@@ -40,6 +40,7 @@
 import org.xwiki.user.internal.document.SecureUserDocumentUserPropertiesResolver;
 import org.xwiki.user.internal.document.UserPreferencesConfigurationSource;
 import org.xwiki.user.internal.group.DefaultGroupManager;
+import org.xwiki.user.internal.group.GroupMembersGraph;
 import org.xwiki.user.internal.group.GroupsCache;
 import org.xwiki.user.internal.group.MembersCache;
 
@@ -77,6 +78,7 @@
     DefaultGroupManager.class,
     GroupsCache.class,
     MembersCache.class,
+    GroupMembersGraph.class,
     SpacesConfigurationSource.class
 })
 @Inherited
@@ -68,7 +68,7 @@
  * @version $Id$
  */
 @OldcoreTest
-@ComponentList(value = { GroupsCache.class, MembersCache.class })
+@ComponentList(value = { GroupsCache.class, MembersCache.class, GroupMembersGraph.class, GroupMembersLoader.class })
 @ReferenceComponentList
 public class DefaultGroupManagerTest
 {
@@ -0,0 +1,180 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.user.internal.group;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.InOrder;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.test.LogLevel;
+import org.xwiki.test.junit5.LogCaptureExtension;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+import org.xwiki.user.group.GroupException;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.mandatory.XWikiGroupsDocumentInitializer;
+import com.xpn.xwiki.objects.BaseObject;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link GroupCacheInvalidationListener}.
+ * 
+ * @version $Id$
+ */
+@ComponentTest
+class GroupCacheInvalidationListenerTest
+{
+    private static final DocumentReference USER1 = new DocumentReference("wiki", "XWiki", "user1");
+
+    private static final DocumentReference USER2 = new DocumentReference("wiki", "XWiki", "user2");
+
+    private static final DocumentReference GROUP = new DocumentReference("wiki", "XWiki", "group");
+
+    @InjectMockComponents
+    private GroupCacheInvalidationListener listener;
+
+    @MockComponent
+    private DocumentReferenceResolver<String> resolver;
+
+    @MockComponent
+    private GroupsCache groupsCache;
+
+    @MockComponent
+    private MembersCache membersCache;
+
+    @MockComponent
+    private GroupMembersGraph membersGraph;
+
+    @MockComponent
+    private GroupMembersLoader membersLoader;
+
+    @RegisterExtension
+    private LogCaptureExtension logCapture = new LogCaptureExtension(LogLevel.WARN);
+
+    private XWikiDocument mockDocument(DocumentReference reference, DocumentReference... members)
+    {
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getDocumentReference()).thenReturn(reference);
+
+        List<BaseObject> memberObjects = new ArrayList<>();
+        for (DocumentReference member : members) {
+            BaseObject memberObject = mock(BaseObject.class);
+            when(memberObject.getStringValue("member")).thenReturn(member.getName());
+            when(this.resolver.resolve(member.getName(), reference)).thenReturn(member);
+            memberObjects.add(memberObject);
+        }
+        when(document.getXObjects(XWikiGroupsDocumentInitializer.XWIKI_GROUPS_DOCUMENT_REFERENCE))
+            .thenReturn(memberObjects);
+
+        return document;
+    }
+
+    @Test
+    void onGroupUpdated() throws GroupException
+    {
+        XWikiDocument document = mockDocument(GROUP, USER2);
+        XWikiDocument previousDocument = mockDocument(GROUP, USER1);
+        when(document.getOriginalDocument()).thenReturn(previousDocument);
+
+        this.listener.onEvent(new DocumentUpdatedEvent(GROUP), document, null);
+
+        // The graph should be updated before the caches are invalidated
+        InOrder inOrder = inOrder(this.membersGraph, this.groupsCache, this.membersCache);
+        inOrder.verify(this.membersGraph).update(GROUP, this.membersLoader);
+        inOrder.verify(this.groupsCache).cleanCache(GROUP);
+        inOrder.verify(this.membersCache).cleanCache(GROUP);
+
+        verify(this.groupsCache).cleanCache(USER1);
+        verify(this.membersCache).cleanCache(USER1);
+        verify(this.groupsCache).cleanCache(USER2);
+        verify(this.membersCache).cleanCache(USER2);
+        verify(this.membersGraph, never()).remove(any());
+    }
+
+    @Test
+    void onDocumentUpdated() throws GroupException
+    {
+        XWikiDocument document = mockDocument(USER1);
+        XWikiDocument previousDocument = mockDocument(USER1);
+        when(document.getOriginalDocument()).thenReturn(previousDocument);
+
+        this.listener.onEvent(new DocumentUpdatedEvent(USER1), document, null);
+
+        verify(this.groupsCache).cleanCache(USER1);
+        verify(this.membersCache).cleanCache(USER1);
+        verify(this.membersGraph, never()).update(any(), any());
+        verify(this.membersGraph, never()).remove(any());
+    }
+
+    @Test
+    void onGroupUpdatedWhenLoadFails() throws GroupException
+    {
+        XWikiDocument document = mockDocument(GROUP, USER2);
+        XWikiDocument previousDocument = mockDocument(GROUP, USER1);
+        when(document.getOriginalDocument()).thenReturn(previousDocument);
+        doThrow(new GroupException("error")).when(this.membersGraph).update(GROUP, this.membersLoader);
+
+        this.listener.onEvent(new DocumentUpdatedEvent(GROUP), document, null);
+
+        // The caches should still be invalidated
+        verify(this.groupsCache).cleanCache(GROUP);
+        verify(this.membersCache).cleanCache(GROUP);
+        verify(this.membersCache).cleanCache(USER1);
+        verify(this.membersCache).cleanCache(USER2);
+
+        assertEquals("Failed to update the members of group [wiki:XWiki.group] in the membership graph: "
+            + "GroupException: error", this.logCapture.getMessage(0));
+    }
+
+    @Test
+    void onGroupDeleted() throws GroupException
+    {
+        XWikiDocument document = mockDocument(GROUP);
+        XWikiDocument previousDocument = mockDocument(GROUP, USER1);
+        when(document.getOriginalDocument()).thenReturn(previousDocument);
+
+        this.listener.onEvent(new DocumentDeletedEvent(GROUP), document, null);
+
+        InOrder inOrder = inOrder(this.membersGraph, this.groupsCache, this.membersCache);
+        inOrder.verify(this.membersGraph).remove(GROUP);
+        inOrder.verify(this.groupsCache).cleanCache(GROUP);
+        inOrder.verify(this.membersCache).cleanCache(GROUP);
+
+        verify(this.groupsCache).cleanCache(USER1);
+        verify(this.membersCache).cleanCache(USER1);
+        verify(this.membersGraph, never()).update(any(), any());
+    }
+}
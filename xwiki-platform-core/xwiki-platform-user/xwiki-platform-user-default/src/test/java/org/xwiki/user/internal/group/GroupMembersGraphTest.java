@@ -0,0 +1,453 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.user.internal.group;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.user.group.GroupException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate {@link GroupMembersGraph}.
+ * 
+ * @version $Id$
+ */
+@ComponentTest
+class GroupMembersGraphTest
+{
+    private static final DocumentReference USER1 = new DocumentReference("wiki", "XWiki", "user1");
+
+    private static final DocumentReference USER2 = new DocumentReference("wiki", "XWiki", "user2");
+
+    private static final DocumentReference GROUP1 = new DocumentReference("wiki", "XWiki", "group1");
+
+    private static final DocumentReference GROUP2 = new DocumentReference("wiki", "XWiki", "group2");
+
+    private static final DocumentReference GROUP3 = new DocumentReference("wiki", "XWiki", "group3");
+
+    @InjectMockComponents
+    private GroupMembersGraph graph;
+
+    private final Map<DocumentReference, Set<DocumentReference>> members = new HashMap<>();
+
+    private final List<DocumentReference> loaded = new ArrayList<>();
+
+    private Set<DocumentReference> load(DocumentReference group)
+    {
+        this.loaded.add(group);
+
+        return this.members.getOrDefault(group, Set.of());
+    }
+
+    private Set<DocumentReference> getAllMembers(DocumentReference group) throws GroupException
+    {
+        return this.graph.getAllMembers(group, this::load);
+    }
+
+    /**
+     * The recursive walk used to resolve the members before the graph, each sub-group being resolved again.
+     */
+    private Set<DocumentReference> walk(DocumentReference group, Set<DocumentReference> rootMembers)
+    {
+        Set<DocumentReference> resolvedMembers = new LinkedHashSet<>();
+        Set<DocumentReference> visited = rootMembers != null ? rootMembers : resolvedMembers;
+
+        resolvedMembers.add(group);
+        for (DocumentReference member : this.members.getOrDefault(group, Set.of())) {
+            if (!visited.contains(member)) {
+                visited.add(member);
+                resolvedMembers.add(member);
+                resolvedMembers.addAll(walk(member, visited));
+            }
+        }
+        resolvedMembers.remove(group);
+
+        return resolvedMembers;
+    }
+
+    @Test
+    void getAllMembers() throws GroupException
+    {
+        this.members.put(GROUP1, Set.of(USER1, GROUP2));
+        this.members.put(GROUP2, Set.of(USER2));
+
+        assertEquals(Set.of(USER1, USER2, GROUP2), getAllMembers(GROUP1));
+        assertEquals(Set.of(USER2), getAllMembers(GROUP2));
+        assertEquals(Set.of(), getAllMembers(USER1));
+
+        // Everything should have been loaded only once
+        assertEquals(4, this.loaded.size());
+        assertEquals(Set.of(GROUP1, GROUP2, USER1, USER2), Set.copyOf(this.loaded));
+    }
+
+    @Test
+    void getAllMembersLoadsMissingEntitiesTogether() throws GroupException
+    {
+        this.members.put(GROUP1, Set.of(GROUP2, GROUP3));
+        this.members.put(GROUP2, Set.of(USER1));
+        this.members.put(GROUP3, Set.of(USER2));
+
+        assertEquals(Set.of(GROUP2, GROUP3, USER1, USER2), getAllMembers(GROUP1));
+
+        // Each level of the hierarchy should have been loaded in a single pass
+        assertEquals(5, this.loaded.size());
+        assertEquals(GROUP1, this.loaded.get(0));
+        assertEquals(Set.of(GROUP2, GROUP3), Set.copyOf(this.loaded.subList(1, 3)));
+        assertEquals(Set.of(USER1, USER2), Set.copyOf(this.loaded.subList(3, 5)));
+    }
+
+    @Test
+    void getAllMembersWithCrossReferences() throws GroupException
+    {
+        this.members.put(GROUP1, Set.of(GROUP2));
+        this.members.put(GROUP2, Set.of(GROUP1, USER1));
+
+        assertEquals(Set.of(GROUP2, USER1), getAllMembers(GROUP1));
+        assertEquals(Set.of(GROUP1, USER1), getAllMembers(GROUP2));
+    }
+
+    @Test
+    void getAllMembersWhenOtherGroupModifiedDuringLoad() throws GroupException
+    {
+        this.members.put(GROUP1, Set.of(USER1));
+        this.members.put(GROUP2, Set.of(USER2));
+
+        assertEquals(Set.of(USER2), getAllMembers(GROUP2));
+
+        this.loaded.clear();
+
+        // The modification of another group should not discard the loaded members
+        assertEquals(Set.of(USER1), this.graph.getAllMembers(GROUP1, group -> {
+            this.graph.invalidate(GROUP2);
+
+            return load(group);
+        }));
+        assertEquals(List.of(GROUP1, USER1), this.loaded);
+    }
+
+    @Test
+    void getAllMembersWhenGroupModifiedDuringLoad() throws GroupException
+    {
+        this.members.put(GROUP1, Set.of(USER1));
+
+        assertEquals(Set.of(), getAllMembers(USER2));
+
+        // The members loaded while the group is modified might be outdated and should be loaded again
+        assertEquals(Set.of(USER2), this.graph.getAllMembers(GROUP1, group -> {
+            Set<DocumentReference> groupMembers = load(group);
+            if (group.equals(GROUP1) && this.loaded.size() == 2) {
+                this.members.put(GROUP1, Set.of(USER2));
+                this.graph.invalidate(GROUP1);
+            }
+
+            return groupMembers;
+        }));
+        assertEquals(List.of(USER2, GROUP1, GROUP1), this.loaded);
+    }
+
+    @Test
+    void invalidateWithAddedMembers() throws GroupException
+    {
+        this.members.put(GROUP1, Set.of(GROUP2));
+        this.members.put(GROUP3, Set.of(USER2));
+
+        assertEquals(Set.of(GROUP2), getAllMembers(GROUP1));
+        assertEquals(Set.of(USER2), getAllMembers(GROUP3));
+
+        this.loaded.clear();
+
+        this.members.put(GROUP2, Set.of(GROUP3));
+        this.graph.invalidate(GROUP2);
+
+        // Only the modified group should have been loaded again
+        assertEquals(Set.of(GROUP2, GROUP3, USER2), getAllMembers(GROUP1));
+        assertEquals(List.of(GROUP2), this.loaded);
+
+        // Create a cycle
+        this.members.put(GROUP3, Set.of(USER2, GROUP1));
+        this.graph.invalidate(GROUP3);
+
+        assertEquals(Set.of(GROUP1, GROUP2, USER2), getAllMembers(GROUP3));
+        assertEquals(Set.of(GROUP2, GROUP3, USER2), getAllMembers(GROUP1));
+        assertEquals(List.of(GROUP2, GROUP3), this.loaded);
+        assertEquals(4, this.graph.size());
+    }
+
+    @Test
+    void invalidateWithRemovedMembers() throws GroupException
+    {
+        this.members.put(GROUP1, Set.of(GROUP2, USER2));
+        this.members.put(GROUP2, Set.of(USER1, USER2));
+
+        assertEquals(Set.of(GROUP2, USER1, USER2), getAllMembers(GROUP1));
+
+        this.members.put(GROUP2, Set.of(USER1));
+        this.graph.invalidate(GROUP2);
+
+        // USER2 is still a direct member of GROUP1
+        assertEquals(Set.of(GROUP2, USER1, USER2), getAllMembers(GROUP1));
+        assertEquals(Set.of(USER1), getAllMembers(GROUP2));
+
+        this.members.put(GROUP1, Set.of(GROUP2));
+        this.graph.invalidate(GROUP1);
+
+        assertEquals(Set.of(GROUP2, USER1), getAllMembers(GROUP1));
+    }
+
+    @Test
+    void updateWithAddedMembers() throws GroupException
+    {
+        this.members.put(GROUP1, Set.of(GROUP2));
+        this.members.put(GROUP2, Set.of(USER1));
+        this.members.put(GROUP3, Set.of(USER2));
+
+        assertEquals(Set.of(GROUP2, USER1), getAllMembers(GROUP1));
+        assertEquals(Set.of(USER2), getAllMembers(GROUP3));
+
+        this.loaded.clear();
+
+        this.members.put(GROUP2, Set.of(USER1, GROUP3));
+        this.graph.update(GROUP2, this::load);
+
+        // The closures should have been updated without loading anything else than the modified group
+        assertEquals(List.of(GROUP2), this.loaded);
+        assertEquals(Set.of(GROUP2, GROUP3, USER1, USER2), getAllMembers(GROUP1));
+        assertEquals(Set.of(GROUP3, USER1, USER2), getAllMembers(GROUP2));
+        assertEquals(List.of(GROUP2), this.loaded);
+
+        // Create a cycle
+        this.members.put(GROUP3, Set.of(USER2, GROUP1));
+        this.graph.update(GROUP3, this::load);
+
+        assertEquals(Set.of(GROUP1, GROUP2, USER1, USER2), getAllMembers(GROUP3));
+        assertEquals(Set.of(GROUP2, GROUP3, USER1, USER2), getAllMembers(GROUP1));
+        assertEquals(Set.of(GROUP1, GROUP3, USER1, USER2), getAllMembers(GROUP2));
+        assertEquals(List.of(GROUP2, GROUP3), this.loaded);
+    }
+
+    @Test
+    void updateWithNewMember() throws GroupException
+    {
+        this.members.put(GROUP1, Set.of(GROUP2));
+        this.members.put(GROUP2, Set.of(USER1));
+
+        assertEquals(Set.of(GROUP2, USER1), getAllMembers(GROUP1));
+
+        this.loaded.clear();
+
+        this.members.put(GROUP2, Set.of(USER1, USER2));
+        this.graph.update(GROUP2, this::load);
+
+        // The new member should have been loaded with the group
+        assertEquals(List.of(GROUP2, USER2), this.loaded);
+        assertEquals(Set.of(GROUP2, USER1, USER2), getAllMembers(GROUP1));
+        assertEquals(List.of(GROUP2, USER2), this.loaded);
+    }
+
+    @Test
+    void updateWithRemovedMembers() throws GroupException
+    {
+        this.members.put(GROUP1, Set.of(GROUP2, USER2));
+        this.members.put(GROUP2, Set.of(USER1, USER2));
+
+        assertEquals(Set.of(GROUP2, USER1, USER2), getAllMembers(GROUP1));
+
+        this.loaded.clear();
+
+        this.members.put(GROUP2, Set.of(USER1));
+        this.graph.update(GROUP2, this::load);
+
+        // USER2 is still a direct member of GROUP1
+        assertEquals(Set.of(GROUP2, USER1, USER2), getAllMembers(GROUP1));
+        assertEquals(Set.of(USER1), getAllMembers(GROUP2));
+
+        this.members.put(GROUP1, Set.of(GROUP2));
+        this.graph.update(GROUP1, this::load);
+
+        assertEquals(Set.of(GROUP2, USER1), getAllMembers(GROUP1));
+
+        // The closures should have been recomputed in memory
+        assertEquals(List.of(GROUP2, GROUP1), this.loaded);
+    }
+
+    @Test
+    void updateWhenNotLoaded() throws GroupException
+    {
+        this.members.put(GROUP1, Set.of(USER1));
+
+        this.graph.update(GROUP1, this::load);
+
+        // Nothing should be loaded for a group unknown to the graph
+        assertEquals(List.of(), this.loaded);
+        assertEquals(Set.of(USER1), getAllMembers(GROUP1));
+    }
+
+    @Test
+    void updateWhenLoadFails() throws GroupException
+    {
+        this.members.put(GROUP1, Set.of(USER1));
+
+        assertEquals(Set.of(USER1), getAllMembers(GROUP1));
+
+        this.members.put(GROUP1, Set.of(USER2));
+
+        assertThrows(GroupException.class, () -> this.graph.update(GROUP1, group -> {
+            throw new GroupException("error");
+        }));
+
+        // The group should have been invalidated
+        this.loaded.clear();
+
+        assertEquals(Set.of(USER2), getAllMembers(GROUP1));
+        assertEquals(List.of(GROUP1, USER2), this.loaded);
+    }
+
+    @Test
+    void updateFasterThanRecursiveWalk() throws GroupException
+    {
+        // A chain of nested groups, each with a few users
+        List<DocumentReference> groups = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            DocumentReference group = new DocumentReference("wiki", "XWiki", "group" + i);
+            Set<DocumentReference> groupMembers = new HashSet<>();
+            for (int j = 0; j < 10; j++) {
+                groupMembers.add(new DocumentReference("wiki", "XWiki", "user" + i + '_' + j));
+            }
+            if (!groups.isEmpty()) {
+                this.members.get(groups.get(groups.size() - 1)).add(group);
+            }
+            this.members.put(group, groupMembers);
+            groups.add(group);
+        }
+        DocumentReference root = groups.get(0);
+        DocumentReference leaf = groups.get(groups.size() - 1);
+
+        assertEquals(walk(root, null), getAllMembers(root));
+
+        // Add a user to the deepest group and resolve the members of the root group again
+        long graphTime = 0;
+        long walkTime = 0;
+        for (int i = 0; i < 200; i++) {
+            this.members.get(leaf).add(new DocumentReference("wiki", "XWiki", "newuser" + i));
+
+            long start = System.nanoTime();
+            this.graph.update(leaf, this::load);
+            Set<DocumentReference> graphMembers = getAllMembers(root);
+            graphTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Set<DocumentReference> walkMembers = walk(root, null);
+            walkTime += System.nanoTime() - start;
+
+            assertEquals(walkMembers, graphMembers);
+        }
+
+        assertTrue(graphTime < walkTime,
+            "The graph took " + graphTime + "ns while the recursive walk took " + walkTime + "ns");
+    }
+
+    @Test
+    void invalidateWhenNotLoaded() throws GroupException
+    {
+        this.graph.invalidate(GROUP1);
+
+        // The members are loaded when needed
+        this.members.put(GROUP1, Set.of(USER2));
+
+        assertEquals(Set.of(USER2), getAllMembers(GROUP1));
+    }
+
+    @Test
+    void remove() throws GroupException
+    {
+        this.members.put(GROUP1, Set.of(USER1, GROUP2));
+        this.members.put(GROUP2, Set.of(USER2));
+
+        assertEquals(Set.of(USER1, USER2, GROUP2), getAllMembers(GROUP1));
+        assertEquals(4, this.graph.size());
+
+        // USER1 is still a member of GROUP1
+        this.graph.remove(USER1);
+
+        assertEquals(4, this.graph.size());
+
+        this.members.remove(GROUP2);
+        this.graph.remove(GROUP2);
+
+        // GROUP2 is still a member of GROUP1 but its members should have been released
+        assertEquals(Set.of(USER1, GROUP2), getAllMembers(GROUP1));
+        assertEquals(3, this.graph.size());
+
+        this.members.remove(GROUP1);
+        this.graph.remove(GROUP1);
+
+        assertEquals(0, this.graph.size());
+
+        // The released identifiers should be reused
+        this.members.put(GROUP3, Set.of(USER1, USER2));
+
+        assertEquals(Set.of(USER1, USER2), getAllMembers(GROUP3));
+        assertEquals(3, this.graph.size());
+    }
+
+    @Test
+    void getAllMembersWhenFull() throws GroupException
+    {
+        ReflectionUtils.setFieldValue(this.graph, "maxEntities", 3);
+
+        this.members.put(GROUP1, Set.of(USER1, USER2, GROUP3));
+        this.members.put(GROUP2, Set.of(USER1));
+
+        // The limit is not enforced while resolving the members of a group
+        assertEquals(Set.of(USER1, USER2, GROUP3), getAllMembers(GROUP1));
+        assertEquals(4, this.graph.size());
+
+        // The graph should have been cleared before resolving new members
+        assertEquals(Set.of(USER1), getAllMembers(GROUP2));
+        assertEquals(2, this.graph.size());
+    }
+
+    @Test
+    void removeAll() throws GroupException
+    {
+        this.members.put(GROUP1, Set.of(USER1));
+
+        assertEquals(Set.of(USER1), getAllMembers(GROUP1));
+
+        this.members.put(GROUP1, Set.of(USER2));
+        this.graph.removeAll();
+
+        assertEquals(Set.of(USER2), getAllMembers(GROUP1));
+    }
+}